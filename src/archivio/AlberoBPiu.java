@@ -0,0 +1,409 @@
+package archivio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Albero B+ su un file paginato, con chiavi e valori di lunghezza variabile confrontati
+ * byte per byte senza segno. Ogni nodo occupa una pagina; le foglie contengono le coppie
+ * chiave-valore e sono collegate in ordine di chiave, così una scansione legge solo le
+ * foglie dell'intervallo richiesto.
+ * <p>
+ * Formato di una pagina:
+ * <pre>
+ * byte tipo | short numero di chiavi | int collegamento |
+ * foglia:  (short lunghezza chiave, chiave, short lunghezza valore, valore) per ogni chiave
+ * interno: (short lunghezza chiave, chiave, int figlio) per ogni chiave
+ * </pre>
+ * Nelle foglie il collegamento è la foglia successiva (-1 per l'ultima); nei nodi interni
+ * è il primo figlio, con le chiavi minori della prima chiave. Un nodo viene diviso a metà
+ * dei byte quando non sta più nella pagina. La rimozione non fonde i nodi: le foglie
+ * svuotate restano nella catena e vengono saltate dalle scansioni.
+ */
+final class AlberoBPiu {
+
+    // Lunghezza massima in byte di chiave e valore insieme, perché ogni nodo diviso stia in una pagina
+    static final int ELEMENTO_MASSIMO = 1300;
+
+    private static final byte FOGLIA = 0;
+    private static final byte INTERNO = 1;
+    private static final int INTESTAZIONE = 1 + 2 + 4;
+    private static final int NESSUNA = -1;
+
+    private final FilePaginato file;
+    private int radice;
+    private int versione;
+
+    /**
+     * Costruttore di un albero esistente.
+     *
+     * @param file File paginato dell'albero
+     * @param radice Pagina della radice
+     */
+    AlberoBPiu(FilePaginato file, int radice) {
+        this.file = file;
+        this.radice = radice;
+    }
+
+    /**
+     * Crea un albero vuoto, allocando la foglia radice.
+     *
+     * @param file File paginato dell'albero
+     * @return Pagina della radice
+     * @throws IOException In caso di errori di scrittura
+     */
+    static int crea(FilePaginato file) throws IOException {
+        int pagina = file.alloca();
+        Nodo foglia = new Nodo(FOGLIA);
+        foglia.collegamento = NESSUNA;
+        foglia.scrivi(file, pagina);
+        return pagina;
+    }
+
+    /**
+     * Ottiene la pagina della radice, che cambia quando la radice viene divisa.
+     *
+     * @return Pagina della radice
+     */
+    int getRadice() {
+        return radice;
+    }
+
+    /**
+     * Cerca il valore di una chiave.
+     *
+     * @param chiave Chiave cercata
+     * @return Valore, o null se la chiave non è presente
+     * @throws IOException In caso di errori di lettura
+     */
+    byte[] cerca(byte[] chiave) throws IOException {
+        Nodo foglia = Nodo.leggi(file, fogliaPer(chiave));
+        int i = foglia.cerca(chiave);
+        return i >= 0 ? foglia.valori.get(i) : null;
+    }
+
+    private int fogliaPer(byte[] chiave) throws IOException {
+        int pagina = radice;
+        Nodo nodo = Nodo.leggi(file, pagina);
+        while (nodo.tipo == INTERNO) {
+            pagina = nodo.figlioPer(chiave);
+            nodo = Nodo.leggi(file, pagina);
+        }
+        return pagina;
+    }
+
+    /**
+     * Inserisce una chiave o ne sostituisce il valore.
+     *
+     * @param chiave Chiave
+     * @param valore Valore
+     * @return Valore precedente, o null se la chiave non era presente
+     * @throws IOException In caso di errori di lettura o scrittura
+     */
+    byte[] inserisci(byte[] chiave, byte[] valore) throws IOException {
+        if (chiave.length + valore.length > ELEMENTO_MASSIMO) {
+            throw new IllegalArgumentException("Elemento troppo grande per una pagina: "
+                    + (chiave.length + valore.length) + " byte");
+        }
+        byte[][] precedente = new byte[1][];
+        Divisione divisione = inserisci(radice, chiave, valore, precedente);
+        if (divisione != null) {
+            // La radice divisa diventa il primo figlio di una nuova radice
+            Nodo nuovaRadice = new Nodo(INTERNO);
+            nuovaRadice.collegamento = radice;
+            nuovaRadice.chiavi.add(divisione.separatore);
+            nuovaRadice.figli.add(divisione.pagina);
+            radice = file.alloca();
+            nuovaRadice.scrivi(file, radice);
+        }
+        versione++;
+        return precedente[0];
+    }
+
+    private Divisione inserisci(int pagina, byte[] chiave, byte[] valore, byte[][] precedente) throws IOException {
+        Nodo nodo = Nodo.leggi(file, pagina);
+        if (nodo.tipo == FOGLIA) {
+            int i = nodo.cerca(chiave);
+            if (i >= 0) {
+                precedente[0] = nodo.valori.set(i, valore);
+            } else {
+                nodo.chiavi.add(-i - 1, chiave);
+                nodo.valori.add(-i - 1, valore);
+            }
+        } else {
+            int i = nodo.indiceFiglio(chiave);
+            Divisione divisione = inserisci(nodo.figlio(i), chiave, valore, precedente);
+            if (divisione == null) {
+                return null;
+            }
+            nodo.chiavi.add(i, divisione.separatore);
+            nodo.figli.add(i, divisione.pagina);
+        }
+
+        if (nodo.dimensione() <= FilePaginato.DIMENSIONE_PAGINA) {
+            nodo.scrivi(file, pagina);
+            return null;
+        }
+        return dividi(nodo, pagina);
+    }
+
+    /**
+     * Divide un nodo troppo grande a metà dei byte, scrivendo la metà destra in una nuova pagina.
+     */
+    private Divisione dividi(Nodo nodo, int pagina) throws IOException {
+        int meta = nodo.dimensione() / 2;
+        int dimensione = INTESTAZIONE;
+        int k = 0;
+        while (k < nodo.chiavi.size() - 1 && dimensione < meta) {
+            dimensione += nodo.dimensioneElemento(k);
+            k++;
+        }
+        k = Math.max(1, k);
+
+        Nodo destro = new Nodo(nodo.tipo);
+        byte[] separatore;
+        if (nodo.tipo == FOGLIA) {
+            // Le chiavi da k in poi passano alla foglia destra, che segue la sinistra nella catena
+            destro.chiavi.addAll(nodo.chiavi.subList(k, nodo.chiavi.size()));
+            destro.valori.addAll(nodo.valori.subList(k, nodo.valori.size()));
+            nodo.chiavi.subList(k, nodo.chiavi.size()).clear();
+            nodo.valori.subList(k, nodo.valori.size()).clear();
+            separatore = destro.chiavi.get(0);
+            destro.collegamento = nodo.collegamento;
+        } else {
+            // La chiave k sale al padre; il suo figlio diventa il primo figlio del nodo destro
+            separatore = nodo.chiavi.get(k);
+            destro.collegamento = nodo.figli.get(k);
+            destro.chiavi.addAll(nodo.chiavi.subList(k + 1, nodo.chiavi.size()));
+            destro.figli.addAll(nodo.figli.subList(k + 1, nodo.figli.size()));
+            nodo.chiavi.subList(k, nodo.chiavi.size()).clear();
+            nodo.figli.subList(k, nodo.figli.size()).clear();
+        }
+
+        int paginaDestra = file.alloca();
+        if (nodo.tipo == FOGLIA) {
+            nodo.collegamento = paginaDestra;
+        }
+        destro.scrivi(file, paginaDestra);
+        nodo.scrivi(file, pagina);
+        return new Divisione(separatore, paginaDestra);
+    }
+
+    /**
+     * Rimuove una chiave.
+     *
+     * @param chiave Chiave da rimuovere
+     * @return Valore rimosso, o null se la chiave non era presente
+     * @throws IOException In caso di errori di lettura o scrittura
+     */
+    byte[] rimuovi(byte[] chiave) throws IOException {
+        int pagina = fogliaPer(chiave);
+        Nodo foglia = Nodo.leggi(file, pagina);
+        int i = foglia.cerca(chiave);
+        if (i < 0) {
+            return null;
+        }
+        foglia.chiavi.remove(i);
+        byte[] valore = foglia.valori.remove(i);
+        foglia.scrivi(file, pagina);
+        versione++;
+        return valore;
+    }
+
+    /**
+     * Scorre le coppie in ordine di chiave a partire da una chiave, leggendo una foglia
+     * alla volta. Gli errori di lettura vengono lanciati come UncheckedIOException;
+     * l'albero non va modificato durante la scansione.
+     *
+     * @param da Prima chiave della scansione (inclusa), o null per iniziare dalla prima
+     * @return Iteratore delle coppie chiave-valore
+     * @throws IOException In caso di errori di lettura
+     */
+    Iterator<Map.Entry<byte[], byte[]>> scorri(byte[] da) throws IOException {
+        int pagina = radice;
+        Nodo nodo = Nodo.leggi(file, pagina);
+        while (nodo.tipo == INTERNO) {
+            pagina = da == null ? nodo.collegamento : nodo.figlioPer(da);
+            nodo = Nodo.leggi(file, pagina);
+        }
+        int inizio = 0;
+        if (da != null) {
+            int i = nodo.cerca(da);
+            inizio = i >= 0 ? i : -i - 1;
+        }
+        return new Scansione(nodo, inizio);
+    }
+
+    /**
+     * Scansione delle foglie collegate.
+     */
+    private final class Scansione implements Iterator<Map.Entry<byte[], byte[]>> {
+        private final int versioneAttesa = versione;
+        private Nodo foglia;
+        private int indice;
+
+        private Scansione(Nodo foglia, int indice) {
+            this.foglia = foglia;
+            this.indice = indice;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (versione != versioneAttesa) {
+                throw new ConcurrentModificationException();
+            }
+            try {
+                while (indice >= foglia.chiavi.size() && foglia.collegamento != NESSUNA) {
+                    foglia = Nodo.leggi(file, foglia.collegamento);
+                    indice = 0;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return indice < foglia.chiavi.size();
+        }
+
+        @Override
+        public Map.Entry<byte[], byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<byte[], byte[]> voce = new AbstractMap.SimpleImmutableEntry<>(
+                    foglia.chiavi.get(indice), foglia.valori.get(indice));
+            indice++;
+            return voce;
+        }
+    }
+
+    /**
+     * Risultato della divisione di un nodo: la chiave che sale al padre e la nuova pagina.
+     */
+    private static final class Divisione {
+        private final byte[] separatore;
+        private final int pagina;
+
+        private Divisione(byte[] separatore, int pagina) {
+            this.separatore = separatore;
+            this.pagina = pagina;
+        }
+    }
+
+    /**
+     * Nodo letto da una pagina. Nei nodi interni figli.get(i) contiene le chiavi maggiori
+     * o uguali a chiavi.get(i).
+     */
+    private static final class Nodo {
+        private final byte tipo;
+        private int collegamento;
+        private final List<byte[]> chiavi = new ArrayList<>();
+        private final List<byte[]> valori = new ArrayList<>();
+        private final List<Integer> figli = new ArrayList<>();
+
+        private Nodo(byte tipo) {
+            this.tipo = tipo;
+        }
+
+        private static Nodo leggi(FilePaginato file, int pagina) throws IOException {
+            ByteBuffer buffer = file.leggi(pagina).duplicate();
+            buffer.clear();
+            byte tipo = buffer.get();
+            if (tipo != FOGLIA && tipo != INTERNO) {
+                throw new IOException("Pagina dell'albero non valida: " + pagina);
+            }
+            Nodo nodo = new Nodo(tipo);
+            int numero = Short.toUnsignedInt(buffer.getShort());
+            nodo.collegamento = buffer.getInt();
+            for (int i = 0; i < numero; i++) {
+                nodo.chiavi.add(leggiBytes(buffer));
+                if (tipo == FOGLIA) {
+                    nodo.valori.add(leggiBytes(buffer));
+                } else {
+                    nodo.figli.add(buffer.getInt());
+                }
+            }
+            return nodo;
+        }
+
+        private static byte[] leggiBytes(ByteBuffer buffer) {
+            byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        private void scrivi(FilePaginato file, int pagina) throws IOException {
+            ByteBuffer buffer = file.leggi(pagina).duplicate();
+            buffer.clear();
+            buffer.put(tipo);
+            buffer.putShort((short) chiavi.size());
+            buffer.putInt(collegamento);
+            for (int i = 0; i < chiavi.size(); i++) {
+                buffer.putShort((short) chiavi.get(i).length).put(chiavi.get(i));
+                if (tipo == FOGLIA) {
+                    buffer.putShort((short) valori.get(i).length).put(valori.get(i));
+                } else {
+                    buffer.putInt(figli.get(i));
+                }
+            }
+            file.segnaModificata(pagina);
+        }
+
+        private int dimensioneElemento(int i) {
+            return 2 + chiavi.get(i).length + (tipo == FOGLIA ? 2 + valori.get(i).length : 4);
+        }
+
+        private int dimensione() {
+            int dimensione = INTESTAZIONE;
+            for (int i = 0; i < chiavi.size(); i++) {
+                dimensione += dimensioneElemento(i);
+            }
+            return dimensione;
+        }
+
+        /**
+         * Ricerca binaria di una chiave.
+         *
+         * @return Indice della chiave, o (-(punto di inserimento) - 1) se non è presente
+         */
+        private int cerca(byte[] chiave) {
+            int basso = 0;
+            int alto = chiavi.size() - 1;
+            while (basso <= alto) {
+                int medio = (basso + alto) >>> 1;
+                int confronto = Arrays.compareUnsigned(chiavi.get(medio), chiave);
+                if (confronto < 0) {
+                    basso = medio + 1;
+                } else if (confronto > 0) {
+                    alto = medio - 1;
+                } else {
+                    return medio;
+                }
+            }
+            return -basso - 1;
+        }
+
+        /**
+         * Numero di chiavi minori o uguali a quella indicata: 0 indica il primo figlio.
+         */
+        private int indiceFiglio(byte[] chiave) {
+            int i = cerca(chiave);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        private int figlio(int indice) {
+            return indice == 0 ? collegamento : figli.get(indice - 1);
+        }
+
+        private int figlioPer(byte[] chiave) {
+            return figlio(indiceFiglio(chiave));
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package archivio;
+
+import model.Libro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Archivio di libri su disco, in un file paginato con tre alberi B+: il primario per
+ * ISBN, con i dati dei libri, e due secondari per autore e per titolo, con le chiavi
+ * dei libri in ordine alfabetico. Le ricerche e le scansioni ordinate leggono solo le
+ * pagine necessarie, attraverso una cache LRU di dimensione configurabile: l'apertura
+ * non dipende dal numero di libri e il catalogo può superare la memoria disponibile.
+ * <p>
+ * I dati dei libri più lunghi di VALORE_IN_LINEA byte (titoli o autori molto lunghi)
+ * vengono scritti in una catena di pagine di trabocco e l'albero primario ne contiene
+ * solo il riferimento; le pagine di trabocco liberate dalle sostituzioni e dalle
+ * rimozioni vengono riusate.
+ * <p>
+ * La prima pagina del file contiene le radici degli alberi, il numero di libri e la
+ * prima pagina di trabocco libera.
+ * Le pagine modificate vengono scritte quando escono dalla cache e alla sincronizzazione:
+ * il file è coerente dopo sincronizza() e close().
+ */
+public class ArchivioBPiu implements ArchivioLibri {
+
+    // Numero predefinito di pagine in cache (4 MB)
+    public static final int PAGINE_IN_CACHE = 1024;
+
+    // Byte del testo usati nelle chiavi degli alberi secondari
+    private static final int PREFISSO_SECONDARIO = 200;
+
+    // Lunghezza massima dei dati di un libro scritti direttamente nell'albero primario
+    private static final int VALORE_IN_LINEA = 1000;
+
+    // Lunghezza massima in byte dell'ISBN, perché le chiavi stiano nelle pagine degli alberi
+    private static final int ISBN_MASSIMO = 256;
+
+    // Primo byte del riferimento a una catena di trabocco, che non è una valutazione valida
+    private static final byte TRABOCCO = -1;
+
+    // Byte di dati in una pagina di trabocco, dopo il numero della pagina successiva
+    private static final int DATI_TRABOCCO = FilePaginato.DIMENSIONE_PAGINA - 4;
+
+    // Fine di una catena di trabocco e della lista delle pagine libere (la pagina 0 è l'intestazione)
+    private static final int FINE_CATENA = -1;
+    private static final int NESSUNA_LIBERA = 0;
+
+    private static final int MAGICO = 0x4C425031;
+    private static final int VERSIONE_FORMATO = 2;
+    private static final int PAGINA_INTESTAZIONE = 0;
+
+    private final FilePaginato file;
+    private final AlberoBPiu primario;
+    private final AlberoBPiu alberoAutori;
+    private final AlberoBPiu alberoTitoli;
+    private int numeroLibri;
+    private int primaLibera;
+
+    /**
+     * Apre un archivio con la cache predefinita, creandolo se il file non esiste.
+     *
+     * @param percorsoFile Percorso del file dell'archivio
+     * @throws IOException In caso di errori di apertura o se il file non è un archivio
+     */
+    public ArchivioBPiu(String percorsoFile) throws IOException {
+        this(percorsoFile, PAGINE_IN_CACHE);
+    }
+
+    /**
+     * Apre un archivio, creandolo se il file non esiste.
+     *
+     * @param percorsoFile Percorso del file dell'archivio
+     * @param pagineInCache Numero massimo di pagine tenute in memoria
+     * @throws IOException In caso di errori di apertura o se il file non è un archivio
+     */
+    public ArchivioBPiu(String percorsoFile, int pagineInCache) throws IOException {
+        this.file = new FilePaginato(Paths.get(percorsoFile), pagineInCache);
+        try {
+            if (file.getNumeroPagine() == 0) {
+                file.alloca();
+                primario = new AlberoBPiu(file, AlberoBPiu.crea(file));
+                alberoAutori = new AlberoBPiu(file, AlberoBPiu.crea(file));
+                alberoTitoli = new AlberoBPiu(file, AlberoBPiu.crea(file));
+                scriviIntestazione();
+            } else {
+                ByteBuffer intestazione = file.leggi(PAGINA_INTESTAZIONE);
+                // La versione 1 non ha pagine di trabocco e la sua intestazione ha 0 come pagina libera
+                int versione = intestazione.getInt(4);
+                if (intestazione.getInt(0) != MAGICO || versione < 1 || versione > VERSIONE_FORMATO) {
+                    throw new IOException("Il file non è un archivio della libreria: " + percorsoFile);
+                }
+                primario = new AlberoBPiu(file, intestazione.getInt(8));
+                alberoAutori = new AlberoBPiu(file, intestazione.getInt(12));
+                alberoTitoli = new AlberoBPiu(file, intestazione.getInt(16));
+                numeroLibri = intestazione.getInt(20);
+                primaLibera = intestazione.getInt(24);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void scriviIntestazione() throws IOException {
+        ByteBuffer intestazione = file.leggi(PAGINA_INTESTAZIONE);
+        intestazione.putInt(0, MAGICO);
+        intestazione.putInt(4, VERSIONE_FORMATO);
+        intestazione.putInt(8, primario.getRadice());
+        intestazione.putInt(12, alberoAutori.getRadice());
+        intestazione.putInt(16, alberoTitoli.getRadice());
+        intestazione.putInt(20, numeroLibri);
+        intestazione.putInt(24, primaLibera);
+        file.segnaModificata(PAGINA_INTESTAZIONE);
+    }
+
+    @Override
+    public Libro scrivi(Libro libro) throws IOException {
+        // I controlli precedono qualsiasi modifica, così un libro rifiutato non lascia gli alberi a metà
+        byte[] isbn = libro.getIsbn().getBytes(StandardCharsets.UTF_8);
+        if (isbn.length > ISBN_MASSIMO) {
+            throw new IOException("ISBN troppo lungo per l'archivio: " + isbn.length + " byte");
+        }
+        CodificaLibro.verifica(libro);
+
+        byte[] precedente = primario.inserisci(isbn, valorePrimario(CodificaLibro.codifica(libro)));
+        Libro sostituito = null;
+        if (precedente != null) {
+            sostituito = decodifica(isbn, precedente);
+            liberaTrabocco(precedente);
+            alberoAutori.rimuovi(chiaveSecondaria(sostituito.getAutore(), isbn));
+            alberoTitoli.rimuovi(chiaveSecondaria(sostituito.getTitolo(), isbn));
+        } else {
+            numeroLibri++;
+        }
+        alberoAutori.inserisci(chiaveSecondaria(libro.getAutore(), isbn), new byte[0]);
+        alberoTitoli.inserisci(chiaveSecondaria(libro.getTitolo(), isbn), new byte[0]);
+        scriviIntestazione();
+        return sostituito;
+    }
+
+    @Override
+    public Libro leggi(String isbn) throws IOException {
+        byte[] chiave = isbn.getBytes(StandardCharsets.UTF_8);
+        byte[] valore = primario.cerca(chiave);
+        return valore == null ? null : decodifica(chiave, valore);
+    }
+
+    @Override
+    public Libro rimuovi(String isbn) throws IOException {
+        byte[] chiave = isbn.getBytes(StandardCharsets.UTF_8);
+        byte[] valore = primario.rimuovi(chiave);
+        if (valore == null) {
+            return null;
+        }
+        Libro rimosso = decodifica(chiave, valore);
+        liberaTrabocco(valore);
+        alberoAutori.rimuovi(chiaveSecondaria(rimosso.getAutore(), chiave));
+        alberoTitoli.rimuovi(chiaveSecondaria(rimosso.getTitolo(), chiave));
+        numeroLibri--;
+        scriviIntestazione();
+        return rimosso;
+    }
+
+    @Override
+    public int getNumeroLibri() {
+        return numeroLibri;
+    }
+
+    /**
+     * Restituisce i libri in ordine di ISBN, leggendo una foglia alla volta.
+     *
+     * @return Iteratore dei libri; gli errori di lettura sono UncheckedIOException
+     */
+    @Override
+    public Iterator<Libro> iterator() {
+        Iterator<Map.Entry<byte[], byte[]>> voci;
+        try {
+            voci = primario.scorri(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Iterator<Libro>() {
+            @Override
+            public boolean hasNext() {
+                return voci.hasNext();
+            }
+
+            @Override
+            public Libro next() {
+                Map.Entry<byte[], byte[]> voce = voci.next();
+                try {
+                    return decodifica(voce.getKey(), voce.getValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Restituisce i libri in ordine di autore (senza distinzione tra maiuscole e minuscole)
+     * e, a parità di autore, di ISBN.
+     *
+     * @return Iteratore dei libri; gli errori di lettura sono UncheckedIOException
+     * @throws IOException In caso di errori di lettura
+     */
+    public Iterator<Libro> perAutore() throws IOException {
+        return new ScansioneSecondaria(alberoAutori.scorri(null), null);
+    }
+
+    /**
+     * Restituisce i libri in ordine di titolo (senza distinzione tra maiuscole e minuscole)
+     * e, a parità di titolo, di ISBN.
+     *
+     * @return Iteratore dei libri; gli errori di lettura sono UncheckedIOException
+     * @throws IOException In caso di errori di lettura
+     */
+    public Iterator<Libro> perTitolo() throws IOException {
+        return new ScansioneSecondaria(alberoTitoli.scorri(null), null);
+    }
+
+    /**
+     * Cerca i libri il cui autore inizia con un prefisso, senza distinzione tra maiuscole
+     * e minuscole, in ordine di autore.
+     *
+     * @param prefisso Inizio del nome dell'autore
+     * @param massimo Numero massimo di libri restituiti
+     * @return Libri trovati
+     * @throws IOException In caso di errori di lettura
+     */
+    public List<Libro> cercaPerAutore(String prefisso, int massimo) throws IOException {
+        return cerca(alberoAutori, prefisso, massimo);
+    }
+
+    /**
+     * Cerca i libri il cui titolo inizia con un prefisso, senza distinzione tra maiuscole
+     * e minuscole, in ordine di titolo.
+     *
+     * @param prefisso Inizio del titolo
+     * @param massimo Numero massimo di libri restituiti
+     * @return Libri trovati
+     * @throws IOException In caso di errori di lettura
+     */
+    public List<Libro> cercaPerTitolo(String prefisso, int massimo) throws IOException {
+        return cerca(alberoTitoli, prefisso, massimo);
+    }
+
+    private List<Libro> cerca(AlberoBPiu albero, String prefisso, int massimo) throws IOException {
+        byte[] inizio = testoSecondario(prefisso);
+        List<Libro> trovati = new ArrayList<>();
+        try {
+            Iterator<Libro> libri = new ScansioneSecondaria(albero.scorri(inizio), inizio);
+            while (trovati.size() < massimo && libri.hasNext()) {
+                trovati.add(libri.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return trovati;
+    }
+
+    /**
+     * Scrive su disco le pagine modificate.
+     *
+     * @throws IOException In caso di errori di scrittura
+     */
+    public void sincronizza() throws IOException {
+        file.sincronizza();
+    }
+
+    /**
+     * Ottiene il numero di pagine lette dal disco dall'apertura dell'archivio,
+     * escluse quelle trovate nella cache.
+     *
+     * @return Pagine lette dal disco
+     */
+    public long getPagineLette() {
+        return file.getLettureDaDisco();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    // ---- Pagine di trabocco ----
+
+    /**
+     * Valore dell'albero primario: i dati codificati, o il riferimento alla catena di
+     * trabocco in cui vengono scritti se superano VALORE_IN_LINEA byte.
+     * Il riferimento è TRABOCCO, la lunghezza dei dati e la prima pagina della catena.
+     */
+    private byte[] valorePrimario(byte[] dati) throws IOException {
+        if (dati.length <= VALORE_IN_LINEA) {
+            return dati;
+        }
+        int pagine = (dati.length + DATI_TRABOCCO - 1) / DATI_TRABOCCO;
+        int[] catena = new int[pagine];
+        for (int i = 0; i < pagine; i++) {
+            catena[i] = allocaTrabocco();
+        }
+        for (int i = 0; i < pagine; i++) {
+            ByteBuffer pagina = file.leggi(catena[i]);
+            pagina.putInt(0, i + 1 < pagine ? catena[i + 1] : FINE_CATENA);
+            int inizio = i * DATI_TRABOCCO;
+            pagina.put(4, dati, inizio, Math.min(DATI_TRABOCCO, dati.length - inizio));
+            file.segnaModificata(catena[i]);
+        }
+        return ByteBuffer.allocate(1 + 4 + 4).put(TRABOCCO).putInt(dati.length).putInt(catena[0]).array();
+    }
+
+    private int allocaTrabocco() throws IOException {
+        if (primaLibera == NESSUNA_LIBERA) {
+            return file.alloca();
+        }
+        int pagina = primaLibera;
+        primaLibera = file.leggi(pagina).getInt(0);
+        return pagina;
+    }
+
+    private Libro decodifica(byte[] isbn, byte[] valore) throws IOException {
+        if (valore[0] != TRABOCCO) {
+            return CodificaLibro.decodifica(isbn, valore);
+        }
+        ByteBuffer riferimento = ByteBuffer.wrap(valore, 1, 8);
+        byte[] dati = new byte[riferimento.getInt()];
+        int pagina = riferimento.getInt();
+        for (int inizio = 0; inizio < dati.length; inizio += DATI_TRABOCCO) {
+            if (pagina == FINE_CATENA) {
+                throw new IOException("Catena di trabocco troncata per l'ISBN "
+                        + new String(isbn, StandardCharsets.UTF_8));
+            }
+            ByteBuffer buffer = file.leggi(pagina);
+            buffer.get(4, dati, inizio, Math.min(DATI_TRABOCCO, dati.length - inizio));
+            pagina = buffer.getInt(0);
+        }
+        return CodificaLibro.decodifica(isbn, dati);
+    }
+
+    /**
+     * Aggiunge alla lista delle pagine libere la catena di trabocco di un valore rimosso
+     * o sostituito, collegando l'ultima pagina della catena alla lista.
+     */
+    private void liberaTrabocco(byte[] valore) throws IOException {
+        if (valore[0] != TRABOCCO) {
+            return;
+        }
+        int prima = ByteBuffer.wrap(valore, 5, 4).getInt();
+        int pagina = prima;
+        while (true) {
+            ByteBuffer buffer = file.leggi(pagina);
+            int successiva = buffer.getInt(0);
+            if (successiva == FINE_CATENA) {
+                buffer.putInt(0, primaLibera);
+                file.segnaModificata(pagina);
+                break;
+            }
+            pagina = successiva;
+        }
+        primaLibera = prima;
+    }
+
+    // ---- Chiavi ----
+
+    /**
+     * Testo minuscolo usato nelle chiavi secondarie, limitato a PREFISSO_SECONDARIO byte:
+     * i testi più lunghi sono ordinati in base ai primi byte e poi all'ISBN.
+     */
+    private static byte[] testoSecondario(String testo) {
+        byte[] bytes = testo.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= PREFISSO_SECONDARIO ? bytes : Arrays.copyOf(bytes, PREFISSO_SECONDARIO);
+    }
+
+    /**
+     * Chiave secondaria: testo, byte 0 come separatore e ISBN, così i libri con lo stesso
+     * testo sono ordinati per ISBN e l'ISBN si ricava dalla chiave.
+     */
+    private static byte[] chiaveSecondaria(String testo, byte[] isbn) {
+        byte[] prefisso = testoSecondario(testo);
+        byte[] chiave = Arrays.copyOf(prefisso, prefisso.length + 1 + isbn.length);
+        System.arraycopy(isbn, 0, chiave, prefisso.length + 1, isbn.length);
+        return chiave;
+    }
+
+    /**
+     * Scansione di un albero secondario che legge i libri dall'albero primario,
+     * fermandosi alla prima chiave che non inizia con il prefisso.
+     */
+    private final class ScansioneSecondaria implements Iterator<Libro> {
+        private final Iterator<Map.Entry<byte[], byte[]>> voci;
+        private final byte[] prefisso;
+        private byte[] prossima;
+        private boolean finita;
+
+        private ScansioneSecondaria(Iterator<Map.Entry<byte[], byte[]>> voci, byte[] prefisso) {
+            this.voci = voci;
+            this.prefisso = prefisso;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (prossima == null && !finita && voci.hasNext()) {
+                byte[] chiave = voci.next().getKey();
+                if (prefisso == null || (chiave.length >= prefisso.length
+                        && Arrays.equals(chiave, 0, prefisso.length, prefisso, 0, prefisso.length))) {
+                    prossima = chiave;
+                } else {
+                    finita = true;
+                }
+            }
+            return prossima != null;
+        }
+
+        @Override
+        public Libro next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            byte[] chiave = prossima;
+            prossima = null;
+            int separatore = chiave.length - 1;
+            while (chiave[separatore] != 0) {
+                separatore--;
+            }
+            byte[] isbn = Arrays.copyOfRange(chiave, separatore + 1, chiave.length);
+            try {
+                byte[] valore = primario.cerca(isbn);
+                if (valore == null) {
+                    throw new IOException("Indice secondario non coerente per l'ISBN "
+                            + new String(isbn, StandardCharsets.UTF_8));
+                }
+                return decodifica(isbn, valore);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
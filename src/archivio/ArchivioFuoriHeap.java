@@ -0,0 +1,597 @@
+package archivio;
+
+import model.Libro;
+import model.StatoLettura;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Archivio di libri fuori dallo heap, in buffer diretti: milioni di libri occupano pochi
+ * oggetti Java, così le pause del garbage collector non crescono con il catalogo.
+ * <p>
+ * Ogni libro è un record compatto scritto in coda a segmenti di dimensione fissa:
+ * <pre>
+ * int lunghezza | int posizione | byte valutazione | byte stato |
+ * (short lunghezza, byte UTF-8) per isbn, titolo, autore, genere
+ * </pre>
+ * Un vettore di indirizzi, anch'esso fuori dallo heap, conserva l'ordine di inserimento
+ * e permette di leggere il libro in una posizione senza creare gli altri; l'indice per
+ * ISBN è una tabella a indirizzamento aperto (scansione lineare) di coppie
+ * (hash, indirizzo). Sostituire o rimuovere un libro lascia il vecchio record inutilizzato
+ * e, per la rimozione, una posizione vuota nel vettore: un albero di Fenwick sulle
+ * posizioni occupate trova il libro in una posizione in O(log n) senza modificare
+ * l'archivio. Quando lo spazio inutilizzato supera quello dei libri presenti, i record
+ * vengono ricopiati in segmenti nuovi e le posizioni vuote eliminate.
+ */
+public class ArchivioFuoriHeap implements ArchivioLibri {
+
+    // Dimensione predefinita dei segmenti dei record, in byte
+    public static final int DIMENSIONE_SEGMENTO = 8 << 20;
+
+    // Lunghezza massima in byte di un campo di testo
+    static final int LUNGHEZZA_MASSIMA_CAMPO = 0xFFFF;
+
+    private static final StatoLettura[] STATI = StatoLettura.values();
+
+    // Dimensione dell'intestazione del record (lunghezza, posizione, valutazione, stato)
+    private static final int INTESTAZIONE = 4 + 4 + 1 + 1;
+
+    // Indirizzo delle posizioni dei libri rimossi
+    private static final long VUOTA = -1;
+
+    // Dimensione di una cella dell'indice: hash e indirizzo del record
+    private static final int CELLA = 4 + 8;
+    private static final int CAPACITA_INIZIALE = 1024;
+
+    private final int dimensioneSegmento;
+    private List<ByteBuffer> segmenti;
+
+    // Indirizzo del primo byte libero: segmento * dimensioneSegmento + scostamento
+    private long fine;
+    private long byteInutilizzati;
+
+    private final VettoreIndirizzi posizioni;
+    private final PosizioniOccupate occupate;
+    private int numeroPosizioni;
+    private int numeroLibri;
+
+    private ByteBuffer indice;
+    private int capacitaIndice;
+
+    private int versione;
+
+    /**
+     * Costruttore con la dimensione predefinita dei segmenti.
+     */
+    public ArchivioFuoriHeap() {
+        this(DIMENSIONE_SEGMENTO);
+    }
+
+    /**
+     * Costruttore dell'archivio.
+     *
+     * @param dimensioneSegmento Dimensione in byte dei segmenti dei record
+     */
+    public ArchivioFuoriHeap(int dimensioneSegmento) {
+        if (dimensioneSegmento < INTESTAZIONE + 4 * (2 + LUNGHEZZA_MASSIMA_CAMPO)) {
+            throw new IllegalArgumentException("Segmento troppo piccolo per un record: " + dimensioneSegmento);
+        }
+        this.dimensioneSegmento = dimensioneSegmento;
+        this.segmenti = new ArrayList<>();
+        this.posizioni = new VettoreIndirizzi();
+        this.occupate = new PosizioniOccupate();
+        this.capacitaIndice = CAPACITA_INIZIALE;
+        this.indice = ByteBuffer.allocateDirect(capacitaIndice * CELLA);
+    }
+
+    @Override
+    public Libro scrivi(Libro libro) {
+        byte[] isbn = codifica(libro.getIsbn());
+        int hash = hash(isbn);
+        int cella = cerca(isbn, hash);
+
+        if (cella >= 0) {
+            long precedente = indice.getLong(cella * CELLA + 4);
+            Libro sostituito = leggiRecord(precedente);
+            int posizione = buffer(precedente).getInt(scostamento(precedente) + 4);
+            long indirizzo = aggiungiRecord(libro, isbn, posizione);
+            byteInutilizzati += lunghezza(precedente);
+            posizioni.imposta(posizione, indirizzo);
+            indice.putLong(cella * CELLA + 4, indirizzo);
+            versione++;
+            compattaSeNecessario();
+            return sostituito;
+        }
+
+        if ((numeroLibri + 1) * 2L > capacitaIndice) {
+            ridimensionaIndice(capacitaIndice * 2);
+        }
+        long indirizzo = aggiungiRecord(libro, isbn, numeroPosizioni);
+        occupate.aggiungi(numeroPosizioni, 1);
+        posizioni.imposta(numeroPosizioni++, indirizzo);
+        inserisciNellIndice(hash, indirizzo);
+        numeroLibri++;
+        versione++;
+        return null;
+    }
+
+    @Override
+    public Libro leggi(String isbn) {
+        byte[] codificato = codifica(isbn);
+        int cella = cerca(codificato, hash(codificato));
+        return cella < 0 ? null : leggiRecord(indice.getLong(cella * CELLA + 4));
+    }
+
+    /**
+     * Verifica se l'archivio contiene un libro con l'ISBN indicato, senza crearlo.
+     *
+     * @param isbn ISBN del libro
+     * @return true se il libro è presente
+     */
+    public boolean contiene(String isbn) {
+        byte[] codificato = codifica(isbn);
+        return cerca(codificato, hash(codificato)) >= 0;
+    }
+
+    @Override
+    public Libro rimuovi(String isbn) {
+        byte[] codificato = codifica(isbn);
+        int cella = cerca(codificato, hash(codificato));
+        if (cella < 0) {
+            return null;
+        }
+        long indirizzo = indice.getLong(cella * CELLA + 4);
+        Libro rimosso = leggiRecord(indirizzo);
+        int posizione = buffer(indirizzo).getInt(scostamento(indirizzo) + 4);
+        posizioni.imposta(posizione, VUOTA);
+        occupate.aggiungi(posizione, -1);
+        byteInutilizzati += lunghezza(indirizzo);
+        rimuoviDallIndice(cella);
+        numeroLibri--;
+        versione++;
+        compattaSeNecessario();
+        return rimosso;
+    }
+
+    /**
+     * Legge il libro in una posizione, nell'ordine di inserimento dei libri presenti.
+     * Viene creato solo il libro richiesto, ad esempio per le righe visibili di una tabella.
+     * La lettura non modifica l'archivio e non invalida gli iteratori.
+     *
+     * @param posizione Posizione del libro, da 0 a getNumeroLibri() - 1
+     * @return Libro nella posizione
+     * @throws IndexOutOfBoundsException Se la posizione non è valida
+     */
+    public Libro leggi(int posizione) {
+        Objects.checkIndex(posizione, numeroLibri);
+        int occupata = numeroPosizioni == numeroLibri ? posizione : occupate.cerca(posizione);
+        return leggiRecord(posizioni.leggi(occupata));
+    }
+
+    /**
+     * Trova la posizione di un libro nell'ordine di inserimento dei libri presenti.
+     *
+     * @param isbn ISBN del libro
+     * @return Posizione del libro, o -1 se l'ISBN non è presente
+     */
+    public int posizione(String isbn) {
+        byte[] codificato = codifica(isbn);
+        int cella = cerca(codificato, hash(codificato));
+        if (cella < 0) {
+            return -1;
+        }
+        long indirizzo = indice.getLong(cella * CELLA + 4);
+        int occupata = buffer(indirizzo).getInt(scostamento(indirizzo) + 4);
+        return numeroPosizioni == numeroLibri ? occupata : occupate.contaPrima(occupata);
+    }
+
+    @Override
+    public int getNumeroLibri() {
+        return numeroLibri;
+    }
+
+    /**
+     * Ottiene la memoria occupata fuori dallo heap da record, posizioni e indice.
+     *
+     * @return Byte allocati nei buffer diretti
+     */
+    public long getByteFuoriHeap() {
+        return (long) segmenti.size() * dimensioneSegmento + posizioni.getByteAllocati()
+                + (long) capacitaIndice * CELLA;
+    }
+
+    /**
+     * Restituisce i libri nell'ordine di inserimento, creandoli uno alla volta.
+     * L'iteratore non ammette modifiche dell'archivio durante l'iterazione.
+     *
+     * @return Iteratore dei libri
+     */
+    @Override
+    public Iterator<Libro> iterator() {
+        return new Iterator<Libro>() {
+            private final int versioneAttesa = versione;
+            private int prossima = successiva(0);
+
+            private int successiva(int da) {
+                int i = da;
+                while (i < numeroPosizioni && posizioni.leggi(i) == VUOTA) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return prossima < numeroPosizioni;
+            }
+
+            @Override
+            public Libro next() {
+                if (versione != versioneAttesa) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Libro libro = leggiRecord(posizioni.leggi(prossima));
+                prossima = successiva(prossima + 1);
+                return libro;
+            }
+        };
+    }
+
+    /**
+     * Rilascia i buffer dell'archivio, che diventa vuoto. La memoria dei buffer diretti
+     * viene restituita al sistema quando il garbage collector li raccoglie.
+     */
+    @Override
+    public void close() {
+        segmenti = new ArrayList<>();
+        fine = 0;
+        byteInutilizzati = 0;
+        posizioni.svuota();
+        occupate.ricostruisci(0);
+        numeroPosizioni = 0;
+        numeroLibri = 0;
+        capacitaIndice = CAPACITA_INIZIALE;
+        indice = ByteBuffer.allocateDirect(capacitaIndice * CELLA);
+        versione++;
+    }
+
+    // ---- Record ----
+
+    private ByteBuffer buffer(long indirizzo) {
+        return segmenti.get((int) (indirizzo / dimensioneSegmento));
+    }
+
+    private int scostamento(long indirizzo) {
+        return (int) (indirizzo % dimensioneSegmento);
+    }
+
+    private int lunghezza(long indirizzo) {
+        return buffer(indirizzo).getInt(scostamento(indirizzo));
+    }
+
+    /**
+     * Scrive un record in coda all'ultimo segmento, o in un segmento nuovo se non c'è spazio.
+     */
+    private long aggiungiRecord(Libro libro, byte[] isbn, int posizione) {
+        byte[] titolo = codifica(libro.getTitolo());
+        byte[] autore = codifica(libro.getAutore());
+        byte[] genere = codifica(libro.getGenere());
+        int lunghezza = INTESTAZIONE + 8 + isbn.length + titolo.length + autore.length + genere.length;
+
+        long indirizzo = riserva(lunghezza);
+        ByteBuffer buffer = buffer(indirizzo);
+        int i = scostamento(indirizzo);
+        buffer.putInt(i, lunghezza);
+        buffer.putInt(i + 4, posizione);
+        buffer.put(i + 8, (byte) libro.getValutazione());
+        buffer.put(i + 9, (byte) libro.getStatoLettura().ordinal());
+        i += INTESTAZIONE;
+        i = scriviCampo(buffer, i, isbn);
+        i = scriviCampo(buffer, i, titolo);
+        i = scriviCampo(buffer, i, autore);
+        scriviCampo(buffer, i, genere);
+        return indirizzo;
+    }
+
+    private static int scriviCampo(ByteBuffer buffer, int i, byte[] campo) {
+        buffer.putShort(i, (short) campo.length);
+        buffer.put(i + 2, campo);
+        return i + 2 + campo.length;
+    }
+
+    /**
+     * Crea il libro descritto da un record.
+     */
+    private Libro leggiRecord(long indirizzo) {
+        ByteBuffer buffer = buffer(indirizzo);
+        int i = scostamento(indirizzo);
+        int valutazione = buffer.get(i + 8);
+        StatoLettura stato = STATI[buffer.get(i + 9)];
+        i += INTESTAZIONE;
+        String isbn = leggiCampo(buffer, i);
+        i += 2 + Short.toUnsignedInt(buffer.getShort(i));
+        String titolo = leggiCampo(buffer, i);
+        i += 2 + Short.toUnsignedInt(buffer.getShort(i));
+        String autore = leggiCampo(buffer, i);
+        i += 2 + Short.toUnsignedInt(buffer.getShort(i));
+        String genere = leggiCampo(buffer, i);
+        return new Libro(titolo, autore, isbn, genere, valutazione, stato);
+    }
+
+    private static String leggiCampo(ByteBuffer buffer, int i) {
+        byte[] campo = new byte[Short.toUnsignedInt(buffer.getShort(i))];
+        buffer.get(i + 2, campo);
+        return new String(campo, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] codifica(String testo) {
+        byte[] codificato = testo.getBytes(StandardCharsets.UTF_8);
+        if (codificato.length > LUNGHEZZA_MASSIMA_CAMPO) {
+            throw new IllegalArgumentException("Campo troppo lungo per l'archivio: " + codificato.length + " byte");
+        }
+        return codificato;
+    }
+
+    /**
+     * Confronta l'ISBN di un record con quello cercato, senza creare stringhe.
+     */
+    private boolean stessoIsbn(long indirizzo, byte[] isbn) {
+        ByteBuffer buffer = buffer(indirizzo);
+        int i = scostamento(indirizzo) + INTESTAZIONE;
+        if (Short.toUnsignedInt(buffer.getShort(i)) != isbn.length) {
+            return false;
+        }
+        return buffer.slice(i + 2, isbn.length).equals(ByteBuffer.wrap(isbn));
+    }
+
+    private byte[] isbnDelRecord(long indirizzo) {
+        ByteBuffer buffer = buffer(indirizzo);
+        int i = scostamento(indirizzo) + INTESTAZIONE;
+        byte[] isbn = new byte[Short.toUnsignedInt(buffer.getShort(i))];
+        buffer.get(i + 2, isbn);
+        return isbn;
+    }
+
+    // ---- Indice per ISBN ----
+
+    private static int hash(byte[] isbn) {
+        // FNV-1a sui byte dell'ISBN
+        int h = 0x811C9DC5;
+        for (byte b : isbn) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Cerca la cella dell'indice con l'ISBN indicato.
+     *
+     * @return Cella trovata, o -1 se l'ISBN non è presente
+     */
+    private int cerca(byte[] isbn, int hash) {
+        int maschera = capacitaIndice - 1;
+        for (int cella = hash & maschera; ; cella = (cella + 1) & maschera) {
+            int hashCella = indice.getInt(cella * CELLA);
+            if (hashCella == 0) {
+                return -1;
+            }
+            if (hashCella == hash && stessoIsbn(indice.getLong(cella * CELLA + 4), isbn)) {
+                return cella;
+            }
+        }
+    }
+
+    private void inserisciNellIndice(int hash, long indirizzo) {
+        int maschera = capacitaIndice - 1;
+        int cella = hash & maschera;
+        while (indice.getInt(cella * CELLA) != 0) {
+            cella = (cella + 1) & maschera;
+        }
+        indice.putInt(cella * CELLA, hash);
+        indice.putLong(cella * CELLA + 4, indirizzo);
+    }
+
+    /**
+     * Svuota una cella dell'indice spostando indietro le celle successive della stessa
+     * sequenza di scansione, così le ricerche non si fermano sulla cella liberata.
+     */
+    private void rimuoviDallIndice(int cella) {
+        int maschera = capacitaIndice - 1;
+        int libera = cella;
+        for (int i = (libera + 1) & maschera; indice.getInt(i * CELLA) != 0; i = (i + 1) & maschera) {
+            int ideale = indice.getInt(i * CELLA) & maschera;
+            // La cella i può occupare la cella libera se questa sta tra la sua posizione ideale e i
+            boolean spostabile = libera <= i ? (ideale <= libera || ideale > i) : (ideale <= libera && ideale > i);
+            if (spostabile) {
+                indice.putInt(libera * CELLA, indice.getInt(i * CELLA));
+                indice.putLong(libera * CELLA + 4, indice.getLong(i * CELLA + 4));
+                libera = i;
+            }
+        }
+        indice.putInt(libera * CELLA, 0);
+        indice.putLong(libera * CELLA + 4, 0);
+    }
+
+    private void ridimensionaIndice(int capacita) {
+        capacitaIndice = capacita;
+        indice = ByteBuffer.allocateDirect(capacita * CELLA);
+        for (int i = 0; i < numeroPosizioni; i++) {
+            long indirizzo = posizioni.leggi(i);
+            if (indirizzo != VUOTA) {
+                inserisciNellIndice(hash(isbnDelRecord(indirizzo)), indirizzo);
+            }
+        }
+    }
+
+    // ---- Compattazione ----
+
+    /**
+     * Elimina le posizioni dei libri rimossi, rinumerando i record dei libri presenti.
+     */
+    private void compattaPosizioni() {
+        if (numeroPosizioni == numeroLibri) {
+            return;
+        }
+        int scritte = 0;
+        for (int i = 0; i < numeroPosizioni; i++) {
+            long indirizzo = posizioni.leggi(i);
+            if (indirizzo != VUOTA) {
+                posizioni.imposta(scritte, indirizzo);
+                buffer(indirizzo).putInt(scostamento(indirizzo) + 4, scritte);
+                scritte++;
+            }
+        }
+        numeroPosizioni = scritte;
+        occupate.ricostruisci(scritte);
+        versione++;
+    }
+
+    /**
+     * Ricopia i record presenti in segmenti nuovi se lo spazio inutilizzato supera
+     * quello dei libri presenti.
+     */
+    private void compattaSeNecessario() {
+        long usati = fine - byteInutilizzati;
+        if (byteInutilizzati < dimensioneSegmento || byteInutilizzati <= usati) {
+            return;
+        }
+        compattaPosizioni();
+        List<ByteBuffer> vecchi = segmenti;
+        segmenti = new ArrayList<>();
+        fine = 0;
+        byteInutilizzati = 0;
+        for (int i = 0; i < numeroPosizioni; i++) {
+            long indirizzo = posizioni.leggi(i);
+            ByteBuffer origine = vecchi.get((int) (indirizzo / dimensioneSegmento));
+            int scostamento = (int) (indirizzo % dimensioneSegmento);
+            int lunghezza = origine.getInt(scostamento);
+            long nuovo = riserva(lunghezza);
+            buffer(nuovo).put(scostamento(nuovo), origine, scostamento, lunghezza);
+            posizioni.imposta(i, nuovo);
+        }
+        ridimensionaIndice(capacitaIndice);
+        versione++;
+    }
+
+    /**
+     * Riserva lo spazio per un record in coda all'ultimo segmento, o in un segmento nuovo.
+     */
+    private long riserva(int lunghezza) {
+        if (segmenti.isEmpty() || scostamento(fine) + lunghezza > dimensioneSegmento) {
+            if (!segmenti.isEmpty()) {
+                fine = (long) segmenti.size() * dimensioneSegmento;
+            }
+            segmenti.add(ByteBuffer.allocateDirect(dimensioneSegmento));
+        }
+        long indirizzo = fine;
+        fine += lunghezza;
+        return indirizzo;
+    }
+
+    /**
+     * Albero di Fenwick sulle posizioni occupate del vettore, con capacità potenza di due:
+     * conta le posizioni occupate prima di una posizione e trova la k-esima occupata.
+     */
+    private static final class PosizioniOccupate {
+        private static final int CAPACITA_INIZIALE = 1024;
+
+        // Nodi da 1 a capacità; il nodo j conta le posizioni da j - (j & -j) a j - 1
+        private int[] nodi = new int[CAPACITA_INIZIALE + 1];
+
+        private int capacita() {
+            return nodi.length - 1;
+        }
+
+        private void aggiungi(int posizione, int variazione) {
+            while (posizione >= capacita()) {
+                // Raddoppiando, l'unico nodo nuovo che copre posizioni esistenti è l'ultimo
+                int capacita = capacita();
+                nodi = Arrays.copyOf(nodi, 2 * capacita + 1);
+                nodi[2 * capacita] = nodi[capacita];
+            }
+            for (int j = posizione + 1; j < nodi.length; j += j & -j) {
+                nodi[j] += variazione;
+            }
+        }
+
+        private int contaPrima(int posizione) {
+            int conteggio = 0;
+            for (int j = posizione; j > 0; j -= j & -j) {
+                conteggio += nodi[j];
+            }
+            return conteggio;
+        }
+
+        private int cerca(int k) {
+            int posizione = 0;
+            for (int passo = capacita(); passo > 0; passo >>= 1) {
+                if (posizione + passo <= capacita() && nodi[posizione + passo] <= k) {
+                    posizione += passo;
+                    k -= nodi[posizione];
+                }
+            }
+            return posizione;
+        }
+
+        /**
+         * Ricostruisce l'albero con le prime posizioni occupate e le altre libere.
+         */
+        private void ricostruisci(int occupate) {
+            int capacita = CAPACITA_INIZIALE;
+            while (capacita < occupate) {
+                capacita *= 2;
+            }
+            nodi = new int[capacita + 1];
+            for (int j = 1; j <= capacita; j++) {
+                if (j <= occupate) {
+                    nodi[j]++;
+                }
+                int padre = j + (j & -j);
+                if (padre <= capacita) {
+                    nodi[padre] += nodi[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Vettore di indirizzi fuori dallo heap, a pagine di dimensione fissa.
+     */
+    private static final class VettoreIndirizzi {
+        private static final int BIT_PAGINA = 16;
+        private static final int INDIRIZZI_PER_PAGINA = 1 << BIT_PAGINA;
+
+        private final List<ByteBuffer> pagine = new ArrayList<>();
+
+        private long leggi(int i) {
+            return pagine.get(i >>> BIT_PAGINA).getLong((i & (INDIRIZZI_PER_PAGINA - 1)) * 8);
+        }
+
+        private void imposta(int i, long indirizzo) {
+            int pagina = i >>> BIT_PAGINA;
+            while (pagina >= pagine.size()) {
+                pagine.add(ByteBuffer.allocateDirect(INDIRIZZI_PER_PAGINA * 8));
+            }
+            pagine.get(pagina).putLong((i & (INDIRIZZI_PER_PAGINA - 1)) * 8, indirizzo);
+        }
+
+        private long getByteAllocati() {
+            return (long) pagine.size() * INDIRIZZI_PER_PAGINA * 8;
+        }
+
+        private void svuota() {
+            pagine.clear();
+        }
+    }
+}
@@ -0,0 +1,839 @@
+package archivio;
+
+import model.Libro;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivio di libri su disco a struttura LSM (log-structured merge), per le importazioni
+ * con molte scritture. Le scritture vanno in una memtable ordinata in memoria e in coda
+ * a un registro, senza riscrivere i dati già salvati: quando la memtable si riempie viene
+ * salvata in sottofondo in un segmento immutabile ordinato per ISBN, e i segmenti dello
+ * stesso livello vengono fusi a gruppi di SEGMENTI_PER_LIVELLO in uno del livello
+ * successivo. Ogni libro viene così riscritto un numero logaritmico di volte, e il costo
+ * di una scrittura non cresce con il catalogo.
+ * <p>
+ * Una lettura consulta la memtable e poi i segmenti dal più recente: i filtri di Bloom
+ * sugli ISBN escludono senza letture dal disco i segmenti che non contengono il libro,
+ * così anche il controllo dei duplicati di un ISBN nuovo di norma non legge dal disco.
+ * <p>
+ * La cartella dell'archivio contiene il manifesto con l'elenco dei segmenti, i segmenti
+ * e i registri delle memtable non ancora salvate, rilette alla riapertura: le scritture
+ * sono durevoli dopo sincronizza() e close(). Un archivio aperto con apriInLettura()
+ * non modifica la cartella: i registri vengono riletti solo in memoria e le scritture
+ * sono rifiutate. A differenza delle altre implementazioni
+ * di ArchivioLibri l'archivio è sincronizzato, perché il salvataggio delle memtable e
+ * le compattazioni avvengono su un thread in sottofondo.
+ */
+public class ArchivioLSM implements ArchivioLibri {
+
+    // Dimensione predefinita della memtable prima del salvataggio in un segmento (4 MB)
+    public static final int BYTE_MEMTABLE = 4 << 20;
+
+    // Segmenti dello stesso livello fusi in un segmento del livello successivo
+    public static final int SEGMENTI_PER_LIVELLO = 4;
+
+    // Memtable piene in attesa di salvataggio oltre le quali le scritture attendono
+    private static final int MEMTABLE_IN_ATTESA = 2;
+
+    // Occupazione stimata di una voce della memtable, oltre a chiave e valore
+    private static final int BYTE_PER_VOCE = 64;
+
+    private static final byte[] CANCELLATO = new byte[0];
+    private static final String MANIFESTO = "MANIFESTO";
+    private static final String INTESTAZIONE_MANIFESTO = "LSM 1";
+    private static final String PREFISSO_SEGMENTO = "segmento-";
+    private static final String ESTENSIONE_SEGMENTO = ".sst";
+    private static final String PREFISSO_REGISTRO = "registro-";
+    private static final String ESTENSIONE_REGISTRO = ".log";
+
+    private final Path cartella;
+    private final int byteMemtable;
+    private final boolean solaLettura;
+    private final ExecutorService esecutore;
+    // Segmenti dal più vecchio al più recente
+    private final List<SegmentoLSM> segmenti;
+    // Memtable piene dalla più vecchia alla più recente
+    private final Deque<Memtable> inAttesa;
+    // Segmenti sostituiti ancora usati da un iteratore
+    private final List<SegmentoLSM> obsoleti;
+    private Memtable memtable;
+    private FileChannel canaleRegistro;
+    private DataOutputStream registro;
+    private int prossimoNumero;
+    private int numeroLibriSegmenti;
+    private int numeroLibri;
+    private long lettureSegmenti;
+    private IOException erroreSottofondo;
+    private boolean chiuso;
+
+    /**
+     * Apre un archivio con la memtable predefinita, creando la cartella se non esiste.
+     *
+     * @param percorsoCartella Percorso della cartella dell'archivio
+     * @throws IOException In caso di errori di apertura o se la cartella non contiene un archivio
+     */
+    public ArchivioLSM(String percorsoCartella) throws IOException {
+        this(percorsoCartella, BYTE_MEMTABLE);
+    }
+
+    /**
+     * Apre un archivio, creando la cartella se non esiste. Le scritture rimaste nei
+     * registri dopo una chiusura anomala vengono salvate in un nuovo segmento.
+     *
+     * @param percorsoCartella Percorso della cartella dell'archivio
+     * @param byteMemtable Dimensione della memtable oltre la quale viene salvata in un segmento
+     * @throws IOException In caso di errori di apertura o se la cartella non contiene un archivio
+     */
+    public ArchivioLSM(String percorsoCartella, int byteMemtable) throws IOException {
+        this(percorsoCartella, byteMemtable, false);
+    }
+
+    /**
+     * Apre in sola lettura un archivio esistente, ad esempio per importarlo o sfogliarlo.
+     * La cartella non viene modificata: i file rimasti da operazioni interrotte restano al
+     * loro posto e le scritture ancora nei registri vengono rilette solo in memoria.
+     * Scritture e rimozioni lanciano IOException.
+     *
+     * @param percorsoCartella Percorso della cartella dell'archivio
+     * @return Archivio aperto in sola lettura
+     * @throws IOException In caso di errori di apertura o se la cartella non contiene un archivio
+     */
+    public static ArchivioLSM apriInLettura(String percorsoCartella) throws IOException {
+        return new ArchivioLSM(percorsoCartella, BYTE_MEMTABLE, true);
+    }
+
+    private ArchivioLSM(String percorsoCartella, int byteMemtable, boolean solaLettura) throws IOException {
+        if (byteMemtable <= 0) {
+            throw new IllegalArgumentException("Dimensione della memtable non valida: " + byteMemtable);
+        }
+        this.cartella = Paths.get(percorsoCartella);
+        this.byteMemtable = byteMemtable;
+        this.solaLettura = solaLettura;
+        this.segmenti = new ArrayList<>();
+        this.inAttesa = new ArrayDeque<>();
+        this.obsoleti = new ArrayList<>();
+        this.esecutore = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "compattazione-archivio");
+            // Il thread non impedisce la chiusura dell'applicazione
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            if (solaLettura) {
+                // Una cartella qualsiasi non va scambiata per un archivio vuoto
+                if (!Files.isRegularFile(cartella.resolve(MANIFESTO))) {
+                    throw new IOException("La cartella non contiene un archivio della libreria: " + cartella);
+                }
+            } else {
+                Files.createDirectories(cartella);
+            }
+            ripristina(leggiManifesto());
+        } catch (IOException | RuntimeException e) {
+            esecutore.shutdown();
+            for (SegmentoLSM segmento : segmenti) {
+                segmento.close();
+            }
+            if (registro != null) {
+                registro.close();
+            }
+            throw e;
+        }
+    }
+
+    // ---- Apertura ----
+
+    /**
+     * Legge il manifesto e apre i segmenti elencati.
+     *
+     * @return Numero del primo registro ancora da rileggere
+     */
+    private int leggiManifesto() throws IOException {
+        Path manifesto = cartella.resolve(MANIFESTO);
+        if (!Files.exists(manifesto)) {
+            return 0;
+        }
+        List<String> righe = Files.readAllLines(manifesto, StandardCharsets.UTF_8);
+        if (righe.isEmpty() || !righe.get(0).equals(INTESTAZIONE_MANIFESTO)) {
+            throw new IOException("La cartella non contiene un archivio della libreria: " + cartella);
+        }
+        int registroMinimo = 0;
+        for (String riga : righe.subList(1, righe.size())) {
+            String[] parti = riga.split(" ");
+            try {
+                switch (parti[0]) {
+                    case "libri":
+                        numeroLibriSegmenti = Integer.parseInt(parti[1]);
+                        break;
+                    case "prossimo":
+                        prossimoNumero = Integer.parseInt(parti[1]);
+                        break;
+                    case "registro":
+                        registroMinimo = Integer.parseInt(parti[1]);
+                        break;
+                    case "segmento":
+                        int numero = Integer.parseInt(parti[1]);
+                        segmenti.add(new SegmentoLSM(percorsoSegmento(numero), numero, Integer.parseInt(parti[2])));
+                        break;
+                    default:
+                        throw new IOException("Riga del manifesto non valida: " + riga);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Riga del manifesto non valida: " + riga, e);
+            }
+        }
+        return registroMinimo;
+    }
+
+    /**
+     * Elimina i file rimasti da operazioni interrotte, rilegge i registri delle memtable
+     * non salvate e apre il registro della nuova memtable. In sola lettura i file non
+     * vengono eliminati e i registri riletti restano la memtable corrente.
+     */
+    private void ripristina(int registroMinimo) throws IOException {
+        Set<Integer> elencati = new HashSet<>();
+        for (SegmentoLSM segmento : segmenti) {
+            elencati.add(segmento.getNumero());
+        }
+        List<Integer> registri = new ArrayList<>();
+        try (DirectoryStream<Path> file = Files.newDirectoryStream(cartella)) {
+            for (Path percorso : file) {
+                String nome = percorso.getFileName().toString();
+                int numeroSegmento = numeroFile(nome, PREFISSO_SEGMENTO, ESTENSIONE_SEGMENTO);
+                int numeroRegistro = numeroFile(nome, PREFISSO_REGISTRO, ESTENSIONE_REGISTRO);
+                if (nome.endsWith(".tmp") || (numeroSegmento >= 0 && !elencati.contains(numeroSegmento))
+                        || (numeroRegistro >= 0 && numeroRegistro < registroMinimo)) {
+                    if (!solaLettura) {
+                        Files.delete(percorso);
+                    }
+                } else if (numeroRegistro >= 0) {
+                    registri.add(numeroRegistro);
+                }
+                prossimoNumero = Math.max(prossimoNumero, Math.max(numeroSegmento, numeroRegistro) + 1);
+            }
+        }
+        numeroLibri = numeroLibriSegmenti;
+        Memtable ripristinata = new Memtable(-1);
+        memtable = ripristinata;
+        Collections.sort(registri);
+        for (int numero : registri) {
+            rileggi(percorsoRegistro(numero));
+        }
+        if (solaLettura) {
+            return;
+        }
+        memtable = new Memtable(prossimoNumero++);
+        if (ripristinata.voci.isEmpty()) {
+            scriviManifesto();
+        } else {
+            inAttesa.add(ripristinata);
+            salvaMemtable();
+        }
+        for (int numero : registri) {
+            Files.deleteIfExists(percorsoRegistro(numero));
+        }
+        apriRegistro();
+    }
+
+    private void rileggi(Path percorso) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(percorso)))) {
+            while (true) {
+                byte[] isbn;
+                byte[] valore;
+                try {
+                    isbn = new byte[in.readUnsignedShort()];
+                    in.readFully(isbn);
+                    int lunghezza = in.readInt();
+                    if (lunghezza < 0) {
+                        throw new IOException("Registro non valido: " + percorso);
+                    }
+                    valore = new byte[lunghezza];
+                    in.readFully(valore);
+                } catch (EOFException e) {
+                    // Ultima scrittura incompleta, interrotta da una chiusura anomala
+                    return;
+                }
+                aggiorna(new String(isbn, StandardCharsets.UTF_8), valore, false);
+            }
+        }
+    }
+
+    private static int numeroFile(String nome, String prefisso, String estensione) {
+        if (!nome.startsWith(prefisso) || !nome.endsWith(estensione)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(nome.substring(prefisso.length(), nome.length() - estensione.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path percorsoSegmento(int numero) {
+        return cartella.resolve(String.format("%s%08d%s", PREFISSO_SEGMENTO, numero, ESTENSIONE_SEGMENTO));
+    }
+
+    private Path percorsoRegistro(int numero) {
+        return cartella.resolve(String.format("%s%08d%s", PREFISSO_REGISTRO, numero, ESTENSIONE_REGISTRO));
+    }
+
+    // ---- Operazioni ----
+
+    @Override
+    public synchronized Libro scrivi(Libro libro) throws IOException {
+        CodificaLibro.verifica(libro);
+        byte[] precedente = aggiorna(libro.getIsbn(), CodificaLibro.codifica(libro), true);
+        return precedente == null ? null : decodifica(libro.getIsbn(), precedente);
+    }
+
+    @Override
+    public synchronized Libro leggi(String isbn) throws IOException {
+        verificaAperto();
+        byte[] valore = cerca(isbn);
+        return valore == null || valore.length == 0 ? null : decodifica(isbn, valore);
+    }
+
+    @Override
+    public synchronized Libro rimuovi(String isbn) throws IOException {
+        byte[] precedente = aggiorna(isbn, CANCELLATO, true);
+        return precedente == null ? null : decodifica(isbn, precedente);
+    }
+
+    /**
+     * Verifica se l'archivio contiene un ISBN senza creare il libro. Per un ISBN assente
+     * i filtri di Bloom evitano quasi sempre le letture dal disco.
+     *
+     * @param isbn ISBN da cercare
+     * @return true se il libro è presente
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized boolean contiene(String isbn) throws IOException {
+        verificaAperto();
+        byte[] valore = cerca(isbn);
+        return valore != null && valore.length > 0;
+    }
+
+    @Override
+    public synchronized int getNumeroLibri() {
+        return numeroLibri;
+    }
+
+    /**
+     * Scrive un libro o una cancellazione (valore vuoto) nella memtable e, se richiesto,
+     * nel registro. La memtable piena viene messa in attesa di salvataggio alla scrittura
+     * successiva, che aspetta se ci sono già troppe memtable in attesa.
+     *
+     * @return Valore precedente del libro, o null se non era presente
+     */
+    private byte[] aggiorna(String isbn, byte[] valore, boolean registra) throws IOException {
+        if (registra) {
+            verificaAperto();
+            if (solaLettura) {
+                throw new IOException("Archivio aperto in sola lettura: " + cartella);
+            }
+            if (memtable.byteStimati >= byteMemtable) {
+                while (inAttesa.size() >= MEMTABLE_IN_ATTESA) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Scrittura interrotta in attesa del salvataggio");
+                    }
+                    verificaAperto();
+                }
+                ruota();
+            }
+        }
+        byte[] precedente = cerca(isbn);
+        boolean presente = precedente != null && precedente.length > 0;
+        if (!presente && valore.length == 0) {
+            return null;
+        }
+        if (registra) {
+            byte[] chiave = isbn.getBytes(StandardCharsets.UTF_8);
+            registro.writeShort(chiave.length);
+            registro.write(chiave);
+            registro.writeInt(valore.length);
+            registro.write(valore);
+        }
+        int variazione = (valore.length > 0 ? 1 : 0) - (presente ? 1 : 0);
+        memtable.metti(isbn, valore, variazione);
+        numeroLibri += variazione;
+        return presente ? precedente : null;
+    }
+
+    /**
+     * Cerca il valore più recente di un ISBN: nella memtable, nelle memtable in attesa e
+     * nei segmenti, dal più recente al più vecchio.
+     *
+     * @return Valore trovato (vuoto se il libro è cancellato), o null se l'ISBN non è mai stato scritto
+     */
+    private byte[] cerca(String isbn) throws IOException {
+        byte[] valore = memtable.voci.get(isbn);
+        for (Iterator<Memtable> piene = inAttesa.descendingIterator(); valore == null && piene.hasNext(); ) {
+            valore = piene.next().voci.get(isbn);
+        }
+        for (int i = segmenti.size() - 1; valore == null && i >= 0; i--) {
+            SegmentoLSM segmento = segmenti.get(i);
+            if (segmento.puoContenere(isbn)) {
+                lettureSegmenti++;
+                valore = segmento.cerca(isbn);
+            }
+        }
+        return valore;
+    }
+
+    private static Libro decodifica(String isbn, byte[] valore) {
+        return CodificaLibro.decodifica(isbn.getBytes(StandardCharsets.UTF_8), valore);
+    }
+
+    /**
+     * Restituisce i libri in ordine di ISBN, fondendo memtable e segmenti. L'iteratore
+     * vede l'archivio com'era alla sua creazione, e le compattazioni successive non
+     * eliminano i segmenti che sta leggendo finché non arriva alla fine.
+     *
+     * @return Iteratore dei libri; gli errori di lettura sono UncheckedIOException
+     */
+    @Override
+    public synchronized Iterator<Libro> iterator() {
+        if (chiuso) {
+            throw new IllegalStateException("Archivio chiuso: " + cartella);
+        }
+        List<Iterator<Map.Entry<String, byte[]>>> sorgenti = new ArrayList<>();
+        sorgenti.add(new TreeMap<>(memtable.voci).entrySet().iterator());
+        for (Iterator<Memtable> piene = inAttesa.descendingIterator(); piene.hasNext(); ) {
+            sorgenti.add(piene.next().voci.entrySet().iterator());
+        }
+        List<SegmentoLSM> usati = new ArrayList<>(segmenti);
+        Collections.reverse(usati);
+        for (SegmentoLSM segmento : usati) {
+            segmento.acquisisci();
+            sorgenti.add(segmento.scorri());
+        }
+        Fusione voci = new Fusione(sorgenti, true);
+        return new Iterator<Libro>() {
+            private boolean rilasciati;
+
+            @Override
+            public boolean hasNext() {
+                if (voci.hasNext()) {
+                    return true;
+                }
+                if (!rilasciati) {
+                    rilasciati = true;
+                    try {
+                        for (SegmentoLSM segmento : usati) {
+                            segmento.rilascia();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Libro next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> voce = voci.next();
+                return decodifica(voce.getKey(), voce.getValue());
+            }
+        };
+    }
+
+    /**
+     * Scrive su disco il registro delle scritture, rendendole durevoli.
+     * In sola lettura non fa nulla.
+     *
+     * @throws IOException In caso di errori di scrittura
+     */
+    public synchronized void sincronizza() throws IOException {
+        verificaAperto();
+        if (solaLettura) {
+            return;
+        }
+        registro.flush();
+        canaleRegistro.force(false);
+    }
+
+    /**
+     * Attende la fine dei salvataggi delle memtable e delle compattazioni già avviati.
+     *
+     * @throws IOException Se un salvataggio o una compattazione sono falliti
+     */
+    public void attendiManutenzione() throws IOException {
+        Future<?> fine;
+        synchronized (this) {
+            verificaAperto();
+            fine = esecutore.submit(() -> { });
+        }
+        try {
+            fine.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attesa della manutenzione interrotta");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        synchronized (this) {
+            verificaAperto();
+        }
+    }
+
+    /**
+     * Ottiene il numero di segmenti su disco.
+     *
+     * @return Numero di segmenti
+     */
+    public synchronized int getNumeroSegmenti() {
+        return segmenti.size();
+    }
+
+    /**
+     * Ottiene il numero di ricerche nei segmenti non escluse dai filtri di Bloom,
+     * dall'apertura dell'archivio.
+     *
+     * @return Ricerche nei segmenti
+     */
+    public synchronized long getLettureSegmenti() {
+        return lettureSegmenti;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (chiuso) {
+                return;
+            }
+            chiuso = true;
+            notifyAll();
+        }
+        esecutore.shutdown();
+        try {
+            esecutore.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Chiusura dell'archivio interrotta");
+        }
+        synchronized (this) {
+            try {
+                if (registro != null) {
+                    registro.flush();
+                    canaleRegistro.force(false);
+                }
+            } finally {
+                if (registro != null) {
+                    registro.close();
+                }
+                for (SegmentoLSM segmento : segmenti) {
+                    segmento.close();
+                }
+                for (SegmentoLSM segmento : obsoleti) {
+                    segmento.close();
+                }
+            }
+            if (erroreSottofondo != null) {
+                throw new IOException("Errore nella manutenzione dell'archivio", erroreSottofondo);
+            }
+        }
+    }
+
+    private void verificaAperto() throws IOException {
+        if (chiuso) {
+            throw new IOException("Archivio chiuso: " + cartella);
+        }
+        if (erroreSottofondo != null) {
+            throw new IOException("Errore nella manutenzione dell'archivio", erroreSottofondo);
+        }
+    }
+
+    // ---- Memtable e registro ----
+
+    /**
+     * Mette in attesa la memtable piena, ne crea una nuova con il suo registro e avvia
+     * il salvataggio in sottofondo.
+     */
+    private void ruota() throws IOException {
+        registro.flush();
+        canaleRegistro.force(false);
+        registro.close();
+        inAttesa.addLast(memtable);
+        memtable = new Memtable(prossimoNumero++);
+        apriRegistro();
+        esecutore.execute(this::manutenzione);
+    }
+
+    private void apriRegistro() throws IOException {
+        canaleRegistro = FileChannel.open(percorsoRegistro(memtable.numeroRegistro), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        registro = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canaleRegistro), 64 * 1024));
+    }
+
+    /**
+     * Manutenzione in sottofondo: salva la memtable in attesa più vecchia e compatta
+     * i segmenti. Un errore viene riportato dalle operazioni successive.
+     */
+    private void manutenzione() {
+        synchronized (this) {
+            if (erroreSottofondo != null) {
+                return;
+            }
+        }
+        try {
+            salvaMemtable();
+            compatta();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                erroreSottofondo = e instanceof IOException ? (IOException) e : new IOException(e);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Salva la memtable in attesa più vecchia in un segmento di livello 0 ed elimina il suo
+     * registro. Il segmento viene scritto senza bloccare l'archivio: la memtable in attesa
+     * non viene più modificata.
+     */
+    private void salvaMemtable() throws IOException {
+        Memtable daSalvare;
+        int numero;
+        synchronized (this) {
+            daSalvare = inAttesa.peekFirst();
+            if (daSalvare == null) {
+                return;
+            }
+            numero = prossimoNumero++;
+        }
+        SegmentoLSM segmento = SegmentoLSM.scrivi(percorsoSegmento(numero), numero, 0,
+                daSalvare.voci.entrySet().iterator(), daSalvare.voci.size());
+        synchronized (this) {
+            segmenti.add(segmento);
+            numeroLibriSegmenti += daSalvare.variazione;
+            inAttesa.removeFirst();
+            try {
+                scriviManifesto();
+            } finally {
+                notifyAll();
+            }
+        }
+        if (daSalvare.numeroRegistro >= 0) {
+            Files.deleteIfExists(percorsoRegistro(daSalvare.numeroRegistro));
+        }
+    }
+
+    /**
+     * Fonde i segmenti più recenti finché ce ne sono SEGMENTI_PER_LIVELLO dello stesso
+     * livello. Le cancellazioni vengono eliminate solo fondendo anche il segmento più
+     * vecchio, perché altrimenti potrebbero nascondere un libro in un segmento precedente.
+     */
+    private void compatta() throws IOException {
+        while (true) {
+            List<SegmentoLSM> gruppo;
+            int inizio;
+            int numero;
+            synchronized (this) {
+                int fine = segmenti.size();
+                inizio = fine;
+                while (inizio > 0 && segmenti.get(inizio - 1).getLivello() == segmenti.get(fine - 1).getLivello()) {
+                    inizio--;
+                }
+                if (fine - inizio < SEGMENTI_PER_LIVELLO) {
+                    return;
+                }
+                gruppo = new ArrayList<>(segmenti.subList(inizio, fine));
+                for (SegmentoLSM segmento : gruppo) {
+                    segmento.acquisisci();
+                }
+                numero = prossimoNumero++;
+            }
+            try {
+                List<Iterator<Map.Entry<String, byte[]>>> sorgenti = new ArrayList<>();
+                long vociPreviste = 0;
+                for (int i = gruppo.size() - 1; i >= 0; i--) {
+                    sorgenti.add(gruppo.get(i).scorri());
+                    vociPreviste += gruppo.get(i).getNumeroVoci();
+                }
+                SegmentoLSM fuso;
+                try {
+                    fuso = SegmentoLSM.scrivi(percorsoSegmento(numero), numero, gruppo.get(0).getLivello() + 1,
+                            new Fusione(sorgenti, inizio == 0), vociPreviste);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                boolean vuoto = fuso.getNumeroVoci() == 0;
+                synchronized (this) {
+                    segmenti.subList(inizio, inizio + gruppo.size()).clear();
+                    if (!vuoto) {
+                        segmenti.add(inizio, fuso);
+                    }
+                    scriviManifesto();
+                    obsoleti.removeIf(SegmentoLSM::isEliminato);
+                    for (SegmentoLSM segmento : gruppo) {
+                        segmento.rendiObsoleto();
+                        obsoleti.add(segmento);
+                    }
+                }
+                if (vuoto) {
+                    fuso.close();
+                    Files.deleteIfExists(percorsoSegmento(numero));
+                }
+            } finally {
+                for (SegmentoLSM segmento : gruppo) {
+                    segmento.rilascia();
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrive il manifesto in un file temporaneo e lo sostituisce a quello esistente.
+     */
+    private void scriviManifesto() throws IOException {
+        int registroMinimo = inAttesa.isEmpty() ? memtable.numeroRegistro : inAttesa.peekFirst().numeroRegistro;
+        StringBuilder testo = new StringBuilder(INTESTAZIONE_MANIFESTO).append('\n');
+        testo.append("libri ").append(numeroLibriSegmenti).append('\n');
+        testo.append("prossimo ").append(prossimoNumero).append('\n');
+        testo.append("registro ").append(registroMinimo).append('\n');
+        for (SegmentoLSM segmento : segmenti) {
+            testo.append("segmento ").append(segmento.getNumero()).append(' ').append(segmento.getLivello()).append('\n');
+        }
+        Path temporaneo = cartella.resolve(MANIFESTO + ".tmp");
+        try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(testo.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                canale.write(buffer);
+            }
+            canale.force(true);
+        }
+        Files.move(temporaneo, cartella.resolve(MANIFESTO), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Scritture in memoria non ancora salvate in un segmento, con il numero del loro
+     * registro e la variazione del numero di libri che producono.
+     */
+    private static final class Memtable {
+        private final TreeMap<String, byte[]> voci = new TreeMap<>();
+        private final int numeroRegistro;
+        private long byteStimati;
+        private int variazione;
+
+        private Memtable(int numeroRegistro) {
+            this.numeroRegistro = numeroRegistro;
+        }
+
+        private void metti(String isbn, byte[] valore, int variazioneLibri) {
+            byte[] precedente = voci.put(isbn, valore);
+            byteStimati += precedente == null ? BYTE_PER_VOCE + 2L * isbn.length() + valore.length
+                    : valore.length - precedente.length;
+            variazione += variazioneLibri;
+        }
+    }
+
+    /**
+     * Fusione di sorgenti ordinate per ISBN, elencate dalla più recente: per ogni ISBN
+     * restituisce solo la voce della sorgente più recente.
+     */
+    private static final class Fusione implements Iterator<Map.Entry<String, byte[]>> {
+        private final PriorityQueue<Testa> teste;
+        private final boolean saltaCancellati;
+        private Map.Entry<String, byte[]> prossima;
+
+        private Fusione(List<Iterator<Map.Entry<String, byte[]>>> sorgenti, boolean saltaCancellati) {
+            this.teste = new PriorityQueue<>(Math.max(1, sorgenti.size()), (a, b) -> {
+                int confronto = a.voce.getKey().compareTo(b.voce.getKey());
+                return confronto != 0 ? confronto : Integer.compare(a.priorita, b.priorita);
+            });
+            this.saltaCancellati = saltaCancellati;
+            for (int i = 0; i < sorgenti.size(); i++) {
+                avanza(new Testa(sorgenti.get(i), i));
+            }
+        }
+
+        private void avanza(Testa testa) {
+            if (testa.sorgente.hasNext()) {
+                testa.voce = testa.sorgente.next();
+                teste.add(testa);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (prossima == null && !teste.isEmpty()) {
+                Testa prima = teste.poll();
+                Map.Entry<String, byte[]> voce = prima.voce;
+                avanza(prima);
+                while (!teste.isEmpty() && teste.peek().voce.getKey().equals(voce.getKey())) {
+                    avanza(teste.poll());
+                }
+                if (!saltaCancellati || voce.getValue().length > 0) {
+                    prossima = voce;
+                }
+            }
+            return prossima != null;
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, byte[]> voce = prossima;
+            prossima = null;
+            return voce;
+        }
+    }
+
+    /**
+     * Sorgente di una fusione con la sua voce corrente e la priorità (0 per la più recente).
+     */
+    private static final class Testa {
+        private final Iterator<Map.Entry<String, byte[]>> sorgente;
+        private final int priorita;
+        private Map.Entry<String, byte[]> voce;
+
+        private Testa(Iterator<Map.Entry<String, byte[]>> sorgente, int priorita) {
+            this.sorgente = sorgente;
+            this.priorita = priorita;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package archivio;
+
+import model.Libro;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Archivio di libri indicizzato per ISBN, alternativo alla collezione in memoria del
+ * GestoreLibreria per i cataloghi molto grandi. Le implementazioni conservano i dati
+ * dei libri in forma compatta e creano gli oggetti Libro solo quando vengono letti:
+ * i libri restituiti sono copie, e modificarli non modifica l'archivio.
+ * <p>
+ * Le implementazioni non sono sincronizzate: l'accesso da più thread va protetto
+ * dal chiamante.
+ */
+public interface ArchivioLibri extends Iterable<Libro>, Closeable {
+
+    /**
+     * Aggiunge un libro o sostituisce quello con lo stesso ISBN.
+     *
+     * @param libro Libro da scrivere
+     * @return Libro sostituito, o null se l'ISBN non era presente
+     * @throws IOException In caso di errori di scrittura dell'archivio
+     */
+    Libro scrivi(Libro libro) throws IOException;
+
+    /**
+     * Legge il libro con l'ISBN indicato.
+     *
+     * @param isbn ISBN del libro
+     * @return Libro letto, o null se non è presente
+     * @throws IOException In caso di errori di lettura dell'archivio
+     */
+    Libro leggi(String isbn) throws IOException;
+
+    /**
+     * Rimuove il libro con l'ISBN indicato.
+     *
+     * @param isbn ISBN del libro
+     * @return Libro rimosso, o null se non era presente
+     * @throws IOException In caso di errori di scrittura dell'archivio
+     */
+    Libro rimuovi(String isbn) throws IOException;
+
+    /**
+     * Ottiene il numero di libri presenti nell'archivio.
+     *
+     * @return Numero di libri
+     */
+    int getNumeroLibri();
+}
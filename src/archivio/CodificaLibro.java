@@ -0,0 +1,87 @@
+package archivio;
+
+import model.Libro;
+import model.StatoLettura;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codifica compatta dei dati di un libro, escluso l'ISBN che gli archivi usano come chiave:
+ * <pre>
+ * byte valutazione | byte stato | (short lunghezza, byte UTF-8) per titolo, autore, genere
+ * </pre>
+ */
+final class CodificaLibro {
+
+    // Lunghezza massima in byte di un campo di testo, registrata in uno short senza segno
+    static final int TESTO_MASSIMO = 0xFFFF;
+
+    private static final StatoLettura[] STATI = StatoLettura.values();
+
+    private CodificaLibro() {
+    }
+
+    /**
+     * Verifica che i campi di testo del libro rientrino nella codifica.
+     *
+     * @param libro Libro da verificare
+     * @throws IOException Se un campo supera TESTO_MASSIMO byte
+     */
+    static void verifica(Libro libro) throws IOException {
+        verificaTesto("Titolo", libro.getTitolo());
+        verificaTesto("Autore", libro.getAutore());
+        verificaTesto("Genere", libro.getGenere());
+    }
+
+    private static void verificaTesto(String campo, String testo) throws IOException {
+        int lunghezza = testo.getBytes(StandardCharsets.UTF_8).length;
+        if (lunghezza > TESTO_MASSIMO) {
+            throw new IOException(campo + " troppo lungo per l'archivio: " + lunghezza + " byte");
+        }
+    }
+
+    /**
+     * Codifica i dati di un libro, escluso l'ISBN.
+     * I campi di testo devono rientrare in TESTO_MASSIMO byte (vedi verifica()).
+     *
+     * @param libro Libro da codificare
+     * @return Dati codificati
+     */
+    static byte[] codifica(Libro libro) {
+        byte[] titolo = libro.getTitolo().getBytes(StandardCharsets.UTF_8);
+        byte[] autore = libro.getAutore().getBytes(StandardCharsets.UTF_8);
+        byte[] genere = libro.getGenere().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 6 + titolo.length + autore.length + genere.length);
+        buffer.put((byte) libro.getValutazione());
+        buffer.put((byte) libro.getStatoLettura().ordinal());
+        buffer.putShort((short) titolo.length).put(titolo);
+        buffer.putShort((short) autore.length).put(autore);
+        buffer.putShort((short) genere.length).put(genere);
+        return buffer.array();
+    }
+
+    /**
+     * Crea un libro dall'ISBN e dai dati codificati.
+     *
+     * @param isbn ISBN in UTF-8
+     * @param valore Dati codificati con codifica()
+     * @return Libro decodificato
+     */
+    static Libro decodifica(byte[] isbn, byte[] valore) {
+        ByteBuffer buffer = ByteBuffer.wrap(valore);
+        int valutazione = buffer.get();
+        StatoLettura stato = STATI[buffer.get()];
+        String titolo = leggiTesto(buffer);
+        String autore = leggiTesto(buffer);
+        String genere = leggiTesto(buffer);
+        return new Libro(titolo, autore, new String(isbn, StandardCharsets.UTF_8), genere, valutazione, stato);
+    }
+
+    private static String leggiTesto(ByteBuffer buffer) {
+        byte[] testo = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(testo);
+        return new String(testo, StandardCharsets.UTF_8);
+    }
+}
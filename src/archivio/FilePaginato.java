@@ -0,0 +1,179 @@
+package archivio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * File diviso in pagine di dimensione fissa, letto e scritto attraverso una cache LRU.
+ * Le pagine modificate restano in cache finché non vengono espulse o sincronizzate.
+ * <p>
+ * Il buffer di una pagina va usato solo durante l'operazione che l'ha letto: una pagina
+ * espulsa dalla cache viene riletta dal disco alla richiesta successiva. Per questo la
+ * cache contiene almeno PAGINE_MINIME pagine, più di quelle usate da una singola
+ * operazione sull'albero.
+ */
+final class FilePaginato implements Closeable {
+
+    // Dimensione di una pagina, in byte
+    static final int DIMENSIONE_PAGINA = 4096;
+
+    // Numero minimo di pagine in cache
+    static final int PAGINE_MINIME = 16;
+
+    private final FileChannel canale;
+    private final int pagineInCache;
+    private final LinkedHashMap<Integer, Pagina> cache;
+    private int numeroPagine;
+    private long lettureDaDisco;
+
+    /**
+     * Apre un file paginato, creandolo se non esiste.
+     *
+     * @param percorso Percorso del file
+     * @param pagineInCache Numero massimo di pagine tenute in memoria
+     * @throws IOException In caso di errori di apertura o se il file non è diviso in pagine
+     */
+    FilePaginato(Path percorso, int pagineInCache) throws IOException {
+        this.canale = FileChannel.open(percorso, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.pagineInCache = Math.max(PAGINE_MINIME, pagineInCache);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        long dimensione = canale.size();
+        if (dimensione % DIMENSIONE_PAGINA != 0) {
+            canale.close();
+            throw new IOException("File non valido: dimensione non multipla della pagina: " + percorso);
+        }
+        this.numeroPagine = (int) (dimensione / DIMENSIONE_PAGINA);
+    }
+
+    /**
+     * Legge una pagina, dalla cache o dal disco.
+     *
+     * @param numero Numero della pagina
+     * @return Buffer della pagina, da non usare dopo la fine dell'operazione
+     * @throws IOException In caso di errori di lettura
+     */
+    ByteBuffer leggi(int numero) throws IOException {
+        Pagina pagina = cache.get(numero);
+        if (pagina == null) {
+            if (numero < 0 || numero >= numeroPagine) {
+                throw new IOException("Pagina inesistente: " + numero);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(DIMENSIONE_PAGINA);
+            long posizione = (long) numero * DIMENSIONE_PAGINA;
+            while (buffer.hasRemaining()) {
+                if (canale.read(buffer, posizione + buffer.position()) < 0) {
+                    throw new IOException("Pagina incompleta: " + numero);
+                }
+            }
+            lettureDaDisco++;
+            pagina = new Pagina(buffer);
+            inserisci(numero, pagina);
+        }
+        return pagina.buffer;
+    }
+
+    /**
+     * Aggiunge una pagina vuota in fondo al file.
+     *
+     * @return Numero della nuova pagina
+     * @throws IOException In caso di errori di scrittura delle pagine espulse
+     */
+    int alloca() throws IOException {
+        int numero = numeroPagine++;
+        Pagina pagina = new Pagina(ByteBuffer.allocate(DIMENSIONE_PAGINA));
+        pagina.modificata = true;
+        inserisci(numero, pagina);
+        return numero;
+    }
+
+    /**
+     * Segna una pagina come modificata, da scrivere su disco.
+     *
+     * @param numero Numero della pagina, letta o allocata nella stessa operazione
+     */
+    void segnaModificata(int numero) {
+        Pagina pagina = cache.get(numero);
+        if (pagina == null) {
+            throw new IllegalStateException("Pagina non in cache: " + numero);
+        }
+        pagina.modificata = true;
+    }
+
+    private void inserisci(int numero, Pagina pagina) throws IOException {
+        cache.put(numero, pagina);
+        Iterator<Map.Entry<Integer, Pagina>> vecchie = cache.entrySet().iterator();
+        while (cache.size() > pagineInCache) {
+            Map.Entry<Integer, Pagina> vecchia = vecchie.next();
+            if (vecchia.getValue().modificata) {
+                scrivi(vecchia.getKey(), vecchia.getValue());
+            }
+            vecchie.remove();
+        }
+    }
+
+    private void scrivi(int numero, Pagina pagina) throws IOException {
+        ByteBuffer buffer = pagina.buffer.duplicate();
+        buffer.clear();
+        long posizione = (long) numero * DIMENSIONE_PAGINA;
+        while (buffer.hasRemaining()) {
+            canale.write(buffer, posizione + buffer.position());
+        }
+        pagina.modificata = false;
+    }
+
+    /**
+     * Scrive su disco le pagine modificate e forza la scrittura del file.
+     *
+     * @throws IOException In caso di errori di scrittura
+     */
+    void sincronizza() throws IOException {
+        for (Map.Entry<Integer, Pagina> voce : cache.entrySet()) {
+            if (voce.getValue().modificata) {
+                scrivi(voce.getKey(), voce.getValue());
+            }
+        }
+        canale.force(false);
+    }
+
+    int getNumeroPagine() {
+        return numeroPagine;
+    }
+
+    /**
+     * Ottiene il numero di pagine lette dal disco dall'apertura del file.
+     *
+     * @return Pagine lette dal disco
+     */
+    long getLettureDaDisco() {
+        return lettureDaDisco;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sincronizza();
+        } finally {
+            canale.close();
+        }
+    }
+
+    /**
+     * Pagina in cache, con lo stato di modifica.
+     */
+    private static final class Pagina {
+        private final ByteBuffer buffer;
+        private boolean modificata;
+
+        private Pagina(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
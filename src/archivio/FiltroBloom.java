@@ -0,0 +1,105 @@
+package archivio;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Filtro di Bloom sugli ISBN: dice con certezza che un ISBN non è presente, e con una
+ * piccola probabilità di errore che potrebbe esserlo. Con BIT_PER_ELEMENTO bit per ISBN
+ * e FUNZIONI_HASH funzioni le risposte positive errate sono circa l'1%.
+ * <p>
+ * Le funzioni di hash si ottengono da due hash dell'ISBN (h1 + i * h2), così ogni
+ * verifica calcola l'ISBN in byte una sola volta.
+ */
+final class FiltroBloom {
+
+    static final int BIT_PER_ELEMENTO = 10;
+    static final int FUNZIONI_HASH = 7;
+
+    private final long[] bit;
+    private final int funzioni;
+
+    /**
+     * Crea un filtro vuoto dimensionato per un numero di ISBN.
+     *
+     * @param numeroElementi Numero previsto di ISBN
+     */
+    FiltroBloom(long numeroElementi) {
+        this(new long[(int) Math.max(1, Math.min(Integer.MAX_VALUE - 8,
+                (numeroElementi * BIT_PER_ELEMENTO + 63) / 64))], FUNZIONI_HASH);
+    }
+
+    /**
+     * Ricrea un filtro dai bit salvati.
+     *
+     * @param bit Bit del filtro
+     * @param funzioni Numero di funzioni di hash
+     */
+    FiltroBloom(long[] bit, int funzioni) {
+        if (bit.length == 0 || funzioni <= 0) {
+            throw new IllegalArgumentException("Filtro di Bloom non valido");
+        }
+        this.bit = bit;
+        this.funzioni = funzioni;
+    }
+
+    void aggiungi(String isbn) {
+        long numeroBit = (long) bit.length * 64;
+        int h1 = hash(isbn);
+        int h2 = mescola(h1);
+        for (int i = 0; i < funzioni; i++) {
+            long indice = Integer.toUnsignedLong(h1 + i * h2) % numeroBit;
+            bit[(int) (indice >>> 6)] |= 1L << indice;
+        }
+    }
+
+    /**
+     * Verifica se un ISBN potrebbe essere presente.
+     *
+     * @param isbn ISBN da cercare
+     * @return false se l'ISBN non è stato aggiunto al filtro
+     */
+    boolean puoContenere(String isbn) {
+        long numeroBit = (long) bit.length * 64;
+        int h1 = hash(isbn);
+        int h2 = mescola(h1);
+        for (int i = 0; i < funzioni; i++) {
+            long indice = Integer.toUnsignedLong(h1 + i * h2) % numeroBit;
+            if ((bit[(int) (indice >>> 6)] & (1L << indice)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] getBit() {
+        return bit;
+    }
+
+    int getFunzioni() {
+        return funzioni;
+    }
+
+    /**
+     * Hash FNV-1a dell'ISBN in UTF-8.
+     */
+    private static int hash(String isbn) {
+        int h = 0x811C9DC5;
+        for (byte b : isbn.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * Secondo hash, ricavato dal primo con il finalizzatore di MurmurHash3; è sempre
+     * dispari, così le funzioni restano distinte anche con numeri di bit pari.
+     */
+    private static int mescola(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,352 @@
+package archivio;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * File immutabile di un archivio LSM, con le voci in ordine di ISBN:
+ * <pre>
+ * voci:   (short lunghezza, ISBN UTF-8, int lunghezza, valore)...
+ * indice: int voci, (short lunghezza, ISBN UTF-8, long posizione)...
+ * filtro: int funzioni, int long, long...
+ * coda:   long inizio indice, long inizio filtro, long numero voci, int magico
+ * </pre>
+ * Un valore vuoto indica un libro cancellato. L'indice sparso contiene una voce ogni
+ * INTERVALLO_INDICE e, insieme al filtro di Bloom, resta in memoria: una ricerca legge
+ * dal disco al più un blocco di voci, e nessuno se il filtro esclude l'ISBN.
+ * <p>
+ * Un segmento sostituito da una compattazione viene chiuso ed eliminato quando l'ultimo
+ * iteratore che lo usa lo rilascia.
+ */
+final class SegmentoLSM implements Closeable {
+
+    // Voci tra due chiavi consecutive dell'indice sparso
+    static final int INTERVALLO_INDICE = 64;
+
+    private static final int MAGICO = 0x4C534D31;
+    private static final int DIMENSIONE_CODA = 28;
+    private static final int DIMENSIONE_LETTURA = 64 * 1024;
+
+    private final Path percorso;
+    private final int numero;
+    private final int livello;
+    private final FileChannel canale;
+    private final long inizioIndice;
+    private final long numeroVoci;
+    private final String[] chiaviIndice;
+    private final long[] posizioniIndice;
+    private final FiltroBloom filtro;
+    private int riferimenti;
+    private boolean obsoleto;
+
+    /**
+     * Apre un segmento esistente, caricando in memoria indice sparso e filtro.
+     *
+     * @param percorso Percorso del file
+     * @param numero Numero del segmento, che ne determina il nome
+     * @param livello Livello di compattazione
+     * @throws IOException In caso di errori di lettura o se il file non è un segmento
+     */
+    SegmentoLSM(Path percorso, int numero, int livello) throws IOException {
+        this.percorso = percorso;
+        this.numero = numero;
+        this.livello = livello;
+        this.canale = FileChannel.open(percorso, StandardOpenOption.READ);
+        this.riferimenti = 1;
+        try {
+            long dimensione = canale.size();
+            if (dimensione < DIMENSIONE_CODA) {
+                throw new IOException("Segmento incompleto: " + percorso);
+            }
+            ByteBuffer coda = leggi(dimensione - DIMENSIONE_CODA, DIMENSIONE_CODA);
+            inizioIndice = coda.getLong();
+            long inizioFiltro = coda.getLong();
+            numeroVoci = coda.getLong();
+            if (coda.getInt() != MAGICO || inizioIndice < 0 || inizioFiltro < inizioIndice
+                    || inizioFiltro > dimensione - DIMENSIONE_CODA) {
+                throw new IOException("Il file non è un segmento dell'archivio: " + percorso);
+            }
+            ByteBuffer metadati = leggi(inizioIndice, (int) (dimensione - DIMENSIONE_CODA - inizioIndice));
+            int voci = metadati.getInt();
+            chiaviIndice = new String[voci];
+            posizioniIndice = new long[voci];
+            for (int i = 0; i < voci; i++) {
+                chiaviIndice[i] = leggiTesto(metadati);
+                posizioniIndice[i] = metadati.getLong();
+            }
+            int funzioni = metadati.getInt();
+            long[] bit = new long[metadati.getInt()];
+            metadati.asLongBuffer().get(bit);
+            filtro = new FiltroBloom(bit, funzioni);
+        } catch (IOException | RuntimeException e) {
+            canale.close();
+            throw e instanceof IOException ? (IOException) e
+                    : new IOException("Segmento non valido: " + percorso, e);
+        }
+    }
+
+    /**
+     * Scrive un nuovo segmento con le voci indicate, già in ordine di ISBN e senza ripetizioni.
+     * Il file è scritto con un nome temporaneo e rinominato solo quando è completo.
+     *
+     * @param percorso Percorso del segmento
+     * @param numero Numero del segmento
+     * @param livello Livello di compattazione
+     * @param voci Voci in ordine di ISBN; un valore vuoto indica un libro cancellato
+     * @param vociPreviste Numero massimo di voci, per dimensionare il filtro di Bloom
+     * @return Segmento aperto
+     * @throws IOException In caso di errori di scrittura
+     */
+    static SegmentoLSM scrivi(Path percorso, int numero, int livello,
+                              Iterator<Map.Entry<String, byte[]>> voci, long vociPreviste) throws IOException {
+        Path temporaneo = percorso.resolveSibling(percorso.getFileName() + ".tmp");
+        FiltroBloom filtro = new FiltroBloom(vociPreviste);
+        List<String> chiaviIndice = new ArrayList<>();
+        List<Long> posizioniIndice = new ArrayList<>();
+        try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(canale), DIMENSIONE_LETTURA));
+            long posizione = 0;
+            long numeroVoci = 0;
+            while (voci.hasNext()) {
+                Map.Entry<String, byte[]> voce = voci.next();
+                byte[] isbn = voce.getKey().getBytes(StandardCharsets.UTF_8);
+                if (numeroVoci % INTERVALLO_INDICE == 0) {
+                    chiaviIndice.add(voce.getKey());
+                    posizioniIndice.add(posizione);
+                }
+                out.writeShort(isbn.length);
+                out.write(isbn);
+                out.writeInt(voce.getValue().length);
+                out.write(voce.getValue());
+                filtro.aggiungi(voce.getKey());
+                posizione += 6 + isbn.length + voce.getValue().length;
+                numeroVoci++;
+            }
+            long inizioIndice = posizione;
+            out.writeInt(chiaviIndice.size());
+            posizione += 4;
+            for (int i = 0; i < chiaviIndice.size(); i++) {
+                byte[] chiave = chiaviIndice.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeShort(chiave.length);
+                out.write(chiave);
+                out.writeLong(posizioniIndice.get(i));
+                posizione += 10 + chiave.length;
+            }
+            long inizioFiltro = posizione;
+            out.writeInt(filtro.getFunzioni());
+            out.writeInt(filtro.getBit().length);
+            for (long parola : filtro.getBit()) {
+                out.writeLong(parola);
+            }
+            out.writeLong(inizioIndice);
+            out.writeLong(inizioFiltro);
+            out.writeLong(numeroVoci);
+            out.writeInt(MAGICO);
+            out.flush();
+            canale.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaneo);
+            throw e;
+        }
+        Files.move(temporaneo, percorso, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new SegmentoLSM(percorso, numero, livello);
+    }
+
+    /**
+     * Verifica con il filtro di Bloom se il segmento potrebbe contenere un ISBN.
+     *
+     * @param isbn ISBN da cercare
+     * @return false se il segmento sicuramente non contiene l'ISBN
+     */
+    boolean puoContenere(String isbn) {
+        return filtro.puoContenere(isbn);
+    }
+
+    /**
+     * Cerca un ISBN leggendo dal disco il solo blocco dell'indice sparso che può contenerlo.
+     *
+     * @param isbn ISBN da cercare
+     * @return Valore trovato (vuoto se il libro è cancellato), o null se l'ISBN non è nel segmento
+     * @throws IOException In caso di errori di lettura
+     */
+    byte[] cerca(String isbn) throws IOException {
+        int blocco = Arrays.binarySearch(chiaviIndice, isbn);
+        if (blocco < 0) {
+            blocco = -blocco - 2;
+            if (blocco < 0) {
+                return null;
+            }
+        }
+        long inizio = posizioniIndice[blocco];
+        long fine = blocco + 1 < posizioniIndice.length ? posizioniIndice[blocco + 1] : inizioIndice;
+        ByteBuffer voci = leggi(inizio, (int) (fine - inizio));
+        while (voci.hasRemaining()) {
+            int confronto = leggiTesto(voci).compareTo(isbn);
+            byte[] valore = new byte[voci.getInt()];
+            voci.get(valore);
+            if (confronto == 0) {
+                return valore;
+            }
+            if (confronto > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restituisce le voci in ordine di ISBN, leggendo il file a blocchi.
+     *
+     * @return Iteratore delle voci; gli errori di lettura sono UncheckedIOException
+     */
+    Iterator<Map.Entry<String, byte[]>> scorri() {
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private ByteBuffer buffer = ByteBuffer.allocate(DIMENSIONE_LETTURA).flip();
+            private long posizione;
+
+            @Override
+            public boolean hasNext() {
+                return posizione < inizioIndice || buffer.hasRemaining();
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    garantisci(2);
+                    byte[] isbn = new byte[Short.toUnsignedInt(buffer.getShort())];
+                    garantisci(isbn.length + 4);
+                    buffer.get(isbn);
+                    byte[] valore = new byte[buffer.getInt()];
+                    garantisci(valore.length);
+                    buffer.get(valore);
+                    return new AbstractMap.SimpleImmutableEntry<>(new String(isbn, StandardCharsets.UTF_8), valore);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            /**
+             * Legge dal file finché nel buffer ci sono almeno n byte.
+             */
+            private void garantisci(int n) throws IOException {
+                if (buffer.remaining() >= n) {
+                    return;
+                }
+                if (buffer.capacity() < n) {
+                    buffer = ByteBuffer.allocate(n).put(buffer);
+                } else {
+                    buffer.compact();
+                }
+                while (buffer.position() < n) {
+                    int daLeggere = (int) Math.min(buffer.remaining(), inizioIndice - posizione);
+                    if (daLeggere <= 0) {
+                        throw new EOFException("Segmento troncato: " + percorso);
+                    }
+                    ByteBuffer parte = buffer.slice().limit(daLeggere);
+                    int letti = canale.read(parte, posizione);
+                    if (letti < 0) {
+                        throw new EOFException("Segmento troncato: " + percorso);
+                    }
+                    buffer.position(buffer.position() + letti);
+                    posizione += letti;
+                }
+                buffer.flip();
+            }
+        };
+    }
+
+    private ByteBuffer leggi(long inizio, int lunghezza) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(lunghezza);
+        while (buffer.hasRemaining()) {
+            if (canale.read(buffer, inizio + buffer.position()) < 0) {
+                throw new EOFException("Segmento troncato: " + percorso);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String leggiTesto(ByteBuffer buffer) {
+        byte[] testo = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(testo);
+        return new String(testo, StandardCharsets.UTF_8);
+    }
+
+    int getNumero() {
+        return numero;
+    }
+
+    int getLivello() {
+        return livello;
+    }
+
+    long getNumeroVoci() {
+        return numeroVoci;
+    }
+
+    /**
+     * Aggiunge un utilizzatore del segmento, che dovrà rilasciarlo.
+     */
+    synchronized void acquisisci() {
+        riferimenti++;
+    }
+
+    /**
+     * Rilascia il segmento; un segmento obsoleto senza più utilizzatori viene eliminato.
+     *
+     * @throws IOException In caso di errori di chiusura o eliminazione
+     */
+    synchronized void rilascia() throws IOException {
+        if (--riferimenti == 0 && obsoleto) {
+            canale.close();
+            Files.deleteIfExists(percorso);
+        }
+    }
+
+    /**
+     * Segna il segmento come sostituito e rilascia il riferimento dell'archivio.
+     *
+     * @throws IOException In caso di errori di chiusura o eliminazione
+     */
+    synchronized void rendiObsoleto() throws IOException {
+        obsoleto = true;
+        rilascia();
+    }
+
+    /**
+     * Verifica se il segmento è stato sostituito e non è più usato da nessuno.
+     *
+     * @return true se il file è stato eliminato
+     */
+    synchronized boolean isEliminato() {
+        return obsoleto && riferimenti == 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canale.close();
+    }
+}
@@ -0,0 +1,54 @@
+package command;
+
+import controller.LibroController;
+import controller.UnioneLibri;
+
+/**
+ * Comando per l'unione dei libri di un file nella libreria.
+ * Implementa l'interfaccia Command per supportare le operazioni di undo/redo:
+ * l'intera unione viene annullata o ripristinata con un'unica operazione.
+ */
+public class UnisciLibreriaCommand implements Command {
+
+    private final LibroController controller;
+    private final UnioneLibri unione;
+
+    /**
+     * Costruttore che inizializza il comando con l'unione da applicare.
+     *
+     * @param controller Controller della libreria
+     * @param unione Unione preparata confrontando il file con la libreria
+     */
+    public UnisciLibreriaCommand(LibroController controller, UnioneLibri unione) {
+        this.controller = controller;
+        this.unione = unione;
+    }
+
+    /**
+     * Esegue il comando aggiungendo, aggiornando e rimuovendo i libri dell'unione.
+     */
+    @Override
+    public boolean execute() {
+        // Un'unione che non modifica la libreria non produce un'operazione da annullare
+        return unione.haModifiche() && controller.applicaUnioneInterno(unione);
+    }
+
+    /**
+     * Annulla il comando rimuovendo i libri aggiunti e ripristinando quelli aggiornati o rimossi.
+     */
+    @Override
+    public void undo() {
+        controller.annullaUnioneInterno(unione);
+    }
+
+    /**
+     * Restituisce una descrizione del comando.
+     *
+     * @return Descrizione testuale del comando
+     */
+    @Override
+    public String getDescription() {
+        return "Unione libri: " + unione.getNumeroModifiche() + " libri da " + unione.getPercorsoFile();
+    }
+
+}
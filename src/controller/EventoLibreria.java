@@ -0,0 +1,103 @@
+package controller;
+
+import model.Libro;
+
+/**
+ * Evento che descrive una modifica della collezione del GestoreLibreria.
+ * Per le modifiche di un singolo libro contiene i dati prima e dopo la modifica
+ * e la posizione di inserimento del libro, che determina l'ordine tra libri equivalenti;
+ * gli ascoltatori possono così aggiornare solo ciò che riguarda quel libro.
+ */
+public class EventoLibreria {
+
+    /**
+     * Tipo di modifica della collezione.
+     */
+    public enum Tipo {
+        AGGIUNTO,
+        MODIFICATO,
+        RIMOSSO,
+        // L'intera collezione è stata sostituita (caricamento da file o pulizia)
+        // o ampliata in blocco (importazione)
+        RICARICATO
+    }
+
+    private final Tipo tipo;
+    private final Libro libroPrecedente;
+    private final Libro libro;
+    private final long sequenza;
+
+    /**
+     * Costruttore dell'evento.
+     *
+     * @param tipo Tipo di modifica
+     * @param libroPrecedente Dati del libro prima della modifica (null per AGGIUNTO e RICARICATO)
+     * @param libro Dati del libro dopo la modifica (null per RIMOSSO e RICARICATO)
+     * @param sequenza Posizione di inserimento del libro (-1 per RICARICATO)
+     */
+    EventoLibreria(Tipo tipo, Libro libroPrecedente, Libro libro, long sequenza) {
+        this.tipo = tipo;
+        this.libroPrecedente = libroPrecedente;
+        this.libro = libro;
+        this.sequenza = sequenza;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Ottiene i dati del libro prima della modifica.
+     *
+     * @return Libro precedente, o null se il libro è stato aggiunto
+     */
+    public Libro getLibroPrecedente() {
+        return libroPrecedente;
+    }
+
+    /**
+     * Ottiene i dati del libro dopo la modifica.
+     *
+     * @return Libro aggiornato, o null se il libro è stato rimosso
+     */
+    public Libro getLibro() {
+        return libro;
+    }
+
+    /**
+     * Ottiene l'ISBN del libro modificato: quello attuale, o quello rimosso per RIMOSSO.
+     *
+     * @return ISBN del libro, o null per RICARICATO
+     */
+    public String getIsbn() {
+        if (libro != null) {
+            return libro.getIsbn();
+        }
+        return libroPrecedente != null ? libroPrecedente.getIsbn() : null;
+    }
+
+    /**
+     * Ottiene la posizione di inserimento del libro, valida anche dopo la rimozione.
+     *
+     * @return Posizione di inserimento
+     */
+    public long getSequenza() {
+        return sequenza;
+    }
+
+    /**
+     * Verifica se l'evento riguarda il libro indicato, prima o dopo la modifica.
+     *
+     * @param altro Libro da verificare
+     * @return true se il libro ha l'ISBN del libro precedente o di quello aggiornato
+     */
+    public boolean riguarda(Libro altro) {
+        return (libro != null && libro.equals(altro))
+                || (libroPrecedente != null && libroPrecedente.equals(altro));
+    }
+
+    @Override
+    public String toString() {
+        return tipo + (getIsbn() != null ? " " + getIsbn() : "");
+    }
+}
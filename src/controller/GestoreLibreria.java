@@ -2,49 +2,147 @@ package controller;
 
 import model.Libro;
 import dao.LibroDAO;
+import dao.ArchivioLibroDAO;
+import dao.ArchivioLSMDAO;
+import dao.CatalogoIndicizzato;
 import dao.JsonLibroDAO;
 import dao.CsvLibroDAO;
+import dao.ConfrontoCataloghi;
+import dao.FileDelta;
+import dao.FileModifiche;
+import dao.OrdinamentoEsterno;
+import dao.RapportoImportazione;
+import indice.Dizionario;
+import indice.FileIndici;
+import indice.IndiceFacet;
+import indice.IndiceFuzzy;
+import indice.IndiceTestuale;
 import strategy.OrdinatoreLibroStrategy;
+import util.ListaOrdinata;
+import util.VettorePersistente;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Implementazione del pattern Singleton per la gestione centralizzata dei libri.
  * Gestisce la collezione di libri e le operazioni di ricerca, filtro e ordinamento.
+ * <p>
+ * Il gestore può essere usato da più thread. Le modifiche sono eseguite in mutua
+ * esclusione con il blocco in scrittura di un ReentrantReadWriteLock equo; le letture
+ * prendono il blocco in lettura e procedono in parallelo tra loro. Il blocco è equo
+ * perché un flusso continuo di letture non deve impedire le modifiche: una modifica
+ * attende solo le letture già iniziate. Le letture di un solo valore (numero di libri,
+ * versione) usano campi volatile e non bloccano mai.
+ * Caricamenti e salvataggi leggono e scrivono i file fuori dal blocco.
+ * <p>
+ * La collezione è un vettore persistente: ogni modifica pubblica una nuova versione
+ * immutabile, quindi getIstantanea() e i salvataggi ottengono la collezione in O(1)
+ * senza blocchi e senza copiarla, mentre le modifiche proseguono.
+ * Gli ascoltatori sono notificati dopo il rilascio del blocco, nel thread che ha
+ * eseguito la modifica.
  */
 public class GestoreLibreria {
 
-    // Singleton instance
-    private static GestoreLibreria instance;
+    // Libri importati aggiunti alla collezione con un solo blocco in scrittura
+    static final int LOTTO_IMPORTAZIONE = 1000;
+
+    // Blocco che protegge collezione, ordinamenti memorizzati e indici
+    private final ReentrantReadWriteLock blocco = new ReentrantReadWriteLock(true);
 
     // Attributi del gestore
-    private List<Libro> libri;
+    private volatile VettorePersistente<Libro> libri;
+
+    // Cella del vettore occupata da ogni libro, per ISBN
+    private final Map<String, Integer> cellePerIsbn;
     private final LibroDAO jsonDAO;
     private final LibroDAO csvDAO;
+    private final LibroDAO archivioDAO;
+    private final LibroDAO archivioLsmDAO;
+
+    // Versione della collezione, incrementata a ogni modifica
+    private volatile long versione;
+
+    // Numero progressivo di inserimento per ISBN, usato per ordinare i libri equivalenti
+    private final Map<String, Long> sequenze;
+    private long prossimaSequenza;
+
+    // Ordinamenti completi memorizzati per strategia (creati anche durante le letture)
+    private final Map<OrdinatoreLibroStrategy, VistaOrdinata> visteOrdinate;
+
+    // Ultima ricerca eseguita, riutilizzata quando la nuova ricerca la restringe
+    private volatile RicercaMemorizzata ultimaRicerca;
+
+    // Indice dei token di titolo e autore per la ricerca approssimata
+    private IndiceFuzzy indiceFuzzy;
+
+    // Indice invertito di titolo, autore e genere per la ricerca full-text
+    private IndiceTestuale indiceTestuale;
+
+    // Dizionari ordinati di autori e generi distinti, per filtri e autocompletamento
+    private final IndiceFacet indiceAutori;
+    private final IndiceFacet indiceGeneri;
+    private final Dizionario dizionarioAutori;
+    private final Dizionario dizionarioGeneri;
+
+    // Vero se gli indici dell'ultimo caricamento sono stati letti dal file degli indici
+    private volatile boolean indiciDaFile;
+
+    // Ascoltatori delle modifiche della collezione
+    private final List<Ascoltatore> ascoltatori;
+
+    // Salvataggi eseguiti in un thread dedicato
+    private final SalvataggioAsincrono salvataggi;
 
     /**
      * Costruttore privato per il pattern Singleton.
      * Inizializza le liste e gli oggetti DAO.
      */
     private GestoreLibreria() {
-        this.libri = new ArrayList<>();
+        this.libri = VettorePersistente.vuoto();
+        this.cellePerIsbn = new HashMap<>();
         this.jsonDAO = new JsonLibroDAO();
         this.csvDAO = new CsvLibroDAO();
+        this.archivioDAO = new ArchivioLibroDAO();
+        this.archivioLsmDAO = new ArchivioLSMDAO();
+        this.sequenze = new HashMap<>();
+        this.visteOrdinate = new ConcurrentHashMap<>();
+        this.indiceFuzzy = new IndiceFuzzy();
+        this.indiceTestuale = new IndiceTestuale();
+        this.indiceAutori = new IndiceFacet();
+        this.indiceGeneri = new IndiceFacet();
+        this.dizionarioAutori = dizionarioBloccato(indiceAutori);
+        this.dizionarioGeneri = dizionarioBloccato(indiceGeneri);
+        this.ascoltatori = new CopyOnWriteArrayList<>();
+        this.salvataggi = new SalvataggioAsincrono(this::salvaLibri);
     }
 
     /**
      * Ottiene l'istanza singleton del gestore libreria.
+     * L'istanza viene creata al primo utilizzo dal caricamento della classe Istanza,
+     * senza sincronizzazione sulle chiamate successive.
      *
      * @return L'istanza singleton del GestoreLibreria
      */
-    public static synchronized GestoreLibreria getInstance() {
-        if (instance == null) {
-            instance = new GestoreLibreria();
-        }
-        return instance;
+    public static GestoreLibreria getInstance() {
+        return Istanza.INSTANCE;
+    }
+
+    private static final class Istanza {
+        private static final GestoreLibreria INSTANCE = new GestoreLibreria();
     }
 
     /**
@@ -54,11 +152,29 @@ public class GestoreLibreria {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean aggiungiLibro(Libro libro) {
-        // Verifica che il libro non sia già presente (controllo basato sull'ISBN)
-        if (libro != null && !libri.contains(libro)) {
-            return libri.add(libro);
+        if (libro == null) {
+            return false;
+        }
+
+        EventoLibreria evento;
+        blocco.writeLock().lock();
+        try {
+            // Verifica che il libro non sia già presente (controllo basato sull'ISBN)
+            if (cellePerIsbn.containsKey(libro.getIsbn())) {
+                return false;
+            }
+            cellePerIsbn.put(libro.getIsbn(), libri.getCelle());
+            libri = libri.aggiungi(libro);
+            long sequenza = prossimaSequenza++;
+            sequenze.put(libro.getIsbn(), sequenza);
+            aggiornaVisteOrdinate(null, libro);
+            indicizza(libro);
+            evento = new EventoLibreria(EventoLibreria.Tipo.AGGIUNTO, null, libro, sequenza);
+        } finally {
+            blocco.writeLock().unlock();
         }
-        return false;
+        notifica(evento);
+        return true;
     }
 
     /**
@@ -69,12 +185,33 @@ public class GestoreLibreria {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean modificaLibro(Libro vecchioLibro, Libro nuovoLibro) {
-        int index = libri.indexOf(vecchioLibro);
-        if (index != -1) {
-            libri.set(index, nuovoLibro);
-            return true;
+        EventoLibreria evento;
+        blocco.writeLock().lock();
+        try {
+            Integer cella = vecchioLibro == null ? null : cellePerIsbn.get(vecchioLibro.getIsbn());
+            if (cella == null) {
+                return false;
+            }
+            Libro libroPrecedente = libri.getCella(cella);
+            libri = libri.sostituisci(cella, nuovoLibro);
+
+            // Il libro modificato mantiene la posizione di inserimento del precedente
+            long sequenza = sequenze.get(libroPrecedente.getIsbn());
+            sequenze.put(nuovoLibro.getIsbn(), sequenza);
+            aggiornaVisteOrdinate(libroPrecedente, nuovoLibro);
+            deindicizza(libroPrecedente);
+            indicizza(nuovoLibro);
+            if (!nuovoLibro.getIsbn().equals(libroPrecedente.getIsbn())) {
+                sequenze.remove(libroPrecedente.getIsbn());
+                cellePerIsbn.remove(libroPrecedente.getIsbn());
+                cellePerIsbn.put(nuovoLibro.getIsbn(), cella);
+            }
+            evento = new EventoLibreria(EventoLibreria.Tipo.MODIFICATO, libroPrecedente, nuovoLibro, sequenza);
+        } finally {
+            blocco.writeLock().unlock();
         }
-        return false;
+        notifica(evento);
+        return true;
     }
 
     /**
@@ -84,7 +221,25 @@ public class GestoreLibreria {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean eliminaLibro(Libro libro) {
-        return libri.remove(libro);
+        EventoLibreria evento;
+        blocco.writeLock().lock();
+        try {
+            Integer cella = libro == null ? null : cellePerIsbn.remove(libro.getIsbn());
+            if (cella == null) {
+                return false;
+            }
+            Libro libroRimosso = libri.getCella(cella);
+            libri = libri.rimuovi(cella);
+            compattaSeNecessario();
+            aggiornaVisteOrdinate(libroRimosso, null);
+            long sequenza = sequenze.remove(libroRimosso.getIsbn());
+            deindicizza(libroRimosso);
+            evento = new EventoLibreria(EventoLibreria.Tipo.RIMOSSO, libroRimosso, null, sequenza);
+        } finally {
+            blocco.writeLock().unlock();
+        }
+        notifica(evento);
+        return true;
     }
 
     /**
@@ -96,6 +251,78 @@ public class GestoreLibreria {
         return new ArrayList<>(libri); // Restituisce una copia per evitare modifiche esterne
     }
 
+    /**
+     * Ottiene un'istantanea immutabile della collezione, in ordine di inserimento.
+     * Il costo è O(1) indipendentemente dal numero di libri e l'istantanea non cambia
+     * con le modifiche successive: è adatta a letture lunghe come i salvataggi.
+     * Per scorrere i libri va preferito l'iteratore all'accesso per indice (O(log n)).
+     *
+     * @return Lista non modificabile dei libri
+     */
+    public List<Libro> getIstantanea() {
+        return libri;
+    }
+
+    /**
+     * Elimina le celle vuote lasciate dalle eliminazioni quando superano i libri presenti.
+     * Le celle vengono rinumerate, ma l'ordine di inserimento non cambia.
+     */
+    private void compattaSeNecessario() {
+        int vuote = libri.getCelle() - libri.size();
+        if (vuote > 1024 && vuote > libri.size()) {
+            libri = libri.compatta();
+            aggiornaCellePerIsbn();
+        }
+    }
+
+    private void aggiornaCellePerIsbn() {
+        cellePerIsbn.clear();
+        for (int cella = 0; cella < libri.getCelle(); cella++) {
+            Libro libro = libri.getCella(cella);
+            if (libro != null) {
+                cellePerIsbn.put(libro.getIsbn(), cella);
+            }
+        }
+    }
+
+    /**
+     * Esegue una lettura con il blocco in lettura: più letture procedono in parallelo,
+     * mentre le modifiche attendono che terminino.
+     *
+     * @param lettura Operazione di lettura
+     * @return Risultato della lettura
+     */
+    private <T> T leggi(Supplier<T> lettura) {
+        blocco.readLock().lock();
+        try {
+            return lettura.get();
+        } finally {
+            blocco.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ottiene il numero di libri della collezione senza copiarla.
+     *
+     * @return Numero di libri
+     */
+    public int getNumeroLibri() {
+        return libri.size();
+    }
+
+    /**
+     * Cerca un libro per ISBN esatto.
+     *
+     * @param isbn ISBN del libro
+     * @return Libro con l'ISBN indicato, o null se non è presente
+     */
+    public Libro getLibroPerIsbn(String isbn) {
+        return leggi(() -> {
+            Integer cella = cellePerIsbn.get(isbn);
+            return cella != null ? libri.getCella(cella) : null;
+        });
+    }
+
     /**
      * Cerca libri per titolo.
      *
@@ -107,10 +334,7 @@ public class GestoreLibreria {
             return getLibri();
         }
 
-        String titoloLower = titolo.toLowerCase();
-        return libri.stream()
-                .filter(libro -> libro.getTitolo().toLowerCase().contains(titoloLower))
-                .collect(Collectors.toList());
+        return leggi(() -> cercaIncrementale("titolo", Libro::getTitolo, titolo));
     }
 
     /**
@@ -124,10 +348,7 @@ public class GestoreLibreria {
             return getLibri();
         }
 
-        String autoreLower = autore.toLowerCase();
-        return libri.stream()
-                .filter(libro -> libro.getAutore().toLowerCase().contains(autoreLower))
-                .collect(Collectors.toList());
+        return leggi(() -> cercaIncrementale("autore", Libro::getAutore, autore));
     }
 
     /**
@@ -141,10 +362,70 @@ public class GestoreLibreria {
             return getLibri();
         }
 
-        String isbnLower = isbn.toLowerCase();
-        return libri.stream()
-                .filter(libro -> libro.getIsbn().toLowerCase().contains(isbnLower))
+        return leggi(() -> cercaIncrementale("isbn", Libro::getIsbn, isbn));
+    }
+
+    /**
+     * Cerca libri per titolo o autore tollerando errori di battitura
+     * (ad esempio "Tolkein" trova "Tolkien").
+     * Usa un indice dei token mantenuto aggiornato a ogni modifica della collezione.
+     *
+     * @param testo Testo da cercare
+     * @return Lista di libri trovati, ordinata per rilevanza (prima le corrispondenze più vicine)
+     */
+    public List<Libro> cercaApprossimata(String testo) {
+        if (testo == null || testo.trim().isEmpty()) {
+            return getLibri();
+        }
+        return leggi(() -> indiceFuzzy.cerca(testo));
+    }
+
+    /**
+     * Cerca libri in titolo, autore e genere contemporaneamente.
+     * Il testo viene normalizzato (minuscolo, senza accenti e senza parole vuote italiane)
+     * e i risultati sono ordinati per rilevanza secondo il punteggio BM25,
+     * quindi non serve un ordinamento successivo.
+     *
+     * @param testo Testo da cercare
+     * @return Lista di libri trovati, ordinata per rilevanza decrescente
+     */
+    public List<Libro> cercaInTuttiICampi(String testo) {
+        if (testo == null || testo.trim().isEmpty()) {
+            return getLibri();
+        }
+        return leggi(() -> indiceTestuale.cerca(testo));
+    }
+
+    /**
+     * Esegue una ricerca per sottostringa (case-insensitive) su un campo dei libri.
+     * Se la collezione non è cambiata e il nuovo testo contiene quello della ricerca
+     * precedente sullo stesso campo, i risultati sono un sottoinsieme dei precedenti:
+     * viene quindi filtrato solo il risultato precedente invece dell'intera collezione.
+     * Durante la digitazione ogni tasto costa quindi in proporzione al risultato precedente.
+     *
+     * @param nomeCampo Nome del campo su cui cercare
+     * @param campo Funzione che estrae il campo dal libro
+     * @param testo Testo da cercare (non vuoto)
+     * @return Lista di libri che corrispondono alla ricerca
+     */
+    private List<Libro> cercaIncrementale(String nomeCampo, Function<Libro, String> campo, String testo) {
+        String testoLower = testo.toLowerCase();
+
+        List<Libro> candidati = libri;
+        RicercaMemorizzata precedente = ultimaRicerca;
+        if (precedente != null && nomeCampo.equals(precedente.campo) && precedente.versione == versione
+                && testoLower.contains(precedente.testo)) {
+            candidati = precedente.risultato;
+        }
+
+        List<Libro> risultato = candidati.stream()
+                .filter(libro -> campo.apply(libro).toLowerCase().contains(testoLower))
                 .collect(Collectors.toList());
+
+        // Più letture concorrenti possono sostituire la ricerca memorizzata: vince l'ultima
+        ultimaRicerca = new RicercaMemorizzata(nomeCampo, testoLower, versione, risultato);
+
+        return new ArrayList<>(risultato);
     }
 
     /**
@@ -165,13 +446,382 @@ public class GestoreLibreria {
     }
 
     /**
-     * Carica libri da un file JSON.
+     * Restituisce una sola pagina dei libri ordinati secondo la strategia specificata.
+     * Invece di ordinare l'intera lista, mantiene un heap limitato ai primi
+     * offset + limite libri, con costo O(n log K) dove K = offset + limite.
+     * L'ordine tra libri equivalenti è quello della lista originale, come in ordinaLibri.
+     *
+     * @param libriDaOrdinare Lista di libri da ordinare
+     * @param strategy Strategia di ordinamento da applicare (null per l'ordine originale)
+     * @param offset Numero di libri da saltare all'inizio dell'ordinamento
+     * @param limite Numero massimo di libri da restituire
+     * @return Lista ordinata dei libri della pagina richiesta
+     * @throws IllegalArgumentException se offset o limite sono negativi
+     */
+    public List<Libro> ordinaLibri(List<Libro> libriDaOrdinare, OrdinatoreLibroStrategy strategy,
+                                   int offset, int limite) {
+        if (offset < 0 || limite < 0) {
+            throw new IllegalArgumentException("Offset e limite non possono essere negativi.");
+        }
+
+        int n = libriDaOrdinare.size();
+        int inizio = Math.min(offset, n);
+        int fine = (int) Math.min((long) offset + limite, n);
+        if (inizio >= fine) {
+            return new ArrayList<>();
+        }
+
+        if (strategy == null) {
+            return new ArrayList<>(libriDaOrdinare.subList(inizio, fine));
+        }
+
+        // Se la pagina arriva alla fine della lista conviene un ordinamento completo
+        if (fine == n) {
+            return new ArrayList<>(ordinaLibri(libriDaOrdinare, strategy).subList(inizio, fine));
+        }
+
+        Libro[] libriArray = libriDaOrdinare.toArray(new Libro[0]);
+        Comparator<Libro> comparatore = strategy.getComparatore();
+
+        // Confronto tra posizioni: a parità di chiave vince la posizione minore (ordinamento stabile)
+        Comparator<Integer> ordine = (a, b) -> {
+            int c = comparatore.compare(libriArray[a], libriArray[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+
+        // Max-heap dei primi "fine" elementi: in testa c'è il peggiore tra quelli tenuti
+        PriorityQueue<Integer> heap = new PriorityQueue<>(fine + 1, ordine.reversed());
+        for (int i = 0; i < libriArray.length; i++) {
+            if (heap.size() < fine) {
+                heap.add(i);
+            } else if (ordine.compare(i, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        // Estrae gli elementi dal peggiore al migliore e tiene solo quelli della pagina
+        Libro[] primi = new Libro[fine];
+        for (int i = fine - 1; i >= 0; i--) {
+            primi[i] = libriArray[heap.poll()];
+        }
+
+        List<Libro> pagina = new ArrayList<>(fine - inizio);
+        for (int i = inizio; i < fine; i++) {
+            pagina.add(primi[i]);
+        }
+        return pagina;
+    }
+
+    /**
+     * Restituisce una pagina dell'intera collezione ordinata secondo la strategia specificata.
+     * L'ordinamento completo viene memorizzato per ogni strategia e riutilizzato finché
+     * la collezione non cambia; le singole aggiunte, modifiche ed eliminazioni aggiornano
+     * gli ordinamenti memorizzati in O(log n) invece di scartarli.
+     * La stessa istanza di strategia deve essere riutilizzata per sfruttare la cache.
+     *
+     * @param strategy Strategia di ordinamento da applicare (null per l'ordine di inserimento)
+     * @param offset Numero di libri da saltare all'inizio dell'ordinamento
+     * @param limite Numero massimo di libri da restituire
+     * @return Lista ordinata dei libri della pagina richiesta
+     * @throws IllegalArgumentException se offset o limite sono negativi
+     */
+    public List<Libro> getLibriOrdinati(OrdinatoreLibroStrategy strategy, int offset, int limite) {
+        if (offset < 0 || limite < 0) {
+            throw new IllegalArgumentException("Offset e limite non possono essere negativi.");
+        }
+
+        return leggi(() -> {
+            List<Libro> ordinati = libri;
+            if (strategy != null) {
+                VistaOrdinata vista = visteOrdinate.get(strategy);
+                if (vista == null || vista.versione != versione) {
+                    // Due letture concorrenti possono creare la stessa vista: ne resta una equivalente
+                    vista = new VistaOrdinata(strategy.getComparatore());
+                    visteOrdinate.put(strategy, vista);
+                }
+                ordinati = vista.libri;
+            }
+
+            int inizio = Math.min(offset, ordinati.size());
+            int fine = (int) Math.min((long) offset + limite, ordinati.size());
+            return new ArrayList<>(ordinati.subList(inizio, fine));
+        });
+    }
+
+    /**
+     * Ottiene la posizione di inserimento di un libro della collezione.
+     * A parità di criterio di ordinamento i libri sono ordinati per posizione di inserimento.
+     *
+     * @param isbn ISBN del libro
+     * @return Posizione di inserimento, o -1 se il libro non è presente
+     */
+    public long getSequenza(String isbn) {
+        return leggi(() -> sequenze.getOrDefault(isbn, -1L));
+    }
+
+    /**
+     * Registra un ascoltatore delle modifiche della collezione.
+     * Gli ascoltatori vengono notificati nel thread che ha eseguito la modifica,
+     * dopo che collezione, ordinamenti e indici sono stati aggiornati.
+     *
+     * @param ascoltatore Ascoltatore da registrare
+     */
+    public void aggiungiAscoltatore(Ascoltatore ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
+
+    /**
+     * Rimuove un ascoltatore registrato in precedenza.
+     *
+     * @param ascoltatore Ascoltatore da rimuovere
+     */
+    public void rimuoviAscoltatore(Ascoltatore ascoltatore) {
+        ascoltatori.remove(ascoltatore);
+    }
+
+    private void notifica(EventoLibreria evento) {
+        for (Ascoltatore ascoltatore : ascoltatori) {
+            ascoltatore.libreriaModificata(evento);
+        }
+    }
+
+    /**
+     * Ottiene la versione corrente della collezione.
+     * La versione cambia a ogni aggiunta, modifica, eliminazione o caricamento.
+     *
+     * @return Versione della collezione
+     */
+    public long getVersione() {
+        return versione;
+    }
+
+    /**
+     * Aggiorna gli ordinamenti memorizzati dopo una singola modifica della collezione.
+     * Gli ordinamenti non allineati con la versione precedente vengono scartati.
+     *
+     * @param rimosso Libro rimosso dalla collezione, o null
+     * @param inserito Libro inserito nella collezione, o null
+     */
+    private void aggiornaVisteOrdinate(Libro rimosso, Libro inserito) {
+        long versionePrecedente = versione++;
+
+        Iterator<VistaOrdinata> iteratore = visteOrdinate.values().iterator();
+        while (iteratore.hasNext()) {
+            VistaOrdinata vista = iteratore.next();
+            if (vista.versione != versionePrecedente) {
+                iteratore.remove();
+                continue;
+            }
+            if (rimosso != null) {
+                vista.rimuovi(rimosso);
+            }
+            if (inserito != null) {
+                vista.inserisci(inserito);
+            }
+            vista.versione = versione;
+        }
+    }
+
+    /**
+     * Invalida tutti gli ordinamenti memorizzati e riassegna l'ordine di inserimento.
+     * Usato dopo le operazioni che sostituiscono l'intera collezione.
+     * Gli indici di ricerca letti dal file degli indici sostituiscono quelli correnti;
+     * in loro assenza vengono ricostruiti analizzando ogni libro.
+     *
+     * @param letti Indici letti per la nuova collezione, o null
+     */
+    private void ricostruisciIndici(FileIndici.Indici letti) {
+        versione++;
+        visteOrdinate.clear();
+        sequenze.clear();
+        prossimaSequenza = 0;
+        if (letti != null) {
+            for (Libro libro : libri) {
+                sequenze.put(libro.getIsbn(), prossimaSequenza++);
+            }
+            indiceFuzzy = letti.getIndiceFuzzy();
+            indiceTestuale = letti.getIndiceTestuale();
+            indiceAutori.ricarica(letti.getIndiceAutori());
+            indiceGeneri.ricarica(letti.getIndiceGeneri());
+            return;
+        }
+
+        indiceFuzzy.pulisci();
+        indiceTestuale.pulisci();
+        List<String> autori = new ArrayList<>(libri.size());
+        List<String> generi = new ArrayList<>(libri.size());
+        for (Libro libro : libri) {
+            sequenze.put(libro.getIsbn(), prossimaSequenza++);
+            indiceFuzzy.aggiungi(libro);
+            indiceTestuale.aggiungi(libro);
+            autori.add(libro.getAutore());
+            generi.add(libro.getGenere());
+        }
+
+        // I dizionari vengono ricaricati in blocco: un solo ordinamento e una sola notifica
+        indiceAutori.ricarica(autori);
+        indiceGeneri.ricarica(generi);
+    }
+
+    /**
+     * Sostituisce l'intera collezione e ricostruisce indici e ordinamenti.
+     *
+     * @param nuoviLibri Nuovo contenuto della collezione
+     * @param indiciLetti Indici di ricerca già pronti per la nuova collezione, o null per costruirli
+     * @return Versione della collezione dopo la sostituzione
+     */
+    private long sostituisciCollezione(VettorePersistente<Libro> nuoviLibri, FileIndici.Indici indiciLetti) {
+        long versioneSostituita;
+        blocco.writeLock().lock();
+        try {
+            libri = nuoviLibri.compatta();
+            aggiornaCellePerIsbn();
+            ricostruisciIndici(indiciLetti);
+            indiciDaFile = indiciLetti != null;
+            versioneSostituita = versione;
+        } finally {
+            blocco.writeLock().unlock();
+        }
+        notifica(new EventoLibreria(EventoLibreria.Tipo.RICARICATO, null, null, -1));
+        return versioneSostituita;
+    }
+
+    /**
+     * Aggiunge un libro agli indici di ricerca e ai dizionari di autori e generi.
+     *
+     * @param libro Libro da indicizzare
+     */
+    private void indicizza(Libro libro) {
+        indiceFuzzy.aggiungi(libro);
+        indiceTestuale.aggiungi(libro);
+        indiceAutori.aggiungi(libro.getAutore());
+        indiceGeneri.aggiungi(libro.getGenere());
+    }
+
+    /**
+     * Rimuove un libro dagli indici di ricerca e dai dizionari di autori e generi.
+     *
+     * @param libro Libro da rimuovere, con i dati con cui è stato indicizzato
+     */
+    private void deindicizza(Libro libro) {
+        indiceFuzzy.rimuovi(libro);
+        indiceTestuale.rimuovi(libro);
+        indiceAutori.rimuovi(libro.getAutore());
+        indiceGeneri.rimuovi(libro.getGenere());
+    }
+
+    /**
+     * Ordinamento completo della collezione per una strategia.
+     * I libri equivalenti per la strategia sono ordinati per posizione di inserimento,
+     * così l'ordine coincide con quello di un ordinamento stabile della collezione
+     * e ogni libro ha una posizione univoca, trovata scendendo nell'albero ordinato.
+     */
+    private final class VistaOrdinata {
+        private final ListaOrdinata<Libro> libri;
+        private long versione;
+
+        private VistaOrdinata(Comparator<Libro> comparatoreStrategia) {
+            this.libri = new ListaOrdinata<>(
+                    comparatoreStrategia.thenComparing(libro -> sequenze.get(libro.getIsbn())),
+                    GestoreLibreria.this.libri);
+            this.versione = GestoreLibreria.this.versione;
+        }
+
+        private void inserisci(Libro libro) {
+            libri.inserisci(libro);
+        }
+
+        private void rimuovi(Libro libro) {
+            libri.rimuovi(libro);
+        }
+    }
+
+    /**
+     * Legge la nuova collezione da un file senza bloccare il gestore. I libri vengono
+     * inseriti nel vettore persistente man mano che il DAO li legge, senza passare da
+     * una lista intermedia; poi vengono applicate le modifiche registrate dal salvataggio
+     * automatico e non ancora riportate nel file.
+     *
+     * @param dao DAO del formato del file
+     * @param percorsoFile Percorso del file
+     * @return Collezione letta
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    private VettorePersistente<Libro> leggiCollezione(LibroDAO dao, String percorsoFile) throws IOException {
+        NuovaCollezione nuova = new NuovaCollezione();
+        dao.caricaLibri(percorsoFile, nuova::aggiungiOSostituisci);
+        new FileDelta(percorsoFile).applica(nuova::aggiungiOSostituisci, nuova::rimuovi);
+        return nuova.libri;
+    }
+
+    /**
+     * Sostituisce la collezione con i libri di un file. Se accanto al file c'è un file
+     * degli indici costruito dallo stesso contenuto (file principale e file delle modifiche),
+     * gli indici di ricerca vengono letti da lì; altrimenti vengono costruiti dai libri
+     * e scritti nel file degli indici per i caricamenti successivi.
+     *
+     * @param dao DAO del formato del file
+     * @param percorsoFile Percorso del file
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    private void caricaCollezione(LibroDAO dao, String percorsoFile) throws IOException {
+        String percorsoModifiche = percorsoFile + FileDelta.ESTENSIONE;
+        long impronta = FileIndici.impronta(percorsoFile, percorsoModifiche);
+        VettorePersistente<Libro> nuoviLibri = leggiCollezione(dao, percorsoFile);
+
+        FileIndici fileIndici = new FileIndici(percorsoFile);
+        FileIndici.Indici letti = fileIndici.leggi(impronta, new ArrayList<>(nuoviLibri));
+        long versioneCaricata = sostituisciCollezione(nuoviLibri, letti);
+        if (letti == null) {
+            scriviIndici(fileIndici, impronta, versioneCaricata, percorsoFile, percorsoModifiche);
+        }
+    }
+
+    /**
+     * Scrive il file degli indici appena costruiti, se la collezione non è cambiata dal
+     * caricamento e i file non sono cambiati durante la lettura. Le posizioni dei libri
+     * coincidono allora con l'ordine di inserimento. Un errore di scrittura non
+     * interrompe il caricamento: il file degli indici è solo un'ottimizzazione.
+     */
+    private void scriviIndici(FileIndici fileIndici, long impronta, long versioneCaricata, String... percorsi) {
+        try {
+            if (FileIndici.impronta(percorsi) != impronta) {
+                return;
+            }
+            blocco.readLock().lock();
+            try {
+                if (versione == versioneCaricata) {
+                    fileIndici.scrivi(impronta, libri.size(), libro -> sequenze.get(libro.getIsbn()).intValue(),
+                            new FileIndici.Indici(indiceFuzzy, indiceTestuale, indiceAutori, indiceGeneri));
+                }
+            } finally {
+                blocco.readLock().unlock();
+            }
+        } catch (IOException e) {
+            System.err.println("Impossibile scrivere il file degli indici: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica se gli indici di ricerca dell'ultimo caricamento sono stati letti dal file
+     * degli indici invece di essere costruiti dai libri.
+     *
+     * @return true se gli indici sono stati letti dal file
+     */
+    public boolean isIndiciLettiDaFile() {
+        return indiciDaFile;
+    }
+
+    /**
+     * Carica libri da un file JSON, applicando le modifiche del salvataggio automatico
+     * registrate nel file delle modifiche, se presente.
      *
      * @param percorsoFile Percorso del file JSON
      * @throws IOException In caso di errori durante la lettura del file
      */
     public void caricaLibriDaJson(String percorsoFile) throws IOException {
-        libri = jsonDAO.caricaLibri(percorsoFile);
+        caricaCollezione(jsonDAO, percorsoFile);
     }
 
     /**
@@ -181,17 +831,19 @@ public class GestoreLibreria {
      * @throws IOException In caso di errori durante la scrittura del file
      */
     public void salvaLibriInJson(String percorsoFile) throws IOException {
-        jsonDAO.salvaLibri(libri, percorsoFile);
+        // Il file viene scritto da un'istantanea, senza bloccare le modifiche durante la scrittura
+        jsonDAO.salvaLibri(getIstantanea(), percorsoFile);
     }
 
     /**
-     * Carica libri da un file CSV.
+     * Carica libri da un file CSV, applicando le modifiche del salvataggio automatico
+     * registrate nel file delle modifiche, se presente.
      *
      * @param percorsoFile Percorso del file CSV
      * @throws IOException In caso di errori durante la lettura del file
      */
     public void caricaLibriDaCsv(String percorsoFile) throws IOException {
-        libri = csvDAO.caricaLibri(percorsoFile);
+        caricaCollezione(csvDAO, percorsoFile);
     }
 
     /**
@@ -201,33 +853,429 @@ public class GestoreLibreria {
      * @throws IOException In caso di errori durante la scrittura del file
      */
     public void salvaLibriInCsv(String percorsoFile) throws IOException {
-        csvDAO.salvaLibri(libri, percorsoFile);
+        // Il file viene scritto da un'istantanea, senza bloccare le modifiche durante la scrittura
+        csvDAO.salvaLibri(getIstantanea(), percorsoFile);
+    }
+
+    /**
+     * Salva i libri in un file in un thread dedicato, senza attendere la scrittura.
+     * La collezione viene letta all'inizio della scrittura; il file esistente viene
+     * sostituito solo a scrittura completata. Le richieste per lo stesso file fatte mentre
+     * un salvataggio è in corso vengono riunite in un'unica scrittura successiva.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV)
+     * @param avanzamento Destinatario dell'avanzamento, chiamato nel thread dei salvataggi
+     * @return Risultato del salvataggio: il numero di libri scritti, o l'errore di scrittura
+     */
+    public CompletableFuture<Integer> salvaLibriInBackground(String percorsoFile, String formato,
+                                                             LibroDAO.Avanzamento avanzamento) {
+        return salvataggi.salva(percorsoFile, formato, avanzamento);
+    }
+
+    /**
+     * Salva i libri in un file nel formato indicato, nel thread chiamante.
+     * La collezione viene letta all'inizio della scrittura.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON, CSV, DB o LSM)
+     * @param avanzamento Destinatario dell'avanzamento
+     * @return Numero di libri scritti
+     * @throws IOException In caso di errori durante la scrittura o di formato non supportato
+     */
+    public int salvaLibri(String percorsoFile, String formato, LibroDAO.Avanzamento avanzamento)
+            throws IOException {
+        List<Libro> istantanea = getIstantanea();
+        getDao(formato).salvaLibri(istantanea, percorsoFile, avanzamento);
+        return istantanea.size();
+    }
+
+    /**
+     * Importa i libri di un file aggiungendoli alla collezione, senza sostituirla.
+     * I libri validi vengono aggiunti a blocchi man mano che il file viene letto, quindi
+     * un errore a metà file non annulla quelli già importati. I libri non validi, duplicati
+     * nel file o con un ISBN già presente nella collezione vengono scartati e copiati nel
+     * file degli scarti, nello stesso formato: corretto, quel file può essere importato
+     * a sua volta e l'importazione riprende solo gli scarti.
+     *
+     * @param percorsoFile Percorso del file da importare
+     * @param formato Formato del file (JSON, CSV, DB o LSM)
+     * @param percorsoScarti Percorso del file degli scarti, riscritto a ogni importazione
+     *                       ed eliminato se non ci sono scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori di lettura o scrittura, o di formato non supportato
+     */
+    public RapportoImportazione importaLibri(String percorsoFile, String formato, String percorsoScarti)
+            throws IOException {
+        return getDao(formato).importaLibri(percorsoFile, this::aggiungiLotto, LOTTO_IMPORTAZIONE,
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA, percorsoScarti);
+    }
+
+    /**
+     * Aggiunge alla collezione un blocco di libri con un solo blocco in scrittura e una
+     * sola notifica. Gli ordinamenti memorizzati vengono scartati invece di inserire
+     * ogni libro. Gli ISBN già presenti sono controllati sotto il blocco, quindi un libro
+     * aggiunto nel frattempo da un altro thread viene mantenuto e quello del lotto
+     * viene restituito al DAO come scarto.
+     *
+     * @param lotto Libri da aggiungere, con ISBN distinti
+     * @return Libri del lotto non aggiunti perché già presenti
+     */
+    private List<Libro> aggiungiLotto(List<Libro> lotto) {
+        List<Libro> presenti = new ArrayList<>();
+        blocco.writeLock().lock();
+        try {
+            for (Libro libro : lotto) {
+                if (cellePerIsbn.containsKey(libro.getIsbn())) {
+                    presenti.add(libro);
+                } else {
+                    scriviInBlocco(libro);
+                }
+            }
+            if (presenti.size() == lotto.size()) {
+                return presenti;
+            }
+            concludiModificaInBlocco();
+        } finally {
+            blocco.writeLock().unlock();
+        }
+        notifica(new EventoLibreria(EventoLibreria.Tipo.RICARICATO, null, null, -1));
+        return presenti;
+    }
+
+    /**
+     * Confronta per ISBN i libri di un file con la collezione, senza modificarla.
+     * Il file viene letto un libro alla volta e ogni libro viene cercato nella tabella
+     * degli ISBN: in memoria restano solo i libri nuovi o da aggiornare. Con la politica
+     * ERRORE la lettura si ferma al primo libro già presente con dati diversi; in ogni
+     * caso un libro non valido rende il file non unibile.
+     *
+     * @param percorsoFile Percorso del file da unire
+     * @param formato Formato del file (JSON, CSV, DB o LSM)
+     * @param politica Comportamento per i libri già presenti con dati diversi
+     * @return Unione da applicare con applicaUnione
+     * @throws IOException In caso di errori di lettura, libri non validi o conflitti con la politica ERRORE
+     */
+    public UnioneLibri preparaUnione(String percorsoFile, String formato, UnioneLibri.Politica politica)
+            throws IOException {
+        UnioneLibri unione = new UnioneLibri(percorsoFile, politica);
+        RapportoImportazione rapporto = getDao(formato).importaLibri(percorsoFile,
+                libro -> unione.confronta(libro, getLibroPerIsbn(libro.getIsbn())),
+                RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE, null);
+        if (unione.getConflitto() != null) {
+            throw new IOException("Impossibile unire il file: " + unione.getConflitto());
+        }
+        if (rapporto.haErrori()) {
+            throw new IOException(rapporto.getMessaggio());
+        }
+        return unione;
+    }
+
+    /**
+     * Ordina i libri di un file secondo una strategia e li salva in un altro file, senza
+     * caricarli nella libreria: i file più grandi della memoria vengono ordinati a blocchi
+     * su disco. I libri equivalenti per la strategia restano nell'ordine del file.
+     *
+     * @param percorsoSorgente Percorso del file da ordinare
+     * @param formatoSorgente Formato del file da ordinare (JSON, CSV, DB o LSM)
+     * @param strategia Strategia di ordinamento
+     * @param percorsoDestinazione Percorso del file ordinato
+     * @param formatoDestinazione Formato del file ordinato (JSON, CSV, DB o LSM)
+     * @param avanzamento Destinatario dell'avanzamento della scrittura
+     * @throws IOException In caso di formato non supportato, errori di lettura o di scrittura
+     */
+    public void ordinaFile(String percorsoSorgente, String formatoSorgente, OrdinatoreLibroStrategy strategia,
+                           String percorsoDestinazione, String formatoDestinazione,
+                           LibroDAO.Avanzamento avanzamento) throws IOException {
+        new OrdinamentoEsterno(strategia).ordina(getDao(formatoSorgente), percorsoSorgente,
+                getDao(formatoDestinazione), percorsoDestinazione, avanzamento);
+    }
+
+    /**
+     * Apre un catalogo su file in sola lettura senza caricarlo nella libreria: il file viene
+     * scorso una volta per indicizzare i libri, convertiti solo quando vengono letti.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV non compressi, DB o LSM)
+     * @return Catalogo del file, da chiudere dopo l'uso
+     * @throws IOException In caso di formato non supportato o errori di lettura
+     */
+    public CatalogoIndicizzato apriCatalogo(String percorsoFile, String formato) throws IOException {
+        LibroDAO dao = getDao(formato);
+        try {
+            return dao.indicizzaLibri(percorsoFile);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Il formato " + formato + " non può essere aperto senza caricarlo", e);
+        }
+    }
+
+    /**
+     * Confronta due cataloghi su file senza caricarli nella libreria e scrive le modifiche
+     * che trasformano il primo nel secondo, applicabili poi con preparaModifiche.
+     *
+     * @param percorsoPrecedente Percorso del catalogo precedente
+     * @param formatoPrecedente Formato del catalogo precedente (JSON, CSV, DB o LSM)
+     * @param percorsoNuovo Percorso del catalogo nuovo
+     * @param formatoNuovo Formato del catalogo nuovo (JSON, CSV, DB o LSM)
+     * @param percorsoModifiche Percorso del file delle modifiche (.csv o .json, eventualmente .gz)
+     * @return Esito del confronto
+     * @throws IOException In caso di formato non supportato, errori di lettura o di scrittura
+     */
+    public ConfrontoCataloghi.Esito confrontaCataloghi(String percorsoPrecedente, String formatoPrecedente,
+                                                       String percorsoNuovo, String formatoNuovo,
+                                                       String percorsoModifiche) throws IOException {
+        return new ConfrontoCataloghi().confronta(getDao(formatoPrecedente), percorsoPrecedente,
+                getDao(formatoNuovo), percorsoNuovo, percorsoModifiche);
+    }
+
+    /**
+     * Prepara l'applicazione di un file delle modifiche prodotto da ConfrontoCataloghi:
+     * i libri aggiunti e modificati vengono scritti nella collezione, quelli rimossi eliminati.
+     * Le modifiche già presenti nella collezione risultano invariate.
+     *
+     * @param percorsoModifiche Percorso del file delle modifiche
+     * @return Unione da applicare con applicaUnione
+     * @throws IOException In caso di errori di lettura o di righe non valide
+     */
+    public UnioneLibri preparaModifiche(String percorsoModifiche) throws IOException {
+        UnioneLibri unione = new UnioneLibri(percorsoModifiche, UnioneLibri.Politica.AGGIORNA);
+        FileModifiche.leggi(percorsoModifiche, (operazione, libro) -> {
+            Libro presente = getLibroPerIsbn(libro.getIsbn());
+            if (operazione == FileModifiche.Operazione.RIMOSSO) {
+                unione.rimuovi(libro.getIsbn(), presente);
+            } else {
+                unione.confronta(libro, presente);
+            }
+        });
+        return unione;
+    }
+
+    /**
+     * Applica un'unione con un solo blocco in scrittura e una sola notifica, ricordando
+     * i dati precedenti dei libri scritti e rimossi. I libri modificati dopo la preparazione
+     * dell'unione vengono comunque sostituiti da quelli del file.
+     *
+     * @param unione Unione preparata con preparaUnione o preparaModifiche
+     */
+    public void applicaUnione(UnioneLibri unione) {
+        List<Libro> daScrivere = unione.getDaScrivere();
+        List<Libro> precedenti = new ArrayList<>(daScrivere.size());
+        List<Libro> rimossi = new ArrayList<>(unione.getDaRimuovere().size());
+        blocco.writeLock().lock();
+        try {
+            for (Libro libro : daScrivere) {
+                precedenti.add(scriviInBlocco(libro));
+            }
+            for (String isbn : unione.getDaRimuovere()) {
+                Libro rimosso = rimuoviInBlocco(isbn);
+                if (rimosso != null) {
+                    rimossi.add(rimosso);
+                }
+            }
+            compattaSeNecessario();
+            concludiModificaInBlocco();
+        } finally {
+            blocco.writeLock().unlock();
+        }
+        unione.setApplicata(precedenti, rimossi);
+        notifica(new EventoLibreria(EventoLibreria.Tipo.RICARICATO, null, null, -1));
+    }
+
+    /**
+     * Annulla un'unione applicata: i libri rimossi vengono aggiunti di nuovo, quelli
+     * aggiunti rimossi e quelli aggiornati riprendono i dati precedenti.
+     *
+     * @param unione Unione applicata con applicaUnione
+     */
+    public void annullaUnione(UnioneLibri unione) {
+        List<Libro> daScrivere = unione.getDaScrivere();
+        List<Libro> precedenti = unione.getPrecedenti();
+        if (precedenti == null) {
+            return;
+        }
+        blocco.writeLock().lock();
+        try {
+            for (Libro rimosso : unione.getLibriRimossi()) {
+                scriviInBlocco(rimosso);
+            }
+            for (int i = daScrivere.size() - 1; i >= 0; i--) {
+                if (precedenti.get(i) != null) {
+                    scriviInBlocco(precedenti.get(i));
+                } else {
+                    rimuoviInBlocco(daScrivere.get(i).getIsbn());
+                }
+            }
+            compattaSeNecessario();
+            concludiModificaInBlocco();
+        } finally {
+            blocco.writeLock().unlock();
+        }
+        unione.setApplicata(null, null);
+        notifica(new EventoLibreria(EventoLibreria.Tipo.RICARICATO, null, null, -1));
+    }
+
+    /**
+     * Aggiunge un libro o sostituisce quello con lo stesso ISBN, aggiornando gli indici
+     * ma non gli ordinamenti. Va chiamato con il blocco in scrittura, all'interno di una
+     * modifica in blocco conclusa da concludiModificaInBlocco().
+     *
+     * @param libro Libro da scrivere
+     * @return Libro sostituito, o null se il libro è stato aggiunto
+     */
+    private Libro scriviInBlocco(Libro libro) {
+        Integer cella = cellePerIsbn.get(libro.getIsbn());
+        if (cella == null) {
+            cellePerIsbn.put(libro.getIsbn(), libri.getCelle());
+            libri = libri.aggiungi(libro);
+            sequenze.put(libro.getIsbn(), prossimaSequenza++);
+            indicizza(libro);
+            return null;
+        }
+        // Il libro sostituito mantiene la posizione di inserimento
+        Libro precedente = libri.getCella(cella);
+        libri = libri.sostituisci(cella, libro);
+        deindicizza(precedente);
+        indicizza(libro);
+        return precedente;
+    }
+
+    /**
+     * Rimuove il libro con l'ISBN indicato, aggiornando gli indici ma non gli ordinamenti.
+     * Va chiamato con il blocco in scrittura, come scriviInBlocco().
+     *
+     * @param isbn ISBN del libro da rimuovere
+     * @return Libro rimosso, o null se non era presente
+     */
+    private Libro rimuoviInBlocco(String isbn) {
+        Integer cella = cellePerIsbn.remove(isbn);
+        if (cella == null) {
+            return null;
+        }
+        Libro rimosso = libri.getCella(cella);
+        libri = libri.rimuovi(cella);
+        sequenze.remove(isbn);
+        deindicizza(rimosso);
+        return rimosso;
+    }
+
+    /**
+     * Conclude una modifica in blocco: gli ordinamenti memorizzati vengono scartati
+     * invece di essere aggiornati libro per libro.
+     */
+    private void concludiModificaInBlocco() {
+        versione++;
+        visteOrdinate.clear();
+    }
+
+    /**
+     * Ottiene il DAO di un formato di file.
+     *
+     * @param formato Formato del file (JSON, CSV, DB o LSM)
+     * @return DAO del formato
+     * @throws IOException Se il formato non è supportato
+     */
+    private LibroDAO getDao(String formato) throws IOException {
+        if ("JSON".equalsIgnoreCase(formato)) {
+            return jsonDAO;
+        } else if ("CSV".equalsIgnoreCase(formato)) {
+            return csvDAO;
+        } else if ("DB".equalsIgnoreCase(formato)) {
+            return archivioDAO;
+        } else if ("LSM".equalsIgnoreCase(formato)) {
+            return archivioLsmDAO;
+        }
+        throw new IOException("Formato non supportato: " + formato);
     }
 
     /**
      * Ottiene tutti i generi unici presenti nella collezione di libri.
      *
-     * @return Lista di generi unici
+     * @return Lista di generi unici in ordine alfabetico
      */
     public List<String> getGeneriUnici() {
-        return libri.stream()
-                .map(Libro::getGenere)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return leggi(() -> new ArrayList<>(indiceGeneri.getValori()));
     }
 
     /**
      * Ottiene tutti gli autori unici presenti nella collezione di libri.
      *
-     * @return Lista di autori unici
+     * @return Lista di autori unici in ordine alfabetico
      */
     public List<String> getAutoriUnici() {
-        return libri.stream()
-                .map(Libro::getAutore)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return leggi(() -> new ArrayList<>(indiceAutori.getValori()));
+    }
+
+    /**
+     * Suggerisce gli autori che iniziano con il prefisso indicato, per l'autocompletamento.
+     * Il costo è O(log n + limite), indipendente dal numero di autori.
+     *
+     * @param prefisso Prefisso digitato (senza distinzione tra maiuscole e minuscole)
+     * @param limite Numero massimo di suggerimenti
+     * @return Primi autori in ordine alfabetico che iniziano con il prefisso
+     */
+    public List<String> suggerisciAutori(String prefisso, int limite) {
+        return leggi(() -> indiceAutori.suggerisci(prefisso, limite));
+    }
+
+    /**
+     * Suggerisce i generi che iniziano con il prefisso indicato, per l'autocompletamento.
+     * Il costo è O(log n + limite), indipendente dal numero di generi.
+     *
+     * @param prefisso Prefisso digitato (senza distinzione tra maiuscole e minuscole)
+     * @param limite Numero massimo di suggerimenti
+     * @return Primi generi in ordine alfabetico che iniziano con il prefisso
+     */
+    public List<String> suggerisciGeneri(String prefisso, int limite) {
+        return leggi(() -> indiceGeneri.suggerisci(prefisso, limite));
+    }
+
+    /**
+     * Ottiene il dizionario ordinato degli autori, aggiornato a ogni modifica della collezione.
+     * I valori vengono letti sotto il blocco del gestore, quindi da qualsiasi thread;
+     * gli ascoltatori sono notificati nel thread che modifica la collezione, mentre il
+     * blocco è acquisito in scrittura.
+     *
+     * @return Dizionario degli autori
+     */
+    public Dizionario getDizionarioAutori() {
+        return dizionarioAutori;
+    }
+
+    /**
+     * Ottiene il dizionario ordinato dei generi, aggiornato a ogni modifica della collezione.
+     * I valori vengono letti sotto il blocco del gestore, quindi da qualsiasi thread;
+     * gli ascoltatori sono notificati nel thread che modifica la collezione, mentre il
+     * blocco è acquisito in scrittura.
+     *
+     * @return Dizionario dei generi
+     */
+    public Dizionario getDizionarioGeneri() {
+        return dizionarioGeneri;
+    }
+
+    /**
+     * Crea una vista di un dizionario del gestore che ne legge i valori sotto il blocco.
+     *
+     * @param indice Dizionario del gestore
+     * @return Vista del dizionario
+     */
+    private Dizionario dizionarioBloccato(IndiceFacet indice) {
+        return new Dizionario() {
+            @Override
+            public List<String> suggerisci(String prefisso, int limite) {
+                return leggi(() -> indice.suggerisci(prefisso, limite));
+            }
+
+            @Override
+            public void aggiungiAscoltatore(IndiceFacet.Ascoltatore ascoltatore) {
+                indice.aggiungiAscoltatore(ascoltatore);
+            }
+
+            @Override
+            public void rimuoviAscoltatore(IndiceFacet.Ascoltatore ascoltatore) {
+                indice.rimuoviAscoltatore(ascoltatore);
+            }
+        };
     }
 
     /**
@@ -235,6 +1283,63 @@ public class GestoreLibreria {
      * Questa operazione non può essere annullata.
      */
     public void pulisciLibreria() {
-        libri.clear();
+        sostituisciCollezione(VettorePersistente.vuoto(), null);
+    }
+
+    /**
+     * Ricerca per sottostringa memorizzata per essere raffinata dalla successiva.
+     * È immutabile, così può essere sostituita da letture concorrenti senza blocchi.
+     */
+    private static final class RicercaMemorizzata {
+        private final String campo;
+        private final String testo;
+        private final long versione;
+        private final List<Libro> risultato;
+
+        private RicercaMemorizzata(String campo, String testo, long versione, List<Libro> risultato) {
+            this.campo = campo;
+            this.testo = testo;
+            this.versione = versione;
+            this.risultato = risultato;
+        }
+    }
+
+    /**
+     * Ascoltatore delle modifiche della collezione.
+     */
+    public interface Ascoltatore {
+
+        /**
+         * Notifica una modifica della collezione.
+         *
+         * @param evento Descrizione della modifica
+         */
+        void libreriaModificata(EventoLibreria evento);
+    }
+
+    /**
+     * Collezione in costruzione durante un caricamento: i libri con un ISBN già letto
+     * sostituiscono quello precedente nella sua cella.
+     */
+    private static final class NuovaCollezione {
+        private VettorePersistente<Libro> libri = VettorePersistente.vuoto();
+        private final Map<String, Integer> celle = new HashMap<>();
+
+        private void aggiungiOSostituisci(Libro libro) {
+            Integer cella = celle.get(libro.getIsbn());
+            if (cella != null) {
+                libri = libri.sostituisci(cella, libro);
+            } else {
+                celle.put(libro.getIsbn(), libri.getCelle());
+                libri = libri.aggiungi(libro);
+            }
+        }
+
+        private void rimuovi(String isbn) {
+            Integer cella = celle.remove(isbn);
+            if (cella != null) {
+                libri = libri.rimuovi(cella);
+            }
+        }
     }
 }
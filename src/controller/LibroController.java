@@ -3,13 +3,28 @@ package controller;
 import model.Libro;
 import model.StatoLettura;
 import view.LibroView;
+import view.ModelloTabellaLibri;
 import strategy.*;
 import command.*;
+import indice.Dizionario;
+import dao.CatalogoIndicizzato;
+import dao.ConfrontoCataloghi;
+import dao.FileScarti;
+import dao.LibroDAO;
+import dao.RapportoImportazione;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.swing.*;
 
@@ -19,10 +34,35 @@ import javax.swing.*;
  */
 public class LibroController {
 
+    // Numero di righe caricate nella tabella per ogni pagina
+    private static final int DIMENSIONE_PAGINA = 200;
+
+    // Secondi tra due scritture del salvataggio automatico
+    private static final int INTERVALLO_SALVATAGGIO_AUTOMATICO = 5;
+
     private final GestoreLibreria gestoreLibreria;
     private final LibroView view;
     private final CommandManager commandManager;
 
+    // Strategie di ordinamento per voce della combo, riutilizzate per sfruttare la cache del gestore
+    private final Map<String, OrdinatoreLibroStrategy> strategieOrdinamento;
+
+    // Stato della ricerca visualizzata, usato per caricare le pagine successive
+    // (risultatoCorrente è null quando è visualizzata l'intera collezione)
+    private List<Libro> risultatoCorrente;
+    private OrdinatoreLibroStrategy strategiaCorrente;
+    private int righeCaricate;
+
+    // Testo e tipo della ricerca visualizzata, indipendenti da quanto digitato nel frattempo
+    private String testoCorrente;
+    private String tipoCorrente;
+
+    // Salvataggio automatico del file caricato o salvato per ultimo (null se non c'è un file)
+    private SalvataggioAutomatico salvataggioAutomatico;
+
+    // Salvataggi richiesti e non ancora terminati (usato solo nel thread della grafica)
+    private int salvataggiInCorso;
+
     /**
      * Costruttore che inizializza il controller con il gestore libreria e la vista.
      *
@@ -32,6 +72,21 @@ public class LibroController {
         this.gestoreLibreria = GestoreLibreria.getInstance();
         this.view = view;
         this.commandManager = new CommandManager();
+
+        this.strategieOrdinamento = new HashMap<>();
+        strategieOrdinamento.put("Titolo (A-Z)", new OrdinaTitoloAZStrategy());
+        strategieOrdinamento.put("Titolo (Z-A)", new OrdinaTitoloZAStrategy());
+        strategieOrdinamento.put("Autore (A-Z)", new OrdinaAutoreAZStrategy());
+        strategieOrdinamento.put("Autore (Z-A)", new OrdinaAutoreZAStrategy());
+        strategieOrdinamento.put("Valutazione (1-5)", new OrdinaValutazioneAscStrategy());
+        strategieOrdinamento.put("Valutazione (5-1)", new OrdinaValutazioneDescStrategy());
+        strategieOrdinamento.put("Autore (A-Z), Valutazione (5-1)",
+                OrdinaCompostoStrategy.daSpecifica("autore ASC, valutazione DESC, titolo ASC"));
+
+        // Senza vista non c'è nulla da aggiornare
+        if (view != null) {
+            gestoreLibreria.aggiungiAscoltatore(this::libreriaModificata);
+        }
     }
 
     /**
@@ -64,11 +119,8 @@ public class LibroController {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean aggiungiLibroInterno(Libro libro) {
-        boolean result = gestoreLibreria.aggiungiLibro(libro);
-        if (result) {
-            aggiornaTabella();
-        }
-        return result;
+        // La tabella viene aggiornata dalla notifica del gestore
+        return gestoreLibreria.aggiungiLibro(libro);
     }
 
     /**
@@ -111,11 +163,8 @@ public class LibroController {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean modificaLibroInterno(Libro vecchioLibro, Libro nuovoLibro) {
-        boolean result = gestoreLibreria.modificaLibro(vecchioLibro, nuovoLibro);
-        if (result) {
-            aggiornaTabella();
-        }
-        return result;
+        // La tabella viene aggiornata dalla notifica del gestore
+        return gestoreLibreria.modificaLibro(vecchioLibro, nuovoLibro);
     }
 
     /**
@@ -144,11 +193,8 @@ public class LibroController {
      * @return true se l'operazione è andata a buon fine, false altrimenti
      */
     public boolean eliminaLibroInterno(Libro libro) {
-        boolean result = gestoreLibreria.eliminaLibro(libro);
-        if (result) {
-            aggiornaTabella();
-        }
-        return result;
+        // La tabella viene aggiornata dalla notifica del gestore
+        return gestoreLibreria.eliminaLibro(libro);
     }
 
     /**
@@ -213,6 +259,9 @@ public class LibroController {
      * Aggiorna lo stato dei pulsanti undo/redo nella vista.
      */
     private void aggiornaStatoPulsanti() {
+        if (view == null) {
+            return;
+        }
         view.aggiornaStatoPulsantiUndoRedo(canUndo(), canRedo(),
                 getUndoDescription(), getRedoDescription());
     }
@@ -221,10 +270,8 @@ public class LibroController {
      * Carica la lista completa dei libri e aggiorna la vista.
      */
     public void caricaLibri() {
-        List<Libro> libri = gestoreLibreria.getLibri();
-        view.aggiornaTabella(libri);
-        view.aggiornaComboBoxGeneri(gestoreLibreria.getGeneriUnici());
-        view.aggiornaComboBoxAutori(gestoreLibreria.getAutoriUnici());
+        // La prima pagina viene caricata con i criteri correnti della vista
+        aggiornaTabella();
         // Inizializza lo stato dei pulsanti undo/redo
         aggiornaStatoPulsanti();
     }
@@ -233,13 +280,14 @@ public class LibroController {
      * Cerca libri in base ai criteri di ricerca specificati.
      *
      * @param testoCerca Testo di ricerca
-     * @param tipoCerca Tipo di ricerca (titolo, autore, isbn)
+     * @param tipoCerca Tipo di ricerca (titolo, autore, isbn, approssimata, tutti i campi)
+     * @return Lista dei libri trovati e filtrati, non ordinata
      */
     private List<Libro> cercaLibri(String testoCerca, String tipoCerca) {
         List<Libro> risultato;
 
         if (testoCerca == null || testoCerca.trim().isEmpty()) {
-            risultato = gestoreLibreria.getLibri();
+            risultato = gestoreLibreria.getIstantanea();
         } else {
             switch (tipoCerca) {
                 case "Titolo":
@@ -251,18 +299,19 @@ public class LibroController {
                 case "ISBN":
                     risultato = gestoreLibreria.cercaPerIsbn(testoCerca);
                     break;
+                case "Titolo/Autore (approssimata)":
+                    risultato = gestoreLibreria.cercaApprossimata(testoCerca);
+                    break;
+                case "Tutti i campi":
+                    risultato = gestoreLibreria.cercaInTuttiICampi(testoCerca);
+                    break;
                 default:
-                    risultato = gestoreLibreria.getLibri();
+                    risultato = gestoreLibreria.getIstantanea();
             }
         }
 
         // Applica i filtri selezionati
-        risultato = applicaFiltri(risultato);
-
-        // Applica l'ordinamento selezionato
-        risultato = applicaOrdinamento(risultato);
-
-        return risultato;
+        return applicaFiltri(risultato);
     }
 
     /**
@@ -277,17 +326,17 @@ public class LibroController {
 
         // Filtro per genere
         String genereSelezionato = view.getGenereSelezionato();
-        if (genereSelezionato != null && !genereSelezionato.equals("Tutti")) {
+        if (!isNessunFiltro(genereSelezionato)) {
             libri = libri.stream()
-                    .filter(libro -> libro.getGenere().equalsIgnoreCase(genereSelezionato))
+                    .filter(libro -> libro.getGenere().equalsIgnoreCase(genereSelezionato.trim()))
                     .collect(Collectors.toList());
         }
 
         // Filtro per autore
         String autoreSelezionato = view.getAutoreSelezionato();
-        if (autoreSelezionato != null && !autoreSelezionato.equals("Tutti")) {
+        if (!isNessunFiltro(autoreSelezionato)) {
             libri = libri.stream()
-                    .filter(libro -> libro.getAutore().toLowerCase().contains(autoreSelezionato.toLowerCase()))
+                    .filter(libro -> libro.getAutore().toLowerCase().contains(autoreSelezionato.trim().toLowerCase()))
                     .collect(Collectors.toList());
         }
 
@@ -317,89 +366,374 @@ public class LibroController {
     }
 
     /**
-     * Applica l'ordinamento selezionato nella vista a una lista di libri.
+     * Restituisce la strategia corrispondente all'ordinamento selezionato nella vista.
      *
-     * @param libri Lista di libri da ordinare
-     * @return Lista ordinata di libri
+     * @return Strategia di ordinamento, o null se non è selezionato alcun ordinamento
      */
-    private List<Libro> applicaOrdinamento(List<Libro> libri) {
+    private OrdinatoreLibroStrategy getStrategiaSelezionata() {
         String ordinamentoSelezionato = view.getOrdinamentoSelezionato();
-        if (ordinamentoSelezionato != null) {
-            OrdinatoreLibroStrategy strategy = null;
+        if (ordinamentoSelezionato == null) {
+            return null;
+        }
+        // "Predefinito" non ha una strategia associata
+        return strategieOrdinamento.get(ordinamentoSelezionato);
+    }
 
-            switch (ordinamentoSelezionato) {
-                case "Titolo (A-Z)":
-                    strategy = new OrdinaTitoloAZStrategy();
-                    break;
-                case "Titolo (Z-A)":
-                    strategy = new OrdinaTitoloZAStrategy();
-                    break;
-                case "Autore (A-Z)":
-                    strategy = new OrdinaAutoreAZStrategy();
-                    break;
-                case "Autore (Z-A)":
-                    strategy = new OrdinaAutoreZAStrategy();
-                    break;
-                case "Valutazione (1-5)":
-                    strategy = new OrdinaValutazioneAscStrategy();
-                    break;
-                case "Valutazione (5-1)":
-                    strategy = new OrdinaValutazioneDescStrategy();
-                    break;
-                default:
-                    // Nessun ordinamento selezionato
-                    break;
+    /**
+     * Verifica se la vista mostra l'intera collezione, senza ricerca né filtri attivi.
+     *
+     * @return true se non ci sono ricerche o filtri attivi, false altrimenti
+     */
+    private boolean isCollezioneCompleta() {
+        String testoCerca = view.getCampoCerca();
+        return (testoCerca == null || testoCerca.trim().isEmpty())
+                && isNessunFiltro(view.getGenereSelezionato())
+                && isNessunFiltro(view.getAutoreSelezionato())
+                && isNessunFiltro(view.getStatoLetturaSelezionato())
+                && view.getValutazioneSelezionata() < 0;
+    }
+
+    /**
+     * Verifica se il valore di una combo di filtro corrisponde a nessun filtro.
+     *
+     * @param valore Valore selezionato nella combo
+     * @return true se il filtro non è attivo (nessun valore, vuoto o "Tutti"), false altrimenti
+     */
+    private boolean isNessunFiltro(String valore) {
+        return valore == null || valore.trim().isEmpty() || valore.equals("Tutti");
+    }
+
+    /**
+     * Aggiorna la tabella nella vista con la lista filtrata e ordinata.
+     * Viene ordinata e visualizzata solo la prima pagina di risultati;
+     * le successive sono caricate su richiesta con caricaPaginaSuccessiva().
+     * Le combo di filtro per genere e autore non vanno aggiornate: seguono da sole
+     * i dizionari del gestore.
+     */
+    public void aggiornaTabella() {
+        aggiornaRicerca();
+    }
+
+    /**
+     * Ottiene il dizionario degli autori su cui la vista costruisce la combo di filtro.
+     * La combo si aggiorna da sola a ogni modifica della collezione.
+     *
+     * @return Dizionario ordinato degli autori
+     */
+    public Dizionario getDizionarioAutori() {
+        return gestoreLibreria.getDizionarioAutori();
+    }
+
+    /**
+     * Ottiene il dizionario dei generi su cui la vista costruisce la combo di filtro.
+     * La combo si aggiorna da sola a ogni modifica della collezione.
+     *
+     * @return Dizionario ordinato dei generi
+     */
+    public Dizionario getDizionarioGeneri() {
+        return gestoreLibreria.getDizionarioGeneri();
+    }
+
+    /**
+     * Aggiorna solo le righe della tabella secondo la ricerca, i filtri e l'ordinamento correnti.
+     * Usato dalla ricerca durante la digitazione, che non modifica i valori delle combo di filtro.
+     */
+    public void aggiornaRicerca() {
+        strategiaCorrente = getStrategiaSelezionata();
+        testoCorrente = view.getCampoCerca();
+        tipoCorrente = view.getCampoTipoCerca();
+
+        // Senza ricerca né filtri si usa l'ordinamento memorizzato dal gestore,
+        // altrimenti si cercano e filtrano i libri e si ordina solo la prima pagina
+        if (isCollezioneCompleta()) {
+            risultatoCorrente = null;
+        } else {
+            risultatoCorrente = cercaLibri(testoCorrente, tipoCorrente);
+        }
+        List<Libro> pagina = caricaPagina(0);
+        righeCaricate = pagina.size();
+
+        // Aggiorna la tabella nella vista
+        view.aggiornaTabella(pagina);
+    }
+
+    /**
+     * Aggiorna la tabella dopo una modifica della collezione notificata dal gestore.
+     * Per la modifica di un singolo libro vengono rimosse, inserite o aggiornate solo
+     * le righe che lo riguardano, trovate con una ricerca binaria nell'ordine visualizzato;
+     * le altre modifiche, e le ricerche ordinate per rilevanza, ricaricano la tabella.
+     *
+     * @param evento Modifica della collezione
+     */
+    private void libreriaModificata(EventoLibreria evento) {
+        // Le modifiche eseguite da altri thread ricaricano la tabella nel thread della grafica
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::aggiornaTabella);
+            return;
+        }
+
+        if (evento.getTipo() == EventoLibreria.Tipo.RICARICATO || isOrdinatoPerRilevanza()) {
+            aggiornaTabella();
+            return;
+        }
+
+        ModelloTabellaLibri modello = view.getModelloTabella();
+        Comparator<Libro> ordine = getOrdineVisualizzato(evento);
+
+        // Riga del libro prima della modifica, se era tra quelle caricate
+        int rigaPrecedente = -1;
+        Libro precedente = evento.getLibroPrecedente();
+        if (precedente != null && corrispondeARicerca(precedente)) {
+            if (risultatoCorrente != null) {
+                int posizione = Collections.binarySearch(risultatoCorrente, precedente, ordinePerSequenza(evento));
+                if (posizione >= 0) {
+                    risultatoCorrente.remove(posizione);
+                }
             }
+            rigaPrecedente = modello.cerca(precedente, ordine);
+        }
 
-            if (strategy != null) {
-                libri = gestoreLibreria.ordinaLibri(libri, strategy);
+        Libro libro = evento.getLibro();
+        boolean visibile = libro != null && corrispondeARicerca(libro);
+        if (visibile && risultatoCorrente != null) {
+            int posizione = Collections.binarySearch(risultatoCorrente, libro, ordinePerSequenza(evento));
+            risultatoCorrente.add(-posizione - 1, libro);
+        }
+
+        // Il libro resta nella stessa riga: basta ridisegnarla
+        if (rigaPrecedente >= 0 && visibile) {
+            int riga = posizioneInTabella(modello, libro, ordine, rigaPrecedente);
+            if (riga == rigaPrecedente) {
+                modello.aggiorna(riga, libro);
+                return;
             }
         }
 
-        return libri;
+        if (rigaPrecedente >= 0) {
+            modello.rimuovi(rigaPrecedente);
+            righeCaricate--;
+        }
+
+        if (visibile) {
+            int riga = -modello.cerca(libro, ordine) - 1;
+            // Oltre le righe caricate il libro comparirà con le pagine successive
+            if (riga < modello.getRowCount() || modello.getRowCount() == getNumeroRisultati() - 1) {
+                modello.inserisci(riga, libro);
+                righeCaricate++;
+            }
+        }
     }
 
     /**
-     * Aggiorna la tabella nella vista con la lista filtrata e ordinata.
+     * Calcola la riga che il libro modificato occuperebbe se la sua riga precedente fosse rimossa.
+     *
+     * @param modello Modello della tabella
+     * @param libro Libro modificato
+     * @param ordine Ordine delle righe
+     * @param rigaPrecedente Riga attuale del libro
+     * @return Riga del libro dopo la modifica
      */
-    public void aggiornaTabella() {
-        // Ottiene la lista dei libri
-        List<Libro> libri = gestoreLibreria.getLibri();
+    private int posizioneInTabella(ModelloTabellaLibri modello, Libro libro, Comparator<Libro> ordine,
+                                   int rigaPrecedente) {
+        int puntoInserimento = -modello.cerca(libro, ordine) - 1;
+        if (puntoInserimento < 0) {
+            // Il confronto con la riga precedente (stesso ISBN) dà uguaglianza
+            return rigaPrecedente;
+        }
+        return puntoInserimento > rigaPrecedente ? puntoInserimento - 1 : puntoInserimento;
+    }
+
+    /**
+     * Numero totale di libri della ricerca visualizzata, caricati o no.
+     *
+     * @return Numero di risultati
+     */
+    private int getNumeroRisultati() {
+        return risultatoCorrente == null ? gestoreLibreria.getNumeroLibri() : risultatoCorrente.size();
+    }
+
+    /**
+     * Verifica se la ricerca visualizzata è ordinata per rilevanza.
+     * In questo caso una singola modifica può cambiare il punteggio di tutti i risultati.
+     *
+     * @return true se i risultati sono ordinati per rilevanza, false altrimenti
+     */
+    private boolean isOrdinatoPerRilevanza() {
+        if (risultatoCorrente == null || testoCorrente == null || testoCorrente.trim().isEmpty()) {
+            return false;
+        }
+        return !"Titolo".equals(tipoCorrente) && !"Autore".equals(tipoCorrente) && !"ISBN".equals(tipoCorrente);
+    }
+
+    /**
+     * Verifica se un libro soddisfa la ricerca e i filtri visualizzati.
+     * Equivale a cercaLibri() su una collezione formata dal solo libro.
+     *
+     * @param libro Libro da verificare
+     * @return true se il libro fa parte dei risultati, false altrimenti
+     */
+    private boolean corrispondeARicerca(Libro libro) {
+        if (risultatoCorrente == null) {
+            return true;
+        }
 
-        libri = cercaLibri(view.getCampoCerca(), view.getCampoTipoCerca());
+        if (testoCorrente != null && !testoCorrente.trim().isEmpty()) {
+            String campo;
+            switch (tipoCorrente) {
+                case "Titolo":
+                    campo = libro.getTitolo();
+                    break;
+                case "Autore":
+                    campo = libro.getAutore();
+                    break;
+                case "ISBN":
+                    campo = libro.getIsbn();
+                    break;
+                default:
+                    campo = null;
+            }
+            if (campo != null && !campo.toLowerCase().contains(testoCorrente.toLowerCase())) {
+                return false;
+            }
+        }
+        return !applicaFiltri(Collections.singletonList(libro)).isEmpty();
+    }
 
-        // Applica i filtri
-        libri = applicaFiltri(libri);
+    /**
+     * Ordine delle righe visualizzate: quello della strategia corrente e, a parità,
+     * la posizione di inserimento, come negli ordinamenti del gestore.
+     *
+     * @param evento Modifica in corso, per la posizione del libro che non è più nella collezione
+     * @return Ordine delle righe
+     */
+    private Comparator<Libro> getOrdineVisualizzato(EventoLibreria evento) {
+        Comparator<Libro> perSequenza = ordinePerSequenza(evento);
+        return strategiaCorrente == null ? perSequenza : strategiaCorrente.getComparatore().thenComparing(perSequenza);
+    }
 
-        // Applica l'ordinamento
-        libri = applicaOrdinamento(libri);
+    private Comparator<Libro> ordinePerSequenza(EventoLibreria evento) {
+        return Comparator.comparingLong(libro -> evento.riguarda(libro)
+                ? evento.getSequenza() : gestoreLibreria.getSequenza(libro.getIsbn()));
+    }
 
-        // Aggiorna la tabella nella vista
-        view.aggiornaTabella(libri);
+    /**
+     * Aggiunge alla tabella la pagina successiva della ricerca visualizzata.
+     * Chiamato dalla vista quando l'utente scorre verso il fondo della tabella.
+     */
+    public void caricaPaginaSuccessiva() {
+        List<Libro> pagina = caricaPagina(righeCaricate);
+        if (!pagina.isEmpty()) {
+            righeCaricate += pagina.size();
+            view.aggiungiRigheTabella(pagina);
+        }
+    }
 
-        // Aggiorna le combo box di filtro
-        view.aggiornaComboBoxGeneri(gestoreLibreria.getGeneriUnici());
-        view.aggiornaComboBoxAutori(gestoreLibreria.getAutoriUnici());
+    /**
+     * Calcola una pagina della ricerca visualizzata a partire dalla posizione indicata.
+     *
+     * @param offset Posizione del primo libro della pagina
+     * @return Libri della pagina, ordinati secondo la strategia corrente
+     */
+    private List<Libro> caricaPagina(int offset) {
+        if (risultatoCorrente == null) {
+            return gestoreLibreria.getLibriOrdinati(strategiaCorrente, offset, DIMENSIONE_PAGINA);
+        }
+        return gestoreLibreria.ordinaLibri(risultatoCorrente, strategiaCorrente, offset, DIMENSIONE_PAGINA);
     }
 
     /**
      * Salva la libreria nel formato specificato.
+     * La scrittura avviene in un thread dedicato: la vista mostra l'avanzamento e
+     * il messaggio finale compare quando tutti i salvataggi richiesti sono terminati.
      *
      * @param percorsoFile Percorso del file
      * @param formato Formato del file (JSON o CSV)
      */
     public void salvaLibreria(String percorsoFile, String formato) {
-        try {
-            if ("JSON".equalsIgnoreCase(formato)) {
-                gestoreLibreria.salvaLibriInJson(percorsoFile);
-            } else if ("CSV".equalsIgnoreCase(formato)) {
-                gestoreLibreria.salvaLibriInCsv(percorsoFile);
-            }
+        salvataggiInCorso++;
+        if (view != null) {
+            view.mostraAvanzamentoSalvataggio(0, gestoreLibreria.getNumeroLibri());
+        }
+
+        avviaSalvataggio(percorsoFile, formato)
+                .whenComplete((scritti, errore) ->
+                        SwingUtilities.invokeLater(() -> salvataggioTerminato(percorsoFile, errore)));
+    }
+
+    /**
+     * Avvia la scrittura completa del file. Con la vista, il file diventa quello del
+     * salvataggio automatico e la scrittura ne riunisce le modifiche registrate.
+     */
+    private CompletableFuture<Integer> avviaSalvataggio(String percorsoFile, String formato) {
+        if (view == null) {
+            return gestoreLibreria.salvaLibriInBackground(percorsoFile, formato, this::avanzamentoSalvataggio);
+        }
+        attivaSalvataggioAutomatico(percorsoFile, formato);
+        return salvataggioAutomatico.unisci(this::avanzamentoSalvataggio);
+    }
+
+    /**
+     * Associa il salvataggio automatico al file indicato, se non lo è già.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV)
+     */
+    private void attivaSalvataggioAutomatico(String percorsoFile, String formato) {
+        if (salvataggioAutomatico != null
+                && salvataggioAutomatico.getPercorsoFile().equals(percorsoFile)
+                && salvataggioAutomatico.getFormato().equalsIgnoreCase(formato)) {
+            return;
+        }
+        fermaSalvataggioAutomatico();
+        salvataggioAutomatico = new SalvataggioAutomatico(gestoreLibreria, percorsoFile, formato);
+        salvataggioAutomatico.avvia(INTERVALLO_SALVATAGGIO_AUTOMATICO, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Scrive le modifiche in sospeso nel file corrente e interrompe il salvataggio automatico.
+     */
+    private void fermaSalvataggioAutomatico() {
+        if (salvataggioAutomatico != null) {
+            salvataggioAutomatico.ferma();
+            salvataggioAutomatico = null;
+        }
+    }
+
+    /**
+     * Da chiamare alla chiusura dell'applicazione: scrive le modifiche non ancora salvate.
+     */
+    public void chiudi() {
+        fermaSalvataggioAutomatico();
+    }
+
+    /**
+     * Riporta l'avanzamento del salvataggio nella vista, dal thread dei salvataggi.
+     */
+    private void avanzamentoSalvataggio(int scritti, int totale) {
+        if (view != null) {
+            SwingUtilities.invokeLater(() -> view.mostraAvanzamentoSalvataggio(scritti, totale));
+        }
+    }
+
+    /**
+     * Conclude un salvataggio nel thread della grafica.
+     *
+     * @param percorsoFile Percorso del file salvato
+     * @param errore Errore di scrittura, o null se il salvataggio è riuscito
+     */
+    private void salvataggioTerminato(String percorsoFile, Throwable errore) {
+        salvataggiInCorso--;
+        if (salvataggiInCorso == 0 && view != null) {
+            view.nascondiAvanzamentoSalvataggio();
+        }
+
+        if (errore != null) {
+            JOptionPane.showMessageDialog(view, "Errore durante il salvataggio della libreria: " + errore.getMessage(),
+                    "Errore", JOptionPane.ERROR_MESSAGE);
+        } else if (salvataggiInCorso == 0) {
+            // Le richieste riunite in un unico salvataggio mostrano un solo messaggio
             JOptionPane.showMessageDialog(view, "Libreria salvata con successo nel file: " + percorsoFile,
                     "Salvataggio completato", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(view, "Errore durante il salvataggio della libreria: " + e.getMessage(),
-                    "Errore", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -410,6 +744,15 @@ public class LibroController {
      * @param formato Formato del file (JSON o CSV)
      */
     public void caricaLibreria(String percorsoFile, String formato) {
+        // Le modifiche in sospeso vanno scritte nel file corrente prima di sostituire la collezione
+        String percorsoPrecedente = null;
+        String formatoPrecedente = null;
+        if (salvataggioAutomatico != null) {
+            percorsoPrecedente = salvataggioAutomatico.getPercorsoFile();
+            formatoPrecedente = salvataggioAutomatico.getFormato();
+            fermaSalvataggioAutomatico();
+        }
+
         try {
             if ("JSON".equalsIgnoreCase(formato)) {
                 gestoreLibreria.caricaLibriDaJson(percorsoFile);
@@ -421,18 +764,215 @@ public class LibroController {
                 return;
             }
 
+            if (view != null) {
+                attivaSalvataggioAutomatico(percorsoFile, formato);
+            }
+
             JOptionPane.showMessageDialog(view, "Libreria caricata con successo dal file: " + percorsoFile,
                     "Caricamento completato", JOptionPane.INFORMATION_MESSAGE);
-            aggiornaTabella();
 
             // Quando si carica una nuova libreria, si svuotano gli stack undo/redo
             commandManager.clearStacks();
             aggiornaStatoPulsanti();
         } catch (IOException e) {
+            // La collezione non è cambiata: il salvataggio automatico riprende sul file precedente
+            if (percorsoPrecedente != null) {
+                attivaSalvataggioAutomatico(percorsoPrecedente, formatoPrecedente);
+            }
             mostraErroreConScrollSeNecessario("Errore durante il caricamento della libreria: " + e.getMessage());
         }
     }
 
+    /**
+     * Importa i libri di un file aggiungendoli alla libreria, senza sostituirla.
+     * I libri non validi o già presenti vengono copiati nel file degli scarti, accanto al
+     * file importato: una volta corretto, importarlo aggiunge i libri rimasti.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV)
+     */
+    public void importaLibreria(String percorsoFile, String formato) {
+        String percorsoScarti = FileScarti.percorsoPredefinito(percorsoFile);
+        try {
+            RapportoImportazione rapporto = gestoreLibreria.importaLibri(percorsoFile, formato, percorsoScarti);
+            if (!rapporto.haErrori()) {
+                JOptionPane.showMessageDialog(view, "Libri importati con successo dal file: " + percorsoFile +
+                                "\n" + rapporto.getRiepilogo(),
+                        "Importazione completata", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            StringBuilder messaggio = new StringBuilder("Importazione completata con libri scartati.\n")
+                    .append(rapporto.getRiepilogo())
+                    .append("\nI libri scartati sono stati copiati nel file: ").append(percorsoScarti)
+                    .append("\nCorreggili e importa quel file per aggiungerli alla libreria.\n");
+            for (RapportoImportazione.Errore errore : rapporto.getErrori()) {
+                messaggio.append('\n').append(rapporto.descrivi(errore));
+            }
+            mostraErroreConScrollSeNecessario(messaggio.toString());
+        } catch (IOException e) {
+            mostraErroreConScrollSeNecessario("Errore durante l'importazione dei libri: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unisce i libri di un file alla libreria usando il pattern Command: i libri nuovi
+     * vengono aggiunti e quelli già presenti con dati diversi trattati secondo la politica.
+     * L'intera unione è un'unica operazione annullabile.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV)
+     * @param politica Comportamento per i libri già presenti con dati diversi
+     * @return Unione eseguita, o null se il file non può essere unito
+     */
+    public UnioneLibri unisciLibreria(String percorsoFile, String formato, UnioneLibri.Politica politica) {
+        UnioneLibri unione;
+        try {
+            unione = gestoreLibreria.preparaUnione(percorsoFile, formato, politica);
+        } catch (IOException e) {
+            mostraErroreConScrollSeNecessario("Errore durante l'unione della libreria: " + e.getMessage());
+            return null;
+        }
+
+        commandManager.executeCommand(new UnisciLibreriaCommand(this, unione));
+        aggiornaStatoPulsanti();
+        if (view != null) {
+            JOptionPane.showMessageDialog(view, "Libri uniti dal file: " + percorsoFile + "\n" + unione.getRiepilogo(),
+                    "Unione completata", JOptionPane.INFORMATION_MESSAGE);
+        }
+        return unione;
+    }
+
+    /**
+     * Esporta i libri di un file in un altro file, ordinati secondo l'ordinamento selezionato
+     * nella vista. L'ordinamento avviene in background, a blocchi su disco, così da gestire
+     * anche cataloghi più grandi della memoria; al termine viene mostrato un messaggio.
+     *
+     * @param percorsoSorgente Percorso del file da ordinare
+     * @param formatoSorgente Formato del file da ordinare (JSON o CSV)
+     * @param percorsoDestinazione Percorso del file ordinato
+     * @param formatoDestinazione Formato del file ordinato (JSON o CSV)
+     * @return Risultato dell'esportazione, o null se non è selezionato alcun ordinamento
+     */
+    public CompletableFuture<Void> esportaOrdinato(String percorsoSorgente, String formatoSorgente,
+                                                   String percorsoDestinazione, String formatoDestinazione) {
+        OrdinatoreLibroStrategy strategia = getStrategiaSelezionata();
+        if (strategia == null) {
+            JOptionPane.showMessageDialog(view, "Seleziona un ordinamento per l'esportazione.",
+                    "Esportazione ordinata", JOptionPane.WARNING_MESSAGE);
+            return null;
+        }
+
+        CompletableFuture<Void> esportazione = CompletableFuture.runAsync(() -> {
+            try {
+                gestoreLibreria.ordinaFile(percorsoSorgente, formatoSorgente, strategia,
+                        percorsoDestinazione, formatoDestinazione, LibroDAO.Avanzamento.NESSUNO);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        esportazione.whenComplete((risultato, errore) -> SwingUtilities.invokeLater(() -> {
+            if (errore == null) {
+                JOptionPane.showMessageDialog(view, "Libri ordinati salvati nel file: " + percorsoDestinazione,
+                        "Esportazione completata", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                Throwable causa = errore instanceof CompletionException ? errore.getCause() : errore;
+                if (causa instanceof UncheckedIOException) {
+                    causa = causa.getCause();
+                }
+                mostraErroreConScrollSeNecessario("Errore durante l'esportazione ordinata: " + causa.getMessage());
+            }
+        }));
+        return esportazione;
+    }
+
+    /**
+     * Confronta due cataloghi su file e scrive il file delle modifiche tra i due.
+     *
+     * @param percorsoPrecedente Percorso del catalogo precedente
+     * @param formatoPrecedente Formato del catalogo precedente (JSON o CSV)
+     * @param percorsoNuovo Percorso del catalogo nuovo
+     * @param formatoNuovo Formato del catalogo nuovo (JSON o CSV)
+     * @param percorsoModifiche Percorso del file delle modifiche
+     */
+    public void confrontaCataloghi(String percorsoPrecedente, String formatoPrecedente, String percorsoNuovo,
+                                   String formatoNuovo, String percorsoModifiche) {
+        try {
+            ConfrontoCataloghi.Esito esito = gestoreLibreria.confrontaCataloghi(percorsoPrecedente, formatoPrecedente,
+                    percorsoNuovo, formatoNuovo, percorsoModifiche);
+            JOptionPane.showMessageDialog(view, "Modifiche salvate nel file: " + percorsoModifiche + "\n"
+                            + esito.getRiepilogo(),
+                    "Confronto completato", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            mostraErroreConScrollSeNecessario("Errore durante il confronto dei cataloghi: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apre un catalogo su file da sfogliare senza caricarlo nella libreria.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON, CSV, DB o LSM)
+     * @return Catalogo aperto, da chiudere dopo l'uso, o null se il file non può essere aperto
+     */
+    public CatalogoIndicizzato apriCatalogo(String percorsoFile, String formato) {
+        try {
+            return gestoreLibreria.apriCatalogo(percorsoFile, formato);
+        } catch (IOException e) {
+            mostraErroreConScrollSeNecessario("Errore durante l'apertura del catalogo: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Applica alla libreria un file delle modifiche tra due cataloghi usando il pattern
+     * Command: l'intero file è un'unica operazione annullabile.
+     *
+     * @param percorsoModifiche Percorso del file delle modifiche
+     * @return Unione eseguita, o null se il file non può essere applicato
+     */
+    public UnioneLibri applicaModifiche(String percorsoModifiche) {
+        UnioneLibri unione;
+        try {
+            unione = gestoreLibreria.preparaModifiche(percorsoModifiche);
+        } catch (IOException e) {
+            mostraErroreConScrollSeNecessario("Errore durante l'applicazione delle modifiche: " + e.getMessage());
+            return null;
+        }
+
+        commandManager.executeCommand(new UnisciLibreriaCommand(this, unione));
+        aggiornaStatoPulsanti();
+        if (view != null) {
+            JOptionPane.showMessageDialog(view, "Modifiche applicate dal file: " + percorsoModifiche + "\n"
+                            + unione.getRiepilogo(),
+                    "Modifiche applicate", JOptionPane.INFORMATION_MESSAGE);
+        }
+        return unione;
+    }
+
+    /**
+     * Metodo interno per applicare un'unione senza creare un comando.
+     * Questo metodo è chiamato dal comando UnisciLibreriaCommand.
+     *
+     * @param unione Unione da applicare
+     * @return true se l'operazione è andata a buon fine
+     */
+    public boolean applicaUnioneInterno(UnioneLibri unione) {
+        // La tabella viene aggiornata dalla notifica del gestore
+        gestoreLibreria.applicaUnione(unione);
+        return true;
+    }
+
+    /**
+     * Metodo interno per annullare un'unione senza creare un comando.
+     * Questo metodo è chiamato dal comando UnisciLibreriaCommand (undo).
+     *
+     * @param unione Unione da annullare
+     */
+    public void annullaUnioneInterno(UnioneLibri unione) {
+        gestoreLibreria.annullaUnione(unione);
+    }
+
     /**
      * Mostra un messaggio di errore in un JOptionPane con scroll se il messaggio è lungo.
      *
@@ -459,8 +999,9 @@ public class LibroController {
      * Svuota anche gli stack di undo e redo.
      */
     public void pulisciLibreria() {
+        // La libreria vuota non corrisponde più al file: il file resta com'era
+        fermaSalvataggioAutomatico();
         gestoreLibreria.pulisciLibreria();
-        aggiornaTabella();
 
         // Svuota gli stack undo/redo quando si pulisce la libreria
         commandManager.clearStacks();
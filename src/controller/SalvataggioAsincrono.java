@@ -0,0 +1,119 @@
+package controller;
+
+import dao.LibroDAO;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Esegue i salvataggi della libreria in un thread dedicato, uno alla volta.
+ * <p>
+ * Le richieste per lo stesso file che arrivano mentre un salvataggio è in corso
+ * vengono riunite: il file viene riscritto una sola volta, al termine di quello in corso,
+ * con la collezione del momento in cui la scrittura inizia, e tutte le richieste riunite
+ * si completano insieme. Le richieste per file diversi sono eseguite nell'ordine di arrivo.
+ */
+class SalvataggioAsincrono {
+
+    /**
+     * Operazione di salvataggio eseguita nel thread dedicato.
+     */
+    @FunctionalInterface
+    interface Scrittura {
+
+        /**
+         * Scrive la collezione corrente nel file.
+         *
+         * @param percorsoFile Percorso del file
+         * @param formato Formato del file (JSON o CSV)
+         * @param avanzamento Destinatario dell'avanzamento
+         * @return Numero di libri scritti
+         * @throws IOException In caso di errori durante la scrittura
+         */
+        int scrivi(String percorsoFile, String formato, LibroDAO.Avanzamento avanzamento) throws IOException;
+    }
+
+    private final Scrittura scrittura;
+    private final ExecutorService esecutore;
+
+    // Richieste in attesa per file, non ancora iniziate (accesso sincronizzato su this)
+    private final Map<String, Richiesta> inAttesa;
+
+    /**
+     * Costruttore che crea il thread dei salvataggi.
+     *
+     * @param scrittura Operazione che scrive la collezione in un file
+     */
+    SalvataggioAsincrono(Scrittura scrittura) {
+        this.scrittura = scrittura;
+        this.inAttesa = new LinkedHashMap<>();
+        this.esecutore = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "salvataggio-libreria");
+            // Il thread non impedisce la chiusura dell'applicazione
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Richiede il salvataggio della collezione in un file.
+     * Se per lo stesso file c'è già una richiesta in attesa, la nuova si unisce a essa
+     * e ne sostituisce formato e destinatario dell'avanzamento.
+     *
+     * @param percorsoFile Percorso del file
+     * @param formato Formato del file (JSON o CSV)
+     * @param avanzamento Destinatario dell'avanzamento
+     * @return Risultato del salvataggio: il numero di libri scritti, o l'errore di scrittura
+     */
+    synchronized CompletableFuture<Integer> salva(String percorsoFile, String formato,
+                                                  LibroDAO.Avanzamento avanzamento) {
+        CompletableFuture<Integer> risultato = new CompletableFuture<>();
+        Richiesta richiesta = inAttesa.get(percorsoFile);
+        if (richiesta == null) {
+            richiesta = new Richiesta();
+            inAttesa.put(percorsoFile, richiesta);
+            esecutore.execute(() -> esegui(percorsoFile));
+        }
+        richiesta.formato = formato;
+        richiesta.avanzamento = avanzamento;
+        richiesta.risultati.add(risultato);
+        return risultato;
+    }
+
+    /**
+     * Esegue la richiesta in attesa per il file, nel thread dei salvataggi.
+     */
+    private void esegui(String percorsoFile) {
+        Richiesta richiesta;
+        synchronized (this) {
+            // Da qui le nuove richieste per il file ne creano un'altra in attesa
+            richiesta = inAttesa.remove(percorsoFile);
+        }
+
+        try {
+            int scritti = scrittura.scrivi(percorsoFile, richiesta.formato, richiesta.avanzamento);
+            for (CompletableFuture<Integer> risultato : richiesta.risultati) {
+                risultato.complete(scritti);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (CompletableFuture<Integer> risultato : richiesta.risultati) {
+                risultato.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Richiesta di salvataggio in attesa, con i risultati di tutte le chiamate riunite.
+     */
+    private static final class Richiesta {
+        private String formato;
+        private LibroDAO.Avanzamento avanzamento;
+        private final List<CompletableFuture<Integer>> risultati = new ArrayList<>();
+    }
+}
@@ -0,0 +1,259 @@
+package controller;
+
+import dao.FileDelta;
+import dao.LibroDAO;
+import model.Libro;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salvataggio automatico della libreria in un file, proporzionale alle modifiche.
+ * <p>
+ * Ascolta le modifiche del GestoreLibreria e ricorda gli ISBN dei libri modificati.
+ * A intervalli regolari scrive nel FileDelta del file solo lo stato attuale di quei libri,
+ * quindi il costo di ogni scrittura dipende dal numero di modifiche e non dalla
+ * dimensione della collezione. Quando il file delle modifiche supera una frazione
+ * della collezione, le modifiche vengono riunite nel file principale con un
+ * salvataggio completo e il file delle modifiche viene eliminato: il costo dei
+ * salvataggi completi, distribuito sulle modifiche, resta costante per modifica.
+ * <p>
+ * Scritture e unioni avvengono in un unico thread dedicato, così il file delle
+ * modifiche non contiene mai righe più vecchie del file principale.
+ */
+public class SalvataggioAutomatico implements GestoreLibreria.Ascoltatore {
+
+    // Righe del file delle modifiche oltre le quali si esegue sempre l'unione
+    static final int SOGLIA_MINIMA_UNIONE = 1000;
+
+    private final GestoreLibreria gestore;
+    private final String percorsoFile;
+    private final String formato;
+    private final FileDelta delta;
+    private final ScheduledExecutorService esecutore;
+
+    // Stato condiviso con i thread che modificano la collezione (accesso sincronizzato su this)
+    private Set<String> modificati;
+    private boolean unioneRichiesta;
+    private CompletableFuture<Integer> unioneInAttesa;
+
+    // Righe scritte nel file delle modifiche dall'ultima unione (solo nel thread dedicato)
+    private int righeDelta;
+
+    private ScheduledFuture<?> timer;
+
+    /**
+     * Costruttore che associa il salvataggio automatico a un file della libreria.
+     * Se il file ha già delle modifiche registrate, la prima scrittura le riunisce nel file.
+     *
+     * @param gestore Gestore della collezione da salvare
+     * @param percorsoFile Percorso del file della libreria
+     * @param formato Formato del file (JSON o CSV)
+     */
+    public SalvataggioAutomatico(GestoreLibreria gestore, String percorsoFile, String formato) {
+        this.gestore = gestore;
+        this.percorsoFile = percorsoFile;
+        this.formato = formato;
+        this.delta = new FileDelta(percorsoFile);
+        this.modificati = new LinkedHashSet<>();
+        this.unioneRichiesta = delta.esiste();
+        this.esecutore = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "salvataggio-automatico");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Inizia a registrare le modifiche e a scriverle periodicamente.
+     *
+     * @param intervallo Intervallo tra due scritture
+     * @param unita Unità di misura dell'intervallo
+     */
+    public void avvia(long intervallo, TimeUnit unita) {
+        gestore.aggiungiAscoltatore(this);
+        timer = esecutore.scheduleWithFixedDelay(this::scriviModificheInterno, intervallo, intervallo, unita);
+    }
+
+    /**
+     * Smette di registrare le modifiche, scrive quelle in sospeso e termina il thread.
+     */
+    public void ferma() {
+        gestore.rimuoviAscoltatore(this);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        try {
+            esecutore.submit(this::scriviModificheInterno).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Errore nel salvataggio automatico: " + e.getCause().getMessage());
+        }
+        esecutore.shutdown();
+    }
+
+    /**
+     * Ottiene il percorso del file salvato.
+     *
+     * @return Percorso del file della libreria
+     */
+    public String getPercorsoFile() {
+        return percorsoFile;
+    }
+
+    /**
+     * Ottiene il formato del file salvato.
+     *
+     * @return Formato del file (JSON o CSV)
+     */
+    public String getFormato() {
+        return formato;
+    }
+
+    @Override
+    public synchronized void libreriaModificata(EventoLibreria evento) {
+        if (evento.getTipo() == EventoLibreria.Tipo.RICARICATO) {
+            unioneRichiesta = true;
+            return;
+        }
+        // Con un ISBN modificato, il vecchio ISBN risulterà eliminato
+        if (evento.getLibroPrecedente() != null) {
+            modificati.add(evento.getLibroPrecedente().getIsbn());
+        }
+        if (evento.getLibro() != null) {
+            modificati.add(evento.getLibro().getIsbn());
+        }
+    }
+
+    /**
+     * Scrive subito le modifiche in sospeso, senza attendere il prossimo intervallo.
+     *
+     * @return Risultato della scrittura: il numero di righe accodate (0 se è stata eseguita
+     *         un'unione o non c'era nulla da scrivere), o l'errore di scrittura
+     */
+    public CompletableFuture<Integer> scriviModifiche() {
+        CompletableFuture<Integer> risultato = new CompletableFuture<>();
+        esecutore.execute(() -> {
+            try {
+                risultato.complete(scriviModificheOUnisci());
+            } catch (IOException | RuntimeException e) {
+                risultato.completeExceptionally(e);
+            }
+        });
+        return risultato;
+    }
+
+    /**
+     * Riunisce le modifiche nel file principale con un salvataggio completo.
+     * Le richieste fatte mentre un'unione è in attesa vengono riunite con essa.
+     *
+     * @param avanzamento Destinatario dell'avanzamento, chiamato nel thread dedicato
+     * @return Risultato dell'unione: il numero di libri scritti, o l'errore di scrittura
+     */
+    public synchronized CompletableFuture<Integer> unisci(LibroDAO.Avanzamento avanzamento) {
+        if (unioneInAttesa != null) {
+            return unioneInAttesa;
+        }
+
+        CompletableFuture<Integer> risultato = new CompletableFuture<>();
+        unioneInAttesa = risultato;
+        esecutore.execute(() -> {
+            synchronized (this) {
+                unioneInAttesa = null;
+            }
+            try {
+                risultato.complete(unisciInterno(prendiModificati(), avanzamento));
+            } catch (IOException | RuntimeException e) {
+                risultato.completeExceptionally(e);
+            }
+        });
+        return risultato;
+    }
+
+    private void scriviModificheInterno() {
+        try {
+            scriviModificheOUnisci();
+        } catch (IOException | RuntimeException e) {
+            // Le modifiche restano in sospeso e vengono riprovate al prossimo intervallo
+            System.err.println("Errore nel salvataggio automatico: " + e.getMessage());
+        }
+    }
+
+    private int scriviModificheOUnisci() throws IOException {
+        boolean unione;
+        synchronized (this) {
+            unione = unioneRichiesta;
+        }
+        Set<String> isbn = prendiModificati();
+
+        if (unione || righeDelta + isbn.size() >= Math.max(SOGLIA_MINIMA_UNIONE, gestore.getNumeroLibri() / 4)) {
+            unisciInterno(isbn, LibroDAO.Avanzamento.NESSUNO);
+            return 0;
+        }
+
+        List<Libro> aggiornati = new ArrayList<>();
+        List<String> rimossi = new ArrayList<>();
+        for (String codice : isbn) {
+            Libro libro = gestore.getLibroPerIsbn(codice);
+            if (libro != null) {
+                aggiornati.add(libro);
+            } else {
+                rimossi.add(codice);
+            }
+        }
+
+        try {
+            int righe = delta.accoda(aggiornati, rimossi);
+            righeDelta += righe;
+            return righe;
+        } catch (IOException e) {
+            restituisciModificati(isbn);
+            throw e;
+        }
+    }
+
+    /**
+     * Salva l'intera collezione nel file principale ed elimina il file delle modifiche.
+     * I libri modificati prima della lettura della collezione sono compresi nel salvataggio;
+     * quelli modificati dopo restano in sospeso per la scrittura successiva.
+     */
+    private int unisciInterno(Set<String> isbn, LibroDAO.Avanzamento avanzamento) throws IOException {
+        synchronized (this) {
+            unioneRichiesta = false;
+        }
+        try {
+            int scritti = gestore.salvaLibri(percorsoFile, formato, avanzamento);
+            delta.elimina();
+            righeDelta = 0;
+            return scritti;
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                unioneRichiesta = true;
+            }
+            restituisciModificati(isbn);
+            throw e;
+        }
+    }
+
+    private synchronized Set<String> prendiModificati() {
+        Set<String> presi = modificati;
+        modificati = new LinkedHashSet<>();
+        return presi;
+    }
+
+    private synchronized void restituisciModificati(Set<String> isbn) {
+        isbn.addAll(modificati);
+        modificati = isbn;
+    }
+}
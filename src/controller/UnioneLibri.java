@@ -0,0 +1,205 @@
+package controller;
+
+import dao.ConfrontoCataloghi;
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Unione dei libri di un file nella collezione, preparata dal GestoreLibreria confrontando
+ * il file con la collezione per ISBN. Contiene i libri da aggiungere o aggiornare, gli ISBN
+ * da rimuovere (per i file delle modifiche) e i conteggi dei libri nuovi, aggiornati,
+ * rimossi, invariati e saltati.
+ * <p>
+ * L'unione viene applicata in blocco e può essere annullata: all'applicazione vengono
+ * ricordati i dati che ogni libro aveva nella collezione, ripristinati dall'annullamento.
+ */
+public class UnioneLibri {
+
+    /**
+     * Comportamento per i libri del file con un ISBN già presente e dati diversi.
+     */
+    public enum Politica {
+        // Il libro della collezione viene sostituito da quello del file
+        AGGIORNA,
+        // Il libro della collezione resta invariato
+        SALTA,
+        // L'unione viene rifiutata senza modificare la collezione
+        ERRORE
+    }
+
+    private final String percorsoFile;
+    private final Politica politica;
+    private final List<Libro> daScrivere;
+    private final List<String> daRimuovere;
+    private int nuovi;
+    private int aggiornati;
+    private int rimossi;
+    private int invariati;
+    private int saltati;
+
+    // Descrizione del libro in conflitto con la politica ERRORE, o null
+    private String conflitto;
+
+    // Dati precedenti dei libri scritti (null per i libri nuovi) e libri rimossi,
+    // impostati all'applicazione
+    private List<Libro> precedenti;
+    private List<Libro> libriRimossi;
+
+    /**
+     * Costruttore che crea un'unione vuota.
+     *
+     * @param percorsoFile Percorso del file unito
+     * @param politica Comportamento per i libri già presenti con dati diversi
+     */
+    UnioneLibri(String percorsoFile, Politica politica) {
+        this.percorsoFile = percorsoFile;
+        this.politica = politica;
+        this.daScrivere = new ArrayList<>();
+        this.daRimuovere = new ArrayList<>();
+    }
+
+    /**
+     * Confronta un libro del file con quello della collezione con lo stesso ISBN.
+     *
+     * @param libro Libro letto dal file
+     * @param presente Libro della collezione con lo stesso ISBN, o null
+     * @return false se il libro è in conflitto e la politica è ERRORE: il conflitto,
+     *         con l'ISBN e i campi diversi, è descritto da getConflitto
+     */
+    boolean confronta(Libro libro, Libro presente) {
+        if (presente == null) {
+            nuovi++;
+            daScrivere.add(libro);
+        } else if (stessiDati(libro, presente)) {
+            invariati++;
+        } else if (politica == Politica.AGGIORNA) {
+            aggiornati++;
+            daScrivere.add(libro);
+        } else if (politica == Politica.SALTA) {
+            saltati++;
+        } else {
+            conflitto = "il libro con ISBN " + libro.getIsbn() + " (" + presente.getTitolo()
+                    + ") è già nella libreria con dati diversi: " + ConfrontoCataloghi.differenze(presente, libro);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Registra la rimozione di un libro indicata da un file delle modifiche.
+     *
+     * @param isbn ISBN del libro da rimuovere
+     * @param presente Libro della collezione con lo stesso ISBN, o null se non c'è già più
+     */
+    void rimuovi(String isbn, Libro presente) {
+        if (presente == null) {
+            invariati++;
+        } else {
+            rimossi++;
+            daRimuovere.add(isbn);
+        }
+    }
+
+    private static boolean stessiDati(Libro a, Libro b) {
+        return a.getTitolo().equals(b.getTitolo())
+                && a.getAutore().equals(b.getAutore())
+                && a.getGenere().equals(b.getGenere())
+                && a.getValutazione() == b.getValutazione()
+                && Objects.equals(a.getStatoLettura(), b.getStatoLettura());
+    }
+
+    String getConflitto() {
+        return conflitto;
+    }
+
+    List<Libro> getDaScrivere() {
+        return daScrivere;
+    }
+
+    List<String> getDaRimuovere() {
+        return daRimuovere;
+    }
+
+    List<Libro> getPrecedenti() {
+        return precedenti;
+    }
+
+    List<Libro> getLibriRimossi() {
+        return libriRimossi;
+    }
+
+    void setApplicata(List<Libro> precedenti, List<Libro> libriRimossi) {
+        this.precedenti = precedenti;
+        this.libriRimossi = libriRimossi;
+    }
+
+    public String getPercorsoFile() {
+        return percorsoFile;
+    }
+
+    public Politica getPolitica() {
+        return politica;
+    }
+
+    public int getNuovi() {
+        return nuovi;
+    }
+
+    public int getAggiornati() {
+        return aggiornati;
+    }
+
+    public int getRimossi() {
+        return rimossi;
+    }
+
+    public int getInvariati() {
+        return invariati;
+    }
+
+    public int getSaltati() {
+        return saltati;
+    }
+
+    /**
+     * Verifica se l'unione modifica la collezione.
+     *
+     * @return true se ci sono libri nuovi, aggiornati o rimossi
+     */
+    public boolean haModifiche() {
+        return !daScrivere.isEmpty() || !daRimuovere.isEmpty();
+    }
+
+    /**
+     * Ottiene il numero di libri aggiunti, aggiornati o rimossi dall'unione.
+     *
+     * @return Numero di libri modificati
+     */
+    public int getNumeroModifiche() {
+        return daScrivere.size() + daRimuovere.size();
+    }
+
+    /**
+     * Ottiene i libri nuovi e aggiornati, nell'ordine del file.
+     *
+     * @return Lista non modificabile dei libri scritti dall'unione
+     */
+    public List<Libro> getLibriScritti() {
+        return Collections.unmodifiableList(daScrivere);
+    }
+
+    /**
+     * Riassume l'unione in una riga, ad esempio
+     * "Nuovi: 2, aggiornati: 1, rimossi: 0, invariati: 10, saltati: 0".
+     *
+     * @return Riepilogo dei conteggi
+     */
+    public String getRiepilogo() {
+        return "Nuovi: " + nuovi + ", aggiornati: " + aggiornati + ", rimossi: " + rimossi
+                + ", invariati: " + invariati + ", saltati: " + saltati;
+    }
+}
@@ -0,0 +1,179 @@
+package dao;
+
+import archivio.ArchivioLSM;
+import model.Libro;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementazione dell'interfaccia LibroDAO per gli archivi LSM (cartelle .lsm, vedi
+ * ArchivioLSM), adatti alle esportazioni di cataloghi molto grandi: la scrittura accoda
+ * i libri a registri e segmenti ordinati senza riscrivere i dati già salvati. I libri
+ * vengono letti in ordine di ISBN, aprendo l'archivio in sola lettura; il salvataggio
+ * scrive un archivio nuovo in una cartella temporanea e la sostituisce a quella
+ * esistente solo a scrittura completata.
+ */
+public class ArchivioLSMDAO implements LibroDAO {
+
+    // Estensione delle cartelle degli archivi LSM
+    public static final String ESTENSIONE = ".lsm";
+
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile) throws IOException {
+        salvaLibri(libri.iterator(), percorsoFile, Avanzamento.NESSUNO);
+    }
+
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri.iterator(), libri.size(), percorsoFile, avanzamento);
+    }
+
+    @Override
+    public void salvaLibri(Iterator<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri, -1, percorsoFile, avanzamento);
+    }
+
+    private void scriviLibri(Iterator<Libro> libri, int totale, String percorsoFile, Avanzamento avanzamento)
+            throws IOException {
+        Path destinazione = Paths.get(percorsoFile).toAbsolutePath();
+        if (Files.exists(destinazione) && !Files.isDirectory(destinazione)) {
+            throw new IOException("Il percorso non è una cartella di archivio:\n" + percorsoFile);
+        }
+        Path temporanea = Files.createTempDirectory(destinazione.getParent(), destinazione.getFileName().toString());
+        Path precedente = null;
+        int scritti = 0;
+        try {
+            try (ArchivioLSM archivio = new ArchivioLSM(temporanea.toString())) {
+                while (libri.hasNext()) {
+                    archivio.scrivi(libri.next());
+                    if (++scritti % Avanzamento.INTERVALLO == 0) {
+                        avanzamento.aggiorna(scritti, totale);
+                    }
+                }
+            }
+
+            // Una cartella non si sostituisce in un solo passo: quella esistente viene
+            // spostata da parte e ripristinata se lo spostamento della nuova fallisce
+            if (Files.exists(destinazione)) {
+                precedente = Files.createTempDirectory(destinazione.getParent(),
+                        destinazione.getFileName() + ".precedente");
+                Files.delete(precedente);
+                Files.move(destinazione, precedente, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try {
+                Files.move(temporanea, destinazione, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (precedente != null) {
+                    Files.move(precedente, destinazione, StandardCopyOption.ATOMIC_MOVE);
+                    precedente = null;
+                }
+                throw e;
+            }
+        } finally {
+            eliminaCartella(temporanea);
+            if (precedente != null) {
+                eliminaCartella(precedente);
+            }
+        }
+        avanzamento.aggiorna(scritti, totale);
+    }
+
+    private static void eliminaCartella(Path cartella) throws IOException {
+        if (!Files.exists(cartella)) {
+            return;
+        }
+        try (Stream<Path> contenuto = Files.walk(cartella)) {
+            // I file vengono eliminati prima delle cartelle che li contengono
+            for (Path percorso : contenuto.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(percorso);
+            }
+        }
+    }
+
+    @Override
+    public List<Libro> caricaLibri(String percorsoFile) throws IOException {
+        List<Libro> libri = new ArrayList<>();
+        caricaLibri(percorsoFile, libri::add);
+        return libri;
+    }
+
+    @Override
+    public void caricaLibri(String percorsoFile, Consumer<Libro> destinazione) throws IOException {
+        importaLibri(percorsoFile, libro -> {
+            destinazione.accept(libro);
+            return true;
+        }, RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE, null);
+    }
+
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Consumer<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita) throws IOException {
+        return importaLibri(percorsoFile, libro -> {
+            destinazione.accept(libro);
+            return true;
+        }, modalita, null);
+    }
+
+    /**
+     * Apre un archivio LSM senza caricarlo nella libreria: i libri vengono copiati fuori dallo
+     * heap (vedi ArchivioFuoriHeap), in ordine di ISBN, e ogni libro viene creato solo
+     * quando viene visualizzato, cercato o ordinato.
+     *
+     * @param percorsoFile Percorso dell'archivio
+     * @return Catalogo dell'archivio, da chiudere dopo l'uso
+     * @throws IOException In caso di errori durante la lettura dell'archivio
+     */
+    @Override
+    public CatalogoIndicizzato indicizzaLibri(String percorsoFile) throws IOException {
+        if (!Files.isDirectory(Paths.get(percorsoFile))) {
+            throw new IOException("Archivio non trovato:\n" + percorsoFile);
+        }
+        // Sfogliare un archivio non deve modificarne la cartella
+        try (ArchivioLSM archivio = ArchivioLSM.apriInLettura(percorsoFile)) {
+            return CatalogoIndicizzato.copiaFuoriHeap(archivio);
+        }
+    }
+
+    /**
+     * Importa i libri di un archivio LSM. I libri di un archivio sono sempre validi e con
+     * ISBN distinti: vengono scartati solo quelli rifiutati dalla destinazione, e il file
+     * degli scarti non viene usato.
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Predicate<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita, String percorsoScarti)
+            throws IOException {
+        return importaLibri(percorsoFile, DestinazioneImportazione.perLibro(destinazione), 1, modalita,
+                percorsoScarti);
+    }
+
+    /**
+     * Importa a lotti i libri di un archivio LSM. I libri di un archivio sono sempre validi
+     * e con ISBN distinti: vengono scartati solo quelli rifiutati dalla destinazione, e il
+     * file degli scarti non viene usato.
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, DestinazioneImportazione destinazione,
+                                             int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                             String percorsoScarti) throws IOException {
+        if (!Files.isDirectory(Paths.get(percorsoFile))) {
+            throw new IOException("Archivio non trovato:\n" + percorsoFile);
+        }
+        // L'archivio di origine viene letto senza modificarne la cartella
+        try (ArchivioLSM archivio = ArchivioLSM.apriInLettura(percorsoFile)) {
+            return ArchivioLibroDAO.importa(archivio, destinazione, libriPerLotto, modalita);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package dao;
+
+import archivio.ArchivioBPiu;
+import archivio.ArchivioLibri;
+import model.Libro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Implementazione dell'interfaccia LibroDAO per i file archivio (.db), che contengono
+ * i libri in alberi B+ su disco (vedi ArchivioBPiu). I libri vengono letti in ordine
+ * di ISBN; il salvataggio scrive un archivio nuovo in un file temporaneo e lo sostituisce
+ * a quello esistente solo a scrittura completata.
+ */
+public class ArchivioLibroDAO implements LibroDAO {
+
+    // Estensione dei file archivio
+    public static final String ESTENSIONE = ".db";
+
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile) throws IOException {
+        salvaLibri(libri.iterator(), percorsoFile, Avanzamento.NESSUNO);
+    }
+
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri.iterator(), libri.size(), percorsoFile, avanzamento);
+    }
+
+    @Override
+    public void salvaLibri(Iterator<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri, -1, percorsoFile, avanzamento);
+    }
+
+    private void scriviLibri(Iterator<Libro> libri, int totale, String percorsoFile, Avanzamento avanzamento)
+            throws IOException {
+        Path destinazione = Paths.get(percorsoFile).toAbsolutePath();
+        Path temporaneo = Files.createTempFile(destinazione.getParent(), destinazione.getFileName().toString(), ".tmp");
+        int scritti = 0;
+        try {
+            // L'archivio deve partire da un file vuoto
+            Files.delete(temporaneo);
+            try (ArchivioBPiu archivio = new ArchivioBPiu(temporaneo.toString())) {
+                while (libri.hasNext()) {
+                    archivio.scrivi(libri.next());
+                    if (++scritti % Avanzamento.INTERVALLO == 0) {
+                        avanzamento.aggiorna(scritti, totale);
+                    }
+                }
+            }
+            Files.move(temporaneo, destinazione, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+        avanzamento.aggiorna(scritti, totale);
+    }
+
+    @Override
+    public List<Libro> caricaLibri(String percorsoFile) throws IOException {
+        List<Libro> libri = new ArrayList<>();
+        caricaLibri(percorsoFile, libri::add);
+        return libri;
+    }
+
+    @Override
+    public void caricaLibri(String percorsoFile, Consumer<Libro> destinazione) throws IOException {
+        importaLibri(percorsoFile, libro -> {
+            destinazione.accept(libro);
+            return true;
+        }, RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE, null);
+    }
+
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Consumer<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita) throws IOException {
+        return importaLibri(percorsoFile, libro -> {
+            destinazione.accept(libro);
+            return true;
+        }, modalita, null);
+    }
+
+    /**
+     * Apre un archivio senza caricarlo nella libreria: i libri vengono copiati fuori dallo
+     * heap (vedi ArchivioFuoriHeap), in ordine di ISBN, e ogni libro viene creato solo
+     * quando viene visualizzato, cercato o ordinato.
+     *
+     * @param percorsoFile Percorso dell'archivio
+     * @return Catalogo dell'archivio, da chiudere dopo l'uso
+     * @throws IOException In caso di errori durante la lettura dell'archivio
+     */
+    @Override
+    public CatalogoIndicizzato indicizzaLibri(String percorsoFile) throws IOException {
+        if (!new File(percorsoFile).exists()) {
+            throw new IOException("File non trovato:\n" + percorsoFile);
+        }
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorsoFile)) {
+            return CatalogoIndicizzato.copiaFuoriHeap(archivio);
+        }
+    }
+
+    /**
+     * Importa i libri di un archivio. I libri di un archivio sono sempre validi e con ISBN
+     * distinti: vengono scartati solo quelli rifiutati dalla destinazione, e il file degli
+     * scarti non viene usato.
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Predicate<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita, String percorsoScarti)
+            throws IOException {
+        return importaLibri(percorsoFile, DestinazioneImportazione.perLibro(destinazione), 1, modalita,
+                percorsoScarti);
+    }
+
+    /**
+     * Importa a lotti i libri di un archivio. I libri di un archivio sono sempre validi e
+     * con ISBN distinti: vengono scartati solo quelli rifiutati dalla destinazione, e il
+     * file degli scarti non viene usato.
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, DestinazioneImportazione destinazione,
+                                             int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                             String percorsoScarti) throws IOException {
+        if (!new File(percorsoFile).exists()) {
+            throw new IOException("File non trovato:\n" + percorsoFile);
+        }
+
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorsoFile)) {
+            return importa(archivio, destinazione, libriPerLotto, modalita);
+        }
+    }
+
+    /**
+     * Importa a lotti i libri di un archivio aperto, in ordine di ISBN.
+     *
+     * @param archivio Archivio da cui leggere i libri
+     * @param destinazione Destinatario dei lotti di libri
+     * @param libriPerLotto Numero di libri di un lotto
+     * @param modalita Comportamento al primo libro rifiutato
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura dell'archivio
+     */
+    static RapportoImportazione importa(ArchivioLibri archivio, DestinazioneImportazione destinazione,
+                                        int libriPerLotto, RapportoImportazione.Modalita modalita)
+            throws IOException {
+        RapportoImportazione rapporto = new RapportoImportazione("Libro #", RapportoImportazione.MASSIMO_DETTAGLI);
+        LottoImportazione lotto = new LottoImportazione(destinazione, libriPerLotto, rapporto, null);
+        try {
+            long numero = 0;
+            for (Libro libro : archivio) {
+                numero++;
+                if (!lotto.aggiungi(libro, numero, -1, null)
+                        && modalita == RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE) {
+                    rapporto.interrompi();
+                    break;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            lotto.conferma();
+        }
+        return rapporto;
+    }
+}
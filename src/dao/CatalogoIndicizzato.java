@@ -0,0 +1,476 @@
+package dao;
+
+import archivio.ArchivioFuoriHeap;
+import model.Libro;
+import strategy.CampoOrdinamento;
+import strategy.CriterioOrdinamento;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Catalogo aperto senza caricarlo: una sola scansione del file registra per ogni libro
+ * la posizione in byte e l'hash dell'ISBN, e il testo di un libro viene letto, convertito
+ * e validato solo quando serve, cioè quando viene visualizzato, cercato o ordinato.
+ * I libri convertiti restano in una cache LRU di LIBRI_IN_CACHE elementi; i campi su cui
+ * si cerca o si ordina vengono estratti in colonne alla prima richiesta, senza tenere in
+ * memoria gli oggetti Libro.
+ * <p>
+ * Gli errori dei libri non validi vengono scoperti alla lettura: getLibro() restituisce
+ * null e getErrore() descrive l'errore. I duplicati di un ISBN vengono invece riconosciuti
+ * già durante la scansione. Il catalogo è in sola lettura e non supporta i file compressi,
+ * che non consentono di leggere un libro dalla sua posizione.
+ * <p>
+ * Gli archivi, i cui libri sono sempre validi e con ISBN distinti, vengono invece copiati
+ * in un ArchivioFuoriHeap: i record restano fuori dallo heap e un libro viene creato
+ * solo quando viene letto, come per i file.
+ */
+public class CatalogoIndicizzato implements Closeable {
+
+    // Numero di libri convertiti tenuti in memoria
+    public static final int LIBRI_IN_CACHE = 10_000;
+
+    private static final int DIMENSIONE_BUFFER = 64 * 1024;
+
+    /**
+     * Conversione del testo di un libro, specifica del formato del file.
+     */
+    @FunctionalInterface
+    interface Convertitore {
+        Libro converti(String testo) throws LibroNonValidoException;
+    }
+
+    private final Path percorso;
+    private final FileChannel canale;
+    private final Charset codifica;
+    private final Convertitore convertitore;
+    private final Function<String, String> estraiIsbn;
+
+    // Libri di un archivio copiati fuori dallo heap, o null per un file
+    private final ArchivioFuoriHeap libriFuoriHeap;
+
+    // Posizione, lunghezza in byte e hash dell'ISBN di ogni libro, nell'ordine del file
+    private long[] inizi;
+    private int[] lunghezze;
+    private int[] hashIsbn;
+    private int numeroRighe;
+
+    // Indice per ISBN a indirizzamento aperto: riga + 1, o 0 per una cella vuota
+    private int[] tabella;
+    private int righeIndicizzate;
+    private final BitSet duplicati;
+
+    // Libri convertiti (Libro) o errori di conversione (String), per riga
+    private final LinkedHashMap<Integer, Object> cache;
+    // Colonne estratte: String[] per i campi testuali, byte[] per gli altri (-1 se non valido)
+    private final Map<CampoOrdinamento, Object> colonne;
+    private long conversioni;
+
+    /**
+     * Apre il file per la lettura dei libri; le righe vengono aggiunte dal DAO durante la scansione.
+     *
+     * @param percorso Percorso del file
+     * @param codifica Codifica dei caratteri del file
+     * @param convertitore Conversione del testo di un libro
+     * @param estraiIsbn Estrazione dell'ISBN dal testo di un libro, null se non si ricava
+     * @throws IOException In caso di errori di apertura
+     */
+    CatalogoIndicizzato(Path percorso, Charset codifica, Convertitore convertitore,
+                        Function<String, String> estraiIsbn) throws IOException {
+        this(percorso, FileChannel.open(percorso, StandardOpenOption.READ), codifica, convertitore, estraiIsbn,
+                null);
+    }
+
+    /**
+     * Crea il catalogo dei libri di un archivio, copiandoli fuori dallo heap.
+     *
+     * @param libri Libri dell'archivio, validi e con ISBN distinti, nell'ordine del catalogo
+     * @return Catalogo dei libri
+     * @throws IOException In caso di errori di lettura dell'archivio
+     */
+    static CatalogoIndicizzato copiaFuoriHeap(Iterable<Libro> libri) throws IOException {
+        ArchivioFuoriHeap copia = new ArchivioFuoriHeap();
+        try {
+            for (Libro libro : libri) {
+                copia.scrivi(libro);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        CatalogoIndicizzato catalogo = new CatalogoIndicizzato(null, null, null, null, null, copia);
+        catalogo.numeroRighe = copia.getNumeroLibri();
+        return catalogo;
+    }
+
+    private CatalogoIndicizzato(Path percorso, FileChannel canale, Charset codifica, Convertitore convertitore,
+                                Function<String, String> estraiIsbn, ArchivioFuoriHeap libriFuoriHeap) {
+        this.percorso = percorso;
+        this.canale = canale;
+        this.codifica = codifica;
+        this.convertitore = convertitore;
+        this.estraiIsbn = estraiIsbn;
+        this.libriFuoriHeap = libriFuoriHeap;
+        this.inizi = new long[1024];
+        this.lunghezze = new int[1024];
+        this.hashIsbn = new int[1024];
+        this.tabella = new int[2048];
+        this.duplicati = new BitSet();
+        this.cache = new LinkedHashMap<Integer, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object> piuVecchio) {
+                return size() > LIBRI_IN_CACHE;
+            }
+        };
+        this.colonne = new EnumMap<>(CampoOrdinamento.class);
+    }
+
+    // ---- Scansione ----
+
+    /**
+     * Registra un libro letto dalla scansione del file.
+     *
+     * @param inizio Posizione in byte del libro
+     * @param lunghezza Lunghezza in byte del testo del libro, con l'eventuale terminatore di riga
+     * @param isbn ISBN del libro, o null se non si ricava dal testo
+     * @throws IOException In caso di errori di lettura nel controllo dei duplicati
+     */
+    void aggiungi(long inizio, int lunghezza, String isbn) throws IOException {
+        if (numeroRighe == inizi.length) {
+            int capacita = inizi.length + (inizi.length >> 1);
+            inizi = Arrays.copyOf(inizi, capacita);
+            lunghezze = Arrays.copyOf(lunghezze, capacita);
+            hashIsbn = Arrays.copyOf(hashIsbn, capacita);
+        }
+        int riga = numeroRighe++;
+        inizi[riga] = inizio;
+        lunghezze[riga] = lunghezza;
+        if (isbn == null) {
+            return;
+        }
+        int hash = isbn.hashCode();
+        hashIsbn[riga] = hash;
+        int maschera = tabella.length - 1;
+        for (int cella = mescola(hash) & maschera; tabella[cella] != 0; cella = (cella + 1) & maschera) {
+            // Un hash uguale va confermato rileggendo l'ISBN del libro già indicizzato
+            int altra = tabella[cella] - 1;
+            if (hashIsbn[altra] == hash && isbn.equals(estraiIsbn.apply(leggiTesto(altra)))) {
+                duplicati.set(riga);
+                return;
+            }
+        }
+        inserisci(riga);
+        if (++righeIndicizzate * 2 > tabella.length) {
+            int[] vecchia = tabella;
+            tabella = new int[vecchia.length * 2];
+            for (int cella : vecchia) {
+                if (cella != 0) {
+                    inserisci(cella - 1);
+                }
+            }
+        }
+    }
+
+    private void inserisci(int riga) {
+        int maschera = tabella.length - 1;
+        int cella = mescola(hashIsbn[riga]) & maschera;
+        while (tabella[cella] != 0) {
+            cella = (cella + 1) & maschera;
+        }
+        tabella[cella] = riga + 1;
+    }
+
+    /**
+     * Distribuisce i bit dell'hash, perché l'indice usa solo quelli bassi.
+     */
+    private static int mescola(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // ---- Lettura ----
+
+    /**
+     * Ottiene il numero di libri nel file, compresi quelli non validi.
+     *
+     * @return Numero di righe del catalogo
+     */
+    public int getNumeroRighe() {
+        return numeroRighe;
+    }
+
+    /**
+     * Legge un libro, convertendolo alla prima richiesta.
+     *
+     * @param riga Indice del libro nell'ordine del file
+     * @return Libro, o null se il testo nel file non è valido
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized Libro getLibro(int riga) throws IOException {
+        Object libro = converti(riga);
+        return libro instanceof Libro ? (Libro) libro : null;
+    }
+
+    /**
+     * Descrive l'errore di un libro non valido.
+     *
+     * @param riga Indice del libro nell'ordine del file
+     * @return Descrizione dell'errore, o null se il libro è valido
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized String getErrore(int riga) throws IOException {
+        Object libro = converti(riga);
+        return libro instanceof String ? (String) libro : null;
+    }
+
+    private Object converti(int riga) throws IOException {
+        Object libro = cache.get(riga);
+        if (libro == null) {
+            libro = libriFuoriHeap != null ? leggiFuoriHeap(riga) : converti(riga, leggiTesto(riga));
+            cache.put(riga, libro);
+        }
+        return libro;
+    }
+
+    private Libro leggiFuoriHeap(int riga) {
+        conversioni++;
+        return libriFuoriHeap.leggi(riga);
+    }
+
+    private Object converti(int riga, String testo) {
+        conversioni++;
+        if (duplicati.get(riga)) {
+            return RapportoImportazione.Codice.ISBN_DUPLICATO.getDescrizione();
+        }
+        try {
+            return convertitore.converti(testo);
+        } catch (LibroNonValidoException e) {
+            return e.getCodice().getDescrizione() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Ottiene il numero di libri convertiti dall'apertura, comprese le conversioni
+     * ripetute dei libri usciti dalla cache.
+     *
+     * @return Numero di conversioni
+     */
+    public synchronized long getConversioni() {
+        return conversioni;
+    }
+
+    /**
+     * Cerca un libro per ISBN esatto con l'indice, leggendo dal file solo i libri
+     * con lo stesso hash.
+     *
+     * @param isbn ISBN da cercare
+     * @return Indice del libro, o -1 se l'ISBN non è nel file
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized int cercaPerIsbn(String isbn) throws IOException {
+        if (libriFuoriHeap != null) {
+            return libriFuoriHeap.posizione(isbn);
+        }
+        int hash = isbn.hashCode();
+        int maschera = tabella.length - 1;
+        for (int cella = mescola(hash) & maschera; tabella[cella] != 0; cella = (cella + 1) & maschera) {
+            int riga = tabella[cella] - 1;
+            if (hashIsbn[riga] == hash && isbn.equals(estraiIsbn.apply(leggiTesto(riga)))) {
+                return riga;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cerca i libri validi in cui un campo testuale contiene un testo, senza distinzione
+     * tra maiuscole e minuscole. La prima ricerca su un campo ne estrae la colonna.
+     *
+     * @param campo Campo testuale su cui cercare
+     * @param testo Testo da cercare
+     * @return Indici dei libri trovati, nell'ordine del file
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized int[] cerca(CampoOrdinamento campo, String testo) throws IOException {
+        if (!campo.isTestuale()) {
+            throw new IllegalArgumentException("Campo non testuale: " + campo.getNome());
+        }
+        String[] valori = (String[]) colonna(campo);
+        String cercato = testo.toLowerCase(Locale.ROOT);
+        int[] trovati = new int[16];
+        int numero = 0;
+        for (int riga = 0; riga < numeroRighe; riga++) {
+            if (valori[riga] != null && valori[riga].toLowerCase(Locale.ROOT).contains(cercato)) {
+                if (numero == trovati.length) {
+                    trovati = Arrays.copyOf(trovati, numero * 2);
+                }
+                trovati[numero++] = riga;
+            }
+        }
+        return Arrays.copyOf(trovati, numero);
+    }
+
+    /**
+     * Ordina i libri secondo i criteri indicati, con i campi testuali confrontati senza
+     * distinzione tra maiuscole e minuscole come nelle strategie di ordinamento.
+     * L'ordinamento è stabile e i libri non validi sono in fondo, nell'ordine del file.
+     *
+     * @param criteri Criteri di ordinamento, dal più al meno significativo
+     * @return Indici dei libri nel nuovo ordine
+     * @throws IOException In caso di errori di lettura
+     */
+    public synchronized int[] ordina(List<CriterioOrdinamento> criteri) throws IOException {
+        List<Object> valori = new ArrayList<>();
+        for (CriterioOrdinamento criterio : criteri) {
+            valori.add(colonna(criterio.getCampo()));
+        }
+        Object primo = valori.isEmpty() ? null : valori.get(0);
+        Integer[] righe = new Integer[numeroRighe];
+        for (int i = 0; i < numeroRighe; i++) {
+            righe[i] = i;
+        }
+        Arrays.sort(righe, (a, b) -> {
+            if (primo != null && valido(primo, a) != valido(primo, b)) {
+                return valido(primo, a) ? -1 : 1;
+            }
+            for (int i = 0; i < criteri.size(); i++) {
+                Object colonna = valori.get(i);
+                int confronto;
+                if (colonna instanceof String[]) {
+                    String[] testi = (String[]) colonna;
+                    confronto = testi[a] == null ? 0 : String.CASE_INSENSITIVE_ORDER.compare(testi[a], testi[b]);
+                } else {
+                    byte[] numeri = (byte[]) colonna;
+                    confronto = Integer.compare(numeri[a], numeri[b]);
+                }
+                if (confronto != 0) {
+                    return criteri.get(i).isCrescente() ? confronto : -confronto;
+                }
+            }
+            return 0;
+        });
+        int[] ordine = new int[numeroRighe];
+        for (int i = 0; i < numeroRighe; i++) {
+            ordine[i] = righe[i];
+        }
+        return ordine;
+    }
+
+    private static boolean valido(Object colonna, int riga) {
+        return colonna instanceof String[] ? ((String[]) colonna)[riga] != null : ((byte[]) colonna)[riga] >= 0;
+    }
+
+    /**
+     * Estrae la colonna di un campo leggendo il file, o i record fuori dallo heap,
+     * dall'inizio alla fine; i libri in cache non vengono riconvertiti.
+     */
+    private Object colonna(CampoOrdinamento campo) throws IOException {
+        Object colonna = colonne.get(campo);
+        if (colonna != null) {
+            return colonna;
+        }
+        String[] testi = campo.isTestuale() ? new String[numeroRighe] : null;
+        byte[] numeri = campo.isTestuale() ? null : new byte[numeroRighe];
+        if (libriFuoriHeap != null) {
+            for (int riga = 0; riga < numeroRighe; riga++) {
+                Object libro = cache.get(riga);
+                impostaValore(campo, riga, libro != null ? libro : leggiFuoriHeap(riga), testi, numeri);
+            }
+            colonna = testi != null ? testi : numeri;
+            colonne.put(campo, colonna);
+            return colonna;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(percorso), DIMENSIONE_BUFFER)) {
+            long posizione = 0;
+            for (int riga = 0; riga < numeroRighe; riga++) {
+                in.skipNBytes(inizi[riga] - posizione);
+                byte[] testo = in.readNBytes(lunghezze[riga]);
+                if (testo.length < lunghezze[riga]) {
+                    throw new EOFException("Il file è stato modificato dopo l'apertura: " + percorso);
+                }
+                posizione = inizi[riga] + lunghezze[riga];
+
+                Object libro = cache.get(riga);
+                if (libro == null) {
+                    libro = converti(riga, senzaTerminatore(new String(testo, codifica)));
+                }
+                impostaValore(campo, riga, libro, testi, numeri);
+            }
+        }
+        colonna = testi != null ? testi : numeri;
+        colonne.put(campo, colonna);
+        return colonna;
+    }
+
+    /**
+     * Scrive nella colonna il valore del campo di un libro convertito, o il valore dei
+     * libri non validi.
+     */
+    private static void impostaValore(CampoOrdinamento campo, int riga, Object libro, String[] testi,
+                                      byte[] numeri) {
+        Libro valido = libro instanceof Libro ? (Libro) libro : null;
+        if (testi != null) {
+            testi[riga] = valido == null ? null : testo(campo, valido);
+        } else {
+            numeri[riga] = (byte) (valido == null ? -1 : campo == CampoOrdinamento.VALUTAZIONE
+                    ? valido.getValutazione() : valido.getStatoLettura().ordinal());
+        }
+    }
+
+    private static String testo(CampoOrdinamento campo, Libro libro) {
+        switch (campo) {
+            case TITOLO:
+                return libro.getTitolo();
+            case AUTORE:
+                return libro.getAutore();
+            case GENERE:
+                return libro.getGenere();
+            default:
+                return libro.getIsbn();
+        }
+    }
+
+    private String leggiTesto(int riga) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(lunghezze[riga]);
+        while (buffer.hasRemaining()) {
+            if (canale.read(buffer, inizi[riga] + buffer.position()) < 0) {
+                throw new EOFException("Il file è stato modificato dopo l'apertura: " + percorso);
+            }
+        }
+        return senzaTerminatore(new String(buffer.array(), codifica));
+    }
+
+    private static String senzaTerminatore(String testo) {
+        int fine = testo.length();
+        while (fine > 0 && (testo.charAt(fine - 1) == '\n' || testo.charAt(fine - 1) == '\r')) {
+            fine--;
+        }
+        return testo.substring(0, fine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (libriFuoriHeap != null) {
+            libriFuoriHeap.close();
+        } else {
+            canale.close();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package dao;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lettura e scrittura dei file della libreria compressi in formato gzip (estensione .gz).
+ * <p>
+ * Compressione e decompressione avvengono in un thread separato, collegato a quello che
+ * legge o scrive i libri da una coda di blocchi di dimensione limitata: mentre un thread
+ * converte i libri in testo, l'altro comprime il blocco precedente, e il costo della
+ * compressione si sovrappone a quello della conversione invece di sommarsi.
+ */
+final class CompressioneGzip {
+
+    // Estensione dei file compressi, aggiunta a quella del formato (.csv.gz, .json.gz)
+    static final String ESTENSIONE = ".gz";
+
+    // Dimensione dei blocchi passati tra i due thread e numero massimo di blocchi in coda
+    private static final int DIMENSIONE_BLOCCO = 64 * 1024;
+    private static final int BLOCCHI_IN_CODA = 8;
+
+    // Blocco che segnala la fine del flusso
+    private static final byte[] FINE = new byte[0];
+
+    private CompressioneGzip() {
+    }
+
+    /**
+     * Verifica se il file è compresso, in base all'estensione.
+     *
+     * @param nomeFile Nome o percorso del file
+     * @return true se il nome termina con .gz
+     */
+    static boolean isCompresso(String nomeFile) {
+        return nomeFile.regionMatches(true, nomeFile.length() - ESTENSIONE.length(), ESTENSIONE, 0, ESTENSIONE.length());
+    }
+
+    /**
+     * Restituisce il nome del file senza l'estensione .gz, se presente.
+     *
+     * @param nomeFile Nome del file
+     * @return Nome del file non compresso
+     */
+    static String senzaEstensione(String nomeFile) {
+        return isCompresso(nomeFile) ? nomeFile.substring(0, nomeFile.length() - ESTENSIONE.length()) : nomeFile;
+    }
+
+    /**
+     * Verifica che il livello di compressione sia accettato dal Deflater.
+     *
+     * @param livello Livello da 0 (nessuna compressione) a 9 (massima), o -1 per quello predefinito
+     * @throws IllegalArgumentException se il livello non è valido
+     */
+    static void verificaLivello(int livello) {
+        if (livello != Deflater.DEFAULT_COMPRESSION
+                && (livello < Deflater.NO_COMPRESSION || livello > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Livello di compressione non valido: " + livello);
+        }
+    }
+
+    /**
+     * Apre un file in lettura, decomprimendolo in un thread separato se ha estensione .gz.
+     *
+     * @param file File da leggere
+     * @return Flusso con il contenuto non compresso
+     * @throws IOException In caso di errori nell'apertura del file
+     */
+    static InputStream apriLettura(File file) throws IOException {
+        InputStream sorgente = new FileInputStream(file);
+        if (!isCompresso(file.getName())) {
+            return sorgente;
+        }
+        try {
+            return new LetturaDecompressa(new GZIPInputStream(sorgente, DIMENSIONE_BLOCCO));
+        } catch (IOException e) {
+            sorgente.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crea un flusso che comprime in un thread separato quanto vi viene scritto.
+     * La chiusura del flusso completa il formato gzip ma non chiude la destinazione,
+     * così chi la possiede può forzarla su disco prima di chiuderla.
+     *
+     * @param destinazione Flusso su cui scrivere i dati compressi
+     * @param livello Livello di compressione del Deflater
+     * @return Flusso su cui scrivere i dati non compressi
+     * @throws IOException In caso di errori nella scrittura dell'intestazione gzip
+     */
+    static OutputStream apriScrittura(OutputStream destinazione, int livello) throws IOException {
+        return new ScritturaCompressa(destinazione, livello);
+    }
+
+    /**
+     * Flusso di scrittura che raccoglie i dati in blocchi e li passa al thread di compressione.
+     */
+    private static final class ScritturaCompressa extends OutputStream {
+
+        private final BlockingQueue<byte[]> coda = new ArrayBlockingQueue<>(BLOCCHI_IN_CODA);
+        private final Thread compressore;
+        private byte[] blocco = new byte[DIMENSIONE_BLOCCO];
+        private int usati;
+        private boolean chiuso;
+
+        // Errore del thread di compressione, riportato alla chiusura
+        private volatile IOException errore;
+
+        private ScritturaCompressa(OutputStream destinazione, int livello) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(new NonChiudibile(destinazione), DIMENSIONE_BLOCCO) {
+                {
+                    def.setLevel(livello);
+                }
+            };
+            compressore = new Thread(() -> comprimi(gzip), "compressione-gzip");
+            compressore.setDaemon(true);
+            compressore.start();
+        }
+
+        private void comprimi(GZIPOutputStream gzip) {
+            try {
+                byte[] dati;
+                while ((dati = coda.take()) != FINE) {
+                    // Dopo un errore i blocchi vengono scartati fino alla fine, per non bloccare chi scrive
+                    if (errore == null) {
+                        try {
+                            gzip.write(dati);
+                        } catch (IOException e) {
+                            errore = e;
+                        }
+                    }
+                }
+                if (errore == null) {
+                    gzip.close();
+                }
+            } catch (IOException e) {
+                errore = e;
+            } catch (InterruptedException e) {
+                errore = new IOException("Compressione interrotta", e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (usati == blocco.length) {
+                inviaBlocco();
+            }
+            blocco[usati++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (usati == blocco.length) {
+                    inviaBlocco();
+                }
+                int n = Math.min(len, blocco.length - usati);
+                System.arraycopy(b, off, blocco, usati, n);
+                usati += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void inviaBlocco() throws IOException {
+            if (errore != null) {
+                throw errore;
+            }
+            accoda(blocco);
+            blocco = new byte[DIMENSIONE_BLOCCO];
+            usati = 0;
+        }
+
+        private void accoda(byte[] dati) throws IOException {
+            try {
+                coda.put(dati);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Scrittura interrotta", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (chiuso) {
+                return;
+            }
+            chiuso = true;
+            if (usati > 0) {
+                byte[] ultimo = new byte[usati];
+                System.arraycopy(blocco, 0, ultimo, 0, usati);
+                accoda(ultimo);
+            }
+            accoda(FINE);
+            try {
+                compressore.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Scrittura interrotta", e);
+            }
+            if (errore != null) {
+                throw errore;
+            }
+        }
+    }
+
+    /**
+     * Flusso di lettura che riceve i blocchi decompressi dal thread di decompressione.
+     */
+    private static final class LetturaDecompressa extends InputStream {
+
+        private final BlockingQueue<byte[]> coda = new ArrayBlockingQueue<>(BLOCCHI_IN_CODA);
+        private final Thread decompressore;
+        private byte[] blocco = new byte[0];
+        private int letti;
+        private boolean finito;
+
+        // Impostato alla chiusura per fermare il thread di decompressione
+        private volatile boolean chiuso;
+        private volatile IOException errore;
+
+        private LetturaDecompressa(GZIPInputStream gzip) {
+            decompressore = new Thread(() -> decomprimi(gzip), "decompressione-gzip");
+            decompressore.setDaemon(true);
+            decompressore.start();
+        }
+
+        private void decomprimi(GZIPInputStream gzip) {
+            try (InputStream sorgente = gzip) {
+                byte[] dati = new byte[DIMENSIONE_BLOCCO];
+                int n;
+                while (!chiuso && (n = sorgente.readNBytes(dati, 0, dati.length)) > 0) {
+                    coda.put(n == dati.length ? dati : Arrays.copyOf(dati, n));
+                    dati = new byte[DIMENSIONE_BLOCCO];
+                }
+            } catch (IOException e) {
+                errore = e;
+            } catch (InterruptedException e) {
+                errore = new IOException("Lettura interrotta", e);
+            }
+            try {
+                coda.put(FINE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean prossimoBlocco() throws IOException {
+            if (finito) {
+                return false;
+            }
+            try {
+                blocco = coda.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Lettura interrotta", e);
+            }
+            letti = 0;
+            if (blocco == FINE) {
+                finito = true;
+                if (errore != null) {
+                    throw errore;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (letti == blocco.length && !prossimoBlocco()) {
+                return -1;
+            }
+            return blocco[letti++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (letti == blocco.length && !prossimoBlocco()) {
+                return -1;
+            }
+            int n = Math.min(len, blocco.length - letti);
+            System.arraycopy(blocco, letti, b, off, n);
+            letti += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            if (chiuso) {
+                return;
+            }
+            chiuso = true;
+            // Svuota la coda finché il thread non termina, così non resta bloccato su put()
+            while (!finito) {
+                try {
+                    finito = coda.take() == FINE;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flusso che inoltra le scritture ma non chiude la destinazione.
+     */
+    private static final class NonChiudibile extends FilterOutputStream {
+
+        private NonChiudibile(OutputStream destinazione) {
+            super(destinazione);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package dao;
+
+import model.Libro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Confronto tra due versioni di un catalogo (ad esempio l'esportazione di ieri e quella
+ * di oggi), che produce un file delle modifiche con i libri aggiunti, rimossi e modificati.
+ * <p>
+ * I due file vengono ordinati per ISBN con un ordinamento esterno e poi scorsi insieme,
+ * come in una fusione: a ogni passo si confrontano i due ISBN correnti e si avanza nel file
+ * con l'ISBN minore. Gli ISBN ripetuti in un catalogo vengono riconosciuti durante la fusione,
+ * dove sono consecutivi, invece che durante la lettura: così la memoria usata dipende dalla
+ * dimensione dei blocchi dell'ordinamento e non da quella dei cataloghi.
+ */
+public class ConfrontoCataloghi {
+
+    private static final Comparator<Libro> PER_ISBN = Comparator.comparing(Libro::getIsbn);
+
+    private final int libriPerBlocco;
+
+    /**
+     * Costruttore con la dimensione predefinita dei blocchi.
+     */
+    public ConfrontoCataloghi() {
+        this(OrdinamentoEsterno.LIBRI_PER_BLOCCO);
+    }
+
+    /**
+     * Costruttore del confronto.
+     *
+     * @param libriPerBlocco Numero massimo di libri per catalogo tenuti in memoria durante l'ordinamento
+     */
+    public ConfrontoCataloghi(int libriPerBlocco) {
+        this.libriPerBlocco = libriPerBlocco;
+    }
+
+    /**
+     * Confronta due cataloghi e scrive le modifiche che trasformano il primo nel secondo.
+     *
+     * @param daoPrecedente DAO del formato del catalogo precedente
+     * @param percorsoPrecedente Percorso del catalogo precedente
+     * @param daoNuovo DAO del formato del catalogo nuovo
+     * @param percorsoNuovo Percorso del catalogo nuovo
+     * @param percorsoModifiche Percorso del file delle modifiche (.csv o .json, eventualmente .gz)
+     * @return Esito del confronto, con il numero di libri per tipo di modifica
+     * @throws IOException In caso di errori di lettura, libri non validi o errori di scrittura
+     */
+    public Esito confronta(LibroDAO daoPrecedente, String percorsoPrecedente, LibroDAO daoNuovo,
+                           String percorsoNuovo, String percorsoModifiche) throws IOException {
+        OrdinamentoEsterno ordinamento = new OrdinamentoEsterno(PER_ISBN, libriPerBlocco);
+        Esito esito = new Esito();
+
+        try (OrdinamentoEsterno.Flusso precedenti = ordinamento.ordina(daoPrecedente, percorsoPrecedente);
+             OrdinamentoEsterno.Flusso nuovi = ordinamento.ordina(daoNuovo, percorsoNuovo);
+             FileModifiche.Scrittura modifiche = FileModifiche.apriScrittura(percorsoModifiche)) {
+            Libro precedente = prossimo(precedenti, null, percorsoPrecedente);
+            Libro nuovo = prossimo(nuovi, null, percorsoNuovo);
+
+            while (precedente != null || nuovo != null) {
+                int confronto = precedente == null ? 1
+                        : nuovo == null ? -1
+                        : precedente.getIsbn().compareTo(nuovo.getIsbn());
+
+                if (confronto < 0) {
+                    modifiche.scrivi(FileModifiche.Operazione.RIMOSSO, precedente, "");
+                    esito.rimossi++;
+                    precedente = prossimo(precedenti, precedente, percorsoPrecedente);
+                } else if (confronto > 0) {
+                    modifiche.scrivi(FileModifiche.Operazione.AGGIUNTO, nuovo, "");
+                    esito.aggiunti++;
+                    nuovo = prossimo(nuovi, nuovo, percorsoNuovo);
+                } else {
+                    String differenze = differenze(precedente, nuovo);
+                    if (differenze.isEmpty()) {
+                        esito.invariati++;
+                    } else {
+                        modifiche.scrivi(FileModifiche.Operazione.MODIFICATO, nuovo, differenze);
+                        esito.modificati++;
+                    }
+                    precedente = prossimo(precedenti, precedente, percorsoPrecedente);
+                    nuovo = prossimo(nuovi, nuovo, percorsoNuovo);
+                }
+            }
+            modifiche.conferma();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return esito;
+    }
+
+    /**
+     * Legge il libro successivo di un catalogo ordinato per ISBN, verificando che non abbia
+     * lo stesso ISBN del libro corrente.
+     *
+     * @param libri Libri del catalogo in ordine di ISBN
+     * @param corrente Libro corrente del catalogo, o null all'inizio
+     * @param percorso Percorso del catalogo, per il messaggio di errore
+     * @return Libro successivo, o null alla fine del catalogo
+     * @throws IOException Se il catalogo contiene due libri con lo stesso ISBN
+     */
+    private static Libro prossimo(OrdinamentoEsterno.Flusso libri, Libro corrente, String percorso)
+            throws IOException {
+        if (!libri.hasNext()) {
+            return null;
+        }
+        Libro prossimo = libri.next();
+        if (corrente != null && corrente.getIsbn().equals(prossimo.getIsbn())) {
+            throw new IOException("Il catalogo " + percorso + " contiene più libri con ISBN "
+                    + prossimo.getIsbn());
+        }
+        return prossimo;
+    }
+
+    /**
+     * Descrive le differenze campo per campo tra due versioni di un libro,
+     * ad esempio "valutazione: 3 -> 5; genere: Storico -> Romanzo".
+     *
+     * @param precedente Versione precedente del libro
+     * @param nuovo Versione nuova del libro
+     * @return Descrizione delle differenze, o stringa vuota se i dati coincidono
+     */
+    public static String differenze(Libro precedente, Libro nuovo) {
+        StringBuilder sb = new StringBuilder();
+        aggiungiDifferenza(sb, "titolo", precedente.getTitolo(), nuovo.getTitolo());
+        aggiungiDifferenza(sb, "autore", precedente.getAutore(), nuovo.getAutore());
+        aggiungiDifferenza(sb, "genere", precedente.getGenere(), nuovo.getGenere());
+        aggiungiDifferenza(sb, "valutazione", precedente.getValutazione(), nuovo.getValutazione());
+        aggiungiDifferenza(sb, "statoLettura", precedente.getStatoLettura(), nuovo.getStatoLettura());
+        return sb.toString();
+    }
+
+    private static void aggiungiDifferenza(StringBuilder sb, String campo, Object precedente, Object nuovo) {
+        if (Objects.equals(precedente, nuovo)) {
+            return;
+        }
+        if (sb.length() > 0) {
+            sb.append("; ");
+        }
+        sb.append(campo).append(": ").append(precedente).append(" -> ").append(nuovo);
+    }
+
+    /**
+     * Numero di libri per tipo di modifica trovati dal confronto.
+     */
+    public static final class Esito {
+        private long aggiunti;
+        private long rimossi;
+        private long modificati;
+        private long invariati;
+
+        private Esito() {
+        }
+
+        public long getAggiunti() {
+            return aggiunti;
+        }
+
+        public long getRimossi() {
+            return rimossi;
+        }
+
+        public long getModificati() {
+            return modificati;
+        }
+
+        public long getInvariati() {
+            return invariati;
+        }
+
+        /**
+         * Riassume il confronto in una riga.
+         *
+         * @return Riepilogo dei conteggi
+         */
+        public String getRiepilogo() {
+            return "Aggiunti: " + aggiunti + ", rimossi: " + rimossi + ", modificati: " + modificati
+                    + ", invariati: " + invariati;
+        }
+    }
+}
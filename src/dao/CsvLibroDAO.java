@@ -4,8 +4,15 @@ import model.Libro;
 import model.StatoLettura;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
 
 /**
  * Implementazione dell'interfaccia LibroDAO per la gestione dei libri in formato CSV.
@@ -18,6 +25,21 @@ public class CsvLibroDAO implements LibroDAO {
     private static final String DOUBLE_QUOTE = "\"\"";
     private static final String HEADER = "titolo,autore,isbn,genere,valutazione,statoLettura";
 
+    // Livello di compressione dei file salvati con estensione .gz
+    private int livelloCompressione = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Imposta il livello di compressione dei file con estensione .gz:
+     * livelli bassi scrivono più in fretta, livelli alti producono file più piccoli.
+     *
+     * @param livello Livello da 0 (nessuna compressione) a 9 (massima), o -1 per quello predefinito
+     * @throws IllegalArgumentException se il livello non è valido
+     */
+    public void setLivelloCompressione(int livello) {
+        CompressioneGzip.verificaLivello(livello);
+        this.livelloCompressione = livello;
+    }
+
     /**
      * Salva una lista di libri in formato CSV.
      *
@@ -27,30 +49,60 @@ public class CsvLibroDAO implements LibroDAO {
      */
     @Override
     public void salvaLibri(List<Libro> libri, String percorsoFile) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(percorsoFile))) {
-            // Scrive l'intestazione
-            writer.write(HEADER);
-            writer.newLine();
+        salvaLibri(libri, percorsoFile, Avanzamento.NESSUNO);
+    }
 
-            // Scrive i dati di ogni libro
-            for (Libro libro : libri) {
-                StringBuilder sb = new StringBuilder();
+    /**
+     * Salva una lista di libri in formato CSV, segnalando l'avanzamento.
+     * Il file esistente viene sostituito solo quando la scrittura è completa.
+     *
+     * @param libri Lista di libri da salvare
+     * @param percorsoFile Percorso del file CSV in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri.iterator(), libri.size(), percorsoFile, avanzamento);
+    }
 
-                // Aggiunge i campi con escape se necessario
-                sb.append(escapeCsv(libro.getTitolo())).append(SEPARATOR);
-                sb.append(escapeCsv(libro.getAutore())).append(SEPARATOR);
-                sb.append(escapeCsv(libro.getIsbn())).append(SEPARATOR);
-                sb.append(escapeCsv(libro.getGenere())).append(SEPARATOR);
+    /**
+     * Salva in formato CSV i libri restituiti da un iteratore, un libro alla volta.
+     *
+     * @param libri Iteratore dei libri da salvare
+     * @param percorsoFile Percorso del file CSV in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento (il totale è -1, perché non è noto)
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    @Override
+    public void salvaLibri(Iterator<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri, -1, percorsoFile, avanzamento);
+    }
 
-                // Salva la valutazione (0 = "da valutare" o numero)
-                sb.append(escapeCsv(libro.getValutazioneAsString())).append(SEPARATOR);
+    private void scriviLibri(Iterator<Libro> libri, int totale, String percorsoFile, Avanzamento avanzamento)
+            throws IOException {
+        int scritti = 0;
 
-                sb.append(libro.getStatoLettura().name());
+        try (ScritturaAtomica scrittura = new ScritturaAtomica(percorsoFile, livelloCompressione)) {
+            BufferedWriter writer = scrittura.getWriter();
+
+            // Scrive l'intestazione
+            writer.write(HEADER);
+            writer.newLine();
 
-                writer.write(sb.toString());
+            // Scrive i dati di ogni libro
+            while (libri.hasNext()) {
+                writer.write(formattaRiga(libri.next()));
                 writer.newLine();
+
+                if (++scritti % Avanzamento.INTERVALLO == 0) {
+                    avanzamento.aggiorna(scritti, totale);
+                }
             }
+
+            scrittura.conferma();
         }
+        avanzamento.aggiorna(scritti, totale);
     }
 
     /**
@@ -64,66 +116,267 @@ public class CsvLibroDAO implements LibroDAO {
     @Override
     public List<Libro> caricaLibri(String percorsoFile) throws IOException {
         List<Libro> libri = new ArrayList<>();
+        caricaLibri(percorsoFile, libri::add);
+        return libri;
+    }
+
+    /**
+     * Carica i libri da un file CSV una riga alla volta, passando ogni libro valido
+     * alla destinazione appena letto. Se anche un solo libro non è valido, al termine
+     * della lettura viene lanciata un'eccezione con il rapporto degli errori.
+     *
+     * @param percorsoFile Percorso del file CSV da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    @Override
+    public void caricaLibri(String percorsoFile, Consumer<Libro> destinazione) throws IOException {
+        RapportoImportazione rapporto = importaLibri(percorsoFile, destinazione,
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA);
+
+        // Se ci sono errori, interrompi il caricamento e segnala
+        if (rapporto.haErrori()) {
+            throw new IOException(rapporto.getMessaggio());
+        }
+    }
+
+    /**
+     * Carica i libri da un file CSV come caricaLibri(String, Consumer), senza tenere in
+     * memoria gli ISBN letti per controllare quelli ripetuti.
+     *
+     * @param percorsoFile Percorso del file CSV da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    @Override
+    public void caricaLibriSenzaControlloIsbn(String percorsoFile, Consumer<Libro> destinazione)
+            throws IOException {
+        RapportoImportazione rapporto = importa(percorsoFile, lotto -> {
+            lotto.forEach(destinazione);
+            return List.of();
+        }, 1, RapportoImportazione.Modalita.SCARTA_E_CONTINUA, null, false);
+        if (rapporto.haErrori()) {
+            throw new IOException(rapporto.getMessaggio());
+        }
+    }
+
+    /**
+     * Importa i libri da un file CSV una riga alla volta, passando ogni libro valido
+     * alla destinazione e registrando nel rapporto quelli scartati.
+     *
+     * @param percorsoFile Percorso del file CSV da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi
+     * @param modalita Comportamento al primo libro non valido
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Consumer<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita) throws IOException {
+        return importa(percorsoFile, lotto -> {
+            lotto.forEach(destinazione);
+            return List.of();
+        }, 1, modalita, null, true);
+    }
+
+    /**
+     * Importa i libri da un file CSV passando quelli validi alla destinazione, che può
+     * rifiutarli se già presenti. Le righe dei libri scartati vengono copiate così come
+     * sono nel file degli scarti, in formato CSV, che può essere corretto e reimportato.
+     *
+     * @param percorsoFile Percorso del file CSV da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi, che restituisce false per quelli già presenti
+     * @param modalita Comportamento al primo libro non valido
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Predicate<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita, String percorsoScarti)
+            throws IOException {
+        return importa(percorsoFile, DestinazioneImportazione.perLibro(destinazione), 1, modalita,
+                percorsoScarti, true);
+    }
+
+    /**
+     * Importa i libri da un file CSV passando quelli validi alla destinazione a lotti.
+     * Fino all'aggiunta del lotto ogni libro conserva la sua riga: i libri rifiutati dalla
+     * destinazione vengono registrati come ISBN duplicati e copiati nel file degli scarti.
+     *
+     * @param percorsoFile Percorso del file CSV da cui caricare i dati
+     * @param destinazione Destinatario dei lotti di libri validi
+     * @param libriPerLotto Numero di libri di un lotto
+     * @param modalita Comportamento al primo libro non valido o rifiutato
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, DestinazioneImportazione destinazione,
+                                             int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                             String percorsoScarti) throws IOException {
+        return importa(percorsoFile, destinazione, libriPerLotto, modalita, percorsoScarti, true);
+    }
+
+    private RapportoImportazione importa(String percorsoFile, DestinazioneImportazione destinazione,
+                                         int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                         String percorsoScarti, boolean controllaIsbn)
+            throws IOException {
+        File file = verificaFile(percorsoFile);
+
+        RapportoImportazione rapporto = new RapportoImportazione("Riga", RapportoImportazione.MASSIMO_DETTAGLI);
+        Set<String> isbnLetti = controllaIsbn ? new HashSet<>() : null;
+        long numeroRiga = 1; // Inizia da 1 per l'intestazione
+
+        FileScarti scarti = null;
+        try {
+            try (LettoreConPosizione lettore = new LettoreConPosizione(CompressioneGzip.apriLettura(file),
+                    Charset.defaultCharset())) {
+                // Salta l'intestazione, che viene ripetuta nel file degli scarti
+                String line = lettore.leggiRiga();
+                numeroRiga++;
+                if (percorsoScarti != null) {
+                    scarti = FileScarti.csv(percorsoScarti, livelloCompressione, line != null ? line : HEADER);
+                }
+
+                // Legge le righe di dati; i libri in attesa vengono aggiunti anche dopo un errore
+                LottoImportazione lotto = new LottoImportazione(destinazione, libriPerLotto, rapporto, scarti);
+                try {
+                    long inizioRiga = lettore.getPosizione();
+                    while ((line = lettore.leggiRiga()) != null) {
+                        if (!line.trim().isEmpty()) {
+                            Libro libro = null;
+                            try {
+                                libro = parseLibroFromCsv(line);
+                            } catch (LibroNonValidoException e) {
+                                rapporto.registraErrore(e.getCodice(), numeroRiga, inizioRiga, null,
+                                        e.getMessage());
+                            }
+                            boolean valido = libro != null
+                                    && rapporto.verifica(libro, isbnLetti, numeroRiga, inizioRiga);
+                            if (!valido) {
+                                lotto.scarta(line);
+                            }
+                            if ((!valido || !lotto.aggiungi(libro, numeroRiga, inizioRiga, line))
+                                    && modalita == RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE) {
+                                rapporto.interrompi();
+                                break;
+                            }
+                        }
+                        numeroRiga++;
+                        inizioRiga = lettore.getPosizione();
+                    }
+                } finally {
+                    lotto.conferma();
+                }
+            }
+            if (scarti != null) {
+                scarti.conferma();
+            }
+        } finally {
+            if (scarti != null) {
+                scarti.close();
+            }
+        }
+        return rapporto;
+    }
+
+    /**
+     * Apre un file CSV senza caricarlo, registrando la posizione e l'ISBN di ogni riga
+     * non vuota. Le righe vengono convertite e validate solo quando vengono lette.
+     *
+     * @param percorsoFile Percorso del file CSV, non compresso
+     * @return Catalogo del file, da chiudere dopo l'uso
+     * @throws IOException In caso di errori durante la lettura del file o se il file è compresso
+     */
+    @Override
+    public CatalogoIndicizzato indicizzaLibri(String percorsoFile) throws IOException {
+        File file = verificaFile(percorsoFile);
+        if (CompressioneGzip.isCompresso(file.getName())) {
+            throw new IOException("I file compressi non possono essere aperti senza caricarli:\n" + percorsoFile);
+        }
+
+        CatalogoIndicizzato catalogo = new CatalogoIndicizzato(file.toPath(), Charset.defaultCharset(),
+                this::parseLibroFromCsv, CsvLibroDAO::isbnCsv);
+        try (LettoreConPosizione lettore = new LettoreConPosizione(new FileInputStream(file),
+                Charset.defaultCharset())) {
+            // Salta l'intestazione
+            lettore.leggiRiga();
+            long inizioRiga = lettore.getPosizione();
+            String line;
+            while ((line = lettore.leggiRiga()) != null) {
+                if (!line.trim().isEmpty()) {
+                    catalogo.aggiungi(inizioRiga, (int) (lettore.getPosizione() - inizioRiga), isbnCsv(line));
+                }
+                inizioRiga = lettore.getPosizione();
+            }
+        } catch (IOException | RuntimeException e) {
+            catalogo.close();
+            throw e;
+        }
+        return catalogo;
+    }
+
+    /**
+     * Verifica che il file abbia solo l'estensione .csv (eventualmente compresso, .csv.gz) e che esista.
+     *
+     * @param percorsoFile Percorso del file
+     * @return File verificato
+     * @throws IOException Se l'estensione non è valida o il file non esiste
+     */
+    private File verificaFile(String percorsoFile) throws IOException {
         File file = new File(percorsoFile);
 
-        // Verifica che il file abbia solo una estensione e che sia .csv
-        String nomeFile = file.getName();
+        // Verifica che il file abbia solo una estensione e che sia .csv (eventualmente compresso, .csv.gz)
+        String nomeFile = CompressioneGzip.senzaEstensione(file.getName());
         int ultimoPunto = nomeFile.lastIndexOf('.');
         if (ultimoPunto == -1 || !nomeFile.substring(ultimoPunto + 1).equalsIgnoreCase("csv") ||
                 nomeFile.substring(0, ultimoPunto).contains(".")) {
             System.err.println("Formato file non valido: " + percorsoFile);
-            throw new IOException("Formato file non valido.\n Il file deve avere solo l'estensione .csv senza estensioni multiple.");
+            throw new IOException("Formato file non valido.\n Il file deve avere solo l'estensione .csv (o .csv.gz) senza estensioni multiple.");
         }
 
-        // Se il file non esiste, restituisce una lista vuota
         if (!file.exists()) {
             System.err.println("File non trovato: " + percorsoFile);
             throw new IOException("File non trovato:\n" + percorsoFile);
         }
+        return file;
+    }
 
-        List<String> errori = new ArrayList<>();
-        int numeroRiga = 1; // Inizia da 1 per l'intestazione
+    /**
+     * Estrae l'ISBN da una riga CSV senza convertire il libro.
+     *
+     * @param csvLine Riga CSV
+     * @return ISBN, o null se la riga non ha il numero di campi di un libro
+     */
+    static String isbnCsv(String csvLine) {
+        List<String> fields = dividiCampi(csvLine);
+        return fields.size() == 6 ? fields.get(2) : null;
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            // Salta l'intestazione
-            String line = reader.readLine();
-            numeroRiga++;
+    /**
+     * Converte un libro in una riga CSV, senza terminatore di riga.
+     *
+     * @param libro Libro da convertire
+     * @return Riga CSV con i campi del libro
+     */
+    String formattaRiga(Libro libro) {
+        StringBuilder sb = new StringBuilder();
 
-            // Legge le righe di dati
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    Libro libro = parseLibroFromCsv(line);
-                    if (libro == null) {
-                        // Libro con formato CSV non valido
-                        errori.add("Riga " + numeroRiga + ": formato CSV non valido");
-                    } else if (!libro.isValid()) {
-                        // Libro con dati incompleti o invalidi
-                        errori.add("Riga " + numeroRiga + " (" +
-                                (libro.getTitolo().isEmpty() ? "titolo mancante" : libro.getTitolo()) +
-                                "): dati incompleti o non validi");
-                    } else {
-                        // Libro valido, verifica duplicati o isbn già presente
-                        if(libri.contains(libro)){
-                            errori.add("Riga " + numeroRiga + " (" +
-                                    (libro.getTitolo().isEmpty() ? "titolo mancante" : libro.getTitolo()) +
-                                    "): libro già presente o isbn duplicato");
-                        }else{
-                            libri.add(libro);
-                        }
-                    }
-                }
-                numeroRiga++;
-            }
-        }
+        // Aggiunge i campi con escape se necessario
+        sb.append(escapeCsv(libro.getTitolo())).append(SEPARATOR);
+        sb.append(escapeCsv(libro.getAutore())).append(SEPARATOR);
+        sb.append(escapeCsv(libro.getIsbn())).append(SEPARATOR);
+        sb.append(escapeCsv(libro.getGenere())).append(SEPARATOR);
 
-        // Se ci sono errori, interrompi il caricamento e segnala
-        if (!errori.isEmpty()) {
-            String messaggioErrore = "Impossibile caricare il file. Sono stati trovati libri non validi:" +
-                    "\n" + String.join("\n", errori);
-            throw new IOException(messaggioErrore);
-        }
+        // Salva la valutazione (0 = "da valutare" o numero)
+        sb.append(escapeCsv(libro.getValutazioneAsString())).append(SEPARATOR);
 
-        return libri;
+        sb.append(libro.getStatoLettura().name());
+        return sb.toString();
     }
 
     /**
@@ -131,10 +384,27 @@ public class CsvLibroDAO implements LibroDAO {
      * Include validazione degli input durante il parsing.
      *
      * @param csvLine Riga CSV da convertire
-     * @return Oggetto Libro costruito dai dati CSV, o null in caso di errore
+     * @return Oggetto Libro costruito dai dati CSV
+     * @throws LibroNonValidoException Se la riga non descrive un libro valido
      */
-    private Libro parseLibroFromCsv(String csvLine) {
-        // Divide la riga in campi tenendo conto delle virgolette
+    Libro parseLibroFromCsv(String csvLine) throws LibroNonValidoException {
+        List<String> fields = dividiCampi(csvLine);
+
+        // Verifica che ci siano tutti i campi necessari
+        if (fields.size() != 6) {
+            throw new LibroNonValidoException(RapportoImportazione.Codice.FORMATO_NON_VALIDO,
+                    "numero di campi errato: " + fields.size());
+        }
+        return libroDaCampi(fields);
+    }
+
+    /**
+     * Divide una riga CSV in campi tenendo conto delle virgolette.
+     *
+     * @param csvLine Riga CSV
+     * @return Campi della riga, senza virgolette di delimitazione
+     */
+    static List<String> dividiCampi(String csvLine) {
         List<String> fields = new ArrayList<>();
         StringBuilder field = new StringBuilder();
         boolean inQuotes = false;
@@ -163,13 +433,17 @@ public class CsvLibroDAO implements LibroDAO {
 
         // Aggiungi l'ultimo campo
         fields.add(field.toString());
+        return fields;
+    }
 
-        // Verifica che ci siano tutti i campi necessari
-        if (fields.size() != 6) {
-            System.err.println("Formato CSV non valido. Numero di campi errato: " + fields.size());
-            return null;
-        }
-
+    /**
+     * Costruisce un libro dai sei campi di una riga CSV, nell'ordine dell'intestazione.
+     *
+     * @param fields Campi del libro
+     * @return Oggetto Libro costruito dai campi
+     * @throws LibroNonValidoException Se i campi non descrivono un libro valido
+     */
+    Libro libroDaCampi(List<String> fields) throws LibroNonValidoException {
         // Estrae i valori dai campi
         String titolo = fields.get(0);
         String autore = fields.get(1);
@@ -186,13 +460,13 @@ public class CsvLibroDAO implements LibroDAO {
                 valutazione = Integer.parseInt(valutazioneStr);
                 // Validazione rigorosa del range
                 if (valutazione < 0 || valutazione > 5) {
-                    System.err.println("La valutazione deve essere tra 0 e 5, trovato: " + valutazione);
-                    return null;
+                    throw new LibroNonValidoException(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA,
+                            "deve essere tra 0 e 5, trovato: " + valutazione);
                 }
             }
         } catch (NumberFormatException e) {
-            System.err.println("La valutazione deve essere un numero intero tra 0 e 5 o 'Da valutare', trovato: " + valutazioneStr);
-            return null;
+            throw new LibroNonValidoException(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA,
+                    "deve essere un numero intero tra 0 e 5 o 'Da valutare', trovato: " + valutazioneStr);
         }
 
         // Gestione dello stato di lettura con validazione rigorosa
@@ -205,21 +479,16 @@ public class CsvLibroDAO implements LibroDAO {
                 // Prova a convertire usando la descrizione
                 statoLettura = StatoLettura.fromString(statoLetturaStr);
             } catch (IllegalArgumentException ex) {
-                System.err.println("Stato di lettura non valido: " + statoLetturaStr);
-                return null;
+                throw new LibroNonValidoException(RapportoImportazione.Codice.STATO_LETTURA_NON_VALIDO,
+                        statoLetturaStr);
             }
         }
 
-        Libro libro;
         try {
-            libro = new Libro(titolo, autore, isbn, genere, valutazione, statoLettura);
+            return new Libro(titolo, autore, isbn, genere, valutazione, statoLettura);
         } catch (IllegalArgumentException e) {
-            System.err.println("CSV libro non valido: " + csvLine);
-            System.err.println("Errore nella creazione del libro: " + e.getMessage());
-            return null;
+            throw new LibroNonValidoException(RapportoImportazione.Codice.DATI_NON_VALIDI, e.getMessage());
         }
-
-        return libro;
     }
 
     /**
@@ -228,7 +497,7 @@ public class CsvLibroDAO implements LibroDAO {
      * @param field Campo da escapare
      * @return Campo escapato per CSV
      */
-    private String escapeCsv(String field) {
+    String escapeCsv(String field) {
         if (field == null) {
             return "";
         }
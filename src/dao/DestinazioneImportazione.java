@@ -0,0 +1,44 @@
+package dao;
+
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Destinazione che aggiunge a lotti i libri validi di un'importazione.
+ * Il controllo dei libri già presenti avviene quando il lotto viene aggiunto: i libri
+ * rifiutati in quel momento vengono restituiti al DAO, che li registra nel rapporto
+ * come ISBN duplicati e li copia nel file degli scarti.
+ */
+@FunctionalInterface
+public interface DestinazioneImportazione {
+
+    /**
+     * Aggiunge un lotto di libri validi, con ISBN distinti.
+     *
+     * @param lotto Libri da aggiungere, nell'ordine del file
+     * @return Libri del lotto non aggiunti perché già presenti (le stesse istanze), o una lista vuota
+     */
+    List<Libro> aggiungi(List<Libro> lotto);
+
+    /**
+     * Adatta una destinazione che accetta o rifiuta un libro alla volta, da usare con
+     * lotti di un solo libro.
+     *
+     * @param destinazione Destinatario dei libri, che restituisce false per quelli già presenti
+     * @return Destinazione dei lotti
+     */
+    static DestinazioneImportazione perLibro(Predicate<Libro> destinazione) {
+        return lotto -> {
+            List<Libro> rifiutati = new ArrayList<>();
+            for (Libro libro : lotto) {
+                if (!destinazione.test(libro)) {
+                    rifiutati.add(libro);
+                }
+            }
+            return rifiutati;
+        };
+    }
+}
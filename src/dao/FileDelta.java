@@ -0,0 +1,146 @@
+package dao;
+
+import model.Libro;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * File delle modifiche affiancato a un file della libreria (stesso percorso con
+ * estensione aggiuntiva .delta), usato dal salvataggio automatico.
+ * <p>
+ * Ogni riga descrive lo stato più recente di un libro: "+" seguito dalla riga CSV del
+ * libro aggiunto o modificato, oppure "-" seguito dall'ISBN del libro eliminato.
+ * Le righe vengono solo accodate, quindi ogni scrittura costa quanto le modifiche
+ * registrate e non quanto l'intera collezione. Applicare le righe al contenuto del
+ * file principale, nell'ordine in cui sono scritte, ricostruisce l'ultima collezione salvata.
+ */
+public class FileDelta {
+
+    // Estensione aggiunta al percorso del file principale
+    public static final String ESTENSIONE = ".delta";
+
+    private static final char AGGIORNATO = '+';
+    private static final char RIMOSSO = '-';
+
+    private final File file;
+    private final CsvLibroDAO csv;
+
+    /**
+     * Costruttore che associa il file delle modifiche a un file della libreria.
+     *
+     * @param percorsoFilePrincipale Percorso del file della libreria
+     */
+    public FileDelta(String percorsoFilePrincipale) {
+        this.file = new File(percorsoFilePrincipale + ESTENSIONE);
+        this.csv = new CsvLibroDAO();
+    }
+
+    /**
+     * Verifica se il file delle modifiche esiste.
+     *
+     * @return true se ci sono modifiche registrate
+     */
+    public boolean esiste() {
+        return file.exists();
+    }
+
+    /**
+     * Accoda lo stato dei libri modificati ed eliminati e forza le righe su disco.
+     *
+     * @param aggiornati Libri aggiunti o modificati, con i dati attuali
+     * @param rimossi ISBN dei libri eliminati
+     * @return Numero di righe scritte
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    public int accoda(Collection<Libro> aggiornati, Collection<String> rimossi) throws IOException {
+        if (aggiornati.isEmpty() && rimossi.isEmpty()) {
+            return 0;
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(file, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream))) {
+            for (Libro libro : aggiornati) {
+                writer.write(AGGIORNATO + csv.formattaRiga(libro));
+                writer.newLine();
+            }
+            for (String isbn : rimossi) {
+                writer.write(RIMOSSO + isbn);
+                writer.newLine();
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+        return aggiornati.size() + rimossi.size();
+    }
+
+    /**
+     * Rilegge le modifiche registrate, nell'ordine in cui sono state scritte.
+     * Un'ultima riga incompleta, lasciata da una scrittura interrotta, viene ignorata.
+     *
+     * @param aggiornato Destinatario dei libri aggiunti o modificati
+     * @param rimosso Destinatario degli ISBN dei libri eliminati
+     * @throws IOException In caso di errori di lettura o di righe non valide
+     */
+    public void applica(Consumer<Libro> aggiornato, Consumer<String> rimosso) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            int numeroRiga = 0;
+            String riga = reader.readLine();
+            while (riga != null) {
+                numeroRiga++;
+                String successiva = reader.readLine();
+                if (!applicaRiga(riga, aggiornato, rimosso) && successiva != null) {
+                    throw new IOException("File delle modifiche non valido alla riga " + numeroRiga + ": " + file);
+                }
+                riga = successiva;
+            }
+        }
+    }
+
+    private boolean applicaRiga(String riga, Consumer<Libro> aggiornato, Consumer<String> rimosso) {
+        if (riga.length() < 2) {
+            return false;
+        }
+        String contenuto = riga.substring(1);
+        if (riga.charAt(0) == RIMOSSO) {
+            rimosso.accept(contenuto);
+            return true;
+        }
+        if (riga.charAt(0) == AGGIORNATO) {
+            Libro libro;
+            try {
+                libro = csv.parseLibroFromCsv(contenuto);
+            } catch (LibroNonValidoException e) {
+                return false;
+            }
+            if (!libro.isValid()) {
+                return false;
+            }
+            aggiornato.accept(libro);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Elimina il file delle modifiche, dopo che sono state riportate nel file principale.
+     *
+     * @throws IOException Se il file esiste ma non può essere eliminato
+     */
+    public void elimina() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Impossibile eliminare il file delle modifiche: " + file);
+        }
+    }
+}
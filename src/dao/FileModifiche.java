@@ -0,0 +1,231 @@
+package dao;
+
+import model.Libro;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * File delle modifiche tra due versioni di un catalogo, in formato CSV o JSON
+ * (eventualmente compresso), prodotto da ConfrontoCataloghi e applicabile alla libreria.
+ * <p>
+ * Ogni libro del file ha un'operazione (AGGIUNTO, RIMOSSO, MODIFICATO) e la descrizione
+ * delle differenze campo per campo. In CSV l'operazione è la prima colonna e le differenze
+ * l'ultima, attorno alle colonne del libro; in JSON sono due campi aggiuntivi dell'oggetto.
+ * Per i libri rimossi il file contiene i dati della versione precedente, per gli altri
+ * quelli della nuova.
+ */
+public class FileModifiche {
+
+    // Intestazione del file CSV delle modifiche
+    static final String INTESTAZIONE_CSV = "operazione,titolo,autore,isbn,genere,valutazione,statoLettura,differenze";
+
+    private static final String CAMPO_OPERAZIONE = "operazione";
+    private static final String CAMPO_DIFFERENZE = "differenze";
+
+    /**
+     * Tipo di modifica di un libro.
+     */
+    public enum Operazione {
+        AGGIUNTO,
+        RIMOSSO,
+        MODIFICATO
+    }
+
+    /**
+     * Destinatario delle modifiche lette da un file.
+     */
+    @FunctionalInterface
+    public interface Destinatario {
+
+        /**
+         * Riceve la modifica di un libro.
+         *
+         * @param operazione Tipo di modifica
+         * @param libro Dati del libro (quelli precedenti per RIMOSSO)
+         */
+        void modifica(Operazione operazione, Libro libro);
+    }
+
+    private FileModifiche() {
+    }
+
+    /**
+     * Verifica se il file delle modifiche è in formato JSON, in base all'estensione.
+     *
+     * @param percorsoFile Percorso del file
+     * @return true per .json o .json.gz, false per .csv o .csv.gz
+     * @throws IOException Se l'estensione non è né CSV né JSON
+     */
+    private static boolean isJson(String percorsoFile) throws IOException {
+        String nome = CompressioneGzip.senzaEstensione(new File(percorsoFile).getName()).toLowerCase();
+        if (nome.endsWith(".json")) {
+            return true;
+        }
+        if (nome.endsWith(".csv")) {
+            return false;
+        }
+        throw new IOException("Formato file non valido.\n Il file delle modifiche deve avere estensione .csv o .json (eventualmente .gz).");
+    }
+
+    /**
+     * Apre in scrittura un file delle modifiche, nel formato indicato dall'estensione.
+     * Il file viene sostituito solo alla conferma.
+     *
+     * @param percorsoFile Percorso del file delle modifiche
+     * @return Scrittura del file
+     * @throws IOException In caso di formato non valido o di errori nella creazione del file
+     */
+    public static Scrittura apriScrittura(String percorsoFile) throws IOException {
+        return new Scrittura(percorsoFile, isJson(percorsoFile));
+    }
+
+    /**
+     * Legge un file delle modifiche un libro alla volta.
+     *
+     * @param percorsoFile Percorso del file delle modifiche
+     * @param destinatario Destinatario delle modifiche, nell'ordine del file
+     * @throws IOException In caso di errori di lettura o di righe non valide
+     */
+    public static void leggi(String percorsoFile, Destinatario destinatario) throws IOException {
+        boolean json = isJson(percorsoFile);
+        File file = new File(percorsoFile);
+        if (!file.exists()) {
+            throw new IOException("File non trovato:\n" + percorsoFile);
+        }
+
+        try (LettoreConPosizione lettore = new LettoreConPosizione(CompressioneGzip.apriLettura(file),
+                Charset.defaultCharset())) {
+            if (json) {
+                leggiJson(lettore, destinatario);
+            } else {
+                leggiCsv(lettore, destinatario);
+            }
+        }
+    }
+
+    private static void leggiCsv(LettoreConPosizione lettore, Destinatario destinatario) throws IOException {
+        CsvLibroDAO csv = new CsvLibroDAO();
+        String intestazione = lettore.leggiRiga();
+        if (intestazione == null) {
+            return;
+        }
+
+        long numeroRiga = 1;
+        String riga;
+        while ((riga = lettore.leggiRiga()) != null) {
+            numeroRiga++;
+            if (riga.trim().isEmpty()) {
+                continue;
+            }
+            List<String> campi = CsvLibroDAO.dividiCampi(riga);
+            if (campi.size() != 8) {
+                throw new IOException("Riga " + numeroRiga + ": numero di campi errato: " + campi.size());
+            }
+            try {
+                destinatario.modifica(operazione(campi.get(0), numeroRiga), csv.libroDaCampi(campi.subList(1, 7)));
+            } catch (LibroNonValidoException e) {
+                throw new IOException("Riga " + numeroRiga + ": " + e.getCodice().getDescrizione()
+                        + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private static void leggiJson(LettoreConPosizione lettore, Destinatario destinatario) throws IOException {
+        JsonLibroDAO json = new JsonLibroDAO();
+        if (!JsonLibroDAO.inizioArray(lettore)) {
+            return;
+        }
+
+        long indice = 0;
+        JsonLibroDAO.ElementoJson elemento;
+        while ((elemento = JsonLibroDAO.prossimoOggetto(lettore)) != null) {
+            indice++;
+            Map<String, String> altriCampi = new LinkedHashMap<>();
+            try {
+                Libro libro = json.parseJsonLibro(elemento.testo, altriCampi);
+                destinatario.modifica(operazione(altriCampi.get(CAMPO_OPERAZIONE), indice), libro);
+            } catch (LibroNonValidoException e) {
+                throw new IOException("Libro #" + indice + ": " + e.getCodice().getDescrizione()
+                        + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private static Operazione operazione(String valore, long numero) throws IOException {
+        try {
+            return Operazione.valueOf(valore == null ? "" : valore.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Operazione non valida al libro " + numero + ": " + valore);
+        }
+    }
+
+    /**
+     * Scrittura di un file delle modifiche.
+     */
+    public static final class Scrittura implements Closeable {
+        private final ScritturaAtomica scrittura;
+        private final boolean json;
+        private final CsvLibroDAO csv;
+        private final JsonLibroDAO jsonDAO;
+        private boolean primo;
+
+        private Scrittura(String percorsoFile, boolean json) throws IOException {
+            this.scrittura = new ScritturaAtomica(percorsoFile, Deflater.DEFAULT_COMPRESSION);
+            this.json = json;
+            this.csv = new CsvLibroDAO();
+            this.jsonDAO = new JsonLibroDAO();
+            this.primo = true;
+            scrittura.getWriter().write(json ? "[\n" : INTESTAZIONE_CSV + "\n");
+        }
+
+        /**
+         * Scrive la modifica di un libro.
+         *
+         * @param operazione Tipo di modifica
+         * @param libro Dati del libro (quelli precedenti per RIMOSSO)
+         * @param differenze Descrizione delle differenze campo per campo, o stringa vuota
+         * @throws IOException In caso di errori durante la scrittura
+         */
+        public void scrivi(Operazione operazione, Libro libro, String differenze) throws IOException {
+            BufferedWriter writer = scrittura.getWriter();
+            if (json) {
+                Map<String, String> altriCampi = new LinkedHashMap<>();
+                altriCampi.put(CAMPO_OPERAZIONE, operazione.name());
+                altriCampi.put(CAMPO_DIFFERENZE, differenze);
+                if (!primo) {
+                    writer.write(",\n");
+                }
+                writer.write(jsonDAO.formattaOggetto(libro, altriCampi));
+            } else {
+                writer.write(operazione.name() + "," + csv.formattaRiga(libro) + "," + csv.escapeCsv(differenze));
+                writer.newLine();
+            }
+            primo = false;
+        }
+
+        /**
+         * Completa il file e sostituisce quello esistente.
+         *
+         * @throws IOException In caso di errori durante la scrittura
+         */
+        public void conferma() throws IOException {
+            if (json) {
+                scrittura.getWriter().write(primo ? "]" : "\n]");
+            }
+            scrittura.conferma();
+        }
+
+        @Override
+        public void close() throws IOException {
+            scrittura.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package dao;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * File dei libri scartati da un'importazione, nello stesso formato del file importato
+ * (intestazione CSV o array JSON) e con le righe o gli oggetti copiati così come sono.
+ * Dopo aver corretto gli scarti, il file può essere importato a sua volta: l'importazione
+ * riprende solo i libri scartati, senza rileggere il file originale.
+ * <p>
+ * Il file viene creato al primo scarto e sostituito solo a importazione completata;
+ * se l'importazione non scarta nulla, un file degli scarti precedente viene eliminato.
+ */
+public class FileScarti implements Closeable {
+
+    // Suffisso aggiunto al nome del file importato, prima dell'estensione
+    public static final String SUFFISSO = "_scarti";
+
+    private final String percorsoFile;
+    private final int livelloCompressione;
+    private final String apertura;
+    private final String separatore;
+    private final String chiusura;
+    private ScritturaAtomica scrittura;
+
+    private FileScarti(String percorsoFile, int livelloCompressione, String apertura, String separatore,
+                       String chiusura) {
+        this.percorsoFile = percorsoFile;
+        this.livelloCompressione = livelloCompressione;
+        this.apertura = apertura;
+        this.separatore = separatore;
+        this.chiusura = chiusura;
+    }
+
+    /**
+     * Crea il file degli scarti di un'importazione CSV.
+     *
+     * @param percorsoFile Percorso del file degli scarti
+     * @param livelloCompressione Livello di compressione, se il nome termina con .gz
+     * @param intestazione Intestazione del file importato
+     * @return File degli scarti
+     */
+    static FileScarti csv(String percorsoFile, int livelloCompressione, String intestazione) {
+        String fineRiga = System.lineSeparator();
+        return new FileScarti(percorsoFile, livelloCompressione, intestazione + fineRiga, fineRiga, fineRiga);
+    }
+
+    /**
+     * Crea il file degli scarti di un'importazione JSON.
+     *
+     * @param percorsoFile Percorso del file degli scarti
+     * @param livelloCompressione Livello di compressione, se il nome termina con .gz
+     * @return File degli scarti
+     */
+    static FileScarti json(String percorsoFile, int livelloCompressione) {
+        String fineRiga = System.lineSeparator();
+        return new FileScarti(percorsoFile, livelloCompressione, "[" + fineRiga + "  ",
+                "," + fineRiga + "  ", fineRiga + "]" + fineRiga);
+    }
+
+    /**
+     * Ricava il percorso predefinito del file degli scarti, aggiungendo il suffisso al nome
+     * del file importato: "libri.csv.gz" diventa "libri_scarti.csv.gz". Un file degli scarti
+     * mantiene il proprio nome, così la sua importazione lo riscrive con gli scarti rimasti.
+     *
+     * @param percorsoFile Percorso del file importato
+     * @return Percorso del file degli scarti
+     */
+    public static String percorsoPredefinito(String percorsoFile) {
+        File file = new File(percorsoFile);
+        String nomeFile = file.getName();
+        String compresso = CompressioneGzip.isCompresso(nomeFile) ? CompressioneGzip.ESTENSIONE : "";
+        String nome = CompressioneGzip.senzaEstensione(nomeFile);
+        int ultimoPunto = nome.lastIndexOf('.');
+        String base = ultimoPunto == -1 ? nome : nome.substring(0, ultimoPunto);
+        String estensione = ultimoPunto == -1 ? "" : nome.substring(ultimoPunto);
+        if (base.endsWith(SUFFISSO)) {
+            return percorsoFile;
+        }
+        return new File(file.getParentFile(), base + SUFFISSO + estensione + compresso).getPath();
+    }
+
+    /**
+     * Accoda il testo originale di un libro scartato.
+     *
+     * @param elemento Riga CSV o oggetto JSON, senza terminatori
+     * @throws IOException In caso di errori durante la scrittura
+     */
+    void aggiungi(String elemento) throws IOException {
+        BufferedWriter writer;
+        if (scrittura == null) {
+            scrittura = new ScritturaAtomica(percorsoFile, livelloCompressione);
+            writer = scrittura.getWriter();
+            writer.write(apertura);
+        } else {
+            writer = scrittura.getWriter();
+            writer.write(separatore);
+        }
+        writer.write(elemento);
+    }
+
+    /**
+     * Completa il file degli scarti, sostituendo quello precedente, o lo elimina se
+     * non ci sono scarti. Va chiamato dopo aver chiuso il file importato, che può
+     * coincidere con il file degli scarti.
+     *
+     * @throws IOException In caso di errori durante la scrittura o l'eliminazione
+     */
+    void conferma() throws IOException {
+        if (scrittura == null) {
+            File file = new File(percorsoFile);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Impossibile eliminare il file degli scarti: " + percorsoFile);
+            }
+            return;
+        }
+        scrittura.getWriter().write(chiusura);
+        scrittura.conferma();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scrittura != null) {
+            scrittura.close();
+        }
+    }
+}
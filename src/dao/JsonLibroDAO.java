@@ -4,8 +4,16 @@ import model.Libro;
 import model.StatoLettura;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
 
 /**
  * Implementazione dell'interfaccia LibroDAO per la gestione dei libri in formato JSON.
@@ -13,6 +21,21 @@ import java.util.List;
  */
 public class JsonLibroDAO implements LibroDAO {
 
+    // Livello di compressione dei file salvati con estensione .gz
+    private int livelloCompressione = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Imposta il livello di compressione dei file con estensione .gz:
+     * livelli bassi scrivono più in fretta, livelli alti producono file più piccoli.
+     *
+     * @param livello Livello da 0 (nessuna compressione) a 9 (massima), o -1 per quello predefinito
+     * @throws IllegalArgumentException se il livello non è valido
+     */
+    public void setLivelloCompressione(int livello) {
+        CompressioneGzip.verificaLivello(livello);
+        this.livelloCompressione = livello;
+    }
+
     /**
      * Salva una lista di libri in formato JSON.
      *
@@ -22,32 +45,68 @@ public class JsonLibroDAO implements LibroDAO {
      */
     @Override
     public void salvaLibri(List<Libro> libri, String percorsoFile) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(percorsoFile))) {
-            writer.write("[\n");
+        salvaLibri(libri, percorsoFile, Avanzamento.NESSUNO);
+    }
 
-            for (int i = 0; i < libri.size(); i++) {
-                Libro libro = libri.get(i);
-                writer.write("  {\n");
-                writer.write("    \"titolo\": \"" + escapeJson(libro.getTitolo()) + "\",\n");
-                writer.write("    \"autore\": \"" + escapeJson(libro.getAutore()) + "\",\n");
-                writer.write("    \"isbn\": \"" + escapeJson(libro.getIsbn()) + "\",\n");
-                writer.write("    \"genere\": \"" + escapeJson(libro.getGenere()) + "\",\n");
+    /**
+     * Salva una lista di libri in formato JSON, segnalando l'avanzamento.
+     * Il file esistente viene sostituito solo quando la scrittura è completa.
+     *
+     * @param libri Lista di libri da salvare
+     * @param percorsoFile Percorso del file JSON in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    @Override
+    public void salvaLibri(List<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri.iterator(), libri.size(), percorsoFile, avanzamento);
+    }
 
-                // Valutazione come numero, per retrocompatibilità
-                writer.write("    \"valutazione\": " + libro.getValutazione() + ",\n");
+    /**
+     * Salva in formato JSON i libri restituiti da un iteratore, un libro alla volta.
+     *
+     * @param libri Iteratore dei libri da salvare
+     * @param percorsoFile Percorso del file JSON in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento (il totale è -1, perché non è noto)
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    @Override
+    public void salvaLibri(Iterator<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        scriviLibri(libri, -1, percorsoFile, avanzamento);
+    }
+
+    private void scriviLibri(Iterator<Libro> libri, int totale, String percorsoFile, Avanzamento avanzamento)
+            throws IOException {
+        int scritti = 0;
+
+        try (ScritturaAtomica scrittura = new ScritturaAtomica(percorsoFile, livelloCompressione)) {
+            BufferedWriter writer = scrittura.getWriter();
+            writer.write("[\n");
+
+            // Scorre con l'iteratore: l'accesso per indice può non essere O(1)
+            boolean primo = true;
+            while (libri.hasNext()) {
+                Libro libro = libri.next();
+                // Aggiungi virgola se non è il primo elemento
+                if (!primo) {
+                    writer.write(",\n");
+                }
+                primo = false;
 
-                writer.write("    \"statoLettura\": \"" + libro.getStatoLettura().name() + "\"\n");
-                writer.write("  }");
+                writer.write(formattaOggetto(libro, null));
 
-                // Aggiungi virgola se non è l'ultimo elemento
-                if (i < libri.size() - 1) {
-                    writer.write(",");
+                if (++scritti % Avanzamento.INTERVALLO == 0) {
+                    avanzamento.aggiorna(scritti, totale);
                 }
+            }
+            if (!primo) {
                 writer.write("\n");
             }
 
             writer.write("]");
+            scrittura.conferma();
         }
+        avanzamento.aggiorna(scritti, totale);
     }
 
     /**
@@ -61,111 +120,368 @@ public class JsonLibroDAO implements LibroDAO {
     @Override
     public List<Libro> caricaLibri(String percorsoFile) throws IOException {
         List<Libro> libri = new ArrayList<>();
+        caricaLibri(percorsoFile, libri::add);
+        return libri;
+    }
+
+    /**
+     * Carica i libri da un file JSON un oggetto alla volta, passando ogni libro valido
+     * alla destinazione appena letto. Se anche un solo libro non è valido, al termine
+     * della lettura viene lanciata un'eccezione con il rapporto degli errori.
+     *
+     * @param percorsoFile Percorso del file JSON da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    @Override
+    public void caricaLibri(String percorsoFile, Consumer<Libro> destinazione) throws IOException {
+        RapportoImportazione rapporto = importaLibri(percorsoFile, destinazione,
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA);
+
+        // Se ci sono errori, interrompi il caricamento e segnala
+        if (rapporto.haErrori()) {
+            throw new IOException(rapporto.getMessaggio());
+        }
+    }
+
+    /**
+     * Carica i libri da un file JSON come caricaLibri(String, Consumer), senza tenere in
+     * memoria gli ISBN letti per controllare quelli ripetuti.
+     *
+     * @param percorsoFile Percorso del file JSON da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    @Override
+    public void caricaLibriSenzaControlloIsbn(String percorsoFile, Consumer<Libro> destinazione)
+            throws IOException {
+        RapportoImportazione rapporto = importa(percorsoFile, lotto -> {
+            lotto.forEach(destinazione);
+            return List.of();
+        }, 1, RapportoImportazione.Modalita.SCARTA_E_CONTINUA, null, false);
+        if (rapporto.haErrori()) {
+            throw new IOException(rapporto.getMessaggio());
+        }
+    }
+
+    /**
+     * Importa i libri da un file JSON un oggetto alla volta, passando ogni libro valido
+     * alla destinazione e registrando nel rapporto quelli scartati.
+     *
+     * @param percorsoFile Percorso del file JSON da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi
+     * @param modalita Comportamento al primo libro non valido
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Consumer<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita) throws IOException {
+        return importa(percorsoFile, lotto -> {
+            lotto.forEach(destinazione);
+            return List.of();
+        }, 1, modalita, null, true);
+    }
+
+    /**
+     * Importa i libri da un file JSON passando quelli validi alla destinazione, che può
+     * rifiutarli se già presenti. Le righe dei libri scartati vengono copiate così come
+     * sono nel file degli scarti, in formato JSON, che può essere corretto e reimportato.
+     *
+     * @param percorsoFile Percorso del file JSON da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi, che restituisce false per quelli già presenti
+     * @param modalita Comportamento al primo libro non valido
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, Predicate<Libro> destinazione,
+                                             RapportoImportazione.Modalita modalita, String percorsoScarti)
+            throws IOException {
+        return importa(percorsoFile, DestinazioneImportazione.perLibro(destinazione), 1, modalita,
+                percorsoScarti, true);
+    }
+
+    /**
+     * Importa i libri da un file JSON passando quelli validi alla destinazione a lotti.
+     * Fino all'aggiunta del lotto ogni libro conserva la sua posizione e il suo testo: i libri
+     * rifiutati dalla destinazione vengono registrati come ISBN duplicati e copiati nel file
+     * degli scarti.
+     *
+     * @param percorsoFile Percorso del file JSON da cui caricare i dati
+     * @param destinazione Destinatario dei lotti di libri validi
+     * @param libriPerLotto Numero di libri di un lotto
+     * @param modalita Comportamento al primo libro non valido o rifiutato
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    @Override
+    public RapportoImportazione importaLibri(String percorsoFile, DestinazioneImportazione destinazione,
+                                             int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                             String percorsoScarti) throws IOException {
+        return importa(percorsoFile, destinazione, libriPerLotto, modalita, percorsoScarti, true);
+    }
+
+    private RapportoImportazione importa(String percorsoFile, DestinazioneImportazione destinazione,
+                                         int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                         String percorsoScarti, boolean controllaIsbn)
+            throws IOException {
+        File file = verificaFile(percorsoFile);
+
+        RapportoImportazione rapporto = new RapportoImportazione("Libro #", RapportoImportazione.MASSIMO_DETTAGLI);
+        Set<String> isbnLetti = controllaIsbn ? new HashSet<>() : null;
+
+        FileScarti scarti = percorsoScarti != null ? FileScarti.json(percorsoScarti, livelloCompressione) : null;
+        try {
+            try (LettoreConPosizione lettore = new LettoreConPosizione(CompressioneGzip.apriLettura(file),
+                    Charset.defaultCharset())) {
+                // Un file che non contiene un array JSON non contiene libri
+                if (inizioArray(lettore)) {
+                    // I libri in attesa vengono aggiunti anche dopo un errore di lettura
+                    LottoImportazione lotto = new LottoImportazione(destinazione, libriPerLotto, rapporto, scarti);
+                    try {
+                        int indice = 0;
+                        ElementoJson elemento;
+                        while ((elemento = prossimoOggetto(lettore)) != null) {
+                            indice++;
+                            Libro libro = null;
+                            try {
+                                libro = parseJsonLibro(elemento.testo);
+                            } catch (LibroNonValidoException e) {
+                                rapporto.registraErrore(e.getCodice(), indice, elemento.posizione, null,
+                                        e.getMessage());
+                            }
+                            boolean valido = libro != null
+                                    && rapporto.verifica(libro, isbnLetti, indice, elemento.posizione);
+                            if (!valido) {
+                                lotto.scarta(elemento.testo);
+                            }
+                            if ((!valido || !lotto.aggiungi(libro, indice, elemento.posizione, elemento.testo))
+                                    && modalita == RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE) {
+                                rapporto.interrompi();
+                                break;
+                            }
+                        }
+                    } finally {
+                        lotto.conferma();
+                    }
+                }
+            }
+            if (scarti != null) {
+                scarti.conferma();
+            }
+        } finally {
+            if (scarti != null) {
+                scarti.close();
+            }
+        }
+        return rapporto;
+    }
+
+    /**
+     * Apre un file JSON senza caricarlo, registrando la posizione e l'ISBN di ogni elemento
+     * dell'array. Gli elementi vengono convertiti e validati solo quando vengono letti.
+     *
+     * @param percorsoFile Percorso del file JSON, non compresso
+     * @return Catalogo del file, da chiudere dopo l'uso
+     * @throws IOException In caso di errori durante la lettura del file o se il file è compresso
+     */
+    @Override
+    public CatalogoIndicizzato indicizzaLibri(String percorsoFile) throws IOException {
+        File file = verificaFile(percorsoFile);
+        if (CompressioneGzip.isCompresso(file.getName())) {
+            throw new IOException("I file compressi non possono essere aperti senza caricarli:\n" + percorsoFile);
+        }
+
+        CatalogoIndicizzato catalogo = new CatalogoIndicizzato(file.toPath(), Charset.defaultCharset(),
+                this::parseJsonLibro, JsonLibroDAO::isbnJson);
+        try (LettoreConPosizione lettore = new LettoreConPosizione(new FileInputStream(file),
+                Charset.defaultCharset())) {
+            if (inizioArray(lettore)) {
+                ElementoJson elemento;
+                while ((elemento = prossimoOggetto(lettore)) != null) {
+                    catalogo.aggiungi(elemento.posizione, (int) (lettore.getPosizione() - elemento.posizione),
+                            isbnJson(elemento.testo));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            catalogo.close();
+            throw e;
+        }
+        return catalogo;
+    }
+
+    /**
+     * Verifica che il file abbia solo l'estensione .json (eventualmente compresso, .json.gz) e che esista.
+     *
+     * @param percorsoFile Percorso del file
+     * @return File verificato
+     * @throws IOException Se l'estensione non è valida o il file non esiste
+     */
+    private File verificaFile(String percorsoFile) throws IOException {
         File file = new File(percorsoFile);
 
-        // Verifica che il file abbia solo una estensione e che sia .json
-        String nomeFile = file.getName();
+        // Verifica che il file abbia solo una estensione e che sia .json (eventualmente compresso, .json.gz)
+        String nomeFile = CompressioneGzip.senzaEstensione(file.getName());
         int ultimoPunto = nomeFile.lastIndexOf('.');
         if (ultimoPunto == -1 || !nomeFile.substring(ultimoPunto + 1).equalsIgnoreCase("json") ||
                 nomeFile.substring(0, ultimoPunto).contains(".")) {
             System.err.println("Formato file non valido: " + percorsoFile);
-            throw new IOException("Formato file non valido.\n Il file deve avere solo l'estensione .json senza estensioni multiple.");
+            throw new IOException("Formato file non valido.\n Il file deve avere solo l'estensione .json (o .json.gz) senza estensioni multiple.");
         }
 
-        // Se il file non esiste, restituisce una lista vuota
         if (!file.exists()) {
             System.err.println("File non trovato: " + percorsoFile);
             throw new IOException("File non trovato:\n" + percorsoFile);
         }
+        return file;
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            StringBuilder jsonContent = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonContent.append(line).append("\n");
-            }
-
-            // Parsing manuale del JSON
-            String content = jsonContent.toString().trim();
-            if (content.startsWith("[") && content.endsWith("]")) {
-                content = content.substring(1, content.length() - 1).trim();
-
-                // Suddivide gli oggetti JSON
-                List<String> jsonObjects = splitJsonObjects(content);
-
-                List<String> errori = new ArrayList<>();
-                int indice = 0;
-
-                for (String jsonObject : jsonObjects) {
-                    indice++;
-                    Libro libro = parseJsonLibro(jsonObject);
-                    if (libro == null) {
-                        // Libro non valido
-                        errori.add("Libro #" + indice + ": formato JSON non valido");
-                    } else if (!libro.isValid()) {
-                        // Libro con dati incompleti o invalidi
-                        errori.add("Libro #" + indice + " (" +
-                                (libro.getTitolo().isEmpty() ? "titolo mancante" : libro.getTitolo()) +
-                                "): dati incompleti o non validi");
-                    } else {
-                        // Libro valido, verifica duplicati o isbn già presente
-                        if(libri.contains(libro)){
-                            errori.add("Libro #" + indice + " (" +
-                                    (libro.getTitolo().isEmpty() ? "titolo mancante" : libro.getTitolo()) +
-                                    "): libro già presente o isbn duplicato");
-                        }else{
-                            libri.add(libro);
-                        }
-                    }
-                }
-
-                // Se ci sono errori, interrompi il caricamento e segnala
-                if (!errori.isEmpty()) {
-                    String messaggioErrore = "Impossibile caricare il file. Sono stati trovati libri non validi:" +
-                            "\n" + String.join("\n", errori);
-                    throw new IOException(messaggioErrore);
+    /**
+     * Estrae l'ISBN da un oggetto JSON senza convertire il libro, dividendo le coppie
+     * chiave-valore come parseJsonLibro().
+     *
+     * @param jsonObject Stringa rappresentante un oggetto JSON
+     * @return ISBN, o null se l'oggetto non contiene il campo
+     */
+    static String isbnJson(String jsonObject) {
+        jsonObject = jsonObject.trim();
+        if (!jsonObject.startsWith("{") || !jsonObject.endsWith("}")) {
+            return null;
+        }
+        String isbn = null;
+        for (String pair : jsonObject.substring(1, jsonObject.length() - 1).split(",")) {
+            String[] keyValue = pair.split(":", 2);
+            if (keyValue.length == 2 && keyValue[0].trim().replace("\"", "").equals("isbn")) {
+                String value = keyValue[1].trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
                 }
+                isbn = value;
             }
         }
+        return isbn;
+    }
 
-        return libri;
+    /**
+     * Salta gli spazi iniziali e verifica che il contenuto inizi con un array JSON.
+     *
+     * @param lettore Lettore del file
+     * @return true se il primo carattere non vuoto è '['
+     * @throws IOException In caso di errori durante la lettura
+     */
+    static boolean inizioArray(LettoreConPosizione lettore) throws IOException {
+        int c;
+        do {
+            c = lettore.leggi();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c == '[';
     }
 
     /**
-     * Suddivide una stringa contenente oggetti JSON in una lista di stringhe,
-     * ciascuna rappresentante un singolo oggetto JSON.
+     * Legge il prossimo elemento dell'array JSON, tenendo conto delle parentesi
+     * graffe annidate e ignorando quelle all'interno delle stringhe.
+     * La struttura viene riconosciuta sui byte, perché i caratteri che la delimitano
+     * sono ASCII; il testo viene decodificato solo alla fine dell'elemento.
      *
-     * @param jsonContent Stringa contenente più oggetti JSON
-     * @return Lista di stringhe, ciascuna rappresentante un oggetto JSON
+     * @param lettore Lettore posizionato tra due elementi dell'array
+     * @return Elemento letto con la sua posizione, o null alla chiusura dell'array
+     * @throws IOException Se il file termina prima della chiusura dell'array
      */
-    private List<String> splitJsonObjects(String jsonContent) {
-        List<String> objects = new ArrayList<>();
+    static ElementoJson prossimoOggetto(LettoreConPosizione lettore) throws IOException {
+        ByteArrayOutputStream oggetto = new ByteArrayOutputStream();
+        long inizio = -1;
         int nesting = 0;
-        StringBuilder currentObject = new StringBuilder();
+        boolean inStringa = false;
+        boolean escape = false;
+
+        int c;
+        while ((c = lettore.leggi()) != -1) {
+            if (nesting == 0 && !inStringa) {
+                // Fuori dagli oggetti: le virgole separano gli elementi, ']' chiude l'array
+                if (c == ']' || c == ',') {
+                    if (oggetto.size() > 0) {
+                        // Elemento che non è un oggetto: viene restituito e risulterà non valido
+                        return new ElementoJson(lettore.decodifica(oggetto.toByteArray(), oggetto.size()).trim(), inizio);
+                    }
+                    if (c == ']') {
+                        return null;
+                    }
+                    continue;
+                }
+                if (Character.isWhitespace(c) && oggetto.size() == 0) {
+                    continue;
+                }
+            }
 
-        for (char c : jsonContent.toCharArray()) {
-            if (c == '{') {
+            if (oggetto.size() == 0) {
+                inizio = lettore.getPosizione() - 1;
+            }
+            oggetto.write(c);
+            if (inStringa) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inStringa = false;
+                }
+            } else if (c == '"') {
+                inStringa = true;
+            } else if (c == '{') {
                 nesting++;
-            } else if (c == '}') {
-                nesting--;
+            } else if (c == '}' && nesting > 0 && --nesting == 0) {
+                return new ElementoJson(lettore.decodifica(oggetto.toByteArray(), oggetto.size()), inizio);
             }
+        }
 
-            currentObject.append(c);
+        throw new IOException("Formato JSON non valido: il file termina prima della chiusura dell'array.");
+    }
 
-            if (nesting == 0 && !currentObject.toString().trim().isEmpty()) {
-                // Rimozione di eventuali virgole finali
-                String obj = currentObject.toString().trim();
-                if (obj.endsWith(",")) {
-                    obj = obj.substring(0, obj.length() - 1);
-                }
-                if (!obj.isEmpty()) {
-                    objects.add(obj);
-                }
-                currentObject = new StringBuilder();
+    /**
+     * Elemento dell'array JSON letto dal file, con la posizione in byte del suo inizio.
+     */
+    static final class ElementoJson {
+        final String testo;
+        final long posizione;
+
+        private ElementoJson(String testo, long posizione) {
+            this.testo = testo;
+            this.posizione = posizione;
+        }
+    }
+
+    /**
+     * Converte un libro in un oggetto JSON rientrato come nel file salvato, senza
+     * separatori finali. I campi aggiuntivi, se presenti, precedono quelli del libro.
+     *
+     * @param libro Libro da convertire
+     * @param altriCampi Campi di testo da aggiungere all'oggetto, o null
+     * @return Oggetto JSON del libro
+     */
+    String formattaOggetto(Libro libro, Map<String, String> altriCampi) {
+        StringBuilder sb = new StringBuilder("  {\n");
+        if (altriCampi != null) {
+            for (Map.Entry<String, String> campo : altriCampi.entrySet()) {
+                sb.append("    \"").append(campo.getKey()).append("\": \"")
+                        .append(escapeJson(campo.getValue())).append("\",\n");
             }
         }
+        sb.append("    \"titolo\": \"").append(escapeJson(libro.getTitolo())).append("\",\n");
+        sb.append("    \"autore\": \"").append(escapeJson(libro.getAutore())).append("\",\n");
+        sb.append("    \"isbn\": \"").append(escapeJson(libro.getIsbn())).append("\",\n");
+        sb.append("    \"genere\": \"").append(escapeJson(libro.getGenere())).append("\",\n");
 
-        return objects;
+        // Valutazione come numero, per retrocompatibilità
+        sb.append("    \"valutazione\": ").append(libro.getValutazione()).append(",\n");
+
+        sb.append("    \"statoLettura\": \"").append(libro.getStatoLettura().name()).append("\"\n");
+        sb.append("  }");
+        return sb.toString();
     }
 
     /**
@@ -173,12 +489,27 @@ public class JsonLibroDAO implements LibroDAO {
      * Include validazione degli input durante il parsing.
      *
      * @param jsonObject Stringa rappresentante un oggetto JSON
-     * @return Oggetto Libro costruito dai dati JSON, o null in caso di errore
+     * @return Oggetto Libro costruito dai dati JSON
+     * @throws LibroNonValidoException Se l'oggetto non descrive un libro valido
      */
-    private Libro parseJsonLibro(String jsonObject) {
+    Libro parseJsonLibro(String jsonObject) throws LibroNonValidoException {
+        return parseJsonLibro(jsonObject, null);
+    }
+
+    /**
+     * Converte un oggetto JSON in un oggetto Libro, raccogliendo i campi che non
+     * appartengono al libro.
+     *
+     * @param jsonObject Stringa rappresentante un oggetto JSON
+     * @param altriCampi Mappa in cui inserire i campi sconosciuti, o null per ignorarli
+     * @return Oggetto Libro costruito dai dati JSON
+     * @throws LibroNonValidoException Se l'oggetto non descrive un libro valido
+     */
+    Libro parseJsonLibro(String jsonObject, Map<String, String> altriCampi) throws LibroNonValidoException {
         jsonObject = jsonObject.trim();
         if (!jsonObject.startsWith("{") || !jsonObject.endsWith("}")) {
-            return null;
+            throw new LibroNonValidoException(RapportoImportazione.Codice.FORMATO_NON_VALIDO,
+                    "l'elemento non è un oggetto JSON");
         }
 
         // Rimuove le parentesi graffe
@@ -225,13 +556,13 @@ public class JsonLibroDAO implements LibroDAO {
                                 valutazione = Integer.parseInt(value);
                                 // Validazione rigorosa del range
                                 if (valutazione < 0 || valutazione > 5) {
-                                    System.err.println("La valutazione deve essere tra 0 e 5, trovato: " + valutazione);
-                                    return null;
+                                    throw new LibroNonValidoException(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA,
+                                            "deve essere tra 0 e 5, trovato: " + valutazione);
                                 }
                             }
                         } catch (NumberFormatException e) {
-                            System.err.println("La valutazione deve essere un numero intero tra 0 e 5 o 'Da valutare', trovato: " + value);
-                            return null;
+                            throw new LibroNonValidoException(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA,
+                                    "deve essere un numero intero tra 0 e 5 o 'Da valutare', trovato: " + value);
                         }
                         break;
                     case "statoLettura":
@@ -242,25 +573,24 @@ public class JsonLibroDAO implements LibroDAO {
                             try {
                                 statoLettura = StatoLettura.fromString(value);
                             } catch (IllegalArgumentException ex) {
-                                System.err.println("Stato di lettura non valido: " + value);
-                                return null;
+                                throw new LibroNonValidoException(RapportoImportazione.Codice.STATO_LETTURA_NON_VALIDO,
+                                        value);
                             }
                         }
                         break;
+                    default:
+                        if (altriCampi != null) {
+                            altriCampi.put(key, value);
+                        }
                 }
             }
         }
 
-        Libro libro;
         try {
-            libro = new Libro(titolo, autore, isbn, genere, valutazione, statoLettura);
+            return new Libro(titolo, autore, isbn, genere, valutazione, statoLettura);
         } catch (IllegalArgumentException e) {
-            System.err.println("JSON libro non valido: " + jsonObject);
-            System.err.println("Errore nella creazione del libro: " + e.getMessage());
-            return null;
+            throw new LibroNonValidoException(RapportoImportazione.Codice.DATI_NON_VALIDI, e.getMessage());
         }
-
-        return libro;
     }
 
     /**
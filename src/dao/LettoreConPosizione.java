@@ -0,0 +1,132 @@
+package dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Lettore bufferizzato di un flusso di byte che tiene il conto della posizione in byte,
+ * usata per indicare negli errori di importazione il punto esatto del file.
+ * Legge il contenuto un byte o una riga alla volta; le righe vengono decodificate con
+ * la codifica indicata, che deve rappresentare i caratteri ASCII con un solo byte.
+ */
+class LettoreConPosizione implements Closeable {
+
+    private static final int DIMENSIONE_BUFFER = 64 * 1024;
+
+    private final InputStream in;
+    private final Charset codifica;
+    private final byte[] buffer;
+    private int indice;
+    private int limite;
+
+    // Posizione in byte del prossimo byte da leggere
+    private long posizione;
+
+    // Byte della riga in lettura, riutilizzati tra una riga e l'altra
+    private byte[] riga;
+
+    /**
+     * Costruttore del lettore.
+     *
+     * @param in Flusso da leggere
+     * @param codifica Codifica dei caratteri del contenuto
+     */
+    LettoreConPosizione(InputStream in, Charset codifica) {
+        this.in = in;
+        this.codifica = codifica;
+        this.buffer = new byte[DIMENSIONE_BUFFER];
+        this.riga = new byte[256];
+    }
+
+    /**
+     * Ottiene la posizione in byte del prossimo byte da leggere.
+     *
+     * @return Numero di byte letti finora
+     */
+    long getPosizione() {
+        return posizione;
+    }
+
+    /**
+     * Legge un byte.
+     *
+     * @return Byte letto (0-255), o -1 alla fine del flusso
+     * @throws IOException In caso di errori di lettura
+     */
+    int leggi() throws IOException {
+        if (indice == limite && !riempi()) {
+            return -1;
+        }
+        posizione++;
+        return buffer[indice++] & 0xFF;
+    }
+
+    /**
+     * Legge una riga, terminata da "\n" o "\r\n", senza il terminatore.
+     *
+     * @return Riga letta, o null alla fine del flusso
+     * @throws IOException In caso di errori di lettura
+     */
+    String leggiRiga() throws IOException {
+        int lunghezza = 0;
+        boolean letto = false;
+        while (indice < limite || riempi()) {
+            letto = true;
+            // Cerca il terminatore nel buffer senza copiare un byte alla volta
+            int inizio = indice;
+            while (indice < limite && buffer[indice] != '\n') {
+                indice++;
+            }
+            int n = indice - inizio;
+            if (lunghezza + n > riga.length) {
+                riga = Arrays.copyOf(riga, Math.max(riga.length * 2, lunghezza + n));
+            }
+            System.arraycopy(buffer, inizio, riga, lunghezza, n);
+            lunghezza += n;
+            posizione += n;
+
+            if (indice < limite) {
+                // Consuma il terminatore
+                indice++;
+                posizione++;
+                break;
+            }
+        }
+        if (!letto) {
+            return null;
+        }
+        if (lunghezza > 0 && riga[lunghezza - 1] == '\r') {
+            lunghezza--;
+        }
+        return new String(riga, 0, lunghezza, codifica);
+    }
+
+    /**
+     * Decodifica dei byte letti con la codifica del contenuto.
+     *
+     * @param byteLetti Byte da decodificare
+     * @param lunghezza Numero di byte validi
+     * @return Testo decodificato
+     */
+    String decodifica(byte[] byteLetti, int lunghezza) {
+        return new String(byteLetti, 0, lunghezza, codifica);
+    }
+
+    private boolean riempi() throws IOException {
+        int n = in.read(buffer);
+        if (n <= 0) {
+            return false;
+        }
+        indice = 0;
+        limite = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
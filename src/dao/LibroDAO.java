@@ -1,12 +1,18 @@
 package dao;
 
 import model.Libro;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.io.IOException;
 
 /**
  * Interfaccia DAO (Data Access Object) per la gestione della persistenza dei libri.
  * Definisce le operazioni di lettura/scrittura per salvare e caricare libri.
+ * Oltre alle operazioni su liste, offre varianti in streaming che leggono e scrivono
+ * un libro alla volta, senza tenere in memoria una copia completa della collezione.
  */
 public interface LibroDAO {
 
@@ -19,6 +25,20 @@ public interface LibroDAO {
      */
     void salvaLibri(List<Libro> libri, String percorsoFile) throws IOException;
 
+    /**
+     * Salva una lista di libri su un file, segnalando l'avanzamento della scrittura.
+     * L'implementazione predefinita segnala solo il completamento.
+     *
+     * @param libri Lista di libri da salvare
+     * @param percorsoFile Percorso del file in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    default void salvaLibri(List<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        salvaLibri(libri, percorsoFile);
+        avanzamento.aggiorna(libri.size(), libri.size());
+    }
+
     /**
      * Carica una lista di libri da un file.
      *
@@ -27,4 +47,151 @@ public interface LibroDAO {
      * @throws IOException In caso di errori durante la lettura del file
      */
     List<Libro> caricaLibri(String percorsoFile) throws IOException;
+
+    /**
+     * Carica i libri da un file passandoli uno alla volta alla destinazione, man mano
+     * che vengono letti e validati. Se il file contiene libri non validi viene lanciata
+     * un'eccezione al termine della lettura: la destinazione può aver già ricevuto
+     * i libri validi, e chi la usa deve scartarli.
+     * L'implementazione predefinita carica prima l'intera lista.
+     *
+     * @param percorsoFile Percorso del file da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    default void caricaLibri(String percorsoFile, Consumer<Libro> destinazione) throws IOException {
+        caricaLibri(percorsoFile).forEach(destinazione);
+    }
+
+    /**
+     * Carica i libri da un file come caricaLibri(String, Consumer), ma senza controllare
+     * gli ISBN ripetuti: la memoria usata non dipende dal numero di libri del file.
+     * Chi la usa deve controllare i duplicati in altro modo, ad esempio dopo aver ordinato
+     * i libri per ISBN, quando i libri con lo stesso ISBN sono consecutivi.
+     * L'implementazione predefinita usa caricaLibri(String, Consumer).
+     *
+     * @param percorsoFile Percorso del file da cui caricare i dati
+     * @param destinazione Destinatario dei libri letti
+     * @throws IOException In caso di errori durante la lettura del file o se ci sono libri non validi
+     */
+    default void caricaLibriSenzaControlloIsbn(String percorsoFile, Consumer<Libro> destinazione)
+            throws IOException {
+        caricaLibri(percorsoFile, destinazione);
+    }
+
+    /**
+     * Importa i libri da un file passando alla destinazione quelli validi e registrando
+     * gli altri nel rapporto, con codice dell'errore e posizione nel file. Nella modalità
+     * SCARTA_E_CONTINUA la lettura prosegue fino alla fine del file, nell'altra si ferma
+     * al primo libro non valido.
+     * L'implementazione predefinita carica l'intero file e, se contiene libri non validi,
+     * lancia l'eccezione di caricaLibri senza produrre un rapporto.
+     *
+     * @param percorsoFile Percorso del file da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi
+     * @param modalita Comportamento al primo libro non valido
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    default RapportoImportazione importaLibri(String percorsoFile, Consumer<Libro> destinazione,
+                                              RapportoImportazione.Modalita modalita) throws IOException {
+        RapportoImportazione rapporto = new RapportoImportazione("Libro #", RapportoImportazione.MASSIMO_DETTAGLI);
+        for (Libro libro : caricaLibri(percorsoFile)) {
+            destinazione.accept(libro);
+            rapporto.registraImportato();
+        }
+        return rapporto;
+    }
+
+    /**
+     * Importa i libri da un file passando alla destinazione quelli validi, che può
+     * rifiutarli se già presenti, e copia i libri scartati in un file degli scarti
+     * nello stesso formato, da correggere e reimportare.
+     * L'implementazione predefinita non supporta il file degli scarti.
+     *
+     * @param percorsoFile Percorso del file da cui caricare i dati
+     * @param destinazione Destinatario dei libri validi, che restituisce false per quelli già presenti
+     * @param modalita Comportamento al primo libro non valido
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    default RapportoImportazione importaLibri(String percorsoFile, Predicate<Libro> destinazione,
+                                              RapportoImportazione.Modalita modalita, String percorsoScarti)
+            throws IOException {
+        throw new UnsupportedOperationException("File degli scarti non supportato");
+    }
+
+    /**
+     * Importa i libri da un file come importaLibri(String, Predicate, Modalita, String),
+     * ma passando i libri validi alla destinazione a lotti. La destinazione controlla i
+     * libri già presenti quando aggiunge il lotto e restituisce quelli rifiutati, che
+     * vengono registrati come ISBN duplicati e copiati nel file degli scarti.
+     * L'implementazione predefinita non supporta il file degli scarti.
+     *
+     * @param percorsoFile Percorso del file da cui caricare i dati
+     * @param destinazione Destinatario dei lotti di libri validi
+     * @param libriPerLotto Numero di libri di un lotto
+     * @param modalita Comportamento al primo libro non valido o rifiutato
+     * @param percorsoScarti Percorso del file degli scarti (può coincidere con il file importato),
+     *                       o null per non copiare gli scarti
+     * @return Rapporto dell'importazione
+     * @throws IOException In caso di errori durante la lettura del file o la scrittura degli scarti
+     */
+    default RapportoImportazione importaLibri(String percorsoFile, DestinazioneImportazione destinazione,
+                                              int libriPerLotto, RapportoImportazione.Modalita modalita,
+                                              String percorsoScarti) throws IOException {
+        throw new UnsupportedOperationException("File degli scarti non supportato");
+    }
+
+    /**
+     * Apre un file senza caricarlo: lo scorre una volta registrando la posizione e l'ISBN
+     * di ogni libro, che viene poi convertito e validato solo quando viene letto.
+     * L'implementazione predefinita non supporta l'apertura indicizzata.
+     *
+     * @param percorsoFile Percorso del file da aprire
+     * @return Catalogo del file, da chiudere dopo l'uso
+     * @throws IOException In caso di errori durante la lettura del file
+     */
+    default CatalogoIndicizzato indicizzaLibri(String percorsoFile) throws IOException {
+        throw new UnsupportedOperationException("Apertura indicizzata non supportata");
+    }
+
+    /**
+     * Salva su un file i libri restituiti da un iteratore, senza richiederli tutti in memoria.
+     * L'implementazione predefinita raccoglie prima i libri in una lista.
+     *
+     * @param libri Iteratore dei libri da salvare
+     * @param percorsoFile Percorso del file in cui salvare i dati
+     * @param avanzamento Destinatario dell'avanzamento (il totale è -1, perché non è noto)
+     * @throws IOException In caso di errori durante la scrittura del file
+     */
+    default void salvaLibri(Iterator<Libro> libri, String percorsoFile, Avanzamento avanzamento) throws IOException {
+        List<Libro> lista = new ArrayList<>();
+        libri.forEachRemaining(lista::add);
+        salvaLibri(lista, percorsoFile);
+        avanzamento.aggiorna(lista.size(), -1);
+    }
+
+    /**
+     * Destinatario dell'avanzamento di un salvataggio.
+     */
+    @FunctionalInterface
+    interface Avanzamento {
+
+        // Avanzamento che ignora le notifiche
+        Avanzamento NESSUNO = (scritti, totale) -> { };
+
+        // Numero di libri scritti tra due notifiche
+        int INTERVALLO = 1000;
+
+        /**
+         * Notifica il numero di libri scritti finora.
+         *
+         * @param scritti Libri scritti
+         * @param totale Libri da scrivere, o -1 se non è noto
+         */
+        void aggiorna(int scritti, int totale);
+    }
 }
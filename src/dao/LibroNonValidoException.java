@@ -0,0 +1,28 @@
+package dao;
+
+/**
+ * Segnala che il testo di un libro letto da file non è valido.
+ * È usata dai parser dei DAO per riportare il codice dell'errore all'importazione;
+ * non registra lo stack trace, così scartare molti libri non costa più che leggerli.
+ */
+class LibroNonValidoException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RapportoImportazione.Codice codice;
+
+    /**
+     * Costruttore dell'eccezione.
+     *
+     * @param codice Tipo di errore
+     * @param dettaglio Descrizione del valore non valido
+     */
+    LibroNonValidoException(RapportoImportazione.Codice codice, String dettaglio) {
+        super(dettaglio, null, false, false);
+        this.codice = codice;
+    }
+
+    RapportoImportazione.Codice getCodice() {
+        return codice;
+    }
+}
@@ -0,0 +1,141 @@
+package dao;
+
+import model.Libro;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Libri validi letti da un file e in attesa di essere aggiunti alla destinazione con
+ * un solo lotto. Fino all'aggiunta il lotto conserva la posizione e il testo di ogni
+ * libro, così i libri rifiutati dalla destinazione vengono registrati nel rapporto e
+ * copiati nel file degli scarti come quelli scartati durante la lettura. Anche gli
+ * scarti letti mentre il lotto è in attesa vengono copiati alla sua aggiunta, quindi
+ * il file degli scarti segue l'ordine del file importato.
+ */
+final class LottoImportazione {
+
+    private final DestinazioneImportazione destinazione;
+    private final RapportoImportazione rapporto;
+    private final FileScarti scarti;
+    // Libri in attesa, o null per gli scarti letti dopo il primo libro del lotto
+    private final List<Libro> libri;
+    private final List<String> testi;
+    private int numeroLibri;
+    private final long[] numeri;
+    private final long[] posizioni;
+
+    /**
+     * @param destinazione Destinazione dei lotti
+     * @param dimensione Numero di libri di un lotto
+     * @param rapporto Rapporto dell'importazione
+     * @param scarti File degli scarti, o null per non copiare gli scarti
+     */
+    LottoImportazione(DestinazioneImportazione destinazione, int dimensione, RapportoImportazione rapporto,
+                      FileScarti scarti) {
+        if (dimensione < 1) {
+            throw new IllegalArgumentException("Dimensione del lotto non valida: " + dimensione);
+        }
+        this.destinazione = destinazione;
+        this.rapporto = rapporto;
+        this.scarti = scarti;
+        this.libri = new ArrayList<>(dimensione);
+        this.testi = new ArrayList<>(dimensione);
+        this.numeri = new long[dimensione];
+        this.posizioni = new long[dimensione];
+    }
+
+    /**
+     * Aggiunge un libro al lotto e, se il lotto è completo, lo passa alla destinazione.
+     *
+     * @param libro Libro valido
+     * @param numero Numero del libro nel file
+     * @param posizione Posizione del libro nel file, o -1 se non disponibile
+     * @param testo Testo del libro nel file, copiato negli scarti se rifiutato
+     * @return false se la destinazione ha rifiutato dei libri del lotto
+     * @throws IOException In caso di errori durante la scrittura degli scarti
+     */
+    boolean aggiungi(Libro libro, long numero, long posizione, String testo) throws IOException {
+        numeri[numeroLibri] = numero;
+        posizioni[numeroLibri] = posizione;
+        numeroLibri++;
+        libri.add(libro);
+        testi.add(testo);
+        return numeroLibri < numeri.length || conferma();
+    }
+
+    /**
+     * Copia nel file degli scarti il testo di un libro scartato durante la lettura,
+     * dopo quelli dei libri in attesa.
+     *
+     * @param testo Testo del libro nel file
+     * @throws IOException In caso di errori durante la scrittura degli scarti
+     */
+    void scarta(String testo) throws IOException {
+        if (scarti == null) {
+            return;
+        }
+        if (libri.isEmpty()) {
+            scarti.aggiungi(testo);
+        } else {
+            libri.add(null);
+            testi.add(testo);
+        }
+    }
+
+    /**
+     * Passa alla destinazione i libri in attesa e registra l'esito di ognuno.
+     *
+     * @return false se la destinazione ha rifiutato dei libri del lotto
+     * @throws IOException In caso di errori durante la scrittura degli scarti
+     */
+    boolean conferma() throws IOException {
+        if (libri.isEmpty()) {
+            return true;
+        }
+        List<Libro> lotto = libri;
+        if (numeroLibri < libri.size()) {
+            lotto = new ArrayList<>(numeroLibri);
+            for (Libro libro : libri) {
+                if (libro != null) {
+                    lotto.add(libro);
+                }
+            }
+        }
+        List<Libro> rifiutatiDallaDestinazione = destinazione.aggiungi(Collections.unmodifiableList(lotto));
+        Set<Libro> rifiutati = Collections.emptySet();
+        if (!rifiutatiDallaDestinazione.isEmpty()) {
+            rifiutati = Collections.newSetFromMap(new IdentityHashMap<>());
+            rifiutati.addAll(rifiutatiDallaDestinazione);
+        }
+        try {
+            int indice = 0;
+            for (int i = 0; i < libri.size(); i++) {
+                Libro libro = libri.get(i);
+                if (libro == null) {
+                    scarti.aggiungi(testi.get(i));
+                    continue;
+                }
+                if (!rifiutati.contains(libro)) {
+                    rapporto.registraImportato();
+                } else {
+                    rapporto.registraErrore(RapportoImportazione.Codice.ISBN_DUPLICATO, numeri[indice],
+                            posizioni[indice], libro.getTitolo(), "già nella libreria");
+                    if (scarti != null) {
+                        scarti.aggiungi(testi.get(i));
+                    }
+                }
+                indice++;
+            }
+        } finally {
+            libri.clear();
+            testi.clear();
+            numeroLibri = 0;
+        }
+        return rifiutati.isEmpty();
+    }
+}
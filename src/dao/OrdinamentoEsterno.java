@@ -0,0 +1,428 @@
+package dao;
+
+import model.Libro;
+import strategy.OrdinatoreLibroStrategy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ordinamento esterno dei libri di un file, per file più grandi della memoria disponibile.
+ * <p>
+ * I libri vengono letti a blocchi di dimensione limitata; ogni blocco viene ordinato in
+ * memoria e scritto in un file temporaneo (una sequenza ordinata). L'ordinamento e la
+ * scrittura dei blocchi avvengono su più thread mentre la lettura prosegue, con al più un
+ * blocco per thread in attesa, così la memoria resta limitata a (thread + 1) blocchi.
+ * Le sequenze vengono poi fuse leggendone un libro alla volta, con una coda di priorità sul
+ * primo libro di ciascuna; se sono più di GRADO_FUSIONE, vengono prima fuse a gruppi in
+ * sequenze più lunghe, per limitare i file aperti insieme. Se il file sta in un solo blocco
+ * non viene scritto nulla su disco.
+ * <p>
+ * L'ordinamento è stabile: i libri equivalenti per il comparatore restano nell'ordine del file.
+ * <p>
+ * La lettura non controlla gli ISBN ripetuti, perché dovrebbe tenere in memoria gli ISBN
+ * dell'intero file: i libri con lo stesso ISBN passano nel flusso ordinato come sono nel
+ * file. Ordinando per ISBN sono consecutivi, e chi legge il flusso li riconosce confrontando
+ * ogni libro con il precedente (come fa ConfrontoCataloghi).
+ */
+public class OrdinamentoEsterno {
+
+    // Numero predefinito di libri ordinati in memoria per ogni sequenza
+    public static final int LIBRI_PER_BLOCCO = 100_000;
+
+    // Numero predefinito di sequenze fuse insieme
+    public static final int GRADO_FUSIONE = 64;
+
+    private final Comparator<Libro> comparatore;
+    private final int libriPerBlocco;
+    private final int thread;
+    private final int gradoFusione;
+    private final CsvLibroDAO csv;
+
+    /**
+     * Costruttore che ordina secondo una strategia, con i blocchi predefiniti e un thread
+     * per processore per la generazione delle sequenze.
+     *
+     * @param strategia Strategia di ordinamento dei libri
+     */
+    public OrdinamentoEsterno(OrdinatoreLibroStrategy strategia) {
+        this(strategia.getComparatore(), LIBRI_PER_BLOCCO, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Costruttore dell'ordinamento su un solo thread.
+     *
+     * @param comparatore Ordine dei libri
+     * @param libriPerBlocco Numero massimo di libri tenuti in memoria durante la lettura
+     */
+    public OrdinamentoEsterno(Comparator<Libro> comparatore, int libriPerBlocco) {
+        this(comparatore, libriPerBlocco, 1);
+    }
+
+    /**
+     * Costruttore dell'ordinamento.
+     *
+     * @param comparatore Ordine dei libri
+     * @param libriPerBlocco Numero di libri di ogni sequenza ordinata in memoria
+     * @param thread Numero di thread che ordinano e scrivono le sequenze
+     */
+    public OrdinamentoEsterno(Comparator<Libro> comparatore, int libriPerBlocco, int thread) {
+        this(comparatore, libriPerBlocco, thread, GRADO_FUSIONE);
+    }
+
+    /**
+     * Costruttore dell'ordinamento con il numero massimo di sequenze fuse insieme.
+     *
+     * @param comparatore Ordine dei libri
+     * @param libriPerBlocco Numero di libri di ogni sequenza ordinata in memoria
+     * @param thread Numero di thread che ordinano e scrivono le sequenze
+     * @param gradoFusione Numero massimo di sequenze aperte insieme durante la fusione
+     */
+    public OrdinamentoEsterno(Comparator<Libro> comparatore, int libriPerBlocco, int thread, int gradoFusione) {
+        if (libriPerBlocco < 1) {
+            throw new IllegalArgumentException("Il blocco deve contenere almeno un libro");
+        }
+        if (thread < 1) {
+            throw new IllegalArgumentException("Serve almeno un thread");
+        }
+        if (gradoFusione < 2) {
+            throw new IllegalArgumentException("La fusione deve riguardare almeno due sequenze");
+        }
+        this.comparatore = comparatore;
+        this.libriPerBlocco = libriPerBlocco;
+        this.thread = thread;
+        this.gradoFusione = gradoFusione;
+        this.csv = new CsvLibroDAO();
+    }
+
+    /**
+     * Ordina i libri di un file e li salva in un altro file, anche di formato diverso.
+     * Il file di destinazione può coincidere con quello di origine, che viene letto
+     * completamente prima della scrittura.
+     *
+     * @param sorgente DAO del formato del file da ordinare
+     * @param percorsoSorgente Percorso del file da ordinare
+     * @param destinazione DAO del formato del file ordinato
+     * @param percorsoDestinazione Percorso del file ordinato
+     * @param avanzamento Destinatario dell'avanzamento della scrittura
+     * @throws IOException In caso di errori di lettura, di libri non validi o di scrittura
+     */
+    public void ordina(LibroDAO sorgente, String percorsoSorgente, LibroDAO destinazione,
+                       String percorsoDestinazione, LibroDAO.Avanzamento avanzamento) throws IOException {
+        try (Flusso flusso = ordina(sorgente, percorsoSorgente)) {
+            destinazione.salvaLibri(flusso, percorsoDestinazione, avanzamento);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Legge i libri di un file e li restituisce ordinati. Il flusso restituito va chiuso
+     * per eliminare i file temporanei.
+     *
+     * @param sorgente DAO del formato del file
+     * @param percorsoFile Percorso del file da ordinare
+     * @return Flusso dei libri ordinati
+     * @throws IOException In caso di errori di lettura, di libri non validi o di scrittura delle sequenze
+     */
+    public Flusso ordina(LibroDAO sorgente, String percorsoFile) throws IOException {
+        ExecutorService esecutore = thread > 1 ? Executors.newFixedThreadPool(thread, r -> {
+            Thread t = new Thread(r, "ordinamento-esterno");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        List<Future<File>> inScrittura = new ArrayList<>();
+        List<File> sequenze = new ArrayList<>();
+        List<Libro> blocco = new ArrayList<>();
+        try {
+            sorgente.caricaLibriSenzaControlloIsbn(percorsoFile, libro -> {
+                blocco.add(libro);
+                if (blocco.size() == libriPerBlocco) {
+                    try {
+                        if (esecutore == null) {
+                            sequenze.add(scriviSequenza(blocco));
+                        } else {
+                            // Attende la sequenza più vecchia se tutti i thread hanno un blocco
+                            if (inScrittura.size() - sequenze.size() >= thread) {
+                                sequenze.add(attendi(inScrittura.get(sequenze.size())));
+                            }
+                            List<Libro> copia = new ArrayList<>(blocco);
+                            inScrittura.add(esecutore.submit(() -> scriviSequenza(copia)));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    blocco.clear();
+                }
+            });
+            while (sequenze.size() < inScrittura.size()) {
+                sequenze.add(attendi(inScrittura.get(sequenze.size())));
+            }
+
+            if (sequenze.isEmpty()) {
+                blocco.sort(comparatore);
+                return new FlussoInMemoria(blocco.iterator());
+            }
+            if (!blocco.isEmpty()) {
+                sequenze.add(scriviSequenza(blocco));
+            }
+            blocco.clear();
+            return new Fusione(riduci(sequenze));
+        } catch (UncheckedIOException e) {
+            annulla(inScrittura, sequenze);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            annulla(inScrittura, sequenze);
+            throw e;
+        } finally {
+            if (esecutore != null) {
+                esecutore.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Attende la scrittura di una sequenza.
+     */
+    private static File attendi(Future<File> sequenza) throws IOException {
+        try {
+            return sequenza.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ordinamento interrotto");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Errore nella scrittura di una sequenza: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Fonde a gruppi di sequenze consecutive finché non restano al più gradoFusione sequenze.
+     * Fondere gruppi consecutivi mantiene l'ordine del file tra i libri equivalenti.
+     */
+    private List<File> riduci(List<File> sequenze) throws IOException {
+        List<File> correnti = sequenze;
+        while (correnti.size() > gradoFusione) {
+            List<File> ridotte = new ArrayList<>();
+            try {
+                for (int i = 0; i < correnti.size(); i += gradoFusione) {
+                    List<File> gruppo = correnti.subList(i, Math.min(i + gradoFusione, correnti.size()));
+                    if (gruppo.size() == 1) {
+                        ridotte.add(gruppo.get(0));
+                        continue;
+                    }
+                    try (Fusione fusione = new Fusione(new ArrayList<>(gruppo))) {
+                        ridotte.add(scriviSequenza(fusione));
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                elimina(ridotte);
+                elimina(correnti);
+                throw e;
+            }
+            correnti = ridotte;
+        }
+        return correnti;
+    }
+
+    /**
+     * Ordina un blocco e lo scrive in un file temporaneo, una riga CSV per libro.
+     * L'ordinamento di List.sort è stabile.
+     */
+    private File scriviSequenza(List<Libro> blocco) throws IOException {
+        blocco.sort(comparatore);
+        return scriviSequenza(blocco.iterator());
+    }
+
+    /**
+     * Scrive dei libri già ordinati in un file temporaneo, una riga CSV per libro.
+     */
+    private File scriviSequenza(Iterator<Libro> libri) throws IOException {
+        File file = File.createTempFile("libreria-sequenza", ".csv");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            while (libri.hasNext()) {
+                writer.write(csv.formattaRiga(libri.next()));
+                writer.newLine();
+            }
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Annulla un ordinamento fallito, eliminando le sequenze scritte e quelle ancora in scrittura.
+     */
+    private static void annulla(List<Future<File>> inScrittura, List<File> sequenze) {
+        for (int i = sequenze.size(); i < inScrittura.size(); i++) {
+            try {
+                sequenze.add(inScrittura.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // La sequenza non è stata scritta
+            }
+        }
+        elimina(sequenze);
+    }
+
+    private static void elimina(List<File> sequenze) {
+        for (File file : sequenze) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Flusso di libri ordinati. Gli errori di lettura delle sequenze vengono lanciati
+     * da next() come UncheckedIOException.
+     */
+    public interface Flusso extends Iterator<Libro>, Closeable {
+    }
+
+    /**
+     * Flusso di un file che sta in un solo blocco, ordinato in memoria.
+     */
+    private static final class FlussoInMemoria implements Flusso {
+        private final Iterator<Libro> libri;
+
+        private FlussoInMemoria(Iterator<Libro> libri) {
+            this.libri = libri;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return libri.hasNext();
+        }
+
+        @Override
+        public Libro next() {
+            return libri.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Fusione delle sequenze ordinate: restituisce ogni volta il minore tra i primi
+     * libri delle sequenze non ancora esaurite.
+     */
+    private final class Fusione implements Flusso {
+        private final List<File> file;
+        private final List<Sequenza> aperte;
+        private final PriorityQueue<Sequenza> coda;
+
+        private Fusione(List<File> file) throws IOException {
+            this.file = file;
+            this.aperte = new ArrayList<>(file.size());
+            // A parità di libro viene prima la sequenza precedente nel file, per la stabilità
+            this.coda = new PriorityQueue<>(file.size(), (a, b) -> {
+                int confronto = comparatore.compare(a.corrente, b.corrente);
+                return confronto != 0 ? confronto : Integer.compare(a.indice, b.indice);
+            });
+            try {
+                for (File sequenza : file) {
+                    Sequenza aperta = new Sequenza(sequenza, aperte.size());
+                    aperte.add(aperta);
+                    if (aperta.avanza()) {
+                        coda.add(aperta);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !coda.isEmpty();
+        }
+
+        @Override
+        public Libro next() {
+            Sequenza sequenza = coda.poll();
+            if (sequenza == null) {
+                throw new NoSuchElementException();
+            }
+            Libro libro = sequenza.corrente;
+            try {
+                if (sequenza.avanza()) {
+                    coda.add(sequenza);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return libro;
+        }
+
+        @Override
+        public void close() {
+            for (Sequenza sequenza : aperte) {
+                try {
+                    sequenza.reader.close();
+                } catch (IOException e) {
+                    // Il file viene eliminato comunque
+                }
+            }
+            elimina(file);
+        }
+    }
+
+    /**
+     * Sequenza ordinata in lettura, con il suo primo libro non ancora restituito.
+     */
+    private final class Sequenza {
+        private final BufferedReader reader;
+        private final int indice;
+        private Libro corrente;
+
+        private Sequenza(File file, int indice) throws IOException {
+            this.indice = indice;
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        }
+
+        private boolean avanza() throws IOException {
+            String riga = reader.readLine();
+            if (riga == null) {
+                corrente = null;
+                return false;
+            }
+            try {
+                corrente = csv.parseLibroFromCsv(riga);
+            } catch (LibroNonValidoException e) {
+                throw new IOException("Sequenza temporanea non valida: " + e.getMessage());
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package dao;
+
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Esito dell'importazione di un file: numero di libri importati e scartati, conteggio
+ * degli errori per codice e dettaglio dei primi errori, con numero di riga (o di oggetto)
+ * e posizione in byte nel contenuto non compresso del file.
+ * <p>
+ * Il dettaglio è limitato a un numero massimo di errori: oltre il limite vengono solo
+ * aggiornati i conteggi, così un file molto danneggiato non produce messaggi enormi.
+ * Per i libri validi il rapporto incrementa soltanto un contatore.
+ */
+public class RapportoImportazione {
+
+    // Numero massimo predefinito di errori descritti nel dettaglio
+    public static final int MASSIMO_DETTAGLI = 100;
+
+    /**
+     * Comportamento dell'importazione quando trova un libro non valido.
+     */
+    public enum Modalita {
+        // La lettura si interrompe al primo libro non valido
+        INTERROMPI_AL_PRIMO_ERRORE,
+        // I libri non validi vengono scartati e la lettura prosegue
+        SCARTA_E_CONTINUA
+    }
+
+    /**
+     * Tipo di errore trovato in un libro.
+     */
+    public enum Codice {
+        FORMATO_NON_VALIDO("formato non valido"),
+        VALUTAZIONE_NON_VALIDA("valutazione non valida"),
+        STATO_LETTURA_NON_VALIDO("stato di lettura non valido"),
+        DATI_NON_VALIDI("dati incompleti o non validi"),
+        ISBN_DUPLICATO("libro già presente o isbn duplicato");
+
+        private final String descrizione;
+
+        Codice(String descrizione) {
+            this.descrizione = descrizione;
+        }
+
+        public String getDescrizione() {
+            return descrizione;
+        }
+    }
+
+    /**
+     * Errore di un singolo libro.
+     */
+    public static final class Errore {
+        private final Codice codice;
+        private final long numero;
+        private final long posizione;
+        private final String titolo;
+        private final String dettaglio;
+
+        private Errore(Codice codice, long numero, long posizione, String titolo, String dettaglio) {
+            this.codice = codice;
+            this.numero = numero;
+            this.posizione = posizione;
+            this.titolo = titolo;
+            this.dettaglio = dettaglio;
+        }
+
+        public Codice getCodice() {
+            return codice;
+        }
+
+        /**
+         * Ottiene il numero della riga (CSV) o dell'oggetto (JSON) del libro, a partire da 1.
+         *
+         * @return Numero della riga o dell'oggetto
+         */
+        public long getNumero() {
+            return numero;
+        }
+
+        /**
+         * Ottiene la posizione in byte dell'inizio del libro nel contenuto non compresso.
+         *
+         * @return Posizione in byte, o -1 per i formati senza posizioni in byte
+         */
+        public long getPosizione() {
+            return posizione;
+        }
+
+        /**
+         * Ottiene il titolo del libro, se è stato possibile leggerlo.
+         *
+         * @return Titolo, o null
+         */
+        public String getTitolo() {
+            return titolo;
+        }
+
+        /**
+         * Ottiene informazioni aggiuntive sull'errore.
+         *
+         * @return Dettaglio, o null
+         */
+        public String getDettaglio() {
+            return dettaglio;
+        }
+    }
+
+    private final String unita;
+    private final int massimoDettagli;
+    private final Map<Codice, Long> conteggi;
+    private final List<Errore> errori;
+    private long importati;
+    private long scartati;
+    private boolean interrotto;
+
+    /**
+     * Costruttore che crea un rapporto vuoto.
+     *
+     * @param unita Nome degli elementi del file usato nei messaggi ("Riga" o "Libro #")
+     * @param massimoDettagli Numero massimo di errori descritti nel dettaglio
+     */
+    RapportoImportazione(String unita, int massimoDettagli) {
+        this.unita = unita;
+        this.massimoDettagli = massimoDettagli;
+        this.conteggi = new EnumMap<>(Codice.class);
+        this.errori = new ArrayList<>();
+    }
+
+    /**
+     * Registra un libro scartato. Il dettaglio viene conservato solo entro il limite.
+     *
+     * @param codice Tipo di errore
+     * @param numero Numero della riga o dell'oggetto
+     * @param posizione Posizione in byte dell'inizio del libro, o -1 se non disponibile
+     * @param titolo Titolo del libro, o null se non disponibile
+     * @param dettaglio Informazioni aggiuntive, o null
+     */
+    void registraErrore(Codice codice, long numero, long posizione, String titolo, String dettaglio) {
+        scartati++;
+        conteggi.merge(codice, 1L, Long::sum);
+        if (errori.size() < massimoDettagli) {
+            errori.add(new Errore(codice, numero, posizione, titolo, dettaglio));
+        }
+    }
+
+    /**
+     * Registra un libro importato senza verificarlo.
+     */
+    void registraImportato() {
+        importati++;
+    }
+
+    /**
+     * Verifica un libro letto correttamente, registrando l'errore se il libro non è
+     * valido o se l'ISBN è già stato letto. Un libro verificato viene registrato come
+     * importato o come già presente quando la destinazione aggiunge il suo lotto.
+     *
+     * @param libro Libro letto
+     * @param isbnLetti ISBN dei libri letti finora, a cui viene aggiunto quello del libro,
+     *                  o null per non controllare gli ISBN ripetuti
+     * @param numero Numero della riga o dell'oggetto
+     * @param posizione Posizione in byte dell'inizio del libro
+     * @return true se il libro può essere passato alla destinazione
+     */
+    boolean verifica(Libro libro, Set<String> isbnLetti, long numero, long posizione) {
+        if (!libro.isValid()) {
+            registraErrore(Codice.DATI_NON_VALIDI, numero, posizione, libro.getTitolo(), null);
+            return false;
+        }
+        if (isbnLetti != null && !isbnLetti.add(libro.getIsbn())) {
+            registraErrore(Codice.ISBN_DUPLICATO, numero, posizione, libro.getTitolo(), null);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Segnala che la lettura è stata interrotta al primo errore.
+     */
+    void interrompi() {
+        interrotto = true;
+    }
+
+    public long getImportati() {
+        return importati;
+    }
+
+    public long getScartati() {
+        return scartati;
+    }
+
+    /**
+     * Ottiene il numero di libri scartati per un tipo di errore.
+     *
+     * @param codice Tipo di errore
+     * @return Numero di libri scartati con quel codice
+     */
+    public long getConteggio(Codice codice) {
+        return conteggi.getOrDefault(codice, 0L);
+    }
+
+    /**
+     * Ottiene il dettaglio dei primi errori, nell'ordine del file.
+     *
+     * @return Lista non modificabile degli errori descritti
+     */
+    public List<Errore> getErrori() {
+        return Collections.unmodifiableList(errori);
+    }
+
+    public boolean haErrori() {
+        return scartati > 0;
+    }
+
+    /**
+     * Verifica se la lettura è stata interrotta prima della fine del file.
+     *
+     * @return true se l'importazione si è fermata al primo errore
+     */
+    public boolean isInterrotto() {
+        return interrotto;
+    }
+
+    /**
+     * Descrive un errore in una riga, ad esempio "Riga 5 (Titolo): dati incompleti o non validi".
+     *
+     * @param errore Errore da descrivere
+     * @return Descrizione dell'errore
+     */
+    public String descrivi(Errore errore) {
+        StringBuilder sb = new StringBuilder(unita);
+        if (!unita.endsWith("#")) {
+            sb.append(' ');
+        }
+        sb.append(errore.numero);
+        if (errore.titolo != null) {
+            sb.append(" (").append(errore.titolo.isEmpty() ? "titolo mancante" : errore.titolo).append(')');
+        }
+        sb.append(": ").append(errore.codice.getDescrizione());
+        if (errore.dettaglio != null) {
+            sb.append(" - ").append(errore.dettaglio);
+        }
+        if (errore.posizione >= 0) {
+            sb.append(" [byte ").append(errore.posizione).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Costruisce il messaggio per l'utente: gli errori descritti, quanti ne sono stati
+     * omessi e il riepilogo dei conteggi.
+     *
+     * @return Messaggio dell'importazione
+     */
+    public String getMessaggio() {
+        StringBuilder sb = new StringBuilder("Impossibile caricare il file. Sono stati trovati libri non validi:");
+        for (Errore errore : errori) {
+            sb.append('\n').append(descrivi(errore));
+        }
+        if (scartati > errori.size()) {
+            sb.append("\n... e altri ").append(scartati - errori.size()).append(" errori");
+        }
+        sb.append('\n').append(getRiepilogo());
+        return sb.toString();
+    }
+
+    /**
+     * Riassume l'importazione in una riga, ad esempio
+     * "Libri validi: 10, scartati: 2 (ISBN_DUPLICATO: 2)".
+     *
+     * @return Riepilogo dei conteggi
+     */
+    public String getRiepilogo() {
+        StringBuilder sb = new StringBuilder("Libri validi: ").append(importati)
+                .append(", scartati: ").append(scartati);
+        if (!conteggi.isEmpty()) {
+            sb.append(" (");
+            boolean primo = true;
+            for (Map.Entry<Codice, Long> voce : conteggi.entrySet()) {
+                if (!primo) {
+                    sb.append(", ");
+                }
+                primo = false;
+                sb.append(voce.getKey()).append(": ").append(voce.getValue());
+            }
+            sb.append(')');
+        }
+        if (interrotto) {
+            sb.append(", lettura interrotta al primo errore");
+        }
+        return sb.toString();
+    }
+}
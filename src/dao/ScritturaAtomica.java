@@ -0,0 +1,115 @@
+package dao;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scrittura di un file che sostituisce quello esistente solo a scrittura completata.
+ * I dati vengono scritti in un file temporaneo nella stessa cartella; conferma()
+ * li forza su disco e rinomina il temporaneo sul file di destinazione in modo atomico.
+ * Se la scrittura si interrompe prima della conferma, il file di destinazione resta
+ * quello precedente e il temporaneo viene eliminato alla chiusura.
+ * I file con estensione .gz vengono scritti compressi.
+ */
+class ScritturaAtomica implements Closeable {
+
+    private final Path destinazione;
+    private final Path temporaneo;
+    private final FileOutputStream stream;
+    private final OutputStream uscita;
+    private final BufferedWriter writer;
+    private boolean confermata;
+
+    /**
+     * Apre il file temporaneo per la scrittura.
+     *
+     * @param percorsoFile Percorso del file di destinazione
+     * @param livelloCompressione Livello di compressione, usato se il file ha estensione .gz
+     * @throws IOException In caso di errori nella creazione del file temporaneo
+     */
+    ScritturaAtomica(String percorsoFile, int livelloCompressione) throws IOException {
+        this.destinazione = Paths.get(percorsoFile).toAbsolutePath();
+        this.temporaneo = Files.createTempFile(destinazione.getParent(),
+                "." + destinazione.getFileName(), ".tmp");
+        this.stream = new FileOutputStream(temporaneo.toFile());
+        this.uscita = CompressioneGzip.isCompresso(percorsoFile)
+                ? CompressioneGzip.apriScrittura(stream, livelloCompressione)
+                : stream;
+        this.writer = new BufferedWriter(new OutputStreamWriter(uscita));
+    }
+
+    /**
+     * Ottiene il writer su cui scrivere il contenuto del file.
+     *
+     * @return Writer del file temporaneo
+     */
+    BufferedWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Forza i dati su disco e sostituisce il file di destinazione con quello scritto.
+     *
+     * @throws IOException In caso di errori durante la scrittura o la rinomina
+     */
+    void conferma() throws IOException {
+        writer.flush();
+        if (uscita != stream) {
+            // Completa il formato compresso senza chiudere il file
+            uscita.close();
+        }
+        stream.getFD().sync();
+        writer.close();
+        // Con la compressione writer e uscita non chiudono il file: va chiuso prima della rinomina
+        stream.close();
+
+        try {
+            Files.move(temporaneo, destinazione, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // File system senza rinomina atomica: la sostituzione resta comunque a file completo
+            Files.move(temporaneo, destinazione, StandardCopyOption.REPLACE_EXISTING);
+        }
+        confermata = true;
+        sincronizzaCartella();
+    }
+
+    /**
+     * Rende persistente la rinomina forzando su disco la cartella, dove il sistema lo permette.
+     */
+    private void sincronizzaCartella() {
+        try (FileChannel cartella = FileChannel.open(destinazione.getParent(), StandardOpenOption.READ)) {
+            cartella.force(true);
+        } catch (IOException e) {
+            // Non tutti i sistemi permettono di aprire una cartella: il file è già stato sostituito
+        }
+    }
+
+    /**
+     * Chiude il file; se la scrittura non è stata confermata elimina il temporaneo.
+     *
+     * @throws IOException In caso di errori durante la chiusura
+     */
+    @Override
+    public void close() throws IOException {
+        if (confermata) {
+            return;
+        }
+        try {
+            writer.close();
+        } finally {
+            stream.close();
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package indice;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Albero BK (Burkhard-Keller) di stringhe con distanza di Levenshtein.
+ * Permette di trovare tutte le stringhe entro una distanza massima da una query
+ * visitando solo i sottoalberi compatibili con la disuguaglianza triangolare,
+ * invece di confrontare la query con ogni stringa. Il calcolo della distanza da ogni
+ * nodo visitato si interrompe appena esclude sia il nodo sia tutti i suoi figli.
+ * L'albero non supporta la rimozione: chi lo usa deve ricostruirlo quando necessario.
+ */
+public class BKTree {
+
+    private Nodo radice;
+    private int dimensione;
+
+    /**
+     * Aggiunge una stringa all'albero. Le stringhe già presenti vengono ignorate.
+     *
+     * @param parola Stringa da aggiungere
+     * @return true se la stringa è stata aggiunta, false se era già presente
+     */
+    public boolean aggiungi(String parola) {
+        if (radice == null) {
+            radice = new Nodo(parola);
+            dimensione++;
+            return true;
+        }
+
+        Nodo nodo = radice;
+        while (true) {
+            int distanza = distanza(nodo.parola, parola, Integer.MAX_VALUE);
+            if (distanza == 0) {
+                return false;
+            }
+            Nodo figlio = nodo.figli.get(distanza);
+            if (figlio == null) {
+                nodo.aggiungiFiglio(distanza, new Nodo(parola));
+                dimensione++;
+                return true;
+            }
+            nodo = figlio;
+        }
+    }
+
+    /**
+     * Cerca tutte le stringhe entro la distanza massima dalla query.
+     *
+     * @param query Stringa da cercare
+     * @param distanzaMassima Distanza di Levenshtein massima ammessa
+     * @return Lista delle corrispondenze trovate, in ordine non specificato
+     */
+    public List<Corrispondenza> cerca(String query, int distanzaMassima) {
+        List<Corrispondenza> risultato = new ArrayList<>();
+        if (radice == null) {
+            return risultato;
+        }
+
+        Deque<Nodo> daVisitare = new ArrayDeque<>();
+        daVisitare.push(radice);
+        while (!daVisitare.isEmpty()) {
+            Nodo nodo = daVisitare.pop();
+            // Oltre questo limite la parola non corrisponde e nessun figlio è compatibile:
+            // la distanza esatta non serve e il calcolo può interrompersi prima
+            int limite = distanzaMassima + nodo.chiaveMassima;
+            int distanza = distanza(nodo.parola, query, limite);
+            if (distanza > limite) {
+                continue;
+            }
+            if (distanza <= distanzaMassima) {
+                risultato.add(new Corrispondenza(nodo.parola, distanza));
+            }
+
+            // Per la disuguaglianza triangolare bastano i figli a distanza [d - max, d + max]
+            int minimo = distanza - distanzaMassima;
+            int massimo = distanza + distanzaMassima;
+            for (Map.Entry<Integer, Nodo> figlio : nodo.figli.entrySet()) {
+                if (figlio.getKey() >= minimo && figlio.getKey() <= massimo) {
+                    daVisitare.push(figlio.getValue());
+                }
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * Ottiene il numero di stringhe contenute nell'albero.
+     *
+     * @return Numero di stringhe
+     */
+    public int getDimensione() {
+        return dimensione;
+    }
+
+    /**
+     * Scrive l'albero in profondità: per ogni nodo la parola, la distanza dal padre
+     * e il numero di figli, seguiti dai sottoalberi dei figli.
+     * La lettura ripristina la stessa struttura senza calcolare alcuna distanza.
+     *
+     * @param out Flusso su cui scrivere
+     * @throws IOException In caso di errori di scrittura
+     */
+    void scrivi(DataOutputStream out) throws IOException {
+        out.writeInt(dimensione);
+        if (radice == null) {
+            return;
+        }
+
+        Deque<Nodo> daScrivere = new ArrayDeque<>();
+        Deque<Integer> distanze = new ArrayDeque<>();
+        daScrivere.push(radice);
+        distanze.push(0);
+        while (!daScrivere.isEmpty()) {
+            Nodo nodo = daScrivere.pop();
+            FileIndici.scriviTesto(out, nodo.parola);
+            out.writeInt(distanze.pop());
+            out.writeInt(nodo.figli.size());
+            for (Map.Entry<Integer, Nodo> figlio : nodo.figli.entrySet()) {
+                daScrivere.push(figlio.getValue());
+                distanze.push(figlio.getKey());
+            }
+        }
+    }
+
+    /**
+     * Legge un albero scritto con scrivi().
+     *
+     * @param in Flusso da cui leggere
+     * @return Albero letto
+     * @throws IOException In caso di errori di lettura o di contenuto non valido
+     */
+    static BKTree leggi(DataInputStream in) throws IOException {
+        BKTree albero = new BKTree();
+        albero.dimensione = in.readInt();
+        if (albero.dimensione == 0) {
+            return albero;
+        }
+
+        // Nodi con figli ancora da leggere e numero di figli mancanti
+        Deque<Nodo> aperti = new ArrayDeque<>();
+        Deque<int[]> mancanti = new ArrayDeque<>();
+        for (int letti = 0; letti < albero.dimensione; letti++) {
+            Nodo nodo = new Nodo(FileIndici.leggiTesto(in));
+            int distanza = in.readInt();
+            int figli = in.readInt();
+            if (letti == 0) {
+                albero.radice = nodo;
+            } else {
+                while (!mancanti.isEmpty() && mancanti.peek()[0] == 0) {
+                    aperti.pop();
+                    mancanti.pop();
+                }
+                if (aperti.isEmpty()) {
+                    throw new IOException("Albero BK non valido");
+                }
+                aperti.peek().aggiungiFiglio(distanza, nodo);
+                mancanti.peek()[0]--;
+            }
+            aperti.push(nodo);
+            mancanti.push(new int[]{figli});
+        }
+        return albero;
+    }
+
+    /**
+     * Calcola la distanza di Levenshtein tra due stringhe.
+     * Il calcolo si interrompe appena la distanza supera il limite indicato.
+     *
+     * @param a Prima stringa
+     * @param b Seconda stringa
+     * @param limite Distanza oltre la quale il valore esatto non interessa
+     * @return Distanza di Levenshtein, oppure un valore maggiore del limite se lo supera
+     */
+    public static int distanza(String a, String b, int limite) {
+        if (Math.abs(a.length() - b.length()) > limite) {
+            return limite == Integer.MAX_VALUE ? limite : limite + 1;
+        }
+
+        int[] precedente = new int[b.length() + 1];
+        int[] corrente = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            precedente[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            corrente[0] = i;
+            int minimoRiga = corrente[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = ca == b.charAt(j - 1) ? 0 : 1;
+                corrente[j] = Math.min(Math.min(corrente[j - 1] + 1, precedente[j] + 1),
+                        precedente[j - 1] + costo);
+                minimoRiga = Math.min(minimoRiga, corrente[j]);
+            }
+            if (minimoRiga > limite) {
+                return limite + 1;
+            }
+            int[] scambio = precedente;
+            precedente = corrente;
+            corrente = scambio;
+        }
+        return precedente[b.length()];
+    }
+
+    /**
+     * Stringa trovata da una ricerca, con la sua distanza dalla query.
+     */
+    public static final class Corrispondenza {
+        private final String parola;
+        private final int distanza;
+
+        private Corrispondenza(String parola, int distanza) {
+            this.parola = parola;
+            this.distanza = distanza;
+        }
+
+        public String getParola() {
+            return parola;
+        }
+
+        public int getDistanza() {
+            return distanza;
+        }
+    }
+
+    /**
+     * Nodo dell'albero: i figli sono indicizzati per distanza dalla parola del nodo.
+     */
+    private static final class Nodo {
+        private final String parola;
+        private final Map<Integer, Nodo> figli = new HashMap<>();
+
+        // Distanza massima dei figli, che limita il calcolo della distanza nella ricerca
+        private int chiaveMassima;
+
+        private Nodo(String parola) {
+            this.parola = parola;
+        }
+
+        private void aggiungiFiglio(int distanza, Nodo figlio) {
+            figli.put(distanza, figlio);
+            chiaveMassima = Math.max(chiaveMassima, distanza);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package indice;
+
+import java.util.List;
+
+/**
+ * Dizionario ordinato dei valori distinti di un campo, consultabile per prefisso e
+ * osservabile tramite ascoltatori. È implementato da IndiceFacet e dalle viste del
+ * gestore che leggono i suoi dizionari sotto il blocco della collezione.
+ */
+public interface Dizionario {
+
+    /**
+     * Restituisce i primi valori, in ordine alfabetico, che iniziano con il prefisso
+     * (senza distinzione tra maiuscole e minuscole).
+     *
+     * @param prefisso Prefisso da cercare (null o vuoto per tutti i valori)
+     * @param limite Numero massimo di valori da restituire
+     * @return Lista dei valori che iniziano con il prefisso
+     */
+    List<String> suggerisci(String prefisso, int limite);
+
+    /**
+     * Registra un ascoltatore delle modifiche ai valori distinti.
+     *
+     * @param ascoltatore Ascoltatore da registrare
+     */
+    void aggiungiAscoltatore(IndiceFacet.Ascoltatore ascoltatore);
+
+    /**
+     * Rimuove un ascoltatore registrato in precedenza.
+     *
+     * @param ascoltatore Ascoltatore da rimuovere
+     */
+    void rimuoviAscoltatore(IndiceFacet.Ascoltatore ascoltatore);
+}
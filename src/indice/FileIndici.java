@@ -0,0 +1,245 @@
+package indice;
+
+import model.Libro;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * File degli indici di ricerca affiancato a un file della libreria (stesso percorso con
+ * estensione aggiuntiva .indici). Contiene l'indice per la ricerca approssimata, l'indice
+ * full-text e i dizionari di autori e generi costruiti dai libri del file, con i libri
+ * indicati dalla loro posizione nella collezione caricata.
+ * <p>
+ * Il file registra l'impronta del contenuto da cui gli indici sono stati costruiti: se al
+ * caricamento successivo l'impronta coincide, gli indici vengono letti invece di essere
+ * ricostruiti analizzando il testo di ogni libro. Un file degli indici non aggiornato,
+ * troncato o non valido viene semplicemente ignorato, perché gli indici si possono
+ * sempre ricostruire dai libri.
+ */
+public class FileIndici {
+
+    // Estensione aggiunta al percorso del file principale
+    public static final String ESTENSIONE = ".indici";
+
+    // Intestazione e chiusura del file ("IDX1"): la seconda rileva i file troncati
+    private static final int MAGICO = 0x49445831;
+
+    // Lunghezza massima di un testo, oltre la quale il file è considerato non valido
+    private static final int LUNGHEZZA_MASSIMA_TESTO = 1 << 20;
+
+    private static final int DIMENSIONE_BUFFER = 1 << 20;
+
+    private final Path file;
+
+    /**
+     * Costruttore che associa il file degli indici a un file della libreria.
+     *
+     * @param percorsoFilePrincipale Percorso del file della libreria
+     */
+    public FileIndici(String percorsoFilePrincipale) {
+        this.file = Paths.get(percorsoFilePrincipale + ESTENSIONE).toAbsolutePath();
+    }
+
+    /**
+     * Verifica se il file degli indici esiste.
+     *
+     * @return true se il file esiste, anche se non aggiornato
+     */
+    public boolean esiste() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Calcola l'impronta del contenuto di uno o più file, nell'ordine indicato.
+     * L'impronta unisce due checksum diversi (CRC-32C e CRC-32) del contenuto e delle
+     * lunghezze: rileva qualsiasi modifica accidentale, ma non è una firma crittografica.
+     * I file inesistenti contribuiscono come file assenti, diversi da un file vuoto.
+     *
+     * @param percorsi Percorsi dei file
+     * @return Impronta del contenuto
+     * @throws IOException In caso di errori di lettura
+     */
+    public static long impronta(String... percorsi) throws IOException {
+        CRC32C crc32c = new CRC32C();
+        CRC32 crc32 = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DIMENSIONE_BUFFER);
+        ByteBuffer lunghezza = ByteBuffer.allocate(Long.BYTES);
+        for (String percorso : percorsi) {
+            long letti = -1;
+            try (FileChannel canale = FileChannel.open(Paths.get(percorso), StandardOpenOption.READ)) {
+                letti = 0;
+                int numero;
+                while ((numero = canale.read(buffer)) >= 0) {
+                    letti += numero;
+                    buffer.flip();
+                    crc32.update(buffer.duplicate());
+                    crc32c.update(buffer);
+                    buffer.clear();
+                }
+            } catch (NoSuchFileException e) {
+                // File assente: contribuisce solo con la lunghezza -1
+            }
+            lunghezza.clear();
+            lunghezza.putLong(letti).flip();
+            crc32.update(lunghezza.duplicate());
+            crc32c.update(lunghezza);
+        }
+        return crc32.getValue() << 32 | crc32c.getValue();
+    }
+
+    /**
+     * Legge gli indici se il file esiste ed è stato scritto per lo stesso contenuto.
+     *
+     * @param impronta Impronta del contenuto caricato
+     * @param libri Libri caricati, in ordine di collezione
+     * @return Indici letti, o null se il file manca, non è aggiornato o non è valido
+     */
+    public Indici leggi(long impronta, List<Libro> libri) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), DIMENSIONE_BUFFER))) {
+            if (in.readInt() != MAGICO || in.readLong() != impronta || in.readInt() != libri.size()) {
+                return null;
+            }
+
+            Indici indici = new Indici(new IndiceFuzzy(), new IndiceTestuale(), new IndiceFacet(), new IndiceFacet());
+            indici.indiceAutori.leggi(in);
+            indici.indiceGeneri.leggi(in);
+            indici.indiceTestuale.leggi(in, libri);
+            indici.indiceFuzzy.leggi(in, libri);
+            return in.readInt() == MAGICO ? indici : null;
+        } catch (IOException e) {
+            // File assente o non valido: gli indici vanno ricostruiti
+            return null;
+        }
+    }
+
+    /**
+     * Scrive gli indici sostituendo il file esistente solo a scrittura completata.
+     * Il file non viene forzato su disco: dopo un'interruzione al più viene ignorato.
+     *
+     * @param impronta Impronta del contenuto da cui gli indici sono stati costruiti
+     * @param numeroLibri Numero di libri della collezione indicizzata
+     * @param posizione Posizione di ogni libro nella collezione
+     * @param indici Indici da scrivere
+     * @throws IOException In caso di errori di scrittura
+     */
+    public void scrivi(long impronta, int numeroLibri, ToIntFunction<Libro> posizione, Indici indici)
+            throws IOException {
+        Path temporaneo = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaneo), DIMENSIONE_BUFFER))) {
+                out.writeInt(MAGICO);
+                out.writeLong(impronta);
+                out.writeInt(numeroLibri);
+                indici.indiceAutori.scrivi(out);
+                indici.indiceGeneri.scrivi(out);
+                indici.indiceTestuale.scrivi(out, posizione);
+                indici.indiceFuzzy.scrivi(out, posizione);
+                out.writeInt(MAGICO);
+            }
+            try {
+                Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+
+    /**
+     * Elimina il file degli indici, se esiste.
+     *
+     * @throws IOException In caso di errori durante l'eliminazione
+     */
+    public void elimina() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // ---- Codifica comune agli indici ----
+
+    static void scriviTesto(DataOutputStream out, String testo) throws IOException {
+        byte[] byteTesto = testo.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(byteTesto.length);
+        out.write(byteTesto);
+    }
+
+    static String leggiTesto(DataInputStream in) throws IOException {
+        int lunghezza = in.readInt();
+        if (lunghezza < 0 || lunghezza > LUNGHEZZA_MASSIMA_TESTO) {
+            throw new IOException("Lunghezza del testo non valida: " + lunghezza);
+        }
+        byte[] byteTesto = new byte[lunghezza];
+        in.readFully(byteTesto);
+        return new String(byteTesto, StandardCharsets.UTF_8);
+    }
+
+    static Libro leggiLibro(DataInputStream in, List<Libro> libri) throws IOException {
+        int posizione = in.readInt();
+        if (posizione < 0 || posizione >= libri.size()) {
+            throw new IOException("Posizione del libro non valida: " + posizione);
+        }
+        return libri.get(posizione);
+    }
+
+    /**
+     * Indici di ricerca di una collezione, letti o da scrivere insieme.
+     */
+    public static final class Indici {
+        private final IndiceFuzzy indiceFuzzy;
+        private final IndiceTestuale indiceTestuale;
+        private final IndiceFacet indiceAutori;
+        private final IndiceFacet indiceGeneri;
+
+        /**
+         * Costruttore che raggruppa gli indici di una collezione.
+         *
+         * @param indiceFuzzy Indice per la ricerca approssimata
+         * @param indiceTestuale Indice per la ricerca full-text
+         * @param indiceAutori Dizionario degli autori
+         * @param indiceGeneri Dizionario dei generi
+         */
+        public Indici(IndiceFuzzy indiceFuzzy, IndiceTestuale indiceTestuale,
+                      IndiceFacet indiceAutori, IndiceFacet indiceGeneri) {
+            this.indiceFuzzy = indiceFuzzy;
+            this.indiceTestuale = indiceTestuale;
+            this.indiceAutori = indiceAutori;
+            this.indiceGeneri = indiceGeneri;
+        }
+
+        public IndiceFuzzy getIndiceFuzzy() {
+            return indiceFuzzy;
+        }
+
+        public IndiceTestuale getIndiceTestuale() {
+            return indiceTestuale;
+        }
+
+        public IndiceFacet getIndiceAutori() {
+            return indiceAutori;
+        }
+
+        public IndiceFacet getIndiceGeneri() {
+            return indiceGeneri;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package indice;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dizionario ordinato dei valori distinti di un campo (ad esempio autori o generi),
+ * con il numero di libri che usano ciascun valore.
+ * I valori sono mantenuti in un array ordinato senza distinzione tra maiuscole e minuscole:
+ * i valori che iniziano con un prefisso formano quindi un intervallo contiguo,
+ * trovato con una ricerca binaria. L'indice va aggiornato a ogni modifica della collezione.
+ * Gli ascoltatori registrati ricevono la posizione di ogni valore aggiunto o rimosso,
+ * così le liste visualizzate possono aggiornare solo la riga interessata.
+ * Gli ascoltatori possono essere registrati e rimossi da qualsiasi thread; valori e
+ * conteggi invece non sono sincronizzati e vanno protetti da chi usa l'indice.
+ */
+public class IndiceFacet implements Dizionario {
+
+    // Ordine dei valori: prima senza distinzione tra maiuscole e minuscole, poi naturale
+    private static final Comparator<String> ORDINE =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final List<String> valori;
+    private final Map<String, Integer> conteggi;
+    private final List<Ascoltatore> ascoltatori;
+
+    /**
+     * Costruttore che crea un indice vuoto.
+     */
+    public IndiceFacet() {
+        this.valori = new ArrayList<>();
+        this.conteggi = new HashMap<>();
+        this.ascoltatori = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Registra un ascoltatore delle modifiche ai valori distinti.
+     *
+     * @param ascoltatore Ascoltatore da registrare
+     */
+    @Override
+    public void aggiungiAscoltatore(Ascoltatore ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
+
+    /**
+     * Rimuove un ascoltatore registrato in precedenza.
+     *
+     * @param ascoltatore Ascoltatore da rimuovere
+     */
+    @Override
+    public void rimuoviAscoltatore(Ascoltatore ascoltatore) {
+        ascoltatori.remove(ascoltatore);
+    }
+
+    /**
+     * Registra un utilizzo del valore.
+     *
+     * @param valore Valore da aggiungere
+     * @return Posizione in cui il valore è stato inserito, o -1 se era già presente
+     */
+    public int aggiungi(String valore) {
+        Integer conteggio = conteggi.get(valore);
+        if (conteggio != null) {
+            conteggi.put(valore, conteggio + 1);
+            return -1;
+        }
+
+        conteggi.put(valore, 1);
+        int posizione = -Collections.binarySearch(valori, valore, ORDINE) - 1;
+        valori.add(posizione, valore);
+        for (Ascoltatore ascoltatore : ascoltatori) {
+            ascoltatore.valoreAggiunto(posizione, valore);
+        }
+        return posizione;
+    }
+
+    /**
+     * Rimuove un utilizzo del valore. Il valore sparisce quando non è più usato.
+     *
+     * @param valore Valore da rimuovere
+     * @return Posizione da cui il valore è stato rimosso, o -1 se è ancora usato o non era presente
+     */
+    public int rimuovi(String valore) {
+        Integer conteggio = conteggi.get(valore);
+        if (conteggio == null) {
+            return -1;
+        }
+        if (conteggio > 1) {
+            conteggi.put(valore, conteggio - 1);
+            return -1;
+        }
+
+        conteggi.remove(valore);
+        int posizione = Collections.binarySearch(valori, valore, ORDINE);
+        valori.remove(posizione);
+        for (Ascoltatore ascoltatore : ascoltatori) {
+            ascoltatore.valoreRimosso(posizione, valore);
+        }
+        return posizione;
+    }
+
+    /**
+     * Svuota l'indice.
+     */
+    public void pulisci() {
+        valori.clear();
+        conteggi.clear();
+        notificaRicaricamento();
+    }
+
+    /**
+     * Sostituisce il contenuto dell'indice con i valori indicati, uno per libro.
+     * Più efficiente di tante chiamate ad aggiungi(): i valori distinti vengono
+     * ordinati una sola volta e gli ascoltatori ricevono un'unica notifica.
+     *
+     * @param nuoviValori Valori da indicizzare, con ripetizioni
+     */
+    public void ricarica(Collection<String> nuoviValori) {
+        valori.clear();
+        conteggi.clear();
+        for (String valore : nuoviValori) {
+            conteggi.merge(valore, 1, Integer::sum);
+        }
+        valori.addAll(conteggi.keySet());
+        valori.sort(ORDINE);
+        notificaRicaricamento();
+    }
+
+    /**
+     * Sostituisce il contenuto dell'indice con quello di un altro indice, senza
+     * riordinare i valori. Gli ascoltatori ricevono un'unica notifica.
+     *
+     * @param altro Indice da cui copiare valori e conteggi
+     */
+    public void ricarica(IndiceFacet altro) {
+        valori.clear();
+        conteggi.clear();
+        valori.addAll(altro.valori);
+        conteggi.putAll(altro.conteggi);
+        notificaRicaricamento();
+    }
+
+    /**
+     * Scrive i valori distinti in ordine, ciascuno con il suo conteggio.
+     *
+     * @param out Flusso su cui scrivere
+     * @throws IOException In caso di errori di scrittura
+     */
+    void scrivi(DataOutputStream out) throws IOException {
+        out.writeInt(valori.size());
+        for (String valore : valori) {
+            FileIndici.scriviTesto(out, valore);
+            out.writeInt(conteggi.get(valore));
+        }
+    }
+
+    /**
+     * Legge in un indice vuoto il contenuto scritto con scrivi(), senza notificare
+     * gli ascoltatori.
+     *
+     * @param in Flusso da cui leggere
+     * @throws IOException In caso di errori di lettura o di contenuto non valido
+     */
+    void leggi(DataInputStream in) throws IOException {
+        int numero = in.readInt();
+        for (int i = 0; i < numero; i++) {
+            String valore = FileIndici.leggiTesto(in);
+            valori.add(valore);
+            conteggi.put(valore, in.readInt());
+        }
+    }
+
+    private void notificaRicaricamento() {
+        for (Ascoltatore ascoltatore : ascoltatori) {
+            ascoltatore.valoriRicaricati();
+        }
+    }
+
+    /**
+     * Ottiene i valori distinti in ordine alfabetico.
+     *
+     * @return Lista non modificabile dei valori
+     */
+    public List<String> getValori() {
+        return Collections.unmodifiableList(valori);
+    }
+
+    /**
+     * Ottiene il numero di valori distinti.
+     *
+     * @return Numero di valori
+     */
+    public int getDimensione() {
+        return valori.size();
+    }
+
+    /**
+     * Ottiene il numero di libri che usano il valore.
+     *
+     * @param valore Valore da cercare
+     * @return Numero di utilizzi, 0 se il valore non è presente
+     */
+    public int getConteggio(String valore) {
+        return conteggi.getOrDefault(valore, 0);
+    }
+
+    /**
+     * Restituisce i primi valori, in ordine alfabetico, che iniziano con il prefisso
+     * (senza distinzione tra maiuscole e minuscole).
+     * Il costo è O(log n + limite), indipendente dal numero totale di valori.
+     *
+     * @param prefisso Prefisso da cercare (null o vuoto per tutti i valori)
+     * @param limite Numero massimo di valori da restituire
+     * @return Lista dei valori che iniziano con il prefisso
+     */
+    @Override
+    public List<String> suggerisci(String prefisso, int limite) {
+        String p = prefisso == null ? "" : prefisso;
+        List<String> risultato = new ArrayList<>();
+        int fine = fineIntervallo(p);
+        for (int i = inizioIntervallo(p); i < fine && risultato.size() < limite; i++) {
+            risultato.add(valori.get(i));
+        }
+        return risultato;
+    }
+
+    /**
+     * Trova la posizione del primo valore che inizia con il prefisso,
+     * o in cui si troverebbe se non ce ne sono.
+     *
+     * @param prefisso Prefisso da cercare
+     * @return Posizione del primo valore non inferiore al prefisso
+     */
+    public int inizioIntervallo(String prefisso) {
+        int basso = 0;
+        int alto = valori.size();
+        while (basso < alto) {
+            int medio = (basso + alto) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(valori.get(medio), prefisso) < 0) {
+                basso = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return basso;
+    }
+
+    /**
+     * Trova la posizione successiva all'ultimo valore che inizia con il prefisso.
+     *
+     * @param prefisso Prefisso da cercare
+     * @return Posizione del primo valore successivo all'intervallo del prefisso
+     */
+    public int fineIntervallo(String prefisso) {
+        int basso = inizioIntervallo(prefisso);
+        int alto = valori.size();
+        while (basso < alto) {
+            int medio = (basso + alto) >>> 1;
+            if (iniziaCon(valori.get(medio), prefisso)) {
+                basso = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return basso;
+    }
+
+    private static boolean iniziaCon(String valore, String prefisso) {
+        return valore.regionMatches(true, 0, prefisso, 0, prefisso.length());
+    }
+
+    /**
+     * Ascoltatore delle modifiche ai valori distinti di un IndiceFacet.
+     */
+    public interface Ascoltatore {
+
+        /**
+         * Notifica l'inserimento di un nuovo valore distinto.
+         *
+         * @param posizione Posizione del valore nell'elenco ordinato
+         * @param valore Valore inserito
+         */
+        void valoreAggiunto(int posizione, String valore);
+
+        /**
+         * Notifica la scomparsa di un valore non più usato.
+         *
+         * @param posizione Posizione che il valore occupava nell'elenco ordinato
+         * @param valore Valore rimosso
+         */
+        void valoreRimosso(int posizione, String valore);
+
+        /**
+         * Notifica che l'intero contenuto dell'indice è stato sostituito.
+         */
+        void valoriRicaricati();
+    }
+}
@@ -0,0 +1,229 @@
+package indice;
+
+import model.Libro;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Indice per la ricerca approssimata (tollerante agli errori di battitura)
+ * sui token di titolo e autore dei libri.
+ * I token distinti sono memorizzati in un albero BK; per ogni token si mantiene
+ * l'insieme dei libri che lo contengono. L'indice va aggiornato a ogni modifica
+ * della collezione tramite aggiungi() e rimuovi().
+ */
+public class IndiceFuzzy {
+
+    private BKTree albero;
+    private final Map<String, Set<Libro>> libriPerToken;
+
+    // Token presenti nell'albero ma non più usati da alcun libro
+    private int tokenInutilizzati;
+
+    /**
+     * Costruttore che crea un indice vuoto.
+     */
+    public IndiceFuzzy() {
+        this.albero = new BKTree();
+        this.libriPerToken = new HashMap<>();
+    }
+
+    /**
+     * Aggiunge un libro all'indice.
+     *
+     * @param libro Libro da indicizzare
+     */
+    public void aggiungi(Libro libro) {
+        for (String token : tokenLibro(libro)) {
+            Set<Libro> libri = libriPerToken.get(token);
+            if (libri == null) {
+                libri = new HashSet<>();
+                libriPerToken.put(token, libri);
+                albero.aggiungi(token);
+            } else if (libri.isEmpty()) {
+                tokenInutilizzati--;
+            }
+            libri.add(libro);
+        }
+    }
+
+    /**
+     * Rimuove un libro dall'indice.
+     * Il libro deve avere gli stessi titolo e autore con cui è stato indicizzato.
+     *
+     * @param libro Libro da rimuovere
+     */
+    public void rimuovi(Libro libro) {
+        for (String token : tokenLibro(libro)) {
+            Set<Libro> libri = libriPerToken.get(token);
+            if (libri != null && libri.remove(libro) && libri.isEmpty()) {
+                tokenInutilizzati++;
+            }
+        }
+
+        // L'albero non supporta la rimozione: viene ricostruito quando i token inutilizzati prevalgono
+        if (tokenInutilizzati > 64 && tokenInutilizzati > libriPerToken.size() / 2) {
+            compatta();
+        }
+    }
+
+    /**
+     * Svuota l'indice.
+     */
+    public void pulisci() {
+        albero = new BKTree();
+        libriPerToken.clear();
+        tokenInutilizzati = 0;
+    }
+
+    /**
+     * Scrive l'albero dei token e, per ogni token, le posizioni dei libri che lo contengono.
+     *
+     * @param out Flusso su cui scrivere
+     * @param posizione Posizione di ogni libro nella collezione
+     * @throws IOException In caso di errori di scrittura
+     */
+    void scrivi(DataOutputStream out, ToIntFunction<Libro> posizione) throws IOException {
+        albero.scrivi(out);
+        out.writeInt(libriPerToken.size());
+        out.writeInt(tokenInutilizzati);
+        for (Map.Entry<String, Set<Libro>> voce : libriPerToken.entrySet()) {
+            FileIndici.scriviTesto(out, voce.getKey());
+            out.writeInt(voce.getValue().size());
+            for (Libro libro : voce.getValue()) {
+                out.writeInt(posizione.applyAsInt(libro));
+            }
+        }
+    }
+
+    /**
+     * Legge in un indice vuoto il contenuto scritto con scrivi().
+     *
+     * @param in Flusso da cui leggere
+     * @param libri Libri della collezione, nelle posizioni usate in scrittura
+     * @throws IOException In caso di errori di lettura o di contenuto non valido
+     */
+    void leggi(DataInputStream in, List<Libro> libri) throws IOException {
+        albero = BKTree.leggi(in);
+        int token = in.readInt();
+        tokenInutilizzati = in.readInt();
+        for (int i = 0; i < token; i++) {
+            String testo = FileIndici.leggiTesto(in);
+            int numero = in.readInt();
+            Set<Libro> libriToken = new HashSet<>();
+            for (int j = 0; j < numero; j++) {
+                libriToken.add(FileIndici.leggiLibro(in, libri));
+            }
+            libriPerToken.put(testo, libriToken);
+        }
+    }
+
+    /**
+     * Cerca i libri il cui titolo o autore contiene parole simili a quelle del testo.
+     * Ogni parola del testo deve corrispondere ad almeno un token del libro entro
+     * la distanza ammessa per la sua lunghezza. I risultati sono ordinati per
+     * somma delle distanze crescente (prima le corrispondenze esatte).
+     *
+     * @param testo Testo da cercare
+     * @return Lista dei libri trovati, ordinata per rilevanza
+     */
+    public List<Libro> cerca(String testo) {
+        List<String> parole = NormalizzatoreTesto.tokenizza(testo);
+        if (parole.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Per ogni libro: distanza totale e numero di parole della query soddisfatte
+        Map<Libro, int[]> punteggi = new HashMap<>();
+        for (int i = 0; i < parole.size(); i++) {
+            String parola = parole.get(i);
+
+            // Miglior distanza per libro relativa a questa parola
+            Map<Libro, Integer> migliori = new HashMap<>();
+            for (BKTree.Corrispondenza corrispondenza : albero.cerca(parola, distanzaAmmessa(parola))) {
+                for (Libro libro : libriPerToken.get(corrispondenza.getParola())) {
+                    migliori.merge(libro, corrispondenza.getDistanza(), Math::min);
+                }
+            }
+
+            for (Map.Entry<Libro, Integer> voce : migliori.entrySet()) {
+                int[] punteggio = punteggi.get(voce.getKey());
+                if (punteggio == null && i == 0) {
+                    punteggio = new int[2];
+                    punteggi.put(voce.getKey(), punteggio);
+                }
+                // Solo i libri che hanno soddisfatto tutte le parole precedenti restano candidati
+                if (punteggio != null && punteggio[1] == i) {
+                    punteggio[0] += voce.getValue();
+                    punteggio[1]++;
+                }
+            }
+        }
+
+        List<Map.Entry<Libro, int[]>> trovati = new ArrayList<>();
+        for (Map.Entry<Libro, int[]> voce : punteggi.entrySet()) {
+            if (voce.getValue()[1] == parole.size()) {
+                trovati.add(voce);
+            }
+        }
+        trovati.sort((a, b) -> {
+            int c = Integer.compare(a.getValue()[0], b.getValue()[0]);
+            return c != 0 ? c : String.CASE_INSENSITIVE_ORDER.compare(a.getKey().getTitolo(), b.getKey().getTitolo());
+        });
+
+        List<Libro> risultato = new ArrayList<>(trovati.size());
+        for (Map.Entry<Libro, int[]> voce : trovati) {
+            risultato.add(voce.getKey());
+        }
+        return risultato;
+    }
+
+    /**
+     * Calcola la distanza di Levenshtein ammessa per una parola della query.
+     * Le parole brevi devono corrispondere esattamente, per evitare troppi falsi positivi.
+     *
+     * @param parola Parola della query
+     * @return Distanza massima ammessa
+     */
+    static int distanzaAmmessa(String parola) {
+        if (parola.length() <= 3) {
+            return 0;
+        } else if (parola.length() <= 5) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Ricostruisce l'albero con i soli token ancora usati da almeno un libro.
+     */
+    private void compatta() {
+        albero = new BKTree();
+        libriPerToken.values().removeIf(Set::isEmpty);
+        for (String token : libriPerToken.keySet()) {
+            albero.aggiungi(token);
+        }
+        tokenInutilizzati = 0;
+    }
+
+    /**
+     * Restituisce i token distinti di titolo e autore di un libro.
+     *
+     * @param libro Libro di cui estrarre i token
+     * @return Insieme dei token
+     */
+    private static Set<String> tokenLibro(Libro libro) {
+        Set<String> token = new LinkedHashSet<>(NormalizzatoreTesto.tokenizza(libro.getTitolo()));
+        token.addAll(NormalizzatoreTesto.tokenizza(libro.getAutore()));
+        return token;
+    }
+}
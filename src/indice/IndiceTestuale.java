@@ -0,0 +1,216 @@
+package indice;
+
+import model.Libro;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Indice invertito per la ricerca full-text su titolo, autore e genere,
+ * con punteggio di rilevanza BM25.
+ * I campi contribuiscono con pesi diversi (una parola nel titolo conta più
+ * di una nel genere) secondo la variante BM25F: frequenze e lunghezze
+ * vengono pesate per campo prima di applicare la formula BM25.
+ * L'indice va aggiornato a ogni modifica della collezione tramite aggiungi() e rimuovi().
+ */
+public class IndiceTestuale {
+
+    // Parametri standard di BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Pesi dei campi
+    private static final double PESO_TITOLO = 2.0;
+    private static final double PESO_AUTORE = 1.5;
+    private static final double PESO_GENERE = 1.0;
+
+    // Per ogni token: frequenza pesata nei libri che lo contengono
+    private final Map<String, Map<Libro, Double>> indice;
+
+    // Lunghezza pesata di ogni libro indicizzato
+    private final Map<Libro, Double> lunghezze;
+    private double lunghezzaTotale;
+
+    /**
+     * Costruttore che crea un indice vuoto.
+     */
+    public IndiceTestuale() {
+        this.indice = new HashMap<>();
+        this.lunghezze = new HashMap<>();
+    }
+
+    /**
+     * Aggiunge un libro all'indice.
+     *
+     * @param libro Libro da indicizzare
+     */
+    public void aggiungi(Libro libro) {
+        Map<String, Double> frequenze = frequenzePesate(libro);
+        double lunghezza = 0;
+        for (Map.Entry<String, Double> voce : frequenze.entrySet()) {
+            indice.computeIfAbsent(voce.getKey(), k -> new HashMap<>()).put(libro, voce.getValue());
+            lunghezza += voce.getValue();
+        }
+        lunghezze.put(libro, lunghezza);
+        lunghezzaTotale += lunghezza;
+    }
+
+    /**
+     * Rimuove un libro dall'indice.
+     * Il libro deve avere gli stessi dati con cui è stato indicizzato.
+     *
+     * @param libro Libro da rimuovere
+     */
+    public void rimuovi(Libro libro) {
+        Double lunghezza = lunghezze.remove(libro);
+        if (lunghezza == null) {
+            return;
+        }
+        lunghezzaTotale = lunghezze.isEmpty() ? 0 : lunghezzaTotale - lunghezza;
+
+        for (String token : frequenzePesate(libro).keySet()) {
+            Map<Libro, Double> libri = indice.get(token);
+            if (libri != null) {
+                libri.remove(libro);
+                if (libri.isEmpty()) {
+                    indice.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Svuota l'indice.
+     */
+    public void pulisci() {
+        indice.clear();
+        lunghezze.clear();
+        lunghezzaTotale = 0;
+    }
+
+    /**
+     * Scrive le lunghezze dei libri e, per ogni token, le frequenze pesate per posizione
+     * del libro. I valori sono scritti esatti, così i punteggi dopo la lettura coincidono
+     * con quelli dell'indice costruito dai libri.
+     *
+     * @param out Flusso su cui scrivere
+     * @param posizione Posizione di ogni libro nella collezione
+     * @throws IOException In caso di errori di scrittura
+     */
+    void scrivi(DataOutputStream out, ToIntFunction<Libro> posizione) throws IOException {
+        out.writeInt(lunghezze.size());
+        for (Map.Entry<Libro, Double> voce : lunghezze.entrySet()) {
+            out.writeInt(posizione.applyAsInt(voce.getKey()));
+            out.writeDouble(voce.getValue());
+        }
+        out.writeDouble(lunghezzaTotale);
+        out.writeInt(indice.size());
+        for (Map.Entry<String, Map<Libro, Double>> token : indice.entrySet()) {
+            FileIndici.scriviTesto(out, token.getKey());
+            out.writeInt(token.getValue().size());
+            for (Map.Entry<Libro, Double> voce : token.getValue().entrySet()) {
+                out.writeInt(posizione.applyAsInt(voce.getKey()));
+                out.writeDouble(voce.getValue());
+            }
+        }
+    }
+
+    /**
+     * Legge in un indice vuoto il contenuto scritto con scrivi().
+     *
+     * @param in Flusso da cui leggere
+     * @param libri Libri della collezione, nelle posizioni usate in scrittura
+     * @throws IOException In caso di errori di lettura o di contenuto non valido
+     */
+    void leggi(DataInputStream in, List<Libro> libri) throws IOException {
+        int numeroLibri = in.readInt();
+        for (int i = 0; i < numeroLibri; i++) {
+            lunghezze.put(FileIndici.leggiLibro(in, libri), in.readDouble());
+        }
+        lunghezzaTotale = in.readDouble();
+        int token = in.readInt();
+        for (int i = 0; i < token; i++) {
+            String testo = FileIndici.leggiTesto(in);
+            int numero = in.readInt();
+            Map<Libro, Double> frequenze = new HashMap<>();
+            for (int j = 0; j < numero; j++) {
+                frequenze.put(FileIndici.leggiLibro(in, libri), in.readDouble());
+            }
+            indice.put(testo, frequenze);
+        }
+    }
+
+    /**
+     * Cerca i libri che contengono almeno una parola del testo in titolo, autore o genere.
+     * Il testo viene normalizzato come i campi indicizzati (minuscolo, senza accenti
+     * e senza parole vuote).
+     *
+     * @param testo Testo da cercare
+     * @return Lista dei libri trovati, ordinata per punteggio BM25 decrescente
+     */
+    public List<Libro> cerca(String testo) {
+        Set<String> parole = new LinkedHashSet<>(NormalizzatoreTesto.tokenizzaPerRicerca(testo));
+        if (parole.isEmpty() || lunghezze.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int numeroLibri = lunghezze.size();
+        double lunghezzaMedia = lunghezzaTotale / numeroLibri;
+
+        Map<Libro, Double> punteggi = new HashMap<>();
+        for (String parola : parole) {
+            Map<Libro, Double> libri = indice.get(parola);
+            if (libri == null) {
+                continue;
+            }
+
+            int df = libri.size();
+            double idf = Math.log(1 + (numeroLibri - df + 0.5) / (df + 0.5));
+            for (Map.Entry<Libro, Double> voce : libri.entrySet()) {
+                double tf = voce.getValue();
+                double normalizzazione = K1 * (1 - B + B * lunghezze.get(voce.getKey()) / lunghezzaMedia);
+                punteggi.merge(voce.getKey(), idf * tf * (K1 + 1) / (tf + normalizzazione), Double::sum);
+            }
+        }
+
+        List<Map.Entry<Libro, Double>> trovati = new ArrayList<>(punteggi.entrySet());
+        trovati.sort((a, b) -> {
+            int c = Double.compare(b.getValue(), a.getValue());
+            return c != 0 ? c : String.CASE_INSENSITIVE_ORDER.compare(a.getKey().getTitolo(), b.getKey().getTitolo());
+        });
+
+        List<Libro> risultato = new ArrayList<>(trovati.size());
+        for (Map.Entry<Libro, Double> voce : trovati) {
+            risultato.add(voce.getKey());
+        }
+        return risultato;
+    }
+
+    /**
+     * Calcola le frequenze dei token di un libro pesate per campo.
+     *
+     * @param libro Libro da analizzare
+     * @return Frequenza pesata per token
+     */
+    private static Map<String, Double> frequenzePesate(Libro libro) {
+        Map<String, Double> frequenze = new HashMap<>();
+        aggiungiCampo(frequenze, libro.getTitolo(), PESO_TITOLO);
+        aggiungiCampo(frequenze, libro.getAutore(), PESO_AUTORE);
+        aggiungiCampo(frequenze, libro.getGenere(), PESO_GENERE);
+        return frequenze;
+    }
+
+    private static void aggiungiCampo(Map<String, Double> frequenze, String campo, double peso) {
+        for (String token : NormalizzatoreTesto.tokenizzaPerRicerca(campo)) {
+            frequenze.merge(token, peso, Double::sum);
+        }
+    }
+}
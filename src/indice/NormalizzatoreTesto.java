@@ -0,0 +1,97 @@
+package indice;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Classe di utilità per la normalizzazione del testo usato dagli indici di ricerca.
+ * Suddivide il testo in token composti da lettere e cifre, in minuscolo;
+ * per la ricerca full-text rimuove anche accenti e parole vuote italiane.
+ */
+public final class NormalizzatoreTesto {
+
+    // Parole vuote italiane (articoli, preposizioni semplici e articolate, congiunzioni comuni)
+    private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
+            "il", "lo", "la", "i", "gli", "le", "l", "un", "uno", "una",
+            "di", "a", "da", "in", "con", "su", "per", "tra", "fra",
+            "del", "dello", "della", "dei", "degli", "delle", "dell",
+            "al", "allo", "alla", "ai", "agli", "alle", "all",
+            "dal", "dallo", "dalla", "dai", "dagli", "dalle", "dall",
+            "nel", "nello", "nella", "nei", "negli", "nelle", "nell",
+            "sul", "sullo", "sulla", "sui", "sugli", "sulle", "sull",
+            "col", "coi", "d", "e", "ed", "o", "od", "ma", "che", "non", "come"
+    ));
+
+    private static final Pattern SEGNI_DIACRITICI = Pattern.compile("\\p{M}+");
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private NormalizzatoreTesto() {
+    }
+
+    /**
+     * Suddivide un testo in token minuscoli.
+     * Ogni sequenza massimale di lettere o cifre costituisce un token.
+     *
+     * @param testo Testo da suddividere (null equivale a testo vuoto)
+     * @return Lista dei token nell'ordine in cui compaiono
+     */
+    public static List<String> tokenizza(String testo) {
+        List<String> token = new ArrayList<>();
+        if (testo == null) {
+            return token;
+        }
+
+        StringBuilder corrente = new StringBuilder();
+        for (int i = 0; i < testo.length(); i++) {
+            char c = testo.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                corrente.append(Character.toLowerCase(c));
+            } else if (corrente.length() > 0) {
+                token.add(corrente.toString());
+                corrente.setLength(0);
+            }
+        }
+        if (corrente.length() > 0) {
+            token.add(corrente.toString());
+        }
+        return token;
+    }
+
+    /**
+     * Suddivide un testo in token normalizzati per la ricerca full-text:
+     * minuscolo, senza accenti e senza parole vuote italiane.
+     *
+     * @param testo Testo da suddividere (null equivale a testo vuoto)
+     * @return Lista dei token normalizzati nell'ordine in cui compaiono
+     */
+    public static List<String> tokenizzaPerRicerca(String testo) {
+        List<String> risultato = new ArrayList<>();
+        for (String token : tokenizza(rimuoviAccenti(testo))) {
+            if (!STOPWORDS.contains(token)) {
+                risultato.add(token);
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * Rimuove accenti e altri segni diacritici da un testo ("perché" diventa "perche").
+     *
+     * @param testo Testo da normalizzare (null equivale a testo vuoto)
+     * @return Testo senza segni diacritici
+     */
+    public static String rimuoviAccenti(String testo) {
+        if (testo == null) {
+            return "";
+        }
+        String decomposto = Normalizer.normalize(testo, Normalizer.Form.NFD);
+        return SEGNI_DIACRITICI.matcher(decomposto).replaceAll("");
+    }
+}
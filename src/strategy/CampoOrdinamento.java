@@ -0,0 +1,62 @@
+package strategy;
+
+/**
+ * Enumerazione dei campi di un libro su cui è possibile ordinare.
+ * Ogni campo indica se la chiave di ordinamento è testuale o numerica.
+ */
+public enum CampoOrdinamento {
+    TITOLO("titolo", true),
+    AUTORE("autore", true),
+    GENERE("genere", true),
+    ISBN("isbn", true),
+    VALUTAZIONE("valutazione", false),
+    STATO_LETTURA("statoLettura", false);
+
+    private final String nome;
+    private final boolean testuale;
+
+    /**
+     * Costruttore dell'enumerazione.
+     *
+     * @param nome Nome del campo usato nelle specifiche di ordinamento
+     * @param testuale true se la chiave è una stringa, false se è un intero
+     */
+    CampoOrdinamento(String nome, boolean testuale) {
+        this.nome = nome;
+        this.testuale = testuale;
+    }
+
+    /**
+     * Ottiene il nome del campo usato nelle specifiche di ordinamento.
+     *
+     * @return Nome del campo
+     */
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Indica se la chiave di ordinamento del campo è testuale.
+     *
+     * @return true se la chiave è una stringa, false se è un intero
+     */
+    public boolean isTestuale() {
+        return testuale;
+    }
+
+    /**
+     * Converte il nome di un campo nella corrispondente enumerazione.
+     *
+     * @param nome Nome del campo (case-insensitive)
+     * @return CampoOrdinamento corrispondente
+     * @throws IllegalArgumentException se il nome non corrisponde a nessun campo
+     */
+    public static CampoOrdinamento fromString(String nome) {
+        for (CampoOrdinamento campo : CampoOrdinamento.values()) {
+            if (campo.nome.equalsIgnoreCase(nome)) {
+                return campo;
+            }
+        }
+        throw new IllegalArgumentException("Campo di ordinamento non valido: " + nome);
+    }
+}
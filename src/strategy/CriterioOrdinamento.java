@@ -0,0 +1,83 @@
+package strategy;
+
+import java.util.Objects;
+
+/**
+ * Singolo criterio di un ordinamento composto: un campo e una direzione.
+ * La classe è immutabile.
+ */
+public class CriterioOrdinamento {
+
+    private final CampoOrdinamento campo;
+    private final boolean crescente;
+
+    /**
+     * Costruttore che inizializza il criterio.
+     *
+     * @param campo Campo su cui ordinare
+     * @param crescente true per ordine crescente (ASC), false per decrescente (DESC)
+     */
+    public CriterioOrdinamento(CampoOrdinamento campo, boolean crescente) {
+        if (campo == null) {
+            throw new IllegalArgumentException("Il campo di ordinamento non può essere nullo.");
+        }
+        this.campo = campo;
+        this.crescente = crescente;
+    }
+
+    public CampoOrdinamento getCampo() {
+        return campo;
+    }
+
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    /**
+     * Converte un criterio testuale nella forma "campo [ASC|DESC]".
+     * Se la direzione è omessa, l'ordine è crescente.
+     *
+     * @param specifica Criterio testuale, ad esempio "valutazione DESC"
+     * @return Criterio corrispondente
+     * @throws IllegalArgumentException se la specifica non è valida
+     */
+    public static CriterioOrdinamento fromString(String specifica) {
+        if (specifica == null || specifica.trim().isEmpty()) {
+            throw new IllegalArgumentException("Criterio di ordinamento vuoto.");
+        }
+
+        String[] parti = specifica.trim().split("\\s+");
+        if (parti.length > 2) {
+            throw new IllegalArgumentException("Criterio di ordinamento non valido: " + specifica);
+        }
+
+        CampoOrdinamento campo = CampoOrdinamento.fromString(parti[0]);
+        boolean crescente = true;
+        if (parti.length == 2) {
+            if (parti[1].equalsIgnoreCase("DESC")) {
+                crescente = false;
+            } else if (!parti[1].equalsIgnoreCase("ASC")) {
+                throw new IllegalArgumentException("Direzione di ordinamento non valida: " + parti[1]);
+            }
+        }
+        return new CriterioOrdinamento(campo, crescente);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CriterioOrdinamento that = (CriterioOrdinamento) o;
+        return crescente == that.crescente && campo == that.campo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(campo, crescente);
+    }
+
+    @Override
+    public String toString() {
+        return campo.getNome() + (crescente ? " ASC" : " DESC");
+    }
+}
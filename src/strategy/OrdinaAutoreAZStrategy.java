@@ -2,7 +2,6 @@ package strategy;
 
 import model.Libro;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Strategia di ordinamento dei libri per autore in ordine alfabetico (A-Z).
@@ -11,12 +10,12 @@ import java.util.List;
 public class OrdinaAutoreAZStrategy implements OrdinatoreLibroStrategy {
     
     /**
-     * Ordina una lista di libri per autore in ordine alfabetico (A-Z).
+     * Restituisce il comparatore che ordina i libri per autore in ordine alfabetico (A-Z).
      * 
-     * @param libri Lista di libri da ordinare
+     * @return Comparatore dei libri
      */
     @Override
-    public void ordina(List<Libro> libri) {
-        libri.sort(Comparator.comparing(Libro::getAutore, String.CASE_INSENSITIVE_ORDER));
+    public Comparator<Libro> getComparatore() {
+        return Comparator.comparing(Libro::getAutore, String.CASE_INSENSITIVE_ORDER);
     }
 }
@@ -0,0 +1,264 @@
+package strategy;
+
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Strategia di ordinamento dei libri su più chiavi, ad esempio
+ * autore ASC, poi valutazione DESC, poi titolo ASC.
+ * Le chiavi di ogni libro vengono calcolate una sola volta prima dell'ordinamento
+ * e confrontate da un unico comparatore, invece di concatenare più Comparator.
+ * I campi testuali sono confrontati senza distinzione tra maiuscole e minuscole,
+ * come nelle strategie a chiave singola.
+ */
+public class OrdinaCompostoStrategy implements OrdinatoreLibroStrategy {
+
+    private final List<CriterioOrdinamento> criteri;
+
+    // Descrizione "compilata" dei criteri, usata dal comparatore
+    private final boolean[] testuale;
+    private final int[] posizioneChiave;
+    private final int[] segno;
+    private final int numeroChiaviTestuali;
+    private final int numeroChiaviNumeriche;
+
+    /**
+     * Costruttore che inizializza la strategia con la lista ordinata di criteri.
+     *
+     * @param criteri Criteri di ordinamento, dal più al meno significativo
+     * @throws IllegalArgumentException se la lista è vuota o contiene valori nulli
+     */
+    public OrdinaCompostoStrategy(List<CriterioOrdinamento> criteri) {
+        if (criteri == null || criteri.isEmpty()) {
+            throw new IllegalArgumentException("Serve almeno un criterio di ordinamento.");
+        }
+        this.criteri = Collections.unmodifiableList(new ArrayList<>(criteri));
+
+        int n = this.criteri.size();
+        testuale = new boolean[n];
+        posizioneChiave = new int[n];
+        segno = new int[n];
+
+        int testi = 0;
+        int numeri = 0;
+        for (int i = 0; i < n; i++) {
+            CriterioOrdinamento criterio = this.criteri.get(i);
+            if (criterio == null) {
+                throw new IllegalArgumentException("Il criterio di ordinamento non può essere nullo.");
+            }
+            testuale[i] = criterio.getCampo().isTestuale();
+            posizioneChiave[i] = testuale[i] ? testi++ : numeri++;
+            segno[i] = criterio.isCrescente() ? 1 : -1;
+        }
+        numeroChiaviTestuali = testi;
+        numeroChiaviNumeriche = numeri;
+    }
+
+    /**
+     * Crea una strategia a partire da una specifica testuale.
+     * I criteri sono separati da virgole, ad esempio "autore ASC, valutazione DESC, titolo".
+     *
+     * @param specifica Specifica testuale dei criteri
+     * @return Strategia di ordinamento composta
+     * @throws IllegalArgumentException se la specifica non è valida
+     */
+    public static OrdinaCompostoStrategy daSpecifica(String specifica) {
+        if (specifica == null || specifica.trim().isEmpty()) {
+            throw new IllegalArgumentException("Specifica di ordinamento vuota.");
+        }
+
+        List<CriterioOrdinamento> criteri = new ArrayList<>();
+        for (String parte : specifica.split(",")) {
+            criteri.add(CriterioOrdinamento.fromString(parte));
+        }
+        return new OrdinaCompostoStrategy(criteri);
+    }
+
+    /**
+     * Ottiene i criteri di ordinamento della strategia.
+     *
+     * @return Lista non modificabile dei criteri
+     */
+    public List<CriterioOrdinamento> getCriteri() {
+        return criteri;
+    }
+
+    /**
+     * Restituisce un comparatore equivalente all'ordinamento della strategia.
+     * A differenza di ordina(), le chiavi non sono precalcolate: è pensato per
+     * confronti puntuali, ad esempio nel calcolo dei primi K risultati.
+     *
+     * @return Comparatore dei libri
+     */
+    @Override
+    public Comparator<Libro> getComparatore() {
+        return (a, b) -> {
+            for (int i = 0; i < testuale.length; i++) {
+                int c = confrontaCampo(criteri.get(i).getCampo(), a, b);
+                if (c != 0) {
+                    return segno[i] * Integer.signum(c);
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Confronta due libri su un singolo campo.
+     *
+     * @param campo Campo da confrontare
+     * @param a Primo libro
+     * @param b Secondo libro
+     * @return Risultato del confronto in ordine crescente
+     */
+    private static int confrontaCampo(CampoOrdinamento campo, Libro a, Libro b) {
+        switch (campo) {
+            case TITOLO:
+                return String.CASE_INSENSITIVE_ORDER.compare(a.getTitolo(), b.getTitolo());
+            case AUTORE:
+                return String.CASE_INSENSITIVE_ORDER.compare(a.getAutore(), b.getAutore());
+            case GENERE:
+                return String.CASE_INSENSITIVE_ORDER.compare(a.getGenere(), b.getGenere());
+            case ISBN:
+                return String.CASE_INSENSITIVE_ORDER.compare(a.getIsbn(), b.getIsbn());
+            case VALUTAZIONE:
+                return Integer.compare(a.getValutazione(), b.getValutazione());
+            case STATO_LETTURA:
+                return Integer.compare(a.getStatoLettura().ordinal(), b.getStatoLettura().ordinal());
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Ordina una lista di libri secondo i criteri della strategia.
+     * L'ordinamento è stabile: libri con chiavi uguali mantengono l'ordine originale.
+     *
+     * @param libri Lista di libri da ordinare
+     */
+    @Override
+    public void ordina(List<Libro> libri) {
+        ChiaviLibro[] righe = new ChiaviLibro[libri.size()];
+        for (int i = 0; i < righe.length; i++) {
+            righe[i] = calcolaChiavi(libri.get(i));
+        }
+
+        Arrays.sort(righe, new ComparatoreChiavi());
+
+        for (int i = 0; i < righe.length; i++) {
+            libri.set(i, righe[i].libro);
+        }
+    }
+
+    /**
+     * Precalcola le chiavi di ordinamento di un libro.
+     *
+     * @param libro Libro di cui calcolare le chiavi
+     * @return Chiavi del libro
+     */
+    private ChiaviLibro calcolaChiavi(Libro libro) {
+        ChiaviLibro chiavi = new ChiaviLibro(libro, numeroChiaviTestuali, numeroChiaviNumeriche);
+        for (int i = 0; i < criteri.size(); i++) {
+            switch (criteri.get(i).getCampo()) {
+                case TITOLO:
+                    chiavi.testi[posizioneChiave[i]] = normalizza(libro.getTitolo());
+                    break;
+                case AUTORE:
+                    chiavi.testi[posizioneChiave[i]] = normalizza(libro.getAutore());
+                    break;
+                case GENERE:
+                    chiavi.testi[posizioneChiave[i]] = normalizza(libro.getGenere());
+                    break;
+                case ISBN:
+                    chiavi.testi[posizioneChiave[i]] = normalizza(libro.getIsbn());
+                    break;
+                case VALUTAZIONE:
+                    chiavi.numeri[posizioneChiave[i]] = libro.getValutazione();
+                    break;
+                case STATO_LETTURA:
+                    chiavi.numeri[posizioneChiave[i]] = libro.getStatoLettura().ordinal();
+                    break;
+            }
+        }
+        return chiavi;
+    }
+
+    /**
+     * Normalizza una stringa in modo che compareTo sulla stringa risultante
+     * equivalga a String.CASE_INSENSITIVE_ORDER sulla stringa originale.
+     *
+     * @param testo Testo da normalizzare
+     * @return Testo normalizzato
+     */
+    private static String normalizza(String testo) {
+        char[] caratteri = testo.toCharArray();
+        for (int i = 0; i < caratteri.length; i++) {
+            caratteri[i] = Character.toLowerCase(Character.toUpperCase(caratteri[i]));
+        }
+        return new String(caratteri);
+    }
+
+    /**
+     * Chiavi di ordinamento precalcolate per un singolo libro.
+     */
+    private static final class ChiaviLibro {
+        private final Libro libro;
+        private final String[] testi;
+        private final int[] numeri;
+
+        private ChiaviLibro(Libro libro, int numeroTesti, int numeroNumeri) {
+            this.libro = libro;
+            this.testi = new String[numeroTesti];
+            this.numeri = new int[numeroNumeri];
+        }
+    }
+
+    /**
+     * Comparatore unico che scorre i criteri compilati confrontando le chiavi precalcolate.
+     */
+    private final class ComparatoreChiavi implements Comparator<ChiaviLibro> {
+        @Override
+        public int compare(ChiaviLibro a, ChiaviLibro b) {
+            for (int i = 0; i < testuale.length; i++) {
+                int k = posizioneChiave[i];
+                int c = testuale[i]
+                        ? a.testi[k].compareTo(b.testi[k])
+                        : Integer.compare(a.numeri[k], b.numeri[k]);
+                if (c != 0) {
+                    return segno[i] * Integer.signum(c);
+                }
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return criteri.equals(((OrdinaCompostoStrategy) o).criteri);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(criteri);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (CriterioOrdinamento criterio : criteri) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(criterio);
+        }
+        return sb.toString();
+    }
+}
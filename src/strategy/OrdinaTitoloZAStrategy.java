@@ -2,7 +2,6 @@ package strategy;
 
 import model.Libro;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Strategia di ordinamento dei libri per titolo in ordine alfabetico inverso (Z-A).
@@ -11,12 +10,12 @@ import java.util.List;
 public class OrdinaTitoloZAStrategy implements OrdinatoreLibroStrategy {
     
     /**
-     * Ordina una lista di libri per titolo in ordine alfabetico inverso (Z-A).
+     * Restituisce il comparatore che ordina i libri per titolo in ordine alfabetico inverso (Z-A).
      * 
-     * @param libri Lista di libri da ordinare
+     * @return Comparatore dei libri
      */
     @Override
-    public void ordina(List<Libro> libri) {
-        libri.sort(Comparator.comparing(Libro::getTitolo, String.CASE_INSENSITIVE_ORDER).reversed());
+    public Comparator<Libro> getComparatore() {
+        return Comparator.comparing(Libro::getTitolo, String.CASE_INSENSITIVE_ORDER).reversed();
     }
 }
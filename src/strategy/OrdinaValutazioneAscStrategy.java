@@ -2,7 +2,6 @@ package strategy;
 
 import model.Libro;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Strategia di ordinamento dei libri per valutazione in ordine crescente (da 1 a 5).
@@ -11,12 +10,12 @@ import java.util.List;
 public class OrdinaValutazioneAscStrategy implements OrdinatoreLibroStrategy {
     
     /**
-     * Ordina una lista di libri per valutazione in ordine crescente (da 1 a 5).
+     * Restituisce il comparatore che ordina i libri per valutazione in ordine crescente (da 1 a 5).
      * 
-     * @param libri Lista di libri da ordinare
+     * @return Comparatore dei libri
      */
     @Override
-    public void ordina(List<Libro> libri) {
-        libri.sort(Comparator.comparingInt(Libro::getValutazione));
+    public Comparator<Libro> getComparatore() {
+        return Comparator.comparingInt(Libro::getValutazione);
     }
 }
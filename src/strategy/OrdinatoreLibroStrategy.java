@@ -1,6 +1,7 @@
 package strategy;
 
 import model.Libro;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -9,10 +10,21 @@ import java.util.List;
  */
 public interface OrdinatoreLibroStrategy {
     
+    /**
+     * Restituisce il comparatore che definisce l'ordine della strategia.
+     * Usato quando serve confrontare singoli libri, ad esempio per calcolare
+     * solo i primi K risultati senza ordinare l'intera lista.
+     *
+     * @return Comparatore dei libri
+     */
+    Comparator<Libro> getComparatore();
+
     /**
      * Ordina una lista di libri secondo una specifica strategia.
      * 
      * @param libri Lista di libri da ordinare
      */
-    void ordina(List<Libro> libri);
+    default void ordina(List<Libro> libri) {
+        libri.sort(getComparatore());
+    }
 }
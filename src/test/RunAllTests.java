@@ -3,12 +3,23 @@ package test;
 import test.model.LibroTest;
 import test.model.StatoLetturaTest;
 import test.controller.GestoreLibreriaTest;
+import test.controller.SalvataggioAutomaticoTest;
 import test.command.CommandManagerTest;
 import test.command.AggiungiLibroCommandTest;
 import test.command.ModificaLibroCommandTest;
 import test.command.EliminaLibroCommandTest;
+import test.command.UnisciLibreriaCommandTest;
 import test.strategy.OrdinatoreLibroStrategyTest;
 import test.dao.LibroDAOTest;
+import test.indice.IndiceFacetTest;
+import test.indice.IndiceFuzzyTest;
+import test.indice.IndiceTestualeTest;
+import test.util.ListaOrdinataTest;
+import test.util.VettorePersistenteTest;
+import test.archivio.ArchivioFuoriHeapTest;
+import test.archivio.ArchivioBPiuTest;
+import test.archivio.ArchivioLSMTest;
+import test.view.ModelloComboFacetTest;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -33,12 +44,23 @@ public class RunAllTests {
         runTestsForClass(LibroTest.class);
         runTestsForClass(StatoLetturaTest.class);
         runTestsForClass(GestoreLibreriaTest.class);
+        runTestsForClass(SalvataggioAutomaticoTest.class);
         runTestsForClass(CommandManagerTest.class);
         runTestsForClass(AggiungiLibroCommandTest.class);
         runTestsForClass(ModificaLibroCommandTest.class);
         runTestsForClass(EliminaLibroCommandTest.class);
+        runTestsForClass(UnisciLibreriaCommandTest.class);
         runTestsForClass(OrdinatoreLibroStrategyTest.class);
         runTestsForClass(LibroDAOTest.class);
+        runTestsForClass(IndiceFuzzyTest.class);
+        runTestsForClass(IndiceTestualeTest.class);
+        runTestsForClass(IndiceFacetTest.class);
+        runTestsForClass(ModelloComboFacetTest.class);
+        runTestsForClass(VettorePersistenteTest.class);
+        runTestsForClass(ListaOrdinataTest.class);
+        runTestsForClass(ArchivioFuoriHeapTest.class);
+        runTestsForClass(ArchivioBPiuTest.class);
+        runTestsForClass(ArchivioLSMTest.class);
 
         long endTime = System.currentTimeMillis();
 
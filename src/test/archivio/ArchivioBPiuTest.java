@@ -0,0 +1,176 @@
+package test.archivio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.archivio.LibriDiProva.libro;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import archivio.ArchivioBPiu;
+import model.Libro;
+import model.StatoLettura;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Test unitari per l'archivio di libri su disco con alberi B+.
+ * Verifica persistenza, letture limitate alle pagine necessarie e scansioni ordinate.
+ */
+public class ArchivioBPiuTest {
+
+    private String percorso;
+
+    @BeforeEach
+    public void setUp() {
+        percorso = "temp_archivio_test.db";
+        new File(percorso).delete();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new File(percorso).delete();
+    }
+
+    @Test
+    public void testRiaperturaLeggeSoloLePagineNecessarie() throws IOException {
+        List<Integer> numeri = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            numeri.add(i);
+        }
+        Collections.shuffle(numeri, new Random(47));
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso)) {
+            for (int i : numeri) {
+                archivio.scrivi(libro(i, i % 6));
+            }
+        }
+
+        // L'apertura legge solo l'intestazione; una ricerca legge un nodo per livello
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso, 16)) {
+            assertEquals(1, archivio.getPagineLette());
+            assertEquals(5000, archivio.getNumeroLibri());
+            Libro letto = archivio.leggi("978-1234");
+            assertEquals("Titolo " + (1234 % 97) + " è", letto.getTitolo());
+            assertEquals(1234 % 6, letto.getValutazione());
+            assertTrue(archivio.getPagineLette() <= 5, "Pagine lette: " + archivio.getPagineLette());
+            assertNull(archivio.leggi("978-99999"));
+        }
+    }
+
+    @Test
+    public void testConfrontoConMappa() throws IOException {
+        // Operazioni casuali confrontate con una mappa ordinata, con una cache piccola
+        Map<String, Libro> attesi = new TreeMap<>();
+        Random random = new Random(47);
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso, 16)) {
+            for (int passo = 0; passo < 20_000; passo++) {
+                Libro libro = libro(random.nextInt(4000), random.nextInt(6));
+                if (random.nextInt(4) == 0) {
+                    assertEquals(attesi.remove(libro.getIsbn()), archivio.rimuovi(libro.getIsbn()));
+                } else {
+                    Libro precedente = attesi.put(libro.getIsbn(), libro);
+                    assertEquals(precedente, archivio.scrivi(libro));
+                }
+            }
+            assertEquals(attesi.size(), archivio.getNumeroLibri());
+        }
+
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso)) {
+            List<Libro> letti = new ArrayList<>();
+            archivio.forEach(letti::add);
+            assertEquals(new ArrayList<>(attesi.values()), letti);
+            for (Libro atteso : attesi.values()) {
+                assertEquals(atteso.getValutazione(), archivio.leggi(atteso.getIsbn()).getValutazione());
+            }
+
+            // Gli indici secondari seguono le sostituzioni e le rimozioni
+            List<Libro> perAutore = new ArrayList<>(attesi.values());
+            perAutore.sort(Comparator.comparing((Libro l) -> l.getAutore().toLowerCase(Locale.ROOT))
+                    .thenComparing(Libro::getIsbn));
+            List<Libro> scorsi = new ArrayList<>();
+            archivio.perAutore().forEachRemaining(scorsi::add);
+            assertEquals(perAutore, scorsi);
+        }
+    }
+
+    @Test
+    public void testRicercaPerPrefisso() throws IOException {
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso)) {
+            archivio.scrivi(new Libro("Il Nome della Rosa", "Umberto Eco", "978-88-452-6445-5", "Storico", 5, StatoLettura.LETTO));
+            archivio.scrivi(new Libro("Il Gattopardo", "Giuseppe Tomasi di Lampedusa", "978-88-07-88132-7", "Storico", 4, StatoLettura.DA_LEGGERE));
+            archivio.scrivi(new Libro("1984", "George Orwell", "978-0-452-28423-4", "Distopico", 4, StatoLettura.IN_LETTURA));
+
+            List<Libro> trovati = archivio.cercaPerTitolo("il ", 10);
+            assertEquals(2, trovati.size());
+            assertEquals("Il Gattopardo", trovati.get(0).getTitolo());
+            assertEquals(1, archivio.cercaPerTitolo("il ", 1).size());
+            assertEquals("George Orwell", archivio.cercaPerAutore("GEO", 10).get(0).getAutore());
+            assertTrue(archivio.cercaPerAutore("Manzoni", 10).isEmpty());
+
+            Iterator<Libro> perTitolo = archivio.perTitolo();
+            assertEquals("1984", perTitolo.next().getTitolo());
+        }
+    }
+
+    @Test
+    public void testLibriMoltoLunghi() throws IOException {
+        String titoloLungo = "Titolo molto lungo ".repeat(100);
+        String autoreLungo = "Autore è ".repeat(1000);
+        long dimensione;
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso)) {
+            for (int i = 0; i < 50; i++) {
+                archivio.scrivi(libro(i, 3));
+            }
+            archivio.scrivi(new Libro(titoloLungo, "Autore", "978-9000", "Genere", 4, StatoLettura.LETTO));
+            archivio.scrivi(new Libro("Breve", autoreLungo, "978-9001", "Genere", 2, StatoLettura.LETTO));
+            assertEquals(titoloLungo, archivio.leggi("978-9000").getTitolo());
+            assertEquals(autoreLungo, archivio.cercaPerAutore("autore è", 1).get(0).getAutore());
+
+            // Le pagine di trabocco sostituite o rimosse vengono riusate: dopo la prima
+            // sostituzione, che scrive la nuova catena prima di liberare la vecchia, il file non cresce
+            dimensione = 0;
+            for (int i = 0; i < 20; i++) {
+                archivio.scrivi(new Libro(titoloLungo + i, "Autore", "978-9000", "Genere", 4, StatoLettura.LETTO));
+                archivio.rimuovi("978-9001");
+                archivio.scrivi(new Libro("Breve", autoreLungo, "978-9001", "Genere", 2, StatoLettura.LETTO));
+                if (i == 0) {
+                    archivio.sincronizza();
+                    dimensione = new File(percorso).length();
+                }
+            }
+            archivio.sincronizza();
+            assertEquals(dimensione, new File(percorso).length());
+
+            // Un libro che non rientra nel formato viene rifiutato senza modificare l'archivio
+            assertThrows(IOException.class, () -> archivio.scrivi(
+                    new Libro("Titolo", "Autore", "978-" + "1".repeat(300), "Genere", 1, StatoLettura.LETTO)));
+            assertThrows(IOException.class, () -> archivio.scrivi(
+                    new Libro("x".repeat(70000), "Autore", "978-9002", "Genere", 1, StatoLettura.LETTO)));
+            assertEquals(52, archivio.getNumeroLibri());
+            assertNull(archivio.leggi("978-9002"));
+        }
+
+        try (ArchivioBPiu archivio = new ArchivioBPiu(percorso)) {
+            assertEquals(titoloLungo + 19, archivio.leggi("978-9000").getTitolo());
+            List<Libro> tutti = new ArrayList<>();
+            archivio.forEach(tutti::add);
+            assertEquals(52, tutti.size());
+            assertEquals(autoreLungo, tutti.get(tutti.size() - 1).getAutore());
+        }
+    }
+
+    @Test
+    public void testFileNonValido() throws IOException {
+        Files.write(new File(percorso).toPath(), new byte[4096]);
+        assertThrows(IOException.class, () -> new ArchivioBPiu(percorso));
+    }
+}
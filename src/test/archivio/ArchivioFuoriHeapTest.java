@@ -0,0 +1,111 @@
+package test.archivio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.archivio.LibriDiProva.libro;
+import org.junit.jupiter.api.Test;
+import archivio.ArchivioFuoriHeap;
+import model.Libro;
+import model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test unitari per l'archivio di libri fuori dallo heap.
+ * Verifica l'indice per ISBN, l'ordine di inserimento e la compattazione dei record.
+ */
+public class ArchivioFuoriHeapTest {
+
+    // Segmenti piccoli, per verificare anche il passaggio tra segmenti e la compattazione
+    private static final int SEGMENTO = 300_000;
+
+    @Test
+    public void testScriviLeggiRimuovi() {
+        ArchivioFuoriHeap archivio = new ArchivioFuoriHeap(SEGMENTO);
+        assertNull(archivio.scrivi(libro(1, 3)));
+        assertNull(archivio.scrivi(libro(2, 4)));
+
+        Libro letto = archivio.leggi("978-1");
+        assertEquals("Titolo 1 è", letto.getTitolo());
+        assertEquals(3, letto.getValutazione());
+        assertEquals(StatoLettura.IN_LETTURA, letto.getStatoLettura());
+
+        // La sostituzione restituisce il libro precedente e mantiene la posizione
+        assertEquals(3, archivio.scrivi(libro(1, 5)).getValutazione());
+        assertEquals(2, archivio.getNumeroLibri());
+        assertEquals(5, archivio.leggi(0).getValutazione());
+
+        assertEquals("978-1", archivio.rimuovi("978-1").getIsbn());
+        assertNull(archivio.rimuovi("978-1"));
+        assertNull(archivio.leggi("978-1"));
+        assertFalse(archivio.contiene("978-1"));
+        assertEquals("978-2", archivio.leggi(0).getIsbn());
+        assertThrows(IndexOutOfBoundsException.class, () -> archivio.leggi(1));
+    }
+
+    @Test
+    public void testConfrontoConMappa() {
+        // Operazioni casuali confrontate con una mappa in ordine di inserimento
+        ArchivioFuoriHeap archivio = new ArchivioFuoriHeap(SEGMENTO);
+        Map<String, Libro> attesi = new LinkedHashMap<>();
+        Random random = new Random(46);
+        for (int passo = 0; passo < 40_000; passo++) {
+            int i = random.nextInt(3000);
+            Libro libro = libro(i, random.nextInt(6));
+            if (random.nextInt(4) == 0) {
+                Libro rimosso = archivio.rimuovi(libro.getIsbn());
+                assertEquals(attesi.remove(libro.getIsbn()), rimosso);
+            } else {
+                archivio.scrivi(libro);
+                attesi.put(libro.getIsbn(), libro);
+            }
+        }
+
+        assertEquals(attesi.size(), archivio.getNumeroLibri());
+        List<Libro> letti = new ArrayList<>();
+        archivio.forEach(letti::add);
+        assertEquals(new ArrayList<>(attesi.values()), letti);
+        int posizione = 0;
+        for (Libro atteso : attesi.values()) {
+            assertEquals(posizione, archivio.posizione(atteso.getIsbn()));
+            Libro letto = archivio.leggi(posizione++);
+            assertEquals(atteso.getValutazione(), letto.getValutazione());
+            assertEquals(atteso.getIsbn(), letto.getIsbn());
+            assertEquals(atteso.getValutazione(), archivio.leggi(atteso.getIsbn()).getValutazione());
+        }
+
+        // Le sostituzioni e rimozioni non fanno crescere i record oltre il doppio dei presenti
+        assertTrue(archivio.getByteFuoriHeap() < 3L * SEGMENTO + 700_000);
+    }
+
+    @Test
+    public void testLetturaPerPosizioneDuranteLIterazione() {
+        ArchivioFuoriHeap archivio = new ArchivioFuoriHeap(SEGMENTO);
+        for (int i = 0; i < 10; i++) {
+            archivio.scrivi(libro(i, 3));
+        }
+        archivio.rimuovi("978-3");
+        assertEquals(-1, archivio.posizione("978-3"));
+        assertEquals(3, archivio.posizione("978-4"));
+
+        // Le letture per posizione dopo una rimozione non modificano l'archivio
+        List<String> letti = new ArrayList<>();
+        for (Libro libro : archivio) {
+            letti.add(libro.getIsbn() + "=" + archivio.leggi(letti.size()).getIsbn());
+        }
+        assertEquals(9, letti.size());
+        assertEquals("978-4=978-4", letti.get(3));
+        assertEquals("978-9=978-9", letti.get(8));
+    }
+
+    @Test
+    public void testCampoTroppoLungo() {
+        ArchivioFuoriHeap archivio = new ArchivioFuoriHeap(SEGMENTO);
+        Libro libro = new Libro("x".repeat(70_000), "Autore", "978-1", "Genere", 3, StatoLettura.LETTO);
+        assertThrows(IllegalArgumentException.class, () -> archivio.scrivi(libro));
+        assertEquals(0, archivio.getNumeroLibri());
+    }
+}
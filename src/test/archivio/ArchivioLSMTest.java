@@ -0,0 +1,205 @@
+package test.archivio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.archivio.LibriDiProva.elimina;
+import static test.archivio.LibriDiProva.libro;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import archivio.ArchivioLSM;
+import model.Libro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Test unitari per l'archivio di libri a struttura LSM.
+ * Verifica scritture attraverso salvataggi e compattazioni, riapertura, apertura in
+ * sola lettura e filtri di Bloom.
+ */
+public class ArchivioLSMTest {
+
+    private String cartella;
+
+    @BeforeEach
+    public void setUp() {
+        cartella = "temp_archivio_lsm_test";
+        elimina(new File(cartella));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        elimina(new File(cartella));
+    }
+
+    private static List<Libro> leggiTutti(ArchivioLSM archivio) {
+        List<Libro> letti = new ArrayList<>();
+        archivio.forEach(letti::add);
+        return letti;
+    }
+
+    @Test
+    public void testConfrontoConMappa() throws IOException {
+        // Una memtable piccola produce molti segmenti e compattazioni durante le scritture
+        Map<String, Libro> attesi = new TreeMap<>();
+        Random random = new Random(48);
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella, 4096)) {
+            for (int passo = 0; passo < 20_000; passo++) {
+                Libro libro = libro(random.nextInt(3000), random.nextInt(6));
+                if (random.nextInt(4) == 0) {
+                    assertEquals(attesi.remove(libro.getIsbn()), archivio.rimuovi(libro.getIsbn()));
+                } else {
+                    assertEquals(attesi.put(libro.getIsbn(), libro), archivio.scrivi(libro));
+                }
+                if (passo % 5000 == 0) {
+                    // Un iteratore aperto non blocca le compattazioni successive
+                    Iterator<Libro> iniziato = archivio.iterator();
+                    assertEquals(attesi.isEmpty(), !iniziato.hasNext());
+                }
+            }
+            assertEquals(attesi.size(), archivio.getNumeroLibri());
+            assertEquals(new ArrayList<>(attesi.values()), leggiTutti(archivio));
+
+            archivio.attendiManutenzione();
+            assertTrue(archivio.getNumeroSegmenti() < 4 * ArchivioLSM.SEGMENTI_PER_LIVELLO,
+                    "Segmenti: " + archivio.getNumeroSegmenti());
+            for (int i = 0; i < 3000; i++) {
+                Libro atteso = attesi.get("978-" + i);
+                Libro letto = archivio.leggi("978-" + i);
+                assertEquals(atteso, letto);
+                if (atteso != null) {
+                    assertEquals(atteso.getValutazione(), letto.getValutazione());
+                    assertEquals(atteso.getStatoLettura(), letto.getStatoLettura());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRiapertura() throws IOException {
+        Map<String, Libro> attesi = new TreeMap<>();
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella, 8192)) {
+            for (int i = 0; i < 1000; i++) {
+                Libro libro = libro(i, i % 6);
+                attesi.put(libro.getIsbn(), libro);
+                archivio.scrivi(libro);
+            }
+            for (int i = 0; i < 1000; i += 3) {
+                attesi.remove("978-" + i);
+                archivio.rimuovi("978-" + i);
+            }
+        }
+
+        // Le scritture ancora nel registro vengono salvate in un segmento alla riapertura
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella, 8192)) {
+            assertEquals(attesi.size(), archivio.getNumeroLibri());
+            assertEquals(new ArrayList<>(attesi.values()), leggiTutti(archivio));
+            assertNull(archivio.leggi("978-3"));
+            assertEquals(4, archivio.leggi("978-4").getValutazione());
+            assertEquals(libro(4, 5), archivio.scrivi(libro(4, 5)));
+        }
+
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella)) {
+            assertEquals(attesi.size(), archivio.getNumeroLibri());
+            assertEquals(5, archivio.leggi("978-4").getValutazione());
+        }
+        String[] registri = new File(cartella).list((dir, nome) -> nome.endsWith(".log"));
+        assertEquals(1, registri.length);
+    }
+
+    @Test
+    public void testFiltriDiBloomEvitanoLetture() throws IOException {
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella, 16 * 1024)) {
+            for (int i = 0; i < 2000; i++) {
+                archivio.scrivi(libro(i, i % 6));
+            }
+            archivio.attendiManutenzione();
+            int segmenti = archivio.getNumeroSegmenti();
+            assertTrue(segmenti > 1);
+
+            // Gli ISBN nuovi non leggono quasi mai dal disco
+            long letture = archivio.getLettureSegmenti();
+            for (int i = 2000; i < 4000; i++) {
+                assertFalse(archivio.contiene("978-" + i));
+            }
+            long lettureNuovi = archivio.getLettureSegmenti() - letture;
+            assertTrue(lettureNuovi < 2000L * segmenti / 10, "Letture: " + lettureNuovi);
+
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(archivio.contiene("978-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testCartellaNonValida() throws IOException {
+        new File(cartella).mkdirs();
+        Files.write(new File(cartella, "MANIFESTO").toPath(), "altro".getBytes());
+        assertThrows(IOException.class, () -> new ArchivioLSM(cartella));
+    }
+
+    /**
+     * Descrive i file di una cartella con dimensione e data di modifica.
+     */
+    private static Map<String, String> contenuto(String percorso) {
+        Map<String, String> contenuto = new TreeMap<>();
+        File[] file = new File(percorso).listFiles();
+        if (file != null) {
+            for (File f : file) {
+                contenuto.put(f.getName(), f.length() + " " + f.lastModified());
+            }
+        }
+        return contenuto;
+    }
+
+    @Test
+    public void testAperturaInLettura() throws IOException {
+        Map<String, Libro> attesi = new TreeMap<>();
+        try (ArchivioLSM archivio = new ArchivioLSM(cartella, 8192)) {
+            for (int i = 0; i < 1000; i++) {
+                Libro libro = libro(i, i % 6);
+                attesi.put(libro.getIsbn(), libro);
+                archivio.scrivi(libro);
+            }
+            for (int i = 0; i < 1000; i += 3) {
+                attesi.remove("978-" + i);
+                archivio.rimuovi("978-" + i);
+            }
+            archivio.attendiManutenzione();
+            archivio.sincronizza();
+            Files.write(new File(cartella, "residuo.tmp").toPath(), "residuo".getBytes());
+            Map<String, String> prima = contenuto(cartella);
+
+            // Le scritture ancora nel registro dell'archivio aperto vengono rilette in memoria
+            try (ArchivioLSM lettura = ArchivioLSM.apriInLettura(cartella)) {
+                assertEquals(attesi.size(), lettura.getNumeroLibri());
+                assertEquals(new ArrayList<>(attesi.values()), leggiTutti(lettura));
+                assertNull(lettura.leggi("978-3"));
+                assertThrows(IOException.class, () -> lettura.scrivi(libro(1, 5)));
+                assertThrows(IOException.class, () -> lettura.rimuovi("978-1"));
+            }
+            assertEquals(prima, contenuto(cartella));
+        }
+
+        // Una cartella senza manifesto non è un archivio vuoto e non viene toccata
+        String altra = cartella + "_documenti";
+        try {
+            new File(altra).mkdirs();
+            Files.write(new File(altra, "nota.tmp").toPath(), "nota".getBytes());
+            Map<String, String> prima = contenuto(altra);
+            assertThrows(IOException.class, () -> ArchivioLSM.apriInLettura(altra));
+            assertEquals(prima, contenuto(altra));
+            assertThrows(IOException.class, () -> ArchivioLSM.apriInLettura(cartella + "_inesistente"));
+            assertFalse(new File(cartella + "_inesistente").exists());
+        } finally {
+            elimina(new File(altra));
+        }
+    }
+}
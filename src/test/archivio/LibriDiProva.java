@@ -0,0 +1,43 @@
+package test.archivio;
+
+import model.Libro;
+import model.StatoLettura;
+
+import java.io.File;
+
+/**
+ * Libri e file di prova comuni ai test degli archivi.
+ */
+public final class LibriDiProva {
+
+    private LibriDiProva() {
+    }
+
+    /**
+     * Crea un libro valido con ISBN "978-i": titoli, autori e generi si ripetono tra
+     * i libri e contengono caratteri non ASCII.
+     *
+     * @param i Numero del libro
+     * @param valutazione Valutazione del libro
+     * @return Libro di prova
+     */
+    public static Libro libro(int i, int valutazione) {
+        return new Libro("Titolo " + (i % 97) + " è", "Autore " + (i % 31), "978-" + i, "Genere " + (i % 5),
+                valutazione, StatoLettura.values()[i % 3]);
+    }
+
+    /**
+     * Elimina un file, o una cartella con tutto il suo contenuto.
+     *
+     * @param file File o cartella da eliminare
+     */
+    public static void elimina(File file) {
+        File[] contenuto = file.listFiles();
+        if (contenuto != null) {
+            for (File figlio : contenuto) {
+                elimina(figlio);
+            }
+        }
+        file.delete();
+    }
+}
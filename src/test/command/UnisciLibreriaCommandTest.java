@@ -0,0 +1,83 @@
+package test.command;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import command.CommandManager;
+import command.UnisciLibreriaCommand;
+import controller.GestoreLibreria;
+import controller.LibroController;
+import controller.UnioneLibri;
+import model.Libro;
+import model.StatoLettura;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Test unitari per la classe UnisciLibreriaCommand.
+ * Verifica che l'intera unione sia annullata e ripristinata con un'unica operazione.
+ */
+public class UnisciLibreriaCommandTest {
+
+    private static final String PERCORSO = "temp_unisci_command_test.csv";
+
+    private GestoreLibreria gestore;
+    private LibroController controller;
+    private CommandManager commandManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        gestore = GestoreLibreria.getInstance();
+        gestore.pulisciLibreria();
+        gestore.aggiungiLibro(new Libro("1984", "George Orwell", "978-0-452-28423-4", "Distopico", 4, StatoLettura.LETTO));
+        controller = new LibroController(null); // Il parametro view non è usato nei test
+        commandManager = new CommandManager();
+
+        Files.write(Paths.get(PERCORSO), ("titolo,autore,isbn,genere,valutazione,statoLettura\n"
+                + "Nuovo,Autore,111,Genere,3,LETTO\n"
+                + "Altro,Autore,222,Genere,2,DA_LEGGERE\n"
+                + "1984,George Orwell,978-0-452-28423-4,Distopico,5,LETTO\n").getBytes());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new File(PERCORSO).delete();
+        gestore.pulisciLibreria();
+    }
+
+    @Test
+    public void testExecuteUndoRedo() throws IOException {
+        UnioneLibri unione = gestore.preparaUnione(PERCORSO, "CSV", UnioneLibri.Politica.AGGIORNA);
+        assertTrue(commandManager.executeCommand(new UnisciLibreriaCommand(controller, unione)));
+        assertEquals(3, gestore.getNumeroLibri());
+        assertEquals(5, gestore.getLibroPerIsbn("978-0-452-28423-4").getValutazione());
+        assertEquals("Unione libri: 3 libri da " + PERCORSO, commandManager.getUndoDescription());
+
+        // Un solo undo annulla l'intera unione
+        assertTrue(commandManager.undo());
+        assertFalse(commandManager.canUndo());
+        assertEquals(1, gestore.getNumeroLibri());
+        assertEquals(4, gestore.getLibroPerIsbn("978-0-452-28423-4").getValutazione());
+
+        // Il redo la riapplica
+        assertTrue(commandManager.redo());
+        assertEquals(3, gestore.getNumeroLibri());
+        assertEquals(5, gestore.getLibroPerIsbn("978-0-452-28423-4").getValutazione());
+    }
+
+    @Test
+    public void testUnioneSenzaModifiche() throws IOException {
+        UnioneLibri unione = gestore.preparaUnione(PERCORSO, "CSV", UnioneLibri.Politica.AGGIORNA);
+        gestore.applicaUnione(unione);
+
+        // Unire di nuovo lo stesso file non cambia nulla e non crea un'operazione da annullare
+        UnioneLibri ripetuta = gestore.preparaUnione(PERCORSO, "CSV", UnioneLibri.Politica.AGGIORNA);
+        assertEquals(3, ripetuta.getInvariati());
+        assertFalse(commandManager.executeCommand(new UnisciLibreriaCommand(controller, ripetuta)));
+        assertFalse(commandManager.canUndo());
+    }
+}
@@ -4,13 +4,35 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
+import controller.EventoLibreria;
 import controller.GestoreLibreria;
+import controller.UnioneLibri;
+import dao.FileModifiche;
+import dao.FileScarti;
+import dao.JsonLibroDAO;
+import dao.LibroDAO;
+import dao.RapportoImportazione;
+import indice.FileIndici;
+import indice.IndiceFacet;
 import model.Libro;
 import model.StatoLettura;
 import strategy.*;
+import view.ModelloComboFacet;
 
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Test unitari per la classe GestoreLibreria.
@@ -241,6 +263,43 @@ public class GestoreLibreriaTest {
         assertEquals(3, risultato.size());
     }
 
+    @Test
+    public void testCercaIncrementale() {
+        // Ricerche successive che restringono la precedente
+        assertEquals(2, gestore.cercaPerTitolo("D").size()); // "Il Nome della Rosa", "La Divina Commedia"
+        assertEquals(1, gestore.cercaPerTitolo("Di").size());
+        assertEquals(1, gestore.cercaPerTitolo("Divina").size());
+
+        // Una modifica della collezione invalida il risultato precedente
+        Libro libro4 = new Libro("Divina Provvidenza", "Altro Autore", "123-123-123-123", "Saggio", 3, StatoLettura.DA_LEGGERE);
+        gestore.aggiungiLibro(libro4);
+        List<Libro> risultato = gestore.cercaPerTitolo("Divina");
+        assertEquals(2, risultato.size());
+        assertTrue(risultato.contains(libro4));
+
+        // Una ricerca non contenuta nella precedente riparte dall'intera collezione
+        assertEquals(1, gestore.cercaPerTitolo("Rosa").size());
+
+        // Il cambio di campo non riutilizza il risultato della ricerca per titolo
+        assertEquals(1, gestore.cercaPerAutore("Autore").size());
+    }
+
+    @Test
+    public void testCercaApprossimata() {
+        // "Orwel" e "Umbetro" contengono errori di battitura
+        List<Libro> risultato = gestore.cercaApprossimata("Orwel");
+        assertEquals(1, risultato.size());
+        assertTrue(risultato.contains(libro2));
+        assertTrue(gestore.cercaApprossimata("Umbetro").contains(libro1));
+
+        // L'indice segue le modifiche della collezione
+        gestore.eliminaLibro(libro2);
+        assertTrue(gestore.cercaApprossimata("Orwel").isEmpty());
+
+        // Testo vuoto: tutti i libri
+        assertEquals(2, gestore.cercaApprossimata("").size());
+    }
+
     @Test
     public void testOrdinaLibri() {
         List<Libro> libri = new ArrayList<>();
@@ -294,6 +353,68 @@ public class GestoreLibreriaTest {
         assertTrue(ordinati.contains(libro3));
     }
 
+    @Test
+    public void testOrdinaLibriPaginati() {
+        // Crea una lista con molte valutazioni uguali per verificare anche la stabilità
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            libri.add(new Libro("Titolo " + (i * 37 % 50), "Autore " + (i % 7), "100-" + i, "Genere", i % 6, StatoLettura.LETTO));
+        }
+
+        OrdinatoreLibroStrategy strategy = new OrdinaValutazioneDescStrategy();
+        List<Libro> ordinati = gestore.ordinaLibri(libri, strategy);
+
+        // Ogni pagina deve coincidere con la porzione corrispondente dell'ordinamento completo
+        assertEquals(ordinati.subList(0, 10), gestore.ordinaLibri(libri, strategy, 0, 10));
+        assertEquals(ordinati.subList(10, 20), gestore.ordinaLibri(libri, strategy, 10, 10));
+        assertEquals(ordinati.subList(45, 50), gestore.ordinaLibri(libri, strategy, 45, 10));
+
+        // Pagine oltre la fine e limite nullo restituiscono liste vuote
+        assertTrue(gestore.ordinaLibri(libri, strategy, 60, 10).isEmpty());
+        assertTrue(gestore.ordinaLibri(libri, strategy, 0, 0).isEmpty());
+
+        // Senza strategia viene mantenuto l'ordine originale
+        assertEquals(libri.subList(5, 15), gestore.ordinaLibri(libri, null, 5, 10));
+
+        // Parametri negativi non sono ammessi
+        assertThrows(IllegalArgumentException.class, () -> gestore.ordinaLibri(libri, strategy, -1, 10));
+    }
+
+    @Test
+    public void testGetLibriOrdinatiAggiornatiDopoModifiche() {
+        OrdinatoreLibroStrategy strategy = new OrdinaValutazioneDescStrategy();
+        long versioneIniziale = gestore.getVersione();
+
+        // Il primo accesso calcola l'ordinamento completo
+        assertEquals(gestore.ordinaLibri(gestore.getLibri(), strategy),
+                gestore.getLibriOrdinati(strategy, 0, 10));
+
+        // Aggiunta: il nuovo libro va dopo quelli con la stessa valutazione
+        Libro libro4 = new Libro("Altro libro", "Altro Autore", "123-123-123-123", "Storico", 4, StatoLettura.DA_LEGGERE);
+        gestore.aggiungiLibro(libro4);
+        assertEquals(gestore.ordinaLibri(gestore.getLibri(), strategy),
+                gestore.getLibriOrdinati(strategy, 0, 10));
+
+        // Modifica: il libro cambia posizione nell'ordinamento
+        Libro libro3Modificato = new Libro("La Divina Commedia", "Dante Alighieri", libro3.getIsbn(), "Poesia", 5, StatoLettura.LETTO);
+        gestore.modificaLibro(libro3, libro3Modificato);
+        assertEquals(gestore.ordinaLibri(gestore.getLibri(), strategy),
+                gestore.getLibriOrdinati(strategy, 0, 10));
+
+        // Eliminazione
+        gestore.eliminaLibro(libro2);
+        assertEquals(gestore.ordinaLibri(gestore.getLibri(), strategy),
+                gestore.getLibriOrdinati(strategy, 0, 10));
+        assertEquals(gestore.ordinaLibri(gestore.getLibri(), strategy).subList(1, 3),
+                gestore.getLibriOrdinati(strategy, 1, 2));
+
+        // Ogni modifica incrementa la versione
+        assertEquals(versioneIniziale + 3, gestore.getVersione());
+
+        // Senza strategia viene restituito l'ordine di inserimento
+        assertEquals(gestore.getLibri(), gestore.getLibriOrdinati(null, 0, 10));
+    }
+
     @Test
     public void testGetGeneriUnici() {
         // Aggiungi un libro con un genere duplicato
@@ -333,4 +454,467 @@ public class GestoreLibreriaTest {
         // Verifica che la libreria sia vuota dopo aver pulito
         assertTrue(gestore.getLibri().isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIstantaneaNonCambiaConLeModifiche() {
+        List<Libro> istantanea = gestore.getIstantanea();
+
+        Libro libro4 = new Libro("Il Barone Rampante", "Italo Calvino", "978-88-04-66838-4", "Romanzo",
+                4, StatoLettura.DA_LEGGERE);
+        gestore.aggiungiLibro(libro4);
+        gestore.eliminaLibro(libro1);
+
+        assertEquals(3, istantanea.size());
+        assertTrue(istantanea.contains(libro1));
+        assertFalse(istantanea.contains(libro4));
+        assertThrows(UnsupportedOperationException.class, () -> istantanea.remove(0));
+
+        // L'istantanea corrente segue l'ordine di inserimento
+        List<Libro> attuale = gestore.getIstantanea();
+        assertEquals(List.of(libro2, libro3, libro4), new ArrayList<>(attuale));
+        assertEquals(libro4, attuale.get(2));
+    }
+
+    @Test
+    public void testAscoltatoriNotificati() {
+        List<EventoLibreria> eventi = new ArrayList<>();
+        GestoreLibreria.Ascoltatore ascoltatore = eventi::add;
+        gestore.aggiungiAscoltatore(ascoltatore);
+        try {
+            long sequenza = gestore.getSequenza(libro2.getIsbn());
+            Libro libro2Modificato = new Libro("1984 (nuova edizione)", "George Orwell", "978-0-452-28423-4",
+                    "Distopico", 5, StatoLettura.LETTO);
+            Libro libro4 = new Libro("Il Barone Rampante", "Italo Calvino", "978-88-04-66838-4", "Romanzo",
+                    4, StatoLettura.DA_LEGGERE);
+
+            gestore.aggiungiLibro(libro4);
+            gestore.modificaLibro(libro2, libro2Modificato);
+            gestore.eliminaLibro(libro1);
+            gestore.aggiungiLibro(libro4); // Già presente: nessuna notifica
+            gestore.pulisciLibreria();
+
+            assertEquals(4, eventi.size());
+            assertEquals(EventoLibreria.Tipo.AGGIUNTO, eventi.get(0).getTipo());
+            assertEquals(libro4.getIsbn(), eventi.get(0).getIsbn());
+            assertNull(eventi.get(0).getLibroPrecedente());
+
+            // La modifica mantiene la posizione di inserimento e riporta i dati precedenti
+            EventoLibreria modifica = eventi.get(1);
+            assertEquals(EventoLibreria.Tipo.MODIFICATO, modifica.getTipo());
+            assertEquals(sequenza, modifica.getSequenza());
+            assertEquals("1984", modifica.getLibroPrecedente().getTitolo());
+            assertEquals("1984 (nuova edizione)", modifica.getLibro().getTitolo());
+
+            // La posizione di inserimento del libro rimosso resta disponibile nell'evento
+            EventoLibreria rimozione = eventi.get(2);
+            assertEquals(EventoLibreria.Tipo.RIMOSSO, rimozione.getTipo());
+            assertEquals(libro1.getIsbn(), rimozione.getIsbn());
+            assertNull(rimozione.getLibro());
+            assertTrue(rimozione.getSequenza() >= 0);
+            assertEquals(-1, gestore.getSequenza(libro1.getIsbn()));
+
+            assertEquals(EventoLibreria.Tipo.RICARICATO, eventi.get(3).getTipo());
+        } finally {
+            gestore.rimuoviAscoltatore(ascoltatore);
+        }
+    }
+
+    @Test
+    public void testAccessoConcorrente() throws Exception {
+        final int scrittori = 4;
+        final int lettori = 4;
+        final int libriPerScrittore = 200;
+        OrdinatoreLibroStrategy strategia = new OrdinaTitoloAZStrategy();
+
+        List<Throwable> errori = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean scrittoriAttivi = new AtomicBoolean(true);
+        CountDownLatch partenza = new CountDownLatch(1);
+        List<Thread> threadScrittori = new ArrayList<>();
+        List<Thread> threadLettori = new ArrayList<>();
+
+        // Il modello della combo degli autori segue il dizionario mentre gli scrittori lo modificano
+        ModelloComboFacet modelloAutori = new ModelloComboFacet(gestore.getDizionarioAutori(), 100);
+        IndiceFacet.Ascoltatore nessunEffetto = new IndiceFacet.Ascoltatore() {
+            @Override
+            public void valoreAggiunto(int posizione, String valore) {
+            }
+
+            @Override
+            public void valoreRimosso(int posizione, String valore) {
+            }
+
+            @Override
+            public void valoriRicaricati() {
+            }
+        };
+
+        // Ogni scrittore aggiunge i propri libri, ne modifica e ne elimina una parte
+        for (int s = 0; s < scrittori; s++) {
+            final int scrittore = s;
+            threadScrittori.add(new Thread(() -> {
+                try {
+                    partenza.await();
+                    for (int i = 0; i < libriPerScrittore; i++) {
+                        Libro libro = new Libro("Titolo " + scrittore + "-" + i, "Autore " + scrittore,
+                                "900-" + scrittore + "-" + i, "Genere " + (i % 5), i % 6, StatoLettura.DA_LEGGERE);
+                        assertTrue(gestore.aggiungiLibro(libro));
+                        if (i % 2 == 0) {
+                            assertTrue(gestore.eliminaLibro(libro));
+                        } else if (i % 3 == 0) {
+                            Libro modificato = new Libro("Modificato " + scrittore + "-" + i, "Autore " + scrittore,
+                                    libro.getIsbn(), "Genere 0", 5, StatoLettura.LETTO);
+                            assertTrue(gestore.modificaLibro(libro, modificato));
+                        }
+                    }
+                } catch (Throwable t) {
+                    errori.add(t);
+                }
+            }));
+        }
+
+        // I lettori interrogano la collezione finché gli scrittori sono attivi
+        for (int l = 0; l < lettori; l++) {
+            threadLettori.add(new Thread(() -> {
+                try {
+                    partenza.await();
+                    while (scrittoriAttivi.get()) {
+                        gestore.cercaPerTitolo("Titolo 1");
+                        gestore.cercaPerTitolo("Titolo 1-1");
+                        gestore.cercaApprossimata("Titlo");
+                        gestore.cercaInTuttiICampi("Autore");
+                        gestore.suggerisciAutori("Aut", 10);
+                        gestore.getDizionarioAutori().aggiungiAscoltatore(nessunEffetto);
+                        gestore.getDizionarioGeneri().suggerisci("Gen", 10);
+                        gestore.getDizionarioAutori().rimuoviAscoltatore(nessunEffetto);
+                        gestore.getNumeroLibri();
+
+                        List<Libro> pagina = gestore.getLibriOrdinati(strategia, 0, 50);
+                        for (int i = 1; i < pagina.size(); i++) {
+                            assertTrue(pagina.get(i - 1).getTitolo().compareToIgnoreCase(pagina.get(i).getTitolo()) <= 0);
+                        }
+                    }
+                } catch (Throwable t) {
+                    errori.add(t);
+                }
+            }));
+        }
+
+        threadScrittori.forEach(Thread::start);
+        threadLettori.forEach(Thread::start);
+        partenza.countDown();
+        for (Thread thread : threadScrittori) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+        }
+        scrittoriAttivi.set(false);
+        for (Thread thread : threadLettori) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+        }
+
+        assertTrue(errori.isEmpty(), "Errori nei thread: " + errori);
+
+        // Restano i 3 libri iniziali e i libri dispari di ogni scrittore
+        int attesi = 3 + scrittori * libriPerScrittore / 2;
+        assertEquals(attesi, gestore.getNumeroLibri());
+        assertEquals(attesi, gestore.getLibriOrdinati(strategia, 0, Integer.MAX_VALUE).size());
+        assertEquals(scrittori * libriPerScrittore / 2, gestore.cercaPerAutore("Autore ").size());
+        assertEquals(libriPerScrittore / 2, gestore.cercaApprossimata("Autore 2").size());
+        assertEquals(3 + scrittori, gestore.getAutoriUnici().size());
+
+        SwingUtilities.invokeAndWait(() -> { });
+        modelloAutori.scollega();
+        List<String> mostrati = new ArrayList<>();
+        for (int i = 1; i < modelloAutori.getSize(); i++) {
+            mostrati.add(modelloAutori.getElementAt(i));
+        }
+        assertEquals(gestore.getAutoriUnici(), mostrati);
+    }
+
+    @Test
+    public void testSalvataggioInBackground() throws Exception {
+        String percorso = "temp_salvataggio_test.csv";
+        try {
+            // Richieste ripetute per lo stesso file: tutte si completano con la stessa collezione
+            List<CompletableFuture<Integer>> risultati = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                risultati.add(gestore.salvaLibriInBackground(percorso, "CSV", LibroDAO.Avanzamento.NESSUNO));
+            }
+            for (CompletableFuture<Integer> risultato : risultati) {
+                assertEquals(3, (int) risultato.get(10, TimeUnit.SECONDS));
+            }
+
+            gestore.pulisciLibreria();
+            gestore.caricaLibriDaCsv(percorso);
+            assertEquals(3, gestore.getNumeroLibri());
+
+            // Un errore di scrittura viene riportato nel risultato
+            CompletableFuture<Integer> errore = gestore.salvaLibriInBackground(
+                    "cartella_inesistente/libri.csv", "CSV", LibroDAO.Avanzamento.NESSUNO);
+            ExecutionException eccezione = assertThrows(ExecutionException.class,
+                    () -> errore.get(10, TimeUnit.SECONDS));
+            assertTrue(eccezione.getCause() instanceof IOException);
+        } finally {
+            new File(percorso).delete();
+            new File(percorso + FileIndici.ESTENSIONE).delete();
+        }
+    }
+
+    @Test
+    public void testImportazioneConScarti() throws IOException {
+        String percorso = "temp_importazione_test.csv";
+        String percorsoScarti = FileScarti.percorsoPredefinito(percorso);
+        assertEquals("temp_importazione_test_scarti.csv", percorsoScarti);
+        try {
+            // Un libro nuovo, uno già presente e uno con valutazione non valida
+            Files.write(Paths.get(percorso), ("titolo,autore,isbn,genere,valutazione,statoLettura\n"
+                    + "Nuovo,Autore,111,Genere,3,LETTO\n"
+                    + "1984,George Orwell,978-0-452-28423-4,Distopico,4,LETTO\n"
+                    + "Errato,Autore,222,Genere,9,LETTO\n").getBytes());
+
+            RapportoImportazione rapporto = gestore.importaLibri(percorso, "CSV", percorsoScarti);
+            assertEquals(1, rapporto.getImportati());
+            assertEquals(2, rapporto.getScartati());
+            assertEquals(4, gestore.getNumeroLibri());
+            assertNotNull(gestore.getLibroPerIsbn("111"));
+
+            // Gli scarti sono copiati così come sono, con l'intestazione del file
+            List<String> righe = Files.readAllLines(Paths.get(percorsoScarti));
+            assertEquals(3, righe.size());
+            assertEquals("Errato,Autore,222,Genere,9,LETTO", righe.get(2));
+
+            // Corretto il file degli scarti, la sua importazione riprende solo quei libri
+            righe.set(2, "Corretto,Autore,222,Genere,5,LETTO");
+            Files.write(Paths.get(percorsoScarti), righe);
+            rapporto = gestore.importaLibri(percorsoScarti, "CSV", FileScarti.percorsoPredefinito(percorsoScarti));
+            assertEquals(1, rapporto.getImportati());
+            assertEquals(1, rapporto.getScartati());
+            assertEquals(5, gestore.getNumeroLibri());
+            assertEquals(2, Files.readAllLines(Paths.get(percorsoScarti)).size());
+
+            // Senza scarti il file degli scarti viene eliminato
+            gestore.eliminaLibro(libro2);
+            gestore.importaLibri(percorsoScarti, "CSV", percorsoScarti);
+            assertFalse(new File(percorsoScarti).exists());
+            assertEquals(5, gestore.getNumeroLibri());
+        } finally {
+            new File(percorso).delete();
+            new File(percorsoScarti).delete();
+        }
+    }
+
+    @Test
+    public void testImportazioneJsonALotti() throws IOException {
+        String percorso = "temp_importazione_test.json";
+        String percorsoScarti = FileScarti.percorsoPredefinito(percorso);
+        try {
+            List<Libro> libri = new ArrayList<>();
+            for (int i = 0; i < 2500; i++) {
+                libri.add(new Libro("Libro " + i, "Autore", "900-" + i, "Genere", 3, StatoLettura.LETTO));
+            }
+            new JsonLibroDAO().salvaLibri(libri, percorso);
+
+            // L'ordinamento memorizzato prima dell'importazione non deve restare valido
+            OrdinatoreLibroStrategy ordine = new OrdinaTitoloZAStrategy();
+            assertEquals("La Divina Commedia", gestore.getLibriOrdinati(ordine, 0, 1).get(0).getTitolo());
+
+            // Ogni lotto aggiunto produce una sola notifica
+            List<EventoLibreria> eventi = new ArrayList<>();
+            GestoreLibreria.Ascoltatore ascoltatore = eventi::add;
+            gestore.aggiungiAscoltatore(ascoltatore);
+            RapportoImportazione rapporto;
+            try {
+                rapporto = gestore.importaLibri(percorso, "JSON", percorsoScarti);
+            } finally {
+                gestore.rimuoviAscoltatore(ascoltatore);
+            }
+            assertEquals(2500, rapporto.getImportati());
+            assertEquals(2503, gestore.getNumeroLibri());
+            assertEquals(3, eventi.size());
+            assertFalse(new File(percorsoScarti).exists());
+            assertEquals("Libro 999", gestore.getLibriOrdinati(ordine, 0, 1).get(0).getTitolo());
+        } finally {
+            new File(percorso).delete();
+        }
+    }
+
+    @Test
+    public void testImportazioneConIsbnAggiuntoDuranteIlLotto() throws IOException {
+        String percorso = "temp_importazione_test.csv";
+        String percorsoScarti = FileScarti.percorsoPredefinito(percorso);
+        try {
+            StringBuilder testo = new StringBuilder("titolo,autore,isbn,genere,valutazione,statoLettura\n");
+            for (int i = 0; i < 1002; i++) {
+                testo.append("Libro ").append(i).append(",Autore,900-").append(i).append(",Genere,3,LETTO\n");
+            }
+            Files.write(Paths.get(percorso), testo.toString().getBytes());
+
+            // Dopo il primo lotto un altro ISBN del file viene aggiunto prima del lotto successivo
+            Libro concorrente = new Libro("Concorrente", "Autore", "900-1001", "Genere", 4, StatoLettura.LETTO);
+            GestoreLibreria.Ascoltatore ascoltatore = evento -> {
+                if (gestore.getLibroPerIsbn("900-1001") == null) {
+                    gestore.aggiungiLibro(concorrente);
+                }
+            };
+            gestore.aggiungiAscoltatore(ascoltatore);
+            RapportoImportazione rapporto;
+            try {
+                rapporto = gestore.importaLibri(percorso, "CSV", percorsoScarti);
+            } finally {
+                gestore.rimuoviAscoltatore(ascoltatore);
+            }
+
+            // Il libro del file non sostituisce quello aggiunto ed è contato come scarto
+            assertEquals(1001, rapporto.getImportati());
+            assertEquals(1, rapporto.getScartati());
+            assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.ISBN_DUPLICATO));
+            assertTrue(rapporto.getMessaggio().contains("Riga 1003 (Libro 1001)"));
+            assertSame(concorrente, gestore.getLibroPerIsbn("900-1001"));
+            assertEquals(1005, gestore.getNumeroLibri());
+            List<String> righe = Files.readAllLines(Paths.get(percorsoScarti));
+            assertEquals(2, righe.size());
+            assertEquals("Libro 1001,Autore,900-1001,Genere,3,LETTO", righe.get(1));
+        } finally {
+            new File(percorso).delete();
+            new File(percorsoScarti).delete();
+        }
+    }
+
+    @Test
+    public void testUnioneLibri() throws IOException {
+        String percorso = "temp_unione_test.csv";
+        try {
+            // Un libro nuovo, uno invariato e uno con dati diversi da quelli della libreria
+            Files.write(Paths.get(percorso), ("titolo,autore,isbn,genere,valutazione,statoLettura\n"
+                    + "Nuovo,Autore,111,Genere,3,LETTO\n"
+                    + "1984,George Orwell,978-0-452-28423-4,Distopico,4,LETTO\n"
+                    + "La Divina Commedia,Dante Alighieri,978-88-04-59401-6,Poesia,5,LETTO\n").getBytes());
+
+            // Con ERRORE il conflitto rifiuta l'unione senza modificare la libreria
+            IOException eccezione = assertThrows(IOException.class,
+                    () -> gestore.preparaUnione(percorso, "CSV", UnioneLibri.Politica.ERRORE));
+            // Il messaggio indica l'ISBN in conflitto e i campi diversi, non un libro non valido
+            assertTrue(eccezione.getMessage().contains(
+                    "ISBN 978-88-04-59401-6 (La Divina Commedia) è già nella libreria con dati diversi"));
+            assertTrue(eccezione.getMessage().contains("valutazione: 0 -> 5"));
+            assertFalse(eccezione.getMessage().contains("non validi"));
+            assertEquals(3, gestore.getNumeroLibri());
+
+            // Con SALTA il libro presente resta invariato
+            UnioneLibri unione = gestore.preparaUnione(percorso, "CSV", UnioneLibri.Politica.SALTA);
+            assertEquals("Nuovi: 1, aggiornati: 0, rimossi: 0, invariati: 1, saltati: 1", unione.getRiepilogo());
+            assertEquals(3, gestore.getNumeroLibri());
+
+            // Con AGGIORNA il libro presente viene sostituito, mantenendo la sua posizione
+            unione = gestore.preparaUnione(percorso, "CSV", UnioneLibri.Politica.AGGIORNA);
+            assertEquals(1, unione.getNuovi());
+            assertEquals(1, unione.getAggiornati());
+            assertEquals(1, unione.getInvariati());
+            long sequenza = gestore.getSequenza(libro3.getIsbn());
+            gestore.applicaUnione(unione);
+            assertEquals(4, gestore.getNumeroLibri());
+            assertEquals(5, gestore.getLibroPerIsbn(libro3.getIsbn()).getValutazione());
+            assertEquals(sequenza, gestore.getSequenza(libro3.getIsbn()));
+            assertEquals(1, gestore.cercaPerTitolo("Nuovo").size());
+
+            // L'annullamento ripristina la libreria precedente
+            gestore.annullaUnione(unione);
+            assertEquals(3, gestore.getNumeroLibri());
+            assertNull(gestore.getLibroPerIsbn("111"));
+            assertEquals(0, gestore.getLibroPerIsbn(libro3.getIsbn()).getValutazione());
+            assertTrue(gestore.cercaPerTitolo("Nuovo").isEmpty());
+        } finally {
+            new File(percorso).delete();
+        }
+    }
+
+    @Test
+    public void testApplicaModifiche() throws IOException {
+        String percorso = "temp_modifiche_test.csv";
+        try {
+            Libro nuovo = new Libro("Il Gattopardo", "Giuseppe Tomasi di Lampedusa", "978-88-07-88132-7", "Storico", 4, StatoLettura.DA_LEGGERE);
+            Libro modificato = new Libro("1984", "George Orwell", libro2.getIsbn(), "Romanzo", 5, StatoLettura.LETTO);
+            try (FileModifiche.Scrittura modifiche = FileModifiche.apriScrittura(percorso)) {
+                modifiche.scrivi(FileModifiche.Operazione.MODIFICATO, modificato, "genere: Distopico -> Romanzo");
+                modifiche.scrivi(FileModifiche.Operazione.RIMOSSO, libro3, "");
+                modifiche.scrivi(FileModifiche.Operazione.AGGIUNTO, nuovo, "");
+                modifiche.conferma();
+            }
+
+            UnioneLibri unione = gestore.preparaModifiche(percorso);
+            assertEquals("Nuovi: 1, aggiornati: 1, rimossi: 1, invariati: 0, saltati: 0", unione.getRiepilogo());
+            gestore.applicaUnione(unione);
+            assertEquals(3, gestore.getNumeroLibri());
+            assertNull(gestore.getLibroPerIsbn(libro3.getIsbn()));
+            assertEquals("Romanzo", gestore.getLibroPerIsbn(libro2.getIsbn()).getGenere());
+            assertNotNull(gestore.getLibroPerIsbn(nuovo.getIsbn()));
+
+            // Le modifiche già applicate risultano invariate
+            assertFalse(gestore.preparaModifiche(percorso).haModifiche());
+
+            // L'annullamento ripristina anche il libro rimosso
+            gestore.annullaUnione(unione);
+            assertEquals(3, gestore.getNumeroLibri());
+            assertEquals(libro3.getTitolo(), gestore.getLibroPerIsbn(libro3.getIsbn()).getTitolo());
+            assertEquals("Distopico", gestore.getLibroPerIsbn(libro2.getIsbn()).getGenere());
+            assertNull(gestore.getLibroPerIsbn(nuovo.getIsbn()));
+        } finally {
+            new File(percorso).delete();
+        }
+    }
+
+    @Test
+    public void testFileIndici() throws IOException {
+        String percorso = "temp_indici_test.json";
+        String percorsoIndici = percorso + FileIndici.ESTENSIONE;
+        try {
+            for (int i = 0; i < 200; i++) {
+                gestore.aggiungiLibro(new Libro("Romanzo " + i + " della sera", "Autore " + (i % 17),
+                        "979-" + i, "Genere " + (i % 5), i % 6, StatoLettura.DA_LEGGERE));
+            }
+            gestore.salvaLibriInJson(percorso);
+
+            // Il primo caricamento costruisce gli indici e li scrive accanto al file
+            gestore.caricaLibriDaJson(percorso);
+            assertFalse(gestore.isIndiciLettiDaFile());
+            assertTrue(new File(percorsoIndici).exists());
+            List<Libro> fullText = gestore.cercaInTuttiICampi("rosa sera autore 3");
+            List<Libro> approssimata = gestore.cercaApprossimata("Umbrto");
+            List<String> autori = new ArrayList<>(gestore.getAutoriUnici());
+            List<String> generi = new ArrayList<>(gestore.getGeneriUnici());
+
+            // Con lo stesso contenuto gli indici vengono letti e danno gli stessi risultati
+            gestore.pulisciLibreria();
+            gestore.caricaLibriDaJson(percorso);
+            assertTrue(gestore.isIndiciLettiDaFile());
+            assertEquals(fullText, gestore.cercaInTuttiICampi("rosa sera autore 3"));
+            assertEquals(approssimata, gestore.cercaApprossimata("Umbrto"));
+            assertEquals(Collections.singletonList(libro1), approssimata);
+            assertEquals(autori, gestore.getAutoriUnici());
+            assertEquals(generi, gestore.getGeneriUnici());
+
+            // Gli indici letti si aggiornano con le modifiche
+            gestore.eliminaLibro(libro1);
+            gestore.aggiungiLibro(new Libro("Nuovo", "Umberta Rossi", "979-999", "Saggio", 3, StatoLettura.LETTO));
+            assertEquals("Nuovo", gestore.cercaApprossimata("Umbrto").get(0).getTitolo());
+            assertTrue(gestore.cercaInTuttiICampi("rosa").isEmpty());
+            assertTrue(gestore.getGeneriUnici().contains("Saggio"));
+
+            // Un file modificato rende non aggiornati gli indici, che vengono ricostruiti
+            gestore.salvaLibriInJson(percorso);
+            gestore.caricaLibriDaJson(percorso);
+            assertFalse(gestore.isIndiciLettiDaFile());
+            gestore.caricaLibriDaJson(percorso);
+            assertTrue(gestore.isIndiciLettiDaFile());
+
+            // Un file degli indici troncato viene ignorato e riscritto
+            byte[] contenuto = Files.readAllBytes(Paths.get(percorsoIndici));
+            Files.write(Paths.get(percorsoIndici), Arrays.copyOf(contenuto, contenuto.length / 2));
+            gestore.caricaLibriDaJson(percorso);
+            assertFalse(gestore.isIndiciLettiDaFile());
+            assertEquals("Nuovo", gestore.cercaApprossimata("Umbrto").get(0).getTitolo());
+            assertEquals(contenuto.length, new File(percorsoIndici).length());
+        } finally {
+            new File(percorso).delete();
+            new File(percorsoIndici).delete();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package test.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import controller.GestoreLibreria;
+import controller.SalvataggioAutomatico;
+import dao.FileDelta;
+import dao.LibroDAO;
+import indice.FileIndici;
+import model.Libro;
+import model.StatoLettura;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test unitari per la classe SalvataggioAutomatico.
+ * Verifica che vengano scritte solo le modifiche e che vengano riapplicate al caricamento.
+ */
+public class SalvataggioAutomaticoTest {
+
+    private static final String PERCORSO = "temp_automatico_test.csv";
+
+    private GestoreLibreria gestore;
+    private SalvataggioAutomatico salvataggio;
+    private Libro libro1, libro2;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        gestore = GestoreLibreria.getInstance();
+        gestore.pulisciLibreria();
+
+        libro1 = new Libro("Il Nome della Rosa", "Umberto Eco", "978-88-452-6445-5", "Storico", 5, StatoLettura.LETTO);
+        libro2 = new Libro("1984", "George Orwell", "978-0-452-28423-4", "Distopico", 4, StatoLettura.LETTO);
+        gestore.aggiungiLibro(libro1);
+        gestore.aggiungiLibro(libro2);
+
+        // Il file principale contiene i due libri iniziali
+        salvataggio = new SalvataggioAutomatico(gestore, PERCORSO, "CSV");
+        salvataggio.avvia(1, TimeUnit.HOURS);
+        assertEquals(2, (int) salvataggio.unisci(LibroDAO.Avanzamento.NESSUNO).get(10, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        salvataggio.ferma();
+        gestore.pulisciLibreria();
+        new File(PERCORSO).delete();
+        new File(PERCORSO + FileDelta.ESTENSIONE).delete();
+        new File(PERCORSO + FileIndici.ESTENSIONE).delete();
+    }
+
+    @Test
+    public void testScriveSoloLeModifiche() throws Exception {
+        long lunghezzaFile = new File(PERCORSO).length();
+
+        Libro modificato = new Libro("1984", "George Orwell", "978-0-452-28423-4", "Distopico", 5, StatoLettura.LETTO);
+        gestore.modificaLibro(libro2, modificato);
+        gestore.eliminaLibro(libro1);
+        assertEquals(2, (int) salvataggio.scriviModifiche().get(10, TimeUnit.SECONDS));
+
+        // Il file principale non è stato riscritto, le modifiche sono nel file delta
+        assertEquals(lunghezzaFile, new File(PERCORSO).length());
+        List<String> righe = Files.readAllLines(new File(PERCORSO + FileDelta.ESTENSIONE).toPath());
+        assertEquals(2, righe.size());
+        assertTrue(righe.get(0).startsWith("-") || righe.get(1).startsWith("-"));
+
+        // Senza nuove modifiche non viene scritto nulla
+        assertEquals(0, (int) salvataggio.scriviModifiche().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCaricamentoApplicaLeModifiche() throws Exception {
+        Libro nuovo = new Libro("La Divina Commedia", "Dante Alighieri", "978-88-04-59401-6", "Poesia", 0, StatoLettura.DA_LEGGERE);
+        Libro modificato = new Libro("1984", "George Orwell", "978-0-452-28423-4", "Distopico", 5, StatoLettura.LETTO);
+        gestore.aggiungiLibro(nuovo);
+        gestore.modificaLibro(libro2, modificato);
+        gestore.eliminaLibro(libro1);
+        salvataggio.scriviModifiche().get(10, TimeUnit.SECONDS);
+
+        gestore.pulisciLibreria();
+        gestore.caricaLibriDaCsv(PERCORSO);
+
+        List<Libro> libri = gestore.getLibri();
+        assertEquals(2, libri.size());
+        // Il libro modificato resta nella sua posizione, quello nuovo va in fondo
+        assertEquals("978-0-452-28423-4", libri.get(0).getIsbn());
+        assertEquals(5, libri.get(0).getValutazione());
+        assertEquals("978-88-04-59401-6", libri.get(1).getIsbn());
+    }
+
+    @Test
+    public void testUnioneEliminaIlFileDelta() throws Exception {
+        gestore.eliminaLibro(libro1);
+        salvataggio.scriviModifiche().get(10, TimeUnit.SECONDS);
+        assertTrue(new FileDelta(PERCORSO).esiste());
+
+        assertEquals(1, (int) salvataggio.unisci(LibroDAO.Avanzamento.NESSUNO).get(10, TimeUnit.SECONDS));
+        assertFalse(new FileDelta(PERCORSO).esiste());
+
+        gestore.pulisciLibreria();
+        gestore.caricaLibriDaCsv(PERCORSO);
+        assertEquals(1, gestore.getNumeroLibri());
+    }
+
+    @Test
+    public void testRigaIncompletaIgnorata() throws Exception {
+        gestore.eliminaLibro(libro1);
+        salvataggio.scriviModifiche().get(10, TimeUnit.SECONDS);
+
+        // Una scrittura interrotta lascia un'ultima riga incompleta
+        Files.write(new File(PERCORSO + FileDelta.ESTENSIONE).toPath(), "+Titolo,Aut".getBytes(),
+                StandardOpenOption.APPEND);
+
+        gestore.pulisciLibreria();
+        gestore.caricaLibriDaCsv(PERCORSO);
+        assertEquals(1, gestore.getNumeroLibri());
+        assertEquals("978-0-452-28423-4", gestore.getLibri().get(0).getIsbn());
+    }
+}
@@ -6,14 +6,34 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 
 import dao.LibroDAO;
+import dao.ArchivioLibroDAO;
+import dao.ArchivioLSMDAO;
+import dao.CatalogoIndicizzato;
 import dao.JsonLibroDAO;
 import dao.CsvLibroDAO;
+import dao.ConfrontoCataloghi;
+import dao.FileModifiche;
+import dao.OrdinamentoEsterno;
+import dao.RapportoImportazione;
 import model.Libro;
 import model.StatoLettura;
+import strategy.CampoOrdinamento;
+import strategy.CriterioOrdinamento;
+import strategy.OrdinaTitoloAZStrategy;
+import strategy.OrdinatoreLibroStrategy;
+import test.archivio.LibriDiProva;
+import com.sun.management.UnixOperatingSystemMXBean;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -216,4 +236,502 @@ public class LibroDAOTest {
         assertTrue(exception.getMessage().contains(expectedMessage));
     }
 
+    @Test
+    public void testSalvataggioInterrottoNonModificaIlFile() throws IOException {
+        csvDAO.salvaLibri(libriTest, csvFilePath);
+        long lunghezzaPrecedente = new File(csvFilePath).length();
+
+        // Un libro nullo interrompe la scrittura a metà
+        List<Libro> libriNonValidi = new ArrayList<>(libriTest);
+        libriNonValidi.add(1, null);
+        assertThrows(NullPointerException.class, () -> csvDAO.salvaLibri(libriNonValidi, csvFilePath));
+
+        // Il file precedente è intatto e il file temporaneo è stato eliminato
+        assertEquals(lunghezzaPrecedente, new File(csvFilePath).length());
+        assertEquals(libriTest.size(), csvDAO.caricaLibri(csvFilePath).size());
+        String[] file = new File("temp_test").list();
+        assertNotNull(file);
+        assertEquals(1, file.length);
+    }
+
+    @Test
+    public void testAvanzamentoSalvataggio() throws IOException {
+        List<Libro> molti = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            molti.add(new Libro("Titolo " + i, "Autore", "900-" + i, "Genere", 3, StatoLettura.LETTO));
+        }
+
+        List<Integer> avanzamenti = new ArrayList<>();
+        jsonDAO.salvaLibri(molti, jsonFilePath, (scritti, totale) -> {
+            assertEquals(2500, totale);
+            avanzamenti.add(scritti);
+        });
+
+        // Una notifica ogni mille libri e una al termine
+        assertEquals(List.of(1000, 2000, 2500), avanzamenti);
+        assertEquals(2500, jsonDAO.caricaLibri(jsonFilePath).size());
+    }
+
+    @Test
+    public void testSalvaCaricaCompresso() throws IOException {
+        String csvCompresso = csvFilePath + ".gz";
+        String jsonCompresso = jsonFilePath + ".gz";
+        try {
+            List<Libro> molti = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                molti.add(new Libro("Titolo " + i, "Autore " + (i % 50), "900-" + i, "Genere", i % 6, StatoLettura.LETTO));
+            }
+
+            csvDAO.salvaLibri(molti, csvFilePath);
+            csvDAO.salvaLibri(molti, csvCompresso);
+            jsonDAO.salvaLibri(molti, jsonCompresso);
+
+            // Il file compresso è in formato gzip e molto più piccolo di quello normale
+            byte[] intestazione = new byte[2];
+            try (FileInputStream in = new FileInputStream(csvCompresso)) {
+                assertEquals(2, in.read(intestazione));
+            }
+            assertEquals((byte) 0x1f, intestazione[0]);
+            assertEquals((byte) 0x8b, intestazione[1]);
+            assertTrue(new File(csvCompresso).length() * 3 < new File(csvFilePath).length());
+
+            List<Libro> daCsv = csvDAO.caricaLibri(csvCompresso);
+            List<Libro> daJson = jsonDAO.caricaLibri(jsonCompresso);
+            assertEquals(molti.size(), daCsv.size());
+            assertEquals(molti.size(), daJson.size());
+            assertEquals("Titolo 4999", daCsv.get(4999).getTitolo());
+            assertEquals("Autore 49", daJson.get(4999).getAutore());
+        } finally {
+            new File(csvCompresso).delete();
+            new File(jsonCompresso).delete();
+        }
+    }
+
+    @Test
+    public void testSalvataggioCompressoChiudeIlFile() throws IOException {
+        if (!(ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean)) {
+            return;
+        }
+        UnixOperatingSystemMXBean sistema = (UnixOperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        String jsonCompresso = jsonFilePath + ".gz";
+        try {
+            // Il primo salvataggio carica le classi e apre i file del runtime
+            jsonDAO.salvaLibri(libriTest, jsonCompresso);
+            long aperti = sistema.getOpenFileDescriptorCount();
+            for (int i = 0; i < 50; i++) {
+                jsonDAO.salvaLibri(libriTest, jsonCompresso);
+            }
+            assertTrue(sistema.getOpenFileDescriptorCount() < aperti + 5);
+            assertEquals(libriTest, jsonDAO.caricaLibri(jsonCompresso));
+        } finally {
+            new File(jsonCompresso).delete();
+        }
+    }
+
+    @Test
+    public void testLivelloCompressione() {
+        CsvLibroDAO dao = new CsvLibroDAO();
+        dao.setLivelloCompressione(1);
+        dao.setLivelloCompressione(-1);
+        assertThrows(IllegalArgumentException.class, () -> dao.setLivelloCompressione(10));
+
+        // Le estensioni multiple diverse da .gz restano non valide
+        IOException eccezione = assertThrows(IOException.class, () -> dao.caricaLibri("temp_test/libri.txt.csv"));
+        assertTrue(eccezione.getMessage().contains("Formato file non valido"));
+    }
+
+    @Test
+    public void testSalvaCaricaInStreaming() throws IOException {
+        // Salvataggio da iteratore: il totale non è noto
+        List<Integer> totali = new ArrayList<>();
+        jsonDAO.salvaLibri(libriTest.iterator(), jsonFilePath, (scritti, totale) -> totali.add(totale));
+        csvDAO.salvaLibri(libriTest.iterator(), csvFilePath, LibroDAO.Avanzamento.NESSUNO);
+        assertEquals(List.of(-1), totali);
+
+        // Caricamento con destinazione: i libri arrivano uno alla volta, nell'ordine del file
+        for (String percorso : new String[]{jsonFilePath, csvFilePath}) {
+            LibroDAO dao = percorso.endsWith(".json") ? jsonDAO : csvDAO;
+            List<String> isbn = new ArrayList<>();
+            dao.caricaLibri(percorso, libro -> isbn.add(libro.getIsbn()));
+            assertEquals(List.of("978-88-452-6445-5", "978-0-452-28423-4", "978-88-04-59401-6"), isbn);
+        }
+    }
+
+    @Test
+    public void testJsonParentesiNelleStringhe() throws IOException {
+        List<Libro> libri = new ArrayList<>();
+        libri.add(new Libro("Il libro {speciale}", "Autore", "111", "Genere", 3, StatoLettura.LETTO));
+        libri.add(new Libro("Altro [libro]", "Autore", "222", "Genere", 4, StatoLettura.LETTO));
+        jsonDAO.salvaLibri(libri, jsonFilePath);
+
+        List<Libro> caricati = jsonDAO.caricaLibri(jsonFilePath);
+        assertEquals(2, caricati.size());
+        assertEquals("Il libro {speciale}", caricati.get(0).getTitolo());
+        assertEquals("Altro [libro]", caricati.get(1).getTitolo());
+    }
+
+    @Test
+    public void testJsonTroncato() throws IOException {
+        jsonDAO.salvaLibri(libriTest, jsonFilePath);
+        String contenuto = new String(Files.readAllBytes(new File(jsonFilePath).toPath()));
+        Files.write(new File(jsonFilePath).toPath(),
+                contenuto.substring(0, contenuto.length() / 2).getBytes());
+
+        assertThrows(IOException.class, () -> jsonDAO.caricaLibri(jsonFilePath));
+    }
+
+    @Test
+    public void testRapportoImportazioneCsv() throws IOException {
+        String intestazione = "Titolo,Autore,ISBN,Genere,Valutazione,Stato Lettura\n";
+        String valido = "Libro,Autore,111,Genere,3,LETTO\n";
+        String campiMancanti = "Solo,Tre,Campi\n";
+        String valutazione = "Libro2,Autore,222,Genere,9,LETTO\n";
+        String duplicato = "Libro3,Autore,111,Genere,2,LETTO\n";
+        Files.write(new File(csvFilePath).toPath(),
+                (intestazione + valido + campiMancanti + valutazione + duplicato).getBytes());
+
+        // Con SCARTA_E_CONTINUA i libri validi vengono importati e gli altri registrati
+        List<Libro> importati = new ArrayList<>();
+        RapportoImportazione rapporto = csvDAO.importaLibri(csvFilePath, importati::add,
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA);
+        assertEquals(1, importati.size());
+        assertEquals(1, rapporto.getImportati());
+        assertEquals(3, rapporto.getScartati());
+        assertFalse(rapporto.isInterrotto());
+        assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.FORMATO_NON_VALIDO));
+        assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA));
+        assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.ISBN_DUPLICATO));
+
+        // Numero di riga e posizione in byte dell'inizio della riga
+        List<RapportoImportazione.Errore> errori = rapporto.getErrori();
+        assertEquals(3, errori.get(0).getNumero());
+        assertEquals((intestazione + valido).length(), errori.get(0).getPosizione());
+        assertEquals(5, errori.get(2).getNumero());
+        assertEquals((intestazione + valido + campiMancanti + valutazione).length(), errori.get(2).getPosizione());
+        assertEquals("Libro3", errori.get(2).getTitolo());
+
+        // Con INTERROMPI_AL_PRIMO_ERRORE la lettura si ferma alla riga 3
+        rapporto = csvDAO.importaLibri(csvFilePath, libro -> { },
+                RapportoImportazione.Modalita.INTERROMPI_AL_PRIMO_ERRORE);
+        assertTrue(rapporto.isInterrotto());
+        assertEquals(1, rapporto.getImportati());
+        assertEquals(1, rapporto.getScartati());
+
+        // Il caricamento usa il rapporto per il messaggio di errore
+        IOException eccezione = assertThrows(IOException.class, () -> csvDAO.caricaLibri(csvFilePath));
+        assertTrue(eccezione.getMessage().contains("Riga 5 (Libro3): libro già presente o isbn duplicato"));
+        assertTrue(eccezione.getMessage().contains("Libri validi: 1, scartati: 3"));
+    }
+
+    @Test
+    public void testRapportoImportazioneJson() throws IOException {
+        String primo = "[{\"titolo\":\"Libro\",\"autore\":\"Autore\",\"isbn\":\"111\",\"genere\":\"G\","
+                + "\"valutazione\":3,\"statoLettura\":\"LETTO\"},\n";
+        String secondo = "{\"titolo\":\"Altro\",\"autore\":\"Autore\",\"isbn\":\"222\",\"genere\":\"G\","
+                + "\"valutazione\":3,\"statoLettura\":\"SCONOSCIUTO\"}]";
+        Files.write(new File(jsonFilePath).toPath(), (primo + secondo).getBytes());
+
+        RapportoImportazione rapporto = jsonDAO.importaLibri(jsonFilePath, libro -> { },
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA);
+        assertEquals(1, rapporto.getImportati());
+        assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.STATO_LETTURA_NON_VALIDO));
+        RapportoImportazione.Errore errore = rapporto.getErrori().get(0);
+        assertEquals(2, errore.getNumero());
+        assertEquals(primo.length(), errore.getPosizione());
+        assertEquals("SCONOSCIUTO", errore.getDettaglio());
+    }
+
+    @Test
+    public void testRapportoImportazioneLimitato() throws IOException {
+        // Un file con molti libri non validi descrive solo i primi errori
+        StringBuilder contenuto = new StringBuilder("Titolo,Autore,ISBN,Genere,Valutazione,Stato Lettura\n");
+        int totale = RapportoImportazione.MASSIMO_DETTAGLI + 50;
+        for (int i = 0; i < totale; i++) {
+            contenuto.append("Libro,Autore,").append(i).append(",Genere,7,LETTO\n");
+        }
+        Files.write(new File(csvFilePath).toPath(), contenuto.toString().getBytes());
+
+        RapportoImportazione rapporto = csvDAO.importaLibri(csvFilePath, libro -> { },
+                RapportoImportazione.Modalita.SCARTA_E_CONTINUA);
+        assertEquals(totale, rapporto.getScartati());
+        assertEquals(totale, rapporto.getConteggio(RapportoImportazione.Codice.VALUTAZIONE_NON_VALIDA));
+        assertEquals(RapportoImportazione.MASSIMO_DETTAGLI, rapporto.getErrori().size());
+        assertTrue(rapporto.getMessaggio().contains("... e altri 50 errori"));
+    }
+
+    @Test
+    public void testOrdinamentoEsterno() throws IOException {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            libri.add(new Libro("Libro " + i, "Autore", "900-" + ((i * 7) % 25), "Genere", 3, StatoLettura.LETTO));
+        }
+        csvDAO.salvaLibri(libri, csvFilePath);
+
+        // Con blocchi da 4 libri l'ordinamento fonde 7 sequenze scritte su disco
+        List<String> ordinati = new ArrayList<>();
+        try (OrdinamentoEsterno.Flusso flusso = new OrdinamentoEsterno(Comparator.comparing(Libro::getIsbn), 4)
+                .ordina(csvDAO, csvFilePath)) {
+            while (flusso.hasNext()) {
+                ordinati.add(flusso.next().getIsbn());
+            }
+        }
+        List<String> attesi = new ArrayList<>();
+        for (Libro libro : libri) {
+            attesi.add(libro.getIsbn());
+        }
+        attesi.sort(null);
+        assertEquals(attesi, ordinati);
+    }
+
+    @Test
+    public void testOrdinamentoEsternoSenzaControlloIsbn() throws IOException {
+        List<Libro> libri = new ArrayList<>(libriTest);
+        libri.add(new Libro("Copia", "Autore", libriTest.get(0).getIsbn(), "Genere", 1, StatoLettura.LETTO));
+        csvDAO.salvaLibri(libri, csvFilePath);
+        assertThrows(IOException.class, () -> csvDAO.caricaLibri(csvFilePath));
+
+        // L'ordinamento non tiene in memoria gli ISBN letti: i ripetuti restano consecutivi
+        List<Libro> ordinati = new ArrayList<>();
+        try (OrdinamentoEsterno.Flusso flusso = new OrdinamentoEsterno(Comparator.comparing(Libro::getIsbn), 2)
+                .ordina(csvDAO, csvFilePath)) {
+            flusso.forEachRemaining(ordinati::add);
+        }
+        assertEquals(4, ordinati.size());
+        assertEquals(ordinati.get(2).getIsbn(), ordinati.get(3).getIsbn());
+        assertEquals("Copia", ordinati.get(3).getTitolo());
+    }
+
+    @Test
+    public void testConfrontoCataloghi() throws IOException {
+        String percorsoModifiche = "temp_test/modifiche.json";
+        try {
+            // Il catalogo nuovo rimuove un libro, ne modifica uno e ne aggiunge uno
+            List<Libro> nuovi = new ArrayList<>();
+            nuovi.add(libriTest.get(0));
+            Libro modificato = new Libro("1984", "George Orwell", "978-0-452-28423-4", "Romanzo", 5, StatoLettura.LETTO);
+            nuovi.add(modificato);
+            nuovi.add(new Libro("Il Gattopardo", "Giuseppe Tomasi di Lampedusa", "978-88-07-88132-7", "Storico", 4, StatoLettura.DA_LEGGERE));
+            csvDAO.salvaLibri(libriTest, csvFilePath);
+            jsonDAO.salvaLibri(nuovi, jsonFilePath);
+
+            ConfrontoCataloghi.Esito esito = new ConfrontoCataloghi(2)
+                    .confronta(csvDAO, csvFilePath, jsonDAO, jsonFilePath, percorsoModifiche);
+            assertEquals("Aggiunti: 1, rimossi: 1, modificati: 1, invariati: 1", esito.getRiepilogo());
+            assertEquals("genere: Distopico -> Romanzo; valutazione: 4 -> 5; statoLettura: IN_LETTURA -> LETTO",
+                    ConfrontoCataloghi.differenze(libriTest.get(1), modificato));
+
+            // Il file delle modifiche è in ordine di ISBN, con i dati precedenti per i rimossi
+            List<String> letti = new ArrayList<>();
+            FileModifiche.leggi(percorsoModifiche, (operazione, libro) ->
+                    letti.add(operazione + " " + libro.getIsbn() + " " + libro.getValutazione()));
+            assertEquals(List.of("MODIFICATO 978-0-452-28423-4 5", "RIMOSSO 978-88-04-59401-6 0",
+                    "AGGIUNTO 978-88-07-88132-7 4"), letti);
+
+            // Un ISBN ripetuto in uno dei cataloghi viene trovato durante la fusione
+            nuovi.add(new Libro("Copia", "Autore", "978-88-07-88132-7", "Genere", 1, StatoLettura.LETTO));
+            jsonDAO.salvaLibri(nuovi, jsonFilePath);
+            IOException eccezione = assertThrows(IOException.class, () -> new ConfrontoCataloghi(2)
+                    .confronta(csvDAO, csvFilePath, jsonDAO, jsonFilePath, percorsoModifiche));
+            assertTrue(eccezione.getMessage().contains("più libri con ISBN 978-88-07-88132-7"));
+        } finally {
+            new File(percorsoModifiche).delete();
+        }
+    }
+
+    @Test
+    public void testOrdinamentoEsternoParalleloStabile() throws IOException {
+        // Molti libri con la stessa valutazione: a parità restano nell'ordine del file
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            libri.add(new Libro("Libro " + i, "Autore", "900-" + i, "Genere", (i * 13) % 5 + 1, StatoLettura.LETTO));
+        }
+        csvDAO.salvaLibri(libri, csvFilePath);
+        Comparator<Libro> perValutazione = Comparator.comparingInt(Libro::getValutazione);
+
+        // Blocchi da 7 libri su 3 thread, fusi al massimo 3 alla volta: servono più passaggi
+        List<Libro> ordinati = new ArrayList<>();
+        try (OrdinamentoEsterno.Flusso flusso = new OrdinamentoEsterno(perValutazione, 7, 3, 3)
+                .ordina(csvDAO, csvFilePath)) {
+            flusso.forEachRemaining(ordinati::add);
+        }
+        List<Libro> attesi = new ArrayList<>(libri);
+        attesi.sort(perValutazione);
+        assertEquals(attesi, ordinati);
+    }
+
+    @Test
+    public void testOrdinamentoEsternoSuFile() throws IOException {
+        jsonDAO.salvaLibri(libriTest, jsonFilePath);
+
+        // Ordina il file JSON per titolo con una strategia e lo salva in CSV
+        OrdinatoreLibroStrategy strategia = new OrdinaTitoloAZStrategy();
+        new OrdinamentoEsterno(strategia).ordina(jsonDAO, jsonFilePath, csvDAO, csvFilePath,
+                LibroDAO.Avanzamento.NESSUNO);
+
+        List<Libro> attesi = new ArrayList<>(libriTest);
+        strategia.ordina(attesi);
+        List<Libro> caricati = new ArrayList<>();
+        csvDAO.caricaLibri(csvFilePath, caricati::add);
+        assertEquals(attesi, caricati);
+        assertEquals("1984", caricati.get(0).getTitolo());
+    }
+
+    @Test
+    public void testArchivioSalvaCaricaLibri() throws IOException {
+        String percorsoArchivio = "temp_test/libri_test.db";
+        try {
+            LibroDAO archivioDAO = new ArchivioLibroDAO();
+            archivioDAO.salvaLibri(libriTest, percorsoArchivio);
+
+            // I libri vengono letti in ordine di ISBN
+            List<Libro> caricati = archivioDAO.caricaLibri(percorsoArchivio);
+            List<Libro> attesi = new ArrayList<>(libriTest);
+            attesi.sort(Comparator.comparing(Libro::getIsbn));
+            assertEquals(attesi, caricati);
+            assertEquals(libriTest.get(1).getStatoLettura(), caricati.get(0).getStatoLettura());
+
+            // Il catalogo dell'archivio crea solo i libri letti, cercati o ordinati
+            try (CatalogoIndicizzato catalogo = archivioDAO.indicizzaLibri(percorsoArchivio)) {
+                assertEquals(attesi.size(), catalogo.getNumeroRighe());
+                assertEquals(0, catalogo.getConversioni());
+                assertEquals(attesi.get(1), catalogo.getLibro(1));
+                assertNull(catalogo.getErrore(1));
+                assertEquals(1, catalogo.getConversioni());
+                assertEquals(2, catalogo.cercaPerIsbn(attesi.get(2).getIsbn()));
+                assertEquals(-1, catalogo.cercaPerIsbn("978-0"));
+                int[] ordine = catalogo.ordina(Collections.singletonList(
+                        new CriterioOrdinamento(CampoOrdinamento.TITOLO, true)));
+                assertEquals(attesi.size(), ordine.length);
+                assertEquals("1984", catalogo.getLibro(ordine[0]).getTitolo());
+            }
+
+            // Un nuovo salvataggio sostituisce l'archivio
+            archivioDAO.salvaLibri(libriTest.subList(0, 1), percorsoArchivio);
+            assertEquals(1, archivioDAO.caricaLibri(percorsoArchivio).size());
+            assertThrows(IOException.class, () -> archivioDAO.caricaLibri("temp_test/inesistente.db"));
+        } finally {
+            new File(percorsoArchivio).delete();
+        }
+    }
+
+    @Test
+    public void testArchivioLSMSalvaCaricaImportaLibri() throws IOException {
+        String percorsoArchivio = "temp_test/libri_test.lsm";
+        try {
+            LibroDAO lsmDAO = new ArchivioLSMDAO();
+            lsmDAO.salvaLibri(libriTest, percorsoArchivio);
+            assertTrue(new File(percorsoArchivio).isDirectory());
+
+            // I libri vengono letti in ordine di ISBN
+            List<Libro> attesi = new ArrayList<>(libriTest);
+            attesi.sort(Comparator.comparing(Libro::getIsbn));
+            assertEquals(attesi, lsmDAO.caricaLibri(percorsoArchivio));
+            String[] primaDiSfogliare = new File(percorsoArchivio).list();
+            Arrays.sort(primaDiSfogliare);
+            try (CatalogoIndicizzato catalogo = lsmDAO.indicizzaLibri(percorsoArchivio)) {
+                assertEquals(attesi.size(), catalogo.getNumeroRighe());
+                assertEquals(attesi.get(2), catalogo.getLibro(2));
+            }
+            // Sfogliare l'archivio non crea né elimina registri nella cartella
+            String[] dopoAverSfogliato = new File(percorsoArchivio).list();
+            Arrays.sort(dopoAverSfogliato);
+            assertEquals(Arrays.asList(primaDiSfogliare), Arrays.asList(dopoAverSfogliato));
+
+            // L'importazione a lotti scarta i libri rifiutati dalla destinazione
+            List<Libro> importati = new ArrayList<>();
+            RapportoImportazione rapporto = lsmDAO.importaLibri(percorsoArchivio, lotto -> {
+                importati.addAll(lotto.subList(1, lotto.size()));
+                return lotto.subList(0, 1);
+            }, 10, RapportoImportazione.Modalita.SCARTA_E_CONTINUA, null);
+            assertEquals(attesi.subList(1, attesi.size()), importati);
+            assertEquals(attesi.size() - 1, rapporto.getImportati());
+            assertEquals(1, rapporto.getConteggio(RapportoImportazione.Codice.ISBN_DUPLICATO));
+
+            // Un nuovo salvataggio sostituisce l'archivio senza lasciare cartelle temporanee
+            lsmDAO.salvaLibri(libriTest.subList(0, 1), percorsoArchivio);
+            assertEquals(libriTest.subList(0, 1), lsmDAO.caricaLibri(percorsoArchivio));
+            assertEquals(1, new File("temp_test").list((cartella, nome) -> nome.startsWith("libri_test.lsm")).length);
+            assertThrows(IOException.class, () -> lsmDAO.caricaLibri("temp_test/inesistente.lsm"));
+            assertFalse(new File("temp_test/inesistente.lsm").exists());
+        } finally {
+            LibriDiProva.elimina(new File(percorsoArchivio));
+        }
+    }
+
+    @Test
+    public void testArchivioLSMImportaDaCartellaNonArchivio() throws IOException {
+        File cartella = new File("temp_test/documenti");
+        try {
+            cartella.mkdirs();
+            Files.write(new File(cartella, "bozza.tmp").toPath(), "bozza".getBytes());
+            Files.write(new File(cartella, "note.txt").toPath(), "note".getBytes());
+
+            // Una cartella qualsiasi non viene importata né sfogliata come archivio vuoto, né modificata
+            List<Libro> importati = new ArrayList<>();
+            assertThrows(IOException.class, () -> new ArchivioLSMDAO().importaLibri(cartella.getPath(),
+                    importati::add, RapportoImportazione.Modalita.SCARTA_E_CONTINUA));
+            assertTrue(importati.isEmpty());
+            assertThrows(IOException.class, () -> new ArchivioLSMDAO().indicizzaLibri(cartella.getPath()));
+            String[] nomi = cartella.list();
+            Arrays.sort(nomi);
+            assertEquals(Arrays.asList("bozza.tmp", "note.txt"), Arrays.asList(nomi));
+        } finally {
+            LibriDiProva.elimina(cartella);
+        }
+    }
+
+    @Test
+    public void testCatalogoIndicizzato() throws IOException {
+        List<Libro> libri = new ArrayList<>(libriTest);
+        libri.add(new Libro("Doppione", "Autore", "978-0-452-28423-4", "Distopico", 2, StatoLettura.LETTO));
+        jsonDAO.salvaLibri(libri, jsonFilePath);
+        csvDAO.salvaLibri(libri, csvFilePath);
+        // Un libro non valido nel CSV: valutazione fuori intervallo
+        Files.write(new File(csvFilePath).toPath(), "Rotto,Autore,978-1,Genere,9,LETTO\n".getBytes(),
+                StandardOpenOption.APPEND);
+
+        for (LibroDAO dao : List.of(jsonDAO, csvDAO)) {
+            String percorso = dao == jsonDAO ? jsonFilePath : csvFilePath;
+            try (CatalogoIndicizzato catalogo = dao.indicizzaLibri(percorso)) {
+                // L'apertura indicizza il file senza convertire i libri
+                assertEquals(dao == jsonDAO ? 4 : 5, catalogo.getNumeroRighe());
+                assertEquals(0, catalogo.getConversioni());
+
+                assertEquals(libriTest.get(2), catalogo.getLibro(2));
+                catalogo.getLibro(2);
+                assertEquals(1, catalogo.getConversioni());
+
+                // Il secondo libro con lo stesso ISBN non è valido
+                assertNull(catalogo.getLibro(3));
+                assertTrue(catalogo.getErrore(3).contains("isbn duplicato"));
+                assertNull(catalogo.getErrore(0));
+                if (dao == csvDAO) {
+                    assertNull(catalogo.getLibro(4));
+                    assertNotNull(catalogo.getErrore(4));
+                }
+
+                assertEquals(1, catalogo.cercaPerIsbn("978-0-452-28423-4"));
+                assertEquals(-1, catalogo.cercaPerIsbn("978-0"));
+                assertEquals("[0, 2]", Arrays.toString(catalogo.cerca(CampoOrdinamento.TITOLO, "LA")));
+
+                // Ordine per titolo, con i libri non validi in fondo
+                int[] ordine = catalogo.ordina(Collections.singletonList(
+                        new CriterioOrdinamento(CampoOrdinamento.TITOLO, true)));
+                assertEquals(dao == jsonDAO ? "[1, 0, 2, 3]" : "[1, 0, 2, 3, 4]", Arrays.toString(ordine));
+                ordine = catalogo.ordina(Collections.singletonList(
+                        new CriterioOrdinamento(CampoOrdinamento.VALUTAZIONE, false)));
+                assertEquals(0, ordine[0]);
+            }
+        }
+
+        // I file compressi non si possono leggere per posizione
+        String percorsoCompresso = "temp_test/libri_test.csv.gz";
+        try {
+            csvDAO.salvaLibri(libriTest, percorsoCompresso);
+            IOException eccezione = assertThrows(IOException.class, () -> csvDAO.indicizzaLibri(percorsoCompresso));
+            assertTrue(eccezione.getMessage().contains("compressi"));
+        } finally {
+            new File(percorsoCompresso).delete();
+        }
+    }
 }
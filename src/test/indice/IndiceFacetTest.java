@@ -0,0 +1,112 @@
+package test.indice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import indice.IndiceFacet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test unitari per l'indice dei valori distinti usato dall'autocompletamento.
+ * Verifica l'ordinamento, il conteggio degli utilizzi e la ricerca per prefisso.
+ */
+public class IndiceFacetTest {
+
+    private IndiceFacet indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceFacet();
+        indice.aggiungi("Umberto Eco");
+        indice.aggiungi("J.R.R. Tolkien");
+        indice.aggiungi("italo Calvino");
+        indice.aggiungi("Italo Svevo");
+        indice.aggiungi("J.R.R. Tolkien");
+    }
+
+    @Test
+    public void testValoriOrdinatiSenzaDuplicati() {
+        assertEquals(Arrays.asList("italo Calvino", "Italo Svevo", "J.R.R. Tolkien", "Umberto Eco"), indice.getValori());
+        assertEquals(4, indice.getDimensione());
+        assertEquals(2, indice.getConteggio("J.R.R. Tolkien"));
+        assertEquals(0, indice.getConteggio("Dante Alighieri"));
+    }
+
+    @Test
+    public void testAggiungiRimuoviRestituisconoPosizione() {
+        assertEquals(-1, indice.aggiungi("Umberto Eco"));
+        assertEquals(0, indice.aggiungi("Dante Alighieri"));
+
+        // Il valore resta finché è usato da almeno un libro
+        assertEquals(-1, indice.rimuovi("J.R.R. Tolkien"));
+        assertEquals(3, indice.rimuovi("J.R.R. Tolkien"));
+        assertEquals(-1, indice.rimuovi("J.R.R. Tolkien"));
+        assertEquals(Arrays.asList("Dante Alighieri", "italo Calvino", "Italo Svevo", "Umberto Eco"), indice.getValori());
+    }
+
+    @Test
+    public void testSuggerisciPerPrefisso() {
+        assertEquals(Arrays.asList("italo Calvino", "Italo Svevo"), indice.suggerisci("ITA", 10));
+        assertEquals(Arrays.asList("italo Calvino"), indice.suggerisci("ita", 1));
+        assertEquals(Arrays.asList("J.R.R. Tolkien"), indice.suggerisci("j.r", 10));
+        assertTrue(indice.suggerisci("Z", 10).isEmpty());
+        assertEquals(4, indice.suggerisci("", 10).size());
+        assertEquals(4, indice.suggerisci(null, 10).size());
+
+        // L'intervallo del prefisso è contiguo
+        assertEquals(0, indice.inizioIntervallo("italo"));
+        assertEquals(2, indice.fineIntervallo("italo"));
+        assertEquals(2, indice.inizioIntervallo("j"));
+        assertEquals(3, indice.fineIntervallo("j"));
+    }
+
+    @Test
+    public void testPulisci() {
+        indice.pulisci();
+        List<String> valori = indice.getValori();
+        assertTrue(valori.isEmpty());
+        assertEquals(0, indice.getConteggio("Umberto Eco"));
+    }
+
+    @Test
+    public void testAscoltatoreRiceveLePosizioni() {
+        List<String> eventi = new ArrayList<>();
+        indice.aggiungiAscoltatore(new IndiceFacet.Ascoltatore() {
+            @Override
+            public void valoreAggiunto(int posizione, String valore) {
+                eventi.add("+" + posizione + " " + valore);
+            }
+
+            @Override
+            public void valoreRimosso(int posizione, String valore) {
+                eventi.add("-" + posizione + " " + valore);
+            }
+
+            @Override
+            public void valoriRicaricati() {
+                eventi.add("*");
+            }
+        });
+
+        // Nessuna notifica se cambia solo il numero di utilizzi
+        indice.aggiungi("Umberto Eco");
+        indice.rimuovi("J.R.R. Tolkien");
+        assertTrue(eventi.isEmpty());
+
+        indice.aggiungi("Dante Alighieri");
+        indice.rimuovi("Italo Svevo");
+        indice.ricarica(Arrays.asList("Eco", "Calvino", "Eco"));
+        assertEquals(Arrays.asList("+0 Dante Alighieri", "-2 Italo Svevo", "*"), eventi);
+    }
+
+    @Test
+    public void testRicarica() {
+        indice.ricarica(Arrays.asList("Eco", "calvino", "Eco", "Svevo"));
+        assertEquals(Arrays.asList("calvino", "Eco", "Svevo"), indice.getValori());
+        assertEquals(2, indice.getConteggio("Eco"));
+        assertEquals(0, indice.getConteggio("Umberto Eco"));
+    }
+}
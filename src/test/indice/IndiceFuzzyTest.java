@@ -0,0 +1,154 @@
+package test.indice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import indice.BKTree;
+import indice.IndiceFuzzy;
+import model.Libro;
+import model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test unitari per la ricerca approssimata (IndiceFuzzy e BKTree).
+ * Verifica la tolleranza agli errori di battitura, l'ordinamento per rilevanza
+ * e l'aggiornamento dell'indice dopo le modifiche.
+ */
+public class IndiceFuzzyTest {
+
+    private IndiceFuzzy indice;
+    private Libro libro1, libro2, libro3;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceFuzzy();
+
+        libro1 = new Libro("Il Signore degli Anelli", "J.R.R. Tolkien", "978-88-452-7000-1", "Fantasy", 5, StatoLettura.LETTO);
+        libro2 = new Libro("Lo Hobbit", "J.R.R. Tolkien", "978-88-452-7000-2", "Fantasy", 4, StatoLettura.LETTO);
+        libro3 = new Libro("Il Nome della Rosa", "Umberto Eco", "978-88-452-6445-5", "Storico", 5, StatoLettura.LETTO);
+
+        indice.aggiungi(libro1);
+        indice.aggiungi(libro2);
+        indice.aggiungi(libro3);
+    }
+
+    @Test
+    public void testDistanzaLevenshtein() {
+        assertEquals(0, BKTree.distanza("tolkien", "tolkien", Integer.MAX_VALUE));
+        assertEquals(2, BKTree.distanza("tolkein", "tolkien", Integer.MAX_VALUE));
+        assertEquals(3, BKTree.distanza("kitten", "sitting", Integer.MAX_VALUE));
+
+        // Oltre il limite il calcolo si interrompe restituendo un valore maggiore del limite
+        assertTrue(BKTree.distanza("abcdef", "uvwxyz", 2) > 2);
+    }
+
+    @Test
+    public void testBKTreeCerca() {
+        BKTree albero = new BKTree();
+        assertTrue(albero.aggiungi("rosa"));
+        assertTrue(albero.aggiungi("rose"));
+        assertTrue(albero.aggiungi("eco"));
+        assertFalse(albero.aggiungi("rosa"));
+        assertEquals(3, albero.getDimensione());
+
+        List<BKTree.Corrispondenza> trovate = albero.cerca("roza", 1);
+        assertEquals(1, trovate.size());
+        assertEquals("rosa", trovate.get(0).getParola());
+        assertEquals(1, trovate.get(0).getDistanza());
+
+        assertEquals(2, albero.cerca("roza", 2).size());
+    }
+
+    @Test
+    public void testBKTreeCercaComeConfrontoConOgniParola() {
+        // La distanza limitata dai figli di ogni nodo non deve perdere corrispondenze
+        Random random = new Random(7);
+        BKTree albero = new BKTree();
+        List<String> parole = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String parola = parolaCasuale(random);
+            if (albero.aggiungi(parola)) {
+                parole.add(parola);
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            String query = parolaCasuale(random);
+            for (int distanzaMassima = 0; distanzaMassima <= 3; distanzaMassima++) {
+                Map<String, Integer> attese = new HashMap<>();
+                for (String parola : parole) {
+                    int distanza = BKTree.distanza(parola, query, Integer.MAX_VALUE);
+                    if (distanza <= distanzaMassima) {
+                        attese.put(parola, distanza);
+                    }
+                }
+
+                Map<String, Integer> trovate = new HashMap<>();
+                for (BKTree.Corrispondenza corrispondenza : albero.cerca(query, distanzaMassima)) {
+                    trovate.put(corrispondenza.getParola(), corrispondenza.getDistanza());
+                }
+                assertEquals(attese, trovate);
+            }
+        }
+    }
+
+    private static String parolaCasuale(Random random) {
+        StringBuilder parola = new StringBuilder();
+        int lunghezza = 2 + random.nextInt(7);
+        for (int i = 0; i < lunghezza; i++) {
+            parola.append((char) ('a' + random.nextInt(5)));
+        }
+        return parola.toString();
+    }
+
+    @Test
+    public void testCercaConErroreDiBattitura() {
+        // "Tolkein" non è una sottostringa di "Tolkien", ma è entro distanza 2
+        List<Libro> risultato = indice.cerca("Tolkein");
+        assertEquals(2, risultato.size());
+        assertTrue(risultato.contains(libro1));
+        assertTrue(risultato.contains(libro2));
+
+        // Più parole: tutte devono corrispondere
+        risultato = indice.cerca("signore anneli");
+        assertEquals(1, risultato.size());
+        assertEquals(libro1, risultato.get(0));
+
+        // Parola troppo diversa
+        assertTrue(indice.cerca("Pirandello").isEmpty());
+    }
+
+    @Test
+    public void testRisultatiOrdinatiPerRilevanza() {
+        Libro libro4 = new Libro("La Rosa Bianca", "Autore", "978-88-452-7000-3", "Romanzo", 3, StatoLettura.DA_LEGGERE);
+        Libro libro5 = new Libro("Rose di maggio", "Autore", "978-88-452-7000-4", "Romanzo", 3, StatoLettura.DA_LEGGERE);
+        indice.aggiungi(libro4);
+        indice.aggiungi(libro5);
+
+        // Le corrispondenze esatte precedono quelle approssimate
+        List<Libro> risultato = indice.cerca("rosa");
+        assertEquals(3, risultato.size());
+        assertEquals(libro5, risultato.get(2));
+    }
+
+    @Test
+    public void testAggiornamentoIndice() {
+        indice.rimuovi(libro2);
+        assertEquals(1, indice.cerca("Tolkein").size());
+
+        // Un libro modificato viene trovato solo con i nuovi dati
+        Libro libro3Modificato = new Libro("Baudolino", "Umberto Eco", libro3.getIsbn(), "Storico", 5, StatoLettura.LETTO);
+        indice.rimuovi(libro3);
+        indice.aggiungi(libro3Modificato);
+        assertTrue(indice.cerca("Rosa").isEmpty());
+        assertEquals(libro3Modificato, indice.cerca("Baudolin").get(0));
+
+        indice.pulisci();
+        assertTrue(indice.cerca("Tolkien").isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package test.indice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import indice.IndiceTestuale;
+import indice.NormalizzatoreTesto;
+import model.Libro;
+import model.StatoLettura;
+
+import java.util.List;
+
+/**
+ * Test unitari per la ricerca full-text (IndiceTestuale e NormalizzatoreTesto).
+ * Verifica la normalizzazione italiana, la ricerca su tutti i campi e l'ordinamento BM25.
+ */
+public class IndiceTestualeTest {
+
+    private IndiceTestuale indice;
+    private Libro libro1, libro2, libro3;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceTestuale();
+
+        libro1 = new Libro("Il Nome della Rosa", "Umberto Eco", "978-88-452-6445-5", "Storico", 5, StatoLettura.LETTO);
+        libro2 = new Libro("La Rosa e il Giglio", "Autore Storico", "978-88-452-7000-1", "Romanzo", 3, StatoLettura.LETTO);
+        libro3 = new Libro("Perché leggere i classici", "Italo Calvino", "978-88-452-7000-2", "Saggio", 4, StatoLettura.DA_LEGGERE);
+
+        indice.aggiungi(libro1);
+        indice.aggiungi(libro2);
+        indice.aggiungi(libro3);
+    }
+
+    @Test
+    public void testNormalizzazione() {
+        assertEquals("perche", NormalizzatoreTesto.rimuoviAccenti("perché"));
+        assertEquals(List.of("perche", "citta", "anello"),
+                NormalizzatoreTesto.tokenizzaPerRicerca("Perché la Città dell'Anello"));
+        assertTrue(NormalizzatoreTesto.tokenizzaPerRicerca("il la di").isEmpty());
+        assertTrue(NormalizzatoreTesto.tokenizzaPerRicerca(null).isEmpty());
+    }
+
+    @Test
+    public void testCercaSuTuttiICampi() {
+        // Titolo
+        assertEquals(List.of(libro3), indice.cerca("classici"));
+        // Autore
+        assertEquals(List.of(libro3), indice.cerca("calvino"));
+        // Genere, senza accento e con parole vuote
+        assertEquals(List.of(libro3), indice.cerca("il saggio"));
+        // Accenti ignorati
+        assertEquals(List.of(libro3), indice.cerca("PERCHE"));
+
+        // Solo parole vuote o parole assenti
+        assertTrue(indice.cerca("della").isEmpty());
+        assertTrue(indice.cerca("pirandello").isEmpty());
+    }
+
+    @Test
+    public void testOrdinamentoPerRilevanza() {
+        // "rosa" compare nel titolo di entrambi, "storico" nel genere di libro1 e
+        // nell'autore di libro2: il libro con entrambe le parole nei campi più pesanti vince
+        List<Libro> risultato = indice.cerca("rosa storico");
+        assertEquals(2, risultato.size());
+        assertEquals(libro2, risultato.get(0));
+        assertEquals(libro1, risultato.get(1));
+
+        // Una parola rara pesa più di una comune
+        risultato = indice.cerca("rosa eco");
+        assertEquals(libro1, risultato.get(0));
+    }
+
+    @Test
+    public void testAggiornamentoIndice() {
+        indice.rimuovi(libro1);
+        assertEquals(List.of(libro2), indice.cerca("rosa"));
+
+        Libro libro2Modificato = new Libro("Il Giglio", "Autore Storico", libro2.getIsbn(), "Romanzo", 3, StatoLettura.LETTO);
+        indice.rimuovi(libro2);
+        indice.aggiungi(libro2Modificato);
+        assertTrue(indice.cerca("rosa").isEmpty());
+        assertEquals(List.of(libro2Modificato), indice.cerca("giglio"));
+
+        indice.pulisci();
+        assertTrue(indice.cerca("giglio").isEmpty());
+    }
+}
@@ -147,4 +147,48 @@ public class OrdinatoreLibroStrategyTest {
         assertTrue(libriCase.contains(libroD));
     }
 
+    @Test
+    public void testOrdinaCompostoStrategy() {
+        // Due libri di Eco con valutazioni diverse e due con la stessa valutazione
+        Libro libro5 = new Libro("Baudolino", "Umberto Eco", "111-222-333", "Storico", 5, StatoLettura.LETTO);
+        Libro libro6 = new Libro("Arcipelago", "umberto eco", "111-222-444", "Storico", 3, StatoLettura.LETTO);
+        libri.add(libro5);
+        libri.add(libro6);
+
+        // Autore A-Z, poi valutazione 5-1, poi titolo A-Z
+        OrdinatoreLibroStrategy strategy = OrdinaCompostoStrategy.daSpecifica("autore ASC, valutazione DESC, titolo");
+        strategy.ordina(libri);
+
+        assertEquals(libro1, libri.get(0)); // Dante Alighieri
+        assertEquals(libro2, libri.get(1)); // George Orwell
+        assertEquals(libro4, libri.get(2)); // Lev Tolstoj
+        assertEquals(libro5, libri.get(3)); // Umberto Eco, 5
+        assertEquals(libro6, libri.get(4)); // umberto eco, 3
+        assertEquals(libro3, libri.get(5)); // Umberto Eco, 3, "Il Nome della Rosa" dopo "Arcipelago"
+    }
+
+    @Test
+    public void testOrdinaCompostoEquivalenteAChiaveSingola() {
+        List<Libro> attesi = new ArrayList<>(libri);
+        new OrdinaAutoreZAStrategy().ordina(attesi);
+
+        OrdinatoreLibroStrategy strategy = new OrdinaCompostoStrategy(
+                List.of(new CriterioOrdinamento(CampoOrdinamento.AUTORE, false)));
+        strategy.ordina(libri);
+
+        assertEquals(attesi, libri);
+    }
+
+    @Test
+    public void testOrdinaCompostoSpecificaNonValida() {
+        assertThrows(IllegalArgumentException.class, () -> OrdinaCompostoStrategy.daSpecifica(""));
+        assertThrows(IllegalArgumentException.class, () -> OrdinaCompostoStrategy.daSpecifica("editore ASC"));
+        assertThrows(IllegalArgumentException.class, () -> OrdinaCompostoStrategy.daSpecifica("titolo SU"));
+        assertThrows(IllegalArgumentException.class, () -> new OrdinaCompostoStrategy(new ArrayList<>()));
+
+        // La specifica viene normalizzata nella rappresentazione testuale
+        assertEquals("autore ASC, valutazione DESC",
+                OrdinaCompostoStrategy.daSpecifica(" Autore , valutazione desc ").toString());
+    }
+
 }
@@ -0,0 +1,72 @@
+package test.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import util.ListaOrdinata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test unitari per la lista ordinata usata dal gestore per gli ordinamenti memorizzati.
+ * Verifica che inserimenti e rimozioni mantengano l'ordine e le posizioni
+ * e che la lista non sia modificabile tramite i metodi di List.
+ */
+public class ListaOrdinataTest {
+
+    @Test
+    public void testInserimentoERimozione() {
+        ListaOrdinata<String> lista = new ListaOrdinata<>(Comparator.naturalOrder(), Arrays.asList("d", "b", "f"));
+        assertEquals(Arrays.asList("b", "d", "f"), lista);
+
+        lista.inserisci("a");
+        lista.inserisci("e");
+        assertEquals(Arrays.asList("a", "b", "d", "e", "f"), lista);
+        assertEquals("e", lista.get(3));
+
+        assertTrue(lista.rimuovi("d"));
+        assertFalse(lista.rimuovi("c"));
+        assertEquals(Arrays.asList("a", "b", "e", "f"), lista);
+
+        assertThrows(UnsupportedOperationException.class, () -> lista.add("g"));
+        assertThrows(UnsupportedOperationException.class, () -> lista.remove(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> lista.get(4));
+    }
+
+    @Test
+    public void testOperazioniCasualiComeListaOrdinataConRicercaBinaria() {
+        Random random = new Random(42);
+        List<Integer> iniziali = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            iniziali.add(random.nextInt(100000));
+        }
+        ListaOrdinata<Integer> lista = new ListaOrdinata<>(Comparator.naturalOrder(), iniziali);
+
+        // Modello di riferimento: ArrayList ordinato aggiornato con ricerca binaria
+        List<Integer> modello = new ArrayList<>(iniziali);
+        Collections.sort(modello);
+
+        for (int passo = 0; passo < 20000; passo++) {
+            if (random.nextInt(10) < 6 || modello.isEmpty()) {
+                int valore = random.nextInt(100000);
+                lista.inserisci(valore);
+                int posizione = Collections.binarySearch(modello, valore);
+                modello.add(posizione < 0 ? -posizione - 1 : posizione, valore);
+            } else {
+                Integer valore = modello.remove(random.nextInt(modello.size()));
+                assertTrue(lista.rimuovi(valore));
+            }
+        }
+
+        assertEquals(modello.size(), lista.size());
+        assertEquals(modello, new ArrayList<>(lista));
+        for (int i = 0; i < modello.size(); i += 37) {
+            assertEquals(modello.get(i), lista.get(i));
+        }
+        assertEquals(modello.subList(100, 150), lista.subList(100, 150));
+    }
+}
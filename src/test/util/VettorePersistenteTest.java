@@ -0,0 +1,118 @@
+package test.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import util.VettorePersistente;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test unitari per il vettore persistente usato dal gestore per la collezione.
+ * Verifica che le modifiche non alterino le versioni precedenti e che l'accesso
+ * per posizione e l'iterazione saltino le celle vuote.
+ */
+public class VettorePersistenteTest {
+
+    @Test
+    public void testVersioniPrecedentiInvariate() {
+        VettorePersistente<String> v1 = VettorePersistente.di(Arrays.asList("a", "b", "c"));
+        VettorePersistente<String> v2 = v1.aggiungi("d");
+        VettorePersistente<String> v3 = v2.sostituisci(1, "B");
+        VettorePersistente<String> v4 = v3.rimuovi(0);
+
+        assertEquals(Arrays.asList("a", "b", "c"), v1);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), v2);
+        assertEquals(Arrays.asList("a", "B", "c", "d"), v3);
+        assertEquals(Arrays.asList("B", "c", "d"), v4);
+
+        // La rimozione lascia una cella vuota senza rinumerare le altre
+        assertEquals(4, v4.getCelle());
+        assertNull(v4.getCella(0));
+        assertEquals("B", v4.getCella(1));
+        assertEquals("B", v4.get(0));
+
+        VettorePersistente<String> compattato = v4.compatta();
+        assertEquals(3, compattato.getCelle());
+        assertEquals(Arrays.asList("B", "c", "d"), compattato);
+    }
+
+    @Test
+    public void testSolaLettura() {
+        VettorePersistente<String> vettore = VettorePersistente.di(Arrays.asList("a", "b"));
+        assertThrows(UnsupportedOperationException.class, () -> vettore.add("c"));
+        assertThrows(UnsupportedOperationException.class, () -> vettore.remove(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> vettore.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> vettore.getCella(2));
+        assertThrows(NullPointerException.class, () -> vettore.aggiungi(null));
+    }
+
+    @Test
+    public void testOperazioniCasualiComeArrayList() {
+        Random random = new Random(42);
+        VettorePersistente<Integer> vettore = VettorePersistente.vuoto();
+
+        // Modello di riferimento: celle (con null per quelle vuote)
+        List<Integer> celle = new ArrayList<>();
+
+        // Abbastanza elementi da avere tre livelli nell'albero
+        for (int passo = 0; passo < 5000; passo++) {
+            int operazione = random.nextInt(10);
+            if (operazione < 6 || celle.isEmpty()) {
+                vettore = vettore.aggiungi(passo);
+                celle.add(passo);
+            } else if (operazione < 8) {
+                int cella = random.nextInt(celle.size());
+                vettore = vettore.rimuovi(cella);
+                celle.set(cella, null);
+            } else {
+                int cella = random.nextInt(celle.size());
+                vettore = vettore.sostituisci(cella, -passo);
+                celle.set(cella, -passo);
+            }
+        }
+
+        List<Integer> presenti = new ArrayList<>();
+        for (Integer valore : celle) {
+            if (valore != null) {
+                presenti.add(valore);
+            }
+        }
+
+        assertEquals(celle.size(), vettore.getCelle());
+        assertEquals(presenti.size(), vettore.size());
+        assertEquals(presenti, new ArrayList<>(vettore));
+        for (int i = 0; i < presenti.size(); i += 37) {
+            assertEquals(presenti.get(i), vettore.get(i));
+        }
+        for (int cella = 0; cella < celle.size(); cella += 41) {
+            assertEquals(celle.get(cella), vettore.getCella(cella));
+        }
+        assertEquals(presenti, vettore.compatta());
+    }
+
+    @Test
+    public void testIterazioneConSottoalberiVuoti() {
+        VettorePersistente<Integer> vettore = VettorePersistente.vuoto();
+        for (int i = 0; i < 3000; i++) {
+            vettore = vettore.aggiungi(i);
+        }
+        // Svuota interi sottoalberi all'inizio e in mezzo
+        for (int i = 0; i < 2000; i++) {
+            if (i != 1500) {
+                vettore = vettore.rimuovi(i);
+            }
+        }
+
+        List<Integer> attesi = new ArrayList<>();
+        attesi.add(1500);
+        for (int i = 2000; i < 3000; i++) {
+            attesi.add(i);
+        }
+        assertEquals(attesi, new ArrayList<>(vettore));
+        assertEquals(Integer.valueOf(1500), vettore.get(0));
+        assertEquals(Integer.valueOf(2999), vettore.get(vettore.size() - 1));
+    }
+}
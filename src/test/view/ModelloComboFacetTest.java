@@ -0,0 +1,167 @@
+package test.view;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import indice.IndiceFacet;
+import view.ModelloComboFacet;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test unitari per il modello delle combo di filtro per genere e autore.
+ * Verifica che il modello segua l'indice notificando solo le righe modificate,
+ * nel thread della grafica e dopo la modifica dell'indice.
+ */
+public class ModelloComboFacetTest {
+
+    private IndiceFacet indice;
+    private ModelloComboFacet modello;
+    private List<String> eventi;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceFacet();
+        indice.ricarica(Arrays.asList("Calvino", "Eco", "Eco", "Svevo", "Sciascia"));
+
+        modello = new ModelloComboFacet(indice, 2);
+        eventi = new ArrayList<>();
+        modello.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                eventi.add("+" + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                eventi.add("-" + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                eventi.add("~" + e.getIndex0() + "-" + e.getIndex1());
+            }
+        });
+    }
+
+    /**
+     * Attende che il thread della grafica abbia applicato le notifiche dell'indice.
+     */
+    private void attendiNotifiche() throws Exception {
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    private List<String> elementi() {
+        List<String> elementi = new ArrayList<>();
+        for (int i = 0; i < modello.getSize(); i++) {
+            elementi.add(modello.getElementAt(i));
+        }
+        return elementi;
+    }
+
+    @Test
+    public void testPrefissoELimite() {
+        assertEquals(Arrays.asList("Tutti", "Calvino", "Eco"), elementi());
+        assertEquals("Tutti", modello.getSelectedItem());
+
+        modello.setPrefisso("s");
+        assertEquals(Arrays.asList("Tutti", "Sciascia", "Svevo"), elementi());
+
+        modello.setPrefisso("sv");
+        assertEquals(Arrays.asList("Tutti", "Svevo"), elementi());
+    }
+
+    @Test
+    public void testAggiuntaNotificaSoloLaRiga() throws Exception {
+        modello.setPrefisso("s");
+        eventi.clear();
+
+        // Valore fuori dal prefisso: nessuna notifica, ma l'intervallo si sposta
+        indice.aggiungi("Ammaniti");
+        attendiNotifiche();
+        assertTrue(eventi.isEmpty());
+        assertEquals(Arrays.asList("Tutti", "Sciascia", "Svevo"), elementi());
+
+        // Al limite il nuovo valore spinge fuori l'ultimo mostrato
+        indice.aggiungi("Saviano");
+        attendiNotifiche();
+        assertEquals(Arrays.asList("-2-2", "+1-1"), eventi);
+        assertEquals(Arrays.asList("Tutti", "Saviano", "Sciascia"), elementi());
+    }
+
+    @Test
+    public void testRimozioneNotificaSoloLaRiga() throws Exception {
+        // Resta un utilizzo di "Eco": nessuna notifica
+        indice.rimuovi("Eco");
+        attendiNotifiche();
+        assertTrue(eventi.isEmpty());
+
+        // Il primo valore oltre il limite diventa visibile
+        indice.rimuovi("Eco");
+        attendiNotifiche();
+        assertEquals(Arrays.asList("-2-2", "+2-2"), eventi);
+        assertEquals(Arrays.asList("Tutti", "Calvino", "Sciascia"), elementi());
+    }
+
+    @Test
+    public void testRicaricamento() throws Exception {
+        indice.ricarica(Arrays.asList("Verga"));
+        attendiNotifiche();
+        assertEquals(Arrays.asList("Tutti", "Verga"), elementi());
+        assertEquals(Arrays.asList("-2-2", "~1-1"), eventi);
+
+        // Dopo lo scollegamento il modello non riceve più notifiche
+        modello.scollega();
+        eventi.clear();
+        indice.aggiungi("Alfieri");
+        attendiNotifiche();
+        assertTrue(eventi.isEmpty());
+    }
+
+    @Test
+    public void testNotificheNelThreadDellaGraficaDopoLaModifica() throws Exception {
+        List<Boolean> nelThreadDellaGrafica = new ArrayList<>();
+        modello.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                nelThreadDellaGrafica.add(SwingUtilities.isEventDispatchThread());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                nelThreadDellaGrafica.add(SwingUtilities.isEventDispatchThread());
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                nelThreadDellaGrafica.add(SwingUtilities.isEventDispatchThread());
+            }
+        });
+
+        // Anche una modifica eseguita nel thread della grafica viene notificata solo al termine
+        SwingUtilities.invokeAndWait(() -> {
+            indice.aggiungi("Buzzati");
+            assertTrue(eventi.isEmpty());
+            assertEquals(Arrays.asList("Tutti", "Calvino", "Eco"), elementi());
+        });
+        attendiNotifiche();
+        assertEquals(Arrays.asList("-2-2", "+1-1"), eventi);
+        assertEquals(Arrays.asList("Tutti", "Buzzati", "Calvino"), elementi());
+
+        // Modifiche da un altro thread, applicate nell'ordine in cui sono avvenute
+        Thread modifiche = new Thread(() -> {
+            indice.rimuovi("Buzzati");
+            indice.aggiungi("Alvaro");
+        });
+        modifiche.start();
+        modifiche.join();
+        attendiNotifiche();
+        assertEquals(Arrays.asList("Tutti", "Alvaro", "Calvino"), elementi());
+        assertFalse(nelThreadDellaGrafica.contains(false));
+    }
+}
@@ -0,0 +1,261 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista mantenuta ordinata secondo un comparatore, organizzata come albero AVL in cui
+ * ogni nodo conta gli elementi del proprio sottoalbero (albero di statistiche d'ordine).
+ * Inserimento, rimozione e accesso per posizione costano O(log n), invece dello
+ * spostamento O(n) degli elementi successivi richiesto da un ArrayList.
+ * <p>
+ * La lista implementa List in sola lettura; i metodi di modifica di List
+ * lanciano UnsupportedOperationException. Non è sincronizzata: le letture
+ * concorrenti sono sicure solo in assenza di modifiche.
+ *
+ * @param <E> Tipo degli elementi
+ */
+public final class ListaOrdinata<E> extends AbstractList<E> {
+
+    private final Comparator<? super E> comparatore;
+    private Nodo<E> radice;
+
+    /**
+     * Costruttore che ordina gli elementi indicati e costruisce un albero bilanciato in O(n log n).
+     *
+     * @param comparatore Comparatore che definisce l'ordine
+     * @param elementi Elementi iniziali, in qualsiasi ordine
+     */
+    public ListaOrdinata(Comparator<? super E> comparatore, Collection<? extends E> elementi) {
+        this.comparatore = comparatore;
+        List<E> ordinati = new ArrayList<>(elementi);
+        ordinati.sort(comparatore);
+        this.radice = costruisci(ordinati, 0, ordinati.size());
+    }
+
+    private static <E> Nodo<E> costruisci(List<E> ordinati, int da, int a) {
+        if (da >= a) {
+            return null;
+        }
+        int mezzo = (da + a) >>> 1;
+        Nodo<E> nodo = new Nodo<>(ordinati.get(mezzo));
+        nodo.sinistro = costruisci(ordinati, da, mezzo);
+        nodo.destro = costruisci(ordinati, mezzo + 1, a);
+        nodo.aggiorna();
+        return nodo;
+    }
+
+    @Override
+    public int size() {
+        return dimensione(radice);
+    }
+
+    /**
+     * Ottiene l'elemento in una posizione dell'ordinamento.
+     *
+     * @param index Posizione dell'elemento
+     * @return Elemento
+     * @throws IndexOutOfBoundsException se la posizione non è valida
+     */
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Indice: " + index + ", dimensione: " + size());
+        }
+        Nodo<E> nodo = radice;
+        int resto = index;
+        while (true) {
+            int sinistri = dimensione(nodo.sinistro);
+            if (resto < sinistri) {
+                nodo = nodo.sinistro;
+            } else if (resto == sinistri) {
+                return nodo.elemento;
+            } else {
+                resto -= sinistri + 1;
+                nodo = nodo.destro;
+            }
+        }
+    }
+
+    /**
+     * Inserisce un elemento nella sua posizione. Un elemento equivalente a quelli
+     * già presenti viene inserito dopo di essi.
+     *
+     * @param elemento Elemento da inserire
+     */
+    public void inserisci(E elemento) {
+        radice = inserisci(radice, elemento);
+    }
+
+    private Nodo<E> inserisci(Nodo<E> nodo, E elemento) {
+        if (nodo == null) {
+            return new Nodo<>(elemento);
+        }
+        if (comparatore.compare(elemento, nodo.elemento) < 0) {
+            nodo.sinistro = inserisci(nodo.sinistro, elemento);
+        } else {
+            nodo.destro = inserisci(nodo.destro, elemento);
+        }
+        return bilancia(nodo);
+    }
+
+    /**
+     * Rimuove un elemento equivalente, per il comparatore, a quello indicato.
+     *
+     * @param elemento Elemento da rimuovere
+     * @return true se un elemento è stato rimosso
+     */
+    public boolean rimuovi(E elemento) {
+        int prima = size();
+        radice = rimuovi(radice, elemento);
+        return size() < prima;
+    }
+
+    private Nodo<E> rimuovi(Nodo<E> nodo, E elemento) {
+        if (nodo == null) {
+            return null;
+        }
+        int confronto = comparatore.compare(elemento, nodo.elemento);
+        if (confronto < 0) {
+            nodo.sinistro = rimuovi(nodo.sinistro, elemento);
+        } else if (confronto > 0) {
+            nodo.destro = rimuovi(nodo.destro, elemento);
+        } else {
+            if (nodo.sinistro == null) {
+                return nodo.destro;
+            }
+            if (nodo.destro == null) {
+                return nodo.sinistro;
+            }
+            // Il nodo prende il posto del successore, che viene tolto dal sottoalbero destro
+            Nodo<E> successore = nodo.destro;
+            while (successore.sinistro != null) {
+                successore = successore.sinistro;
+            }
+            nodo.elemento = successore.elemento;
+            nodo.destro = rimuoviMinimo(nodo.destro);
+        }
+        return bilancia(nodo);
+    }
+
+    private Nodo<E> rimuoviMinimo(Nodo<E> nodo) {
+        if (nodo.sinistro == null) {
+            return nodo.destro;
+        }
+        nodo.sinistro = rimuoviMinimo(nodo.sinistro);
+        return bilancia(nodo);
+    }
+
+    /**
+     * Itera gli elementi in ordine, visitando l'albero senza cercare ogni posizione.
+     *
+     * @return Iteratore in sola lettura
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final Deque<Nodo<E>> percorso = new ArrayDeque<>();
+
+            {
+                scendiASinistra(radice);
+            }
+
+            private void scendiASinistra(Nodo<E> nodo) {
+                for (Nodo<E> corrente = nodo; corrente != null; corrente = corrente.sinistro) {
+                    percorso.push(corrente);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !percorso.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Nodo<E> nodo = percorso.pop();
+                scendiASinistra(nodo.destro);
+                return nodo.elemento;
+            }
+        };
+    }
+
+    private static int altezza(Nodo<?> nodo) {
+        return nodo == null ? 0 : nodo.altezza;
+    }
+
+    private static int dimensione(Nodo<?> nodo) {
+        return nodo == null ? 0 : nodo.dimensione;
+    }
+
+    /**
+     * Ripristina il bilanciamento AVL di un nodo i cui sottoalberi sono già bilanciati.
+     *
+     * @param nodo Nodo da bilanciare
+     * @return Nuova radice del sottoalbero
+     */
+    private static <E> Nodo<E> bilancia(Nodo<E> nodo) {
+        nodo.aggiorna();
+        int differenza = altezza(nodo.sinistro) - altezza(nodo.destro);
+        if (differenza > 1) {
+            if (altezza(nodo.sinistro.sinistro) < altezza(nodo.sinistro.destro)) {
+                nodo.sinistro = ruotaASinistra(nodo.sinistro);
+            }
+            return ruotaADestra(nodo);
+        }
+        if (differenza < -1) {
+            if (altezza(nodo.destro.destro) < altezza(nodo.destro.sinistro)) {
+                nodo.destro = ruotaADestra(nodo.destro);
+            }
+            return ruotaASinistra(nodo);
+        }
+        return nodo;
+    }
+
+    private static <E> Nodo<E> ruotaADestra(Nodo<E> nodo) {
+        Nodo<E> sinistro = nodo.sinistro;
+        nodo.sinistro = sinistro.destro;
+        sinistro.destro = nodo;
+        nodo.aggiorna();
+        sinistro.aggiorna();
+        return sinistro;
+    }
+
+    private static <E> Nodo<E> ruotaASinistra(Nodo<E> nodo) {
+        Nodo<E> destro = nodo.destro;
+        nodo.destro = destro.sinistro;
+        destro.sinistro = nodo;
+        nodo.aggiorna();
+        destro.aggiorna();
+        return destro;
+    }
+
+    private static final class Nodo<E> {
+        private E elemento;
+        private Nodo<E> sinistro;
+        private Nodo<E> destro;
+        private int altezza = 1;
+
+        // Numero di elementi del sottoalbero, nodo compreso
+        private int dimensione = 1;
+
+        private Nodo(E elemento) {
+            this.elemento = elemento;
+        }
+
+        private void aggiorna() {
+            altezza = 1 + Math.max(altezza(sinistro), altezza(destro));
+            dimensione = 1 + dimensione(sinistro) + dimensione(destro);
+        }
+    }
+}
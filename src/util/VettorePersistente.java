@@ -0,0 +1,300 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Vettore persistente (immutabile) con condivisione strutturale, organizzato come
+ * un albero a 32 vie. Ogni modifica restituisce un nuovo vettore copiando solo il
+ * percorso dalla radice alla foglia interessata (O(log32 n)), mentre il vettore
+ * precedente resta valido e invariato: una copia della collezione da leggere o
+ * salvare si ottiene quindi in O(1) conservando il riferimento al vettore.
+ * <p>
+ * Gli elementi occupano celle numerate in ordine di inserimento. La rimozione lascia
+ * la cella vuota, e ogni nodo conta gli elementi presenti nel proprio sottoalbero:
+ * la posizione di un elemento tra quelli presenti, usata dai metodi di List,
+ * si trova quindi scendendo nell'albero in O(log n). Le celle vuote vengono
+ * eliminate da compatta(), che rinumera le celle.
+ * <p>
+ * Il vettore implementa List in sola lettura; i metodi di modifica di List
+ * lanciano UnsupportedOperationException.
+ *
+ * @param <E> Tipo degli elementi (null non è ammesso: indica una cella vuota)
+ */
+public final class VettorePersistente<E> extends AbstractList<E> {
+
+    private static final int BIT = 5;
+    private static final int AMPIEZZA = 1 << BIT;
+    private static final int MASCHERA = AMPIEZZA - 1;
+
+    private static final VettorePersistente<?> VUOTO = new VettorePersistente<>(new Nodo(new Object[AMPIEZZA], 0), 0, 0);
+
+    private final Nodo radice;
+
+    // Bit di spostamento del livello della radice (0 se la radice è una foglia)
+    private final int livello;
+
+    // Numero di celle usate, presenti o vuote
+    private final int celle;
+
+    private VettorePersistente(Nodo radice, int livello, int celle) {
+        this.radice = radice;
+        this.livello = livello;
+        this.celle = celle;
+    }
+
+    /**
+     * Restituisce il vettore vuoto.
+     *
+     * @param <E> Tipo degli elementi
+     * @return Vettore vuoto
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> VettorePersistente<E> vuoto() {
+        return (VettorePersistente<E>) VUOTO;
+    }
+
+    /**
+     * Crea un vettore con gli elementi indicati, nell'ordine dell'iterazione.
+     *
+     * @param elementi Elementi da inserire (non null)
+     * @param <E> Tipo degli elementi
+     * @return Nuovo vettore
+     */
+    public static <E> VettorePersistente<E> di(Iterable<? extends E> elementi) {
+        VettorePersistente<E> vettore = vuoto();
+        for (E elemento : elementi) {
+            vettore = vettore.aggiungi(elemento);
+        }
+        return vettore;
+    }
+
+    /**
+     * Ottiene il numero di elementi presenti (celle vuote escluse).
+     *
+     * @return Numero di elementi
+     */
+    @Override
+    public int size() {
+        return radice.presenti;
+    }
+
+    /**
+     * Ottiene il numero di celle usate, comprese quelle vuote.
+     * È anche il numero della cella che verrà assegnata al prossimo elemento aggiunto.
+     *
+     * @return Numero di celle
+     */
+    public int getCelle() {
+        return celle;
+    }
+
+    /**
+     * Ottiene l'elemento in una cella.
+     *
+     * @param cella Numero della cella
+     * @return Elemento, o null se la cella è vuota
+     * @throws IndexOutOfBoundsException se la cella non è stata assegnata
+     */
+    @SuppressWarnings("unchecked")
+    public E getCella(int cella) {
+        if (cella < 0 || cella >= celle) {
+            throw new IndexOutOfBoundsException("Cella non valida: " + cella);
+        }
+        Nodo nodo = radice;
+        for (int spostamento = livello; spostamento > 0; spostamento -= BIT) {
+            nodo = (Nodo) nodo.figli[(cella >>> spostamento) & MASCHERA];
+        }
+        return (E) nodo.figli[cella & MASCHERA];
+    }
+
+    /**
+     * Ottiene l'elemento in una posizione, contando solo gli elementi presenti
+     * in ordine di cella.
+     *
+     * @param index Posizione dell'elemento
+     * @return Elemento
+     * @throws IndexOutOfBoundsException se la posizione non è valida
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Indice: " + index + ", dimensione: " + size());
+        }
+        Nodo nodo = radice;
+        int resto = index;
+        for (int spostamento = livello; spostamento > 0; spostamento -= BIT) {
+            int i = 0;
+            Nodo figlio = (Nodo) nodo.figli[0];
+            while (resto >= figlio.presenti) {
+                resto -= figlio.presenti;
+                figlio = (Nodo) nodo.figli[++i];
+            }
+            nodo = figlio;
+        }
+        for (Object elemento : nodo.figli) {
+            if (elemento != null && resto-- == 0) {
+                return (E) elemento;
+            }
+        }
+        throw new IllegalStateException("Conteggio degli elementi non coerente");
+    }
+
+    /**
+     * Restituisce un nuovo vettore con l'elemento aggiunto in una nuova cella in fondo.
+     *
+     * @param elemento Elemento da aggiungere (non null)
+     * @return Nuovo vettore
+     */
+    public VettorePersistente<E> aggiungi(E elemento) {
+        if (elemento == null) {
+            throw new NullPointerException("Elemento nullo");
+        }
+
+        // Radice piena: l'albero cresce di un livello
+        if (celle == (1 << (livello + BIT))) {
+            Object[] figli = new Object[AMPIEZZA];
+            figli[0] = radice;
+            Nodo nuovaRadice = new Nodo(figli, radice.presenti);
+            return new VettorePersistente<>(imposta(nuovaRadice, livello + BIT, celle, elemento), livello + BIT, celle + 1);
+        }
+        return new VettorePersistente<>(imposta(radice, livello, celle, elemento), livello, celle + 1);
+    }
+
+    /**
+     * Restituisce un nuovo vettore con l'elemento di una cella sostituito.
+     *
+     * @param cella Numero della cella
+     * @param elemento Nuovo elemento (null per svuotare la cella)
+     * @return Nuovo vettore
+     * @throws IndexOutOfBoundsException se la cella non è stata assegnata
+     */
+    public VettorePersistente<E> sostituisci(int cella, E elemento) {
+        if (cella < 0 || cella >= celle) {
+            throw new IndexOutOfBoundsException("Cella non valida: " + cella);
+        }
+        return new VettorePersistente<>(imposta(radice, livello, cella, elemento), livello, celle);
+    }
+
+    /**
+     * Restituisce un nuovo vettore con la cella svuotata.
+     * Le altre celle mantengono il proprio numero.
+     *
+     * @param cella Numero della cella
+     * @return Nuovo vettore
+     */
+    public VettorePersistente<E> rimuovi(int cella) {
+        return sostituisci(cella, null);
+    }
+
+    /**
+     * Restituisce un nuovo vettore con i soli elementi presenti, in celle consecutive.
+     *
+     * @return Nuovo vettore senza celle vuote
+     */
+    public VettorePersistente<E> compatta() {
+        return celle == size() ? this : di(this);
+    }
+
+    /**
+     * Itera gli elementi presenti in ordine di cella, visitando le foglie in sequenza.
+     *
+     * @return Iteratore in sola lettura
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int cella = prossimaPresente(0);
+
+            @Override
+            public boolean hasNext() {
+                return cella < celle;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E elemento = getCella(cella);
+                cella = prossimaPresente(cella + 1);
+                return elemento;
+            }
+        };
+    }
+
+    /**
+     * Trova la prima cella non vuota a partire da quella indicata, saltando
+     * i sottoalberi senza elementi.
+     *
+     * @param da Prima cella da considerare
+     * @return Numero della cella, o il numero di celle se non ce ne sono altre
+     */
+    private int prossimaPresente(int da) {
+        int cella = da;
+        while (cella < celle) {
+            Nodo nodo = radice;
+            boolean saltato = false;
+            for (int spostamento = livello; spostamento > 0; spostamento -= BIT) {
+                Nodo figlio = (Nodo) nodo.figli[(cella >>> spostamento) & MASCHERA];
+                if (figlio == null || figlio.presenti == 0) {
+                    // Passa al primo elemento del sottoalbero successivo
+                    cella = ((cella >>> spostamento) + 1) << spostamento;
+                    saltato = true;
+                    break;
+                }
+                nodo = figlio;
+            }
+            if (!saltato) {
+                for (int i = cella & MASCHERA; i < AMPIEZZA && cella < celle; i++, cella++) {
+                    if (nodo.figli[i] != null) {
+                        return cella;
+                    }
+                }
+            }
+        }
+        return celle;
+    }
+
+    /**
+     * Copia il percorso fino alla cella e vi imposta l'elemento, aggiornando i conteggi.
+     */
+    private static Nodo imposta(Nodo nodo, int spostamento, int cella, Object elemento) {
+        Object[] figli = nodo.figli.clone();
+        int i = (cella >>> spostamento) & MASCHERA;
+        int presentiPrima;
+        int presentiDopo;
+
+        if (spostamento == 0) {
+            presentiPrima = figli[i] != null ? 1 : 0;
+            presentiDopo = elemento != null ? 1 : 0;
+            figli[i] = elemento;
+        } else {
+            Nodo figlio = (Nodo) figli[i];
+            if (figlio == null) {
+                figlio = new Nodo(new Object[AMPIEZZA], 0);
+            }
+            Nodo nuovoFiglio = imposta(figlio, spostamento - BIT, cella, elemento);
+            presentiPrima = figlio.presenti;
+            presentiDopo = nuovoFiglio.presenti;
+            figli[i] = nuovoFiglio;
+        }
+        return new Nodo(figli, nodo.presenti - presentiPrima + presentiDopo);
+    }
+
+    /**
+     * Nodo dell'albero: nelle foglie i figli sono gli elementi, negli altri nodi
+     * sono i sottoalberi. Il conteggio degli elementi presenti permette la ricerca per posizione.
+     */
+    private static final class Nodo {
+        private final Object[] figli;
+        private final int presenti;
+
+        private Nodo(Object[] figli, int presenti) {
+            this.figli = figli;
+            this.presenti = presenti;
+        }
+    }
+}
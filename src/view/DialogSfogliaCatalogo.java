@@ -0,0 +1,175 @@
+package view;
+
+import dao.CatalogoIndicizzato;
+import strategy.CampoOrdinamento;
+import strategy.CriterioOrdinamento;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Finestra per sfogliare un catalogo su file senza caricarlo nella libreria.
+ * La tabella legge dal file solo i libri visualizzati; la ricerca per ISBN usa l'indice
+ * del catalogo, le altre ricerche e l'ordinamento (clic sull'intestazione di una colonna)
+ * leggono il file una volta per campo. Il catalogo viene chiuso alla chiusura della finestra.
+ */
+public class DialogSfogliaCatalogo extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    // Campi delle colonne della tabella, nello stesso ordine
+    private static final CampoOrdinamento[] CAMPI_COLONNE = {CampoOrdinamento.TITOLO, CampoOrdinamento.AUTORE,
+            CampoOrdinamento.ISBN, CampoOrdinamento.GENERE, CampoOrdinamento.VALUTAZIONE,
+            CampoOrdinamento.STATO_LETTURA};
+
+    private final CatalogoIndicizzato catalogo;
+    private final ModelloTabellaCatalogo modello;
+    private JTextField campoCerca;
+    private JComboBox<String> comboCampo;
+    private JLabel etichettaRighe;
+
+    // Colonna dell'ordinamento corrente e direzione, per invertirla al clic successivo
+    private int colonnaOrdinata = -1;
+    private boolean crescente;
+
+    /**
+     * Costruttore della finestra.
+     *
+     * @param parent Frame genitore
+     * @param titolo Nome del file sfogliato
+     * @param catalogo Catalogo da sfogliare, chiuso alla chiusura della finestra
+     */
+    public DialogSfogliaCatalogo(JFrame parent, String titolo, CatalogoIndicizzato catalogo) {
+        super(parent, "Sfoglia " + titolo, true);
+        this.catalogo = catalogo;
+        this.modello = new ModelloTabellaCatalogo(catalogo);
+
+        initUI();
+    }
+
+    /**
+     * Inizializza l'interfaccia utente del dialogo.
+     */
+    private void initUI() {
+        setSize(900, 600);
+        setLocationRelativeTo(getParent());
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JPanel contentPane = new JPanel(new BorderLayout(10, 10));
+        contentPane.setBorder(new EmptyBorder(10, 10, 10, 10));
+        setContentPane(contentPane);
+
+        // Ricerca su un campo
+        JPanel panelCerca = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        campoCerca = new JTextField(25);
+        comboCampo = new JComboBox<>(new String[]{"Titolo", "Autore", "ISBN", "Genere"});
+        JButton btnCerca = new JButton("Cerca");
+        btnCerca.addActionListener(e -> cerca());
+        campoCerca.addActionListener(e -> cerca());
+        JButton btnTutti = new JButton("Tutti");
+        btnTutti.addActionListener(e -> mostraTutti());
+        panelCerca.add(new JLabel("Cerca:"));
+        panelCerca.add(campoCerca);
+        panelCerca.add(comboCampo);
+        panelCerca.add(btnCerca);
+        panelCerca.add(btnTutti);
+        contentPane.add(panelCerca, BorderLayout.NORTH);
+
+        JTable tabella = new JTable(modello);
+        tabella.getTableHeader().setReorderingAllowed(false);
+        tabella.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int colonna = tabella.columnAtPoint(e.getPoint());
+                if (colonna >= 0) {
+                    ordina(colonna);
+                }
+            }
+        });
+        contentPane.add(new JScrollPane(tabella), BorderLayout.CENTER);
+
+        JPanel panelSotto = new JPanel(new BorderLayout());
+        etichettaRighe = new JLabel();
+        JButton btnChiudi = new JButton("Chiudi");
+        btnChiudi.addActionListener(e -> dispose());
+        panelSotto.add(etichettaRighe, BorderLayout.WEST);
+        panelSotto.add(btnChiudi, BorderLayout.EAST);
+        contentPane.add(panelSotto, BorderLayout.SOUTH);
+
+        aggiornaEtichetta();
+    }
+
+    private void cerca() {
+        String testo = campoCerca.getText().trim();
+        if (testo.isEmpty()) {
+            mostraTutti();
+            return;
+        }
+        try {
+            int[] trovati;
+            if ("ISBN".equals(comboCampo.getSelectedItem())) {
+                int riga = catalogo.cercaPerIsbn(testo);
+                trovati = riga < 0 ? new int[0] : new int[]{riga};
+            } else {
+                trovati = catalogo.cerca(CAMPI_COLONNE[comboCampo.getSelectedIndex()], testo);
+            }
+            colonnaOrdinata = -1;
+            modello.impostaRighe(trovati);
+            aggiornaEtichetta();
+        } catch (IOException e) {
+            mostraErrore(e);
+        }
+    }
+
+    private void mostraTutti() {
+        campoCerca.setText("");
+        colonnaOrdinata = -1;
+        modello.impostaRighe(null);
+        aggiornaEtichetta();
+    }
+
+    /**
+     * Ordina tutti i libri sulla colonna indicata, invertendo la direzione se la
+     * colonna è già quella ordinata.
+     */
+    private void ordina(int colonna) {
+        crescente = colonna != colonnaOrdinata || !crescente;
+        colonnaOrdinata = colonna;
+        try {
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            modello.impostaRighe(catalogo.ordina(Collections.singletonList(
+                    new CriterioOrdinamento(CAMPI_COLONNE[colonna], crescente))));
+            campoCerca.setText("");
+            aggiornaEtichetta();
+        } catch (IOException e) {
+            mostraErrore(e);
+        } finally {
+            setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    private void aggiornaEtichetta() {
+        etichettaRighe.setText("Libri visualizzati: " + modello.getRowCount()
+                + " di " + catalogo.getNumeroRighe());
+    }
+
+    private void mostraErrore(IOException e) {
+        JOptionPane.showMessageDialog(this, "Errore di lettura del catalogo: " + e.getMessage(),
+                "Errore", JOptionPane.ERROR_MESSAGE);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        try {
+            catalogo.close();
+        } catch (IOException e) {
+            System.err.println("Errore nella chiusura del catalogo: " + e.getMessage());
+        }
+    }
+}
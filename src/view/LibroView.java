@@ -1,17 +1,24 @@
 package view;
 
 import controller.LibroController;
+import controller.UnioneLibri;
+import dao.ArchivioLSMDAO;
+import dao.CatalogoIndicizzato;
+import indice.Dizionario;
 import model.Libro;
 import model.StatoLettura;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileView;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.util.List;
-import java.util.Vector;
 
 /**
  * Classe che implementa l'interfaccia grafica Swing per la gestione della libreria.
@@ -19,12 +26,21 @@ import java.util.Vector;
  */
 public class LibroView extends JFrame {
 
+    // Ritardo predefinito (in millisecondi) tra l'ultimo tasto premuto e la ricerca
+    private static final int RITARDO_RICERCA_PREDEFINITO = 250;
+
+    // Numero massimo di valori proposti dalle combo di filtro per genere e autore
+    private static final int MASSIMO_SUGGERIMENTI = 50;
+
     // Controller
     private final LibroController controller;
 
+    // Vero mentre le combo dei filtri vengono riempite dal codice e non dall'utente
+    private boolean aggiornamentoFiltriInCorso;
+
     // Componenti UI
     private JTable tabellaLibri;
-    private DefaultTableModel modelloTabella;
+    private ModelloTabellaLibri modelloTabella;
     private JTextField campoCerca;
     private JComboBox<String> comboTipoCerca;
     private JComboBox<String> comboGenere;
@@ -34,10 +50,15 @@ public class LibroView extends JFrame {
     private JComboBox<String> comboOrdinamento;
     private JButton btnAggiungi, btnModifica, btnElimina;
     private JButton btnCerca, btnResetFiltri;
-    private JButton btnSalvaJSON, btnSalvaCSV, btnCaricaJSON, btnCaricaCSV;
+    private JButton btnSalvaJSON, btnSalvaCSV, btnCaricaJSON, btnCaricaCSV, btnImporta, btnUnisci, btnConfronta,
+            btnApplicaModifiche, btnEsportaOrdinato, btnSfoglia;
     private JButton btnPulisciLibreria;
     private JButton btnInfo;
     private JButton btnUndo, btnRedo;
+    private JProgressBar barraSalvataggio;
+
+    // Timer che esegue la ricerca quando l'utente smette di digitare
+    private Timer timerRicerca;
 
     /**
      * Costruttore che inizializza la vista.
@@ -61,6 +82,14 @@ public class LibroView extends JFrame {
     private void initUI() {
         // Impostazioni base della finestra
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        // Prima di uscire vengono scritte le modifiche non ancora salvate automaticamente
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                controller.chiudi();
+            }
+        });
         setSize(1200, 700);
         setMinimumSize(new Dimension(1150, 600));
         setLocationRelativeTo(null);
@@ -91,9 +120,33 @@ public class LibroView extends JFrame {
         panelRicerca.setBorder(BorderFactory.createTitledBorder("Ricerca"));
 
         campoCerca = new JTextField(15);
-        comboTipoCerca = new JComboBox<>(new String[]{"Titolo", "Autore", "ISBN"});
+        comboTipoCerca = new JComboBox<>(new String[]{"Titolo", "Autore", "ISBN", "Titolo/Autore (approssimata)", "Tutti i campi"});
+        comboTipoCerca.addActionListener(e -> controller.aggiornaRicerca());
         btnCerca = new JButton("Cerca");
-        btnCerca.addActionListener(e -> controller.aggiornaTabella());
+        btnCerca.addActionListener(e -> {
+            timerRicerca.stop();
+            controller.aggiornaRicerca();
+        });
+
+        // Ricerca durante la digitazione: ogni modifica del testo fa ripartire il timer
+        timerRicerca = new Timer(RITARDO_RICERCA_PREDEFINITO, e -> controller.aggiornaRicerca());
+        timerRicerca.setRepeats(false);
+        campoCerca.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                timerRicerca.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                timerRicerca.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Le modifiche di stile non cambiano il testo cercato
+            }
+        });
 
         panelRicerca.add(new JLabel("Cerca per:"));
         panelRicerca.add(comboTipoCerca);
@@ -104,13 +157,8 @@ public class LibroView extends JFrame {
         JPanel panelFiltri = new JPanel(new FlowLayout(FlowLayout.LEFT));
         panelFiltri.setBorder(BorderFactory.createTitledBorder("Filtri"));
 
-        comboGenere = new JComboBox<>();
-        comboGenere.addItem("Tutti");
-        comboGenere.addActionListener(e -> controller.aggiornaTabella());
-
-        comboAutore = new JComboBox<>();
-        comboAutore.addItem("Tutti");
-        comboAutore.addActionListener(e -> controller.aggiornaTabella());
+        comboGenere = creaComboFiltroConSuggerimenti(controller.getDizionarioGeneri());
+        comboAutore = creaComboFiltroConSuggerimenti(controller.getDizionarioAutori());
 
         comboStatoLettura = new JComboBox<>(new String[]{"Tutti", "Letto", "In lettura", "Da leggere"});
         comboStatoLettura.addActionListener(e -> controller.aggiornaTabella());
@@ -139,7 +187,8 @@ public class LibroView extends JFrame {
         comboOrdinamento = new JComboBox<>(new String[]{
                 "Predefinito", "Titolo (A-Z)", "Titolo (Z-A)",
                 "Autore (A-Z)", "Autore (Z-A)",
-                "Valutazione (1-5)", "Valutazione (5-1)"
+                "Valutazione (1-5)", "Valutazione (5-1)",
+                "Autore (A-Z), Valutazione (5-1)"
         });
         comboOrdinamento.addActionListener(e -> controller.aggiornaTabella());
 
@@ -169,13 +218,7 @@ public class LibroView extends JFrame {
         JPanel panelCentrale = new JPanel(new BorderLayout());
 
         // Crea la tabella con il modello dati
-        String[] colonne = {"Titolo", "Autore", "ISBN", "Genere", "Valutazione", "Stato Lettura"};
-        modelloTabella = new DefaultTableModel(colonne, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Non permette la modifica diretta nella tabella
-            }
-        };
+        modelloTabella = new ModelloTabellaLibri();
 
         tabellaLibri = new JTable(modelloTabella);
         tabellaLibri.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -190,6 +233,16 @@ public class LibroView extends JFrame {
         tabellaLibri.getColumnModel().getColumn(5).setPreferredWidth(100); // Stato Lettura
 
         JScrollPane scrollPane = new JScrollPane(tabellaLibri);
+
+        // Carica la pagina successiva quando si arriva vicino al fondo della tabella
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar barra = (JScrollBar) e.getAdjustable();
+            int sogliaCaricamento = barra.getVisibleAmount() / 2;
+            if (barra.getValue() + barra.getVisibleAmount() >= barra.getMaximum() - sogliaCaricamento) {
+                controller.caricaPaginaSuccessiva();
+            }
+        });
+
         panelCentrale.add(scrollPane, BorderLayout.CENTER);
 
         return panelCentrale;
@@ -247,13 +300,46 @@ public class LibroView extends JFrame {
         btnCaricaCSV = new JButton("Carica CSV");
         btnCaricaCSV.addActionListener(e -> caricaFile("CSV"));
 
+        // Importa i libri di un file senza sostituire quelli presenti
+        btnImporta = new JButton("Importa");
+        btnImporta.addActionListener(e -> importaFile());
+
+        // Unisce i libri di un file a quelli presenti, aggiornando quelli con lo stesso ISBN
+        btnUnisci = new JButton("Unisci");
+        btnUnisci.addActionListener(e -> unisciFile());
+
+        // Confronta due cataloghi su file e applica alla libreria le modifiche tra i due
+        btnConfronta = new JButton("Confronta");
+        btnConfronta.addActionListener(e -> confrontaFile());
+        btnApplicaModifiche = new JButton("Applica modifiche");
+        btnApplicaModifiche.addActionListener(e -> applicaModificheFile());
+
+        // Ordina un file secondo l'ordinamento selezionato, anche se non sta in memoria
+        btnEsportaOrdinato = new JButton("Esporta ordinato");
+        btnEsportaOrdinato.addActionListener(e -> esportaOrdinato());
+
+        // Sfoglia un file senza caricarlo nella libreria
+        btnSfoglia = new JButton("Sfoglia file");
+        btnSfoglia.addActionListener(e -> sfogliaFile());
+
         //Pulsante per pulire la libreria
         btnPulisciLibreria = new JButton("Pulisci Libreria");
         btnPulisciLibreria.addActionListener(e -> pulisciLibreria());
+        // Barra di avanzamento dei salvataggi in background, visibile solo durante la scrittura
+        barraSalvataggio = new JProgressBar();
+        barraSalvataggio.setStringPainted(true);
+        barraSalvataggio.setVisible(false);
+        panelPersistenza.add(barraSalvataggio);
         panelPersistenza.add(btnSalvaJSON);
         panelPersistenza.add(btnSalvaCSV);
         panelPersistenza.add(btnCaricaJSON);
         panelPersistenza.add(btnCaricaCSV);
+        panelPersistenza.add(btnImporta);
+        panelPersistenza.add(btnUnisci);
+        panelPersistenza.add(btnConfronta);
+        panelPersistenza.add(btnApplicaModifiche);
+        panelPersistenza.add(btnEsportaOrdinato);
+        panelPersistenza.add(btnSfoglia);
         panelPersistenza.add(btnPulisciLibreria);
 
         // Contenitore per i pulsanti
@@ -278,6 +364,19 @@ public class LibroView extends JFrame {
         return panelInferiore;
     }
 
+    /**
+     * Imposta il ritardo tra l'ultimo tasto premuto nel campo di ricerca e l'esecuzione della ricerca.
+     *
+     * @param millisecondi Ritardo in millisecondi (0 per cercare a ogni tasto)
+     * @throws IllegalArgumentException se il ritardo è negativo
+     */
+    public void setRitardoRicerca(int millisecondi) {
+        if (millisecondi < 0) {
+            throw new IllegalArgumentException("Il ritardo di ricerca non può essere negativo.");
+        }
+        timerRicerca.setInitialDelay(millisecondi);
+    }
+
     /**
      * Aggiorna lo stato dei pulsanti Undo e Redo in base alla disponibilità delle operazioni.
      *
@@ -305,6 +404,30 @@ public class LibroView extends JFrame {
         }
     }
 
+    /**
+     * Mostra l'avanzamento del salvataggio in corso.
+     *
+     * @param scritti Libri scritti finora
+     * @param totale Libri da scrivere
+     */
+    public void mostraAvanzamentoSalvataggio(int scritti, int totale) {
+        barraSalvataggio.setMaximum(Math.max(totale, 1));
+        barraSalvataggio.setValue(scritti);
+        barraSalvataggio.setString("Salvataggio " + scritti + "/" + totale);
+        if (!barraSalvataggio.isVisible()) {
+            barraSalvataggio.setVisible(true);
+            barraSalvataggio.getParent().revalidate();
+        }
+    }
+
+    /**
+     * Nasconde l'avanzamento quando non ci sono più salvataggi in corso.
+     */
+    public void nascondiAvanzamentoSalvataggio() {
+        barraSalvataggio.setVisible(false);
+        barraSalvataggio.getParent().revalidate();
+    }
+
     /**
      * Mostra la finestra di dialogo delle informazioni sull'applicazione.
      */
@@ -313,7 +436,7 @@ public class LibroView extends JFrame {
                 "Versione: v1.0\n\n" +
                 "Descrizione:\n" +
                 "- Aggiungi, modifica e elimina i tuoi libri\n" +
-                "- Cerca libri per titolo, autore o ISBN\n" +
+                "- Cerca libri per titolo, autore o ISBN, anche con ricerca approssimata\n" +
                 "- Filtra per genere, autore, stato di lettura, valutazione\n" +
                 "- Ordina i libri secondo diversi criteri\n" +
                 "- Funzionalità Undo/Redo per annullare o ripristinare le operazioni\n" +
@@ -332,70 +455,120 @@ public class LibroView extends JFrame {
      * @param libri Lista di libri da visualizzare
      */
     public void aggiornaTabella(List<Libro> libri) {
-        // Pulisci la tabella
-        modelloTabella.setRowCount(0);
-
-        // Aggiungi le righe per ogni libro
-        for (Libro libro : libri) {
-            Vector<Object> riga = new Vector<>();
-            riga.add(libro.getTitolo());
-            riga.add(libro.getAutore());
-            riga.add(libro.getIsbn());
-            riga.add(libro.getGenere());
-
-            // Visualizza la valutazione come stringa ("da valutare" o stelle)
-            riga.add(libro.getValutazioneAsString());
+        modelloTabella.impostaRighe(libri);
+    }
 
-            riga.add(libro.getStatoLetturaAsString());
+    /**
+     * Aggiunge in fondo alla tabella le righe dei libri forniti.
+     * Usato per visualizzare le pagine successive della ricerca.
+     *
+     * @param libri Lista di libri da aggiungere
+     */
+    public void aggiungiRigheTabella(List<Libro> libri) {
+        modelloTabella.aggiungiRighe(libri);
+    }
 
-            modelloTabella.addRow(riga);
-        }
+    /**
+     * Ottiene il modello della tabella, usato dal controller per aggiornare
+     * le singole righe dopo una modifica della collezione.
+     *
+     * @return Modello della tabella dei libri
+     */
+    public ModelloTabellaLibri getModelloTabella() {
+        return modelloTabella;
     }
 
     /**
-     * Aggiorna la combo box dei generi con i generi unici disponibili.
+     * Crea una combo box di filtro modificabile sui valori di un dizionario del gestore:
+     * il testo digitato viene usato come prefisso per proporre i valori corrispondenti
+     * nella lista a discesa.
      *
-     * @param generi Lista di generi unici
+     * @param dizionario Dizionario dei valori proposti
+     * @return Combo box di filtro
      */
-    public void aggiornaComboBoxGeneri(List<String> generi) {
-        String genereSelezionato = (String) comboGenere.getSelectedItem();
+    private JComboBox<String> creaComboFiltroConSuggerimenti(Dizionario dizionario) {
+        ModelloComboFacet modello = new ModelloComboFacet(dizionario, MASSIMO_SUGGERIMENTI);
+        JComboBox<String> combo = new JComboBox<>(modello);
+        combo.setEditable(true);
+        combo.setPrototypeDisplayValue("XXXXXXXXXXXXXXXXXXXX");
+        combo.addActionListener(e -> {
+            if (!aggiornamentoFiltriInCorso) {
+                controller.aggiornaTabella();
+            }
+        });
 
-        comboGenere.removeAllItems();
-        comboGenere.addItem("Tutti");
+        JTextField editor = (JTextField) combo.getEditor().getEditorComponent();
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                richiediSuggerimenti(combo, modello);
+            }
 
-        for (String genere : generi) {
-            comboGenere.addItem(genere);
-        }
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                richiediSuggerimenti(combo, modello);
+            }
 
-        // Ripristina la selezione precedente se possibile
-        if (genereSelezionato != null) {
-            comboGenere.setSelectedItem(genereSelezionato);
-        } else {
-            comboGenere.setSelectedIndex(0);
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Le modifiche di stile non cambiano il prefisso
+            }
+        });
+        return combo;
+    }
+
+    /**
+     * Aggiorna i valori proposti da una combo di filtro secondo il testo digitato.
+     * L'aggiornamento è posticipato perché il documento non può essere modificato
+     * mentre notifica i propri listener.
+     *
+     * @param combo Combo box di filtro
+     * @param modello Modello della combo box
+     */
+    private void richiediSuggerimenti(JComboBox<String> combo, ModelloComboFacet modello) {
+        if (!aggiornamentoFiltriInCorso) {
+            SwingUtilities.invokeLater(() -> applicaPrefisso(combo, modello));
         }
     }
 
     /**
-     * Aggiorna la combo box degli autori con gli autori unici disponibili.
+     * Imposta come prefisso del modello il testo digitato, mantenendo testo e cursore:
+     * la combo riscrive l'editor a ogni notifica del modello.
      *
-     * @param autori Lista di autori unici
+     * @param combo Combo box di filtro
+     * @param modello Modello della combo box
      */
-    public void aggiornaComboBoxAutori(List<String> autori) {
-        String autoreSelezionato = (String) comboAutore.getSelectedItem();
+    private void applicaPrefisso(JComboBox<String> combo, ModelloComboFacet modello) {
+        JTextField editor = (JTextField) combo.getEditor().getEditorComponent();
+        String testo = editor.getText();
+        int cursore = editor.getCaretPosition();
+        String prefisso = getPrefissoFiltro(combo);
+        if (prefisso.equals(modello.getPrefisso())) {
+            return;
+        }
 
-        comboAutore.removeAllItems();
-        comboAutore.addItem("Tutti");
+        aggiornamentoFiltriInCorso = true;
+        try {
+            modello.setPrefisso(prefisso);
+            if (!editor.getText().equals(testo)) {
+                editor.setText(testo);
+                editor.setCaretPosition(Math.min(cursore, testo.length()));
+            }
 
-        for (String autore : autori) {
-            comboAutore.addItem(autore);
+            if (editor.isFocusOwner() && combo.isShowing()) {
+                combo.hidePopup();
+                if (modello.getSize() > 1) {
+                    combo.showPopup();
+                }
+            }
+        } finally {
+            aggiornamentoFiltriInCorso = false;
         }
+    }
 
-        // Ripristina la selezione precedente se possibile
-        if (autoreSelezionato != null) {
-            comboAutore.setSelectedItem(autoreSelezionato);
-        } else {
-            comboAutore.setSelectedIndex(0);
-        }
+    private String getPrefissoFiltro(JComboBox<String> combo) {
+        String testo = ((JTextField) combo.getEditor().getEditorComponent()).getText().trim();
+        return "Tutti".equals(testo) ? "" : testo;
     }
 
     /**
@@ -502,34 +675,7 @@ public class LibroView extends JFrame {
             return null;
         }
 
-        String titolo = (String) tabellaLibri.getValueAt(rigaSelezionata, 0);
-        String autore = (String) tabellaLibri.getValueAt(rigaSelezionata, 1);
-        String isbn = (String) tabellaLibri.getValueAt(rigaSelezionata, 2);
-        String genere = (String) tabellaLibri.getValueAt(rigaSelezionata, 3);
-
-        // Gestione della valutazione come stringa
-        String valutazioneString = (String) tabellaLibri.getValueAt(rigaSelezionata, 4);
-        int valutazione;
-        if ("Da valutare".equalsIgnoreCase(valutazioneString)) {
-            valutazione = 0;
-        } else {
-            try {
-                valutazione = Integer.parseInt(valutazioneString);
-            } catch (NumberFormatException e) {
-                valutazione = 0; // Default a "da valutare" in caso di errore
-            }
-        }
-
-        String statoLetturaString = (String) tabellaLibri.getValueAt(rigaSelezionata, 5);
-
-        StatoLettura statoLettura;
-        try {
-            statoLettura = StatoLettura.fromString(statoLetturaString);
-        } catch (IllegalArgumentException e) {
-            statoLettura = StatoLettura.DA_LEGGERE;
-        }
-
-        return new Libro(titolo, autore, isbn, genere, valutazione, statoLettura);
+        return modelloTabella.getLibro(tabellaLibri.convertRowIndexToModel(rigaSelezionata));
     }
 
     /**
@@ -544,6 +690,8 @@ public class LibroView extends JFrame {
         comboValutazione.setSelectedIndex(0);
         comboOrdinamento.setSelectedIndex(0);
 
+        // La tabella viene ricaricata subito, la ricerca ritardata non serve più
+        timerRicerca.stop();
         controller.caricaLibri();
     }
 
@@ -558,7 +706,7 @@ public class LibroView extends JFrame {
 
         String estensione = formato.toLowerCase();
         FileNameExtensionFilter filtro = new FileNameExtensionFilter(
-                formato.toUpperCase() + " Files (*." + estensione + ")", estensione);
+                formato.toUpperCase() + " Files (*." + estensione + ", *." + estensione + ".gz)", estensione, "gz");
         fileChooser.setFileFilter(filtro);
 
         int risultato = fileChooser.showSaveDialog(this);
@@ -567,8 +715,9 @@ public class LibroView extends JFrame {
             File fileSelezionato = fileChooser.getSelectedFile();
             String percorso = fileSelezionato.getAbsolutePath();
 
-            // Aggiungi l'estensione se mancante
-            if (!percorso.toLowerCase().endsWith("." + estensione)) {
+            // Aggiungi l'estensione se mancante (i file .gz vengono salvati compressi)
+            String percorsoMinuscolo = percorso.toLowerCase();
+            if (!percorsoMinuscolo.endsWith("." + estensione) && !percorsoMinuscolo.endsWith("." + estensione + ".gz")) {
                 percorso += "." + estensione;
             }
 
@@ -587,7 +736,7 @@ public class LibroView extends JFrame {
 
         String estensione = formato.toLowerCase();
         FileNameExtensionFilter filtro = new FileNameExtensionFilter(
-                formato.toUpperCase() + " Files (*." + estensione + ")", estensione);
+                formato.toUpperCase() + " Files (*." + estensione + ", *." + estensione + ".gz)", estensione, "gz");
         fileChooser.setFileFilter(filtro);
 
         int risultato = fileChooser.showOpenDialog(this);
@@ -598,6 +747,170 @@ public class LibroView extends JFrame {
         }
     }
 
+    /**
+     * Mostra un dialogo per importare i libri di un file JSON o CSV nella libreria.
+     */
+    private void importaFile() {
+        String percorso = scegliFileDaUnire("Importa libri da file");
+        if (percorso != null) {
+            controller.importaLibreria(percorso, getFormatoFile(percorso));
+        }
+    }
+
+    /**
+     * Mostra un dialogo per unire i libri di un file JSON o CSV alla libreria,
+     * chiedendo come trattare i libri già presenti con dati diversi.
+     */
+    private void unisciFile() {
+        String percorso = scegliFileDaUnire("Unisci libri da file");
+        if (percorso == null) {
+            return;
+        }
+
+        String[] opzioni = {"Aggiorna", "Mantieni i presenti", "Annulla l'unione"};
+        int scelta = JOptionPane.showOptionDialog(this,
+                "Come trattare i libri già presenti nella libreria con dati diversi?",
+                "Libri già presenti", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
+                null, opzioni, opzioni[0]);
+        if (scelta == JOptionPane.CLOSED_OPTION) {
+            return;
+        }
+
+        UnioneLibri.Politica[] politiche = {UnioneLibri.Politica.AGGIORNA, UnioneLibri.Politica.SALTA,
+                UnioneLibri.Politica.ERRORE};
+        controller.unisciLibreria(percorso, getFormatoFile(percorso), politiche[scelta]);
+    }
+
+    /**
+     * Mostra i dialoghi per scegliere due cataloghi da confrontare e il file in cui
+     * salvare le modifiche tra i due.
+     */
+    private void confrontaFile() {
+        String precedente = scegliFileDaUnire("Catalogo precedente");
+        if (precedente == null) {
+            return;
+        }
+        String nuovo = scegliFileDaUnire("Catalogo nuovo");
+        if (nuovo == null) {
+            return;
+        }
+
+        String modifiche = scegliFileDaSalvare("Salva le modifiche");
+        if (modifiche != null) {
+            controller.confrontaCataloghi(precedente, getFormatoFile(precedente), nuovo, getFormatoFile(nuovo),
+                    modifiche);
+        }
+    }
+
+    /**
+     * Mostra i dialoghi per scegliere un file da ordinare e il file in cui salvare i libri
+     * ordinati secondo l'ordinamento selezionato.
+     */
+    private void esportaOrdinato() {
+        String sorgente = scegliFileDaUnire("File da ordinare");
+        if (sorgente == null) {
+            return;
+        }
+        String destinazione = scegliFileDaSalvare("Salva i libri ordinati");
+        if (destinazione != null) {
+            controller.esportaOrdinato(sorgente, getFormatoFile(sorgente), destinazione, getFormatoFile(destinazione));
+        }
+    }
+
+    /**
+     * Mostra un dialogo per scegliere un file JSON o CSV, o un archivio, e lo sfoglia senza
+     * caricarlo: i libri vengono creati solo quando vengono visualizzati, cercati o ordinati.
+     */
+    private void sfogliaFile() {
+        String percorso = scegliFileDaUnire("Sfoglia file");
+        if (percorso == null) {
+            return;
+        }
+        CatalogoIndicizzato catalogo = controller.apriCatalogo(percorso, getFormatoFile(percorso));
+        if (catalogo != null) {
+            new DialogSfogliaCatalogo(this, new File(percorso).getName(), catalogo).setVisible(true);
+        }
+    }
+
+    /**
+     * Mostra un dialogo per applicare alla libreria un file delle modifiche.
+     */
+    private void applicaModificheFile() {
+        String percorso = scegliFileDaUnire("Applica modifiche da file");
+        if (percorso != null) {
+            controller.applicaModifiche(percorso);
+        }
+    }
+
+    /**
+     * Mostra un dialogo per scegliere un file JSON o CSV, anche compresso, o un archivio.
+     *
+     * @param titolo Titolo del dialogo
+     * @return Percorso del file scelto, o null se l'utente ha annullato
+     */
+    private String scegliFileDaUnire(String titolo) {
+        JFileChooser fileChooser = creaSceltaFile(titolo);
+        int risultato = fileChooser.showOpenDialog(this);
+        return risultato == JFileChooser.APPROVE_OPTION ? fileChooser.getSelectedFile().getAbsolutePath() : null;
+    }
+
+    /**
+     * Mostra un dialogo per scegliere dove salvare un file JSON o CSV, anche compresso, o un archivio.
+     * Senza un'estensione riconosciuta il file viene salvato in CSV.
+     *
+     * @param titolo Titolo del dialogo
+     * @return Percorso del file scelto, o null se l'utente ha annullato
+     */
+    private String scegliFileDaSalvare(String titolo) {
+        JFileChooser fileChooser = creaSceltaFile(titolo);
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        String percorso = fileChooser.getSelectedFile().getAbsolutePath();
+        if (!percorso.toLowerCase().replaceAll("\\.gz$", "").matches(".*\\.(json|csv|db|lsm)")) {
+            percorso += ".csv";
+        }
+        return percorso;
+    }
+
+    /**
+     * Crea un dialogo per scegliere un file JSON o CSV, anche compresso, o un archivio.
+     * Le cartelle degli archivi LSM vengono mostrate e scelte come file, senza entrarvi.
+     *
+     * @param titolo Titolo del dialogo
+     * @return Dialogo da mostrare
+     */
+    private JFileChooser creaSceltaFile(String titolo) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle(titolo);
+        fileChooser.setFileFilter(new FileNameExtensionFilter(
+                "JSON, CSV e archivi (*.json, *.csv, *.json.gz, *.csv.gz, *.db, *.lsm)",
+                "json", "csv", "gz", "db", "lsm"));
+        fileChooser.setFileView(new FileView() {
+            @Override
+            public Boolean isTraversable(File file) {
+                return file.getName().toLowerCase().endsWith(ArchivioLSMDAO.ESTENSIONE) ? Boolean.FALSE : null;
+            }
+        });
+        return fileChooser;
+    }
+
+    /**
+     * Ricava il formato di un file dall'estensione, ignorando l'eventuale .gz.
+     *
+     * @param percorso Percorso del file
+     * @return "JSON", "DB" o "LSM" per gli archivi, o "CSV"
+     */
+    private String getFormatoFile(String percorso) {
+        String nome = percorso.toLowerCase().replaceAll("\\.gz$", "");
+        if (nome.endsWith(".json")) {
+            return "JSON";
+        } else if (nome.endsWith(ArchivioLSMDAO.ESTENSIONE)) {
+            return "LSM";
+        }
+        return nome.endsWith(".db") ? "DB" : "CSV";
+    }
+
     /**
      * Ottiene il genere selezionato nella combo box.
      *
@@ -0,0 +1,241 @@
+package view;
+
+import indice.Dizionario;
+import indice.IndiceFacet;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Modello di combo box che mostra la voce "Tutti" seguita dai primi valori di un
+ * Dizionario che iniziano con un prefisso.
+ * Il modello conserva solo i valori mostrati, letti con una ricerca nel dizionario,
+ * e non accede mai direttamente all'indice sottostante.
+ * Le notifiche del dizionario arrivano nel thread che modifica la collezione, mentre il
+ * gestore è bloccato: i valori aggiornati vengono letti lì, ma il modello li applica
+ * e avvisa la combo nel thread della grafica, con invokeLater, notificando solo la riga
+ * inserita o rimossa invece di ricostruire l'intero elenco.
+ */
+public class ModelloComboFacet extends AbstractListModel<String>
+        implements ComboBoxModel<String>, IndiceFacet.Ascoltatore {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String TUTTI = "Tutti";
+
+    private final Dizionario dizionario;
+    private final int limite;
+
+    // Scritto nel thread della grafica, letto anche nel thread delle modifiche
+    private volatile String prefisso;
+    private Object selezionato;
+
+    // Primi valori del dizionario che iniziano con il prefisso, letti solo nel thread della grafica
+    private List<String> valori;
+
+    /**
+     * Costruttore che crea il modello e lo registra come ascoltatore del dizionario.
+     *
+     * @param dizionario Dizionario da cui leggere i valori
+     * @param limite Numero massimo di valori mostrati dopo la voce "Tutti"
+     */
+    public ModelloComboFacet(Dizionario dizionario, int limite) {
+        this.dizionario = dizionario;
+        this.limite = limite;
+        this.prefisso = "";
+        this.selezionato = TUTTI;
+        this.valori = dizionario.suggerisci(prefisso, limite);
+        dizionario.aggiungiAscoltatore(this);
+    }
+
+    /**
+     * Imposta il prefisso dei valori mostrati. Non fa nulla se il prefisso non cambia.
+     *
+     * @param nuovoPrefisso Prefisso da cercare (null o vuoto per tutti i valori)
+     */
+    public void setPrefisso(String nuovoPrefisso) {
+        String p = nuovoPrefisso == null ? "" : nuovoPrefisso;
+        if (p.equals(prefisso)) {
+            return;
+        }
+
+        int vecchiaDimensione = getSize();
+        prefisso = p;
+        valori = dizionario.suggerisci(p, limite);
+        notificaSostituzione(vecchiaDimensione);
+    }
+
+    /**
+     * Ottiene il prefisso dei valori mostrati.
+     *
+     * @return Prefisso corrente
+     */
+    public String getPrefisso() {
+        return prefisso;
+    }
+
+    @Override
+    public int getSize() {
+        return 1 + valori.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        if (index == 0) {
+            return TUTTI;
+        }
+        return valori.get(index - 1);
+    }
+
+    @Override
+    public void setSelectedItem(Object elemento) {
+        if ((selezionato != null && !selezionato.equals(elemento))
+                || (selezionato == null && elemento != null)) {
+            selezionato = elemento;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selezionato;
+    }
+
+    @Override
+    public void valoreAggiunto(int posizione, String valore) {
+        // Un valore fuori dal prefisso, o oltre il limite, non cambia i valori mostrati
+        String p = prefisso;
+        if (!iniziaCon(valore, p)) {
+            return;
+        }
+        List<String> nuovi = dizionario.suggerisci(p, limite);
+        int relativa = nuovi.indexOf(valore);
+        if (relativa < 0) {
+            return;
+        }
+
+        SwingUtilities.invokeLater(() -> applicaAggiunta(p, relativa, valore, nuovi));
+    }
+
+    @Override
+    public void valoreRimosso(int posizione, String valore) {
+        String p = prefisso;
+        if (!iniziaCon(valore, p)) {
+            return;
+        }
+
+        List<String> nuovi = dizionario.suggerisci(p, limite);
+        SwingUtilities.invokeLater(() -> applicaRimozione(p, valore, nuovi));
+    }
+
+    @Override
+    public void valoriRicaricati() {
+        String p = prefisso;
+        List<String> nuovi = dizionario.suggerisci(p, limite);
+        SwingUtilities.invokeLater(() -> {
+            if (p.equals(prefisso)) {
+                sostituisci(nuovi);
+            }
+        });
+    }
+
+    /**
+     * Smette di seguire le modifiche del dizionario.
+     */
+    public void scollega() {
+        dizionario.rimuoviAscoltatore(this);
+    }
+
+    /**
+     * Applica, nel thread della grafica, l'inserimento di un valore tra quelli mostrati.
+     * Gli aggiornamenti per un prefisso non più attuale vengono ignorati: il nuovo
+     * prefisso ha già letto i valori dal dizionario.
+     */
+    private void applicaAggiunta(String p, int relativa, String valore, List<String> nuovi) {
+        if (!p.equals(prefisso)) {
+            return;
+        }
+
+        List<String> attesi = new ArrayList<>(valori);
+        attesi.add(relativa, valore);
+        boolean uscito = attesi.size() > limite;
+        if (uscito) {
+            attesi.remove(limite);
+        }
+        if (!attesi.equals(nuovi)) {
+            sostituisci(nuovi);
+            return;
+        }
+
+        valori = nuovi;
+        // Al limite, il valore entrato spinge fuori l'ultimo mostrato
+        if (uscito) {
+            fireIntervalRemoved(this, limite, limite);
+        }
+        fireIntervalAdded(this, relativa + 1, relativa + 1);
+    }
+
+    /**
+     * Applica, nel thread della grafica, la rimozione di un valore dal dizionario.
+     * Un valore non mostrato, oltre il limite, non cambia i valori mostrati.
+     */
+    private void applicaRimozione(String p, String valore, List<String> nuovi) {
+        if (!p.equals(prefisso)) {
+            return;
+        }
+
+        int relativa = valori.indexOf(valore);
+        if (relativa < 0) {
+            if (!nuovi.equals(valori)) {
+                sostituisci(nuovi);
+            }
+            return;
+        }
+
+        int mostratiPrima = valori.size();
+        List<String> attesi = new ArrayList<>(valori);
+        attesi.remove(relativa);
+        if (nuovi.size() < attesi.size() || nuovi.size() > mostratiPrima
+                || !nuovi.subList(0, attesi.size()).equals(attesi)) {
+            sostituisci(nuovi);
+            return;
+        }
+
+        valori = nuovi;
+        fireIntervalRemoved(this, relativa + 1, relativa + 1);
+        // Se c'erano altri valori oltre il limite, il primo di essi diventa visibile
+        if (nuovi.size() == mostratiPrima) {
+            fireIntervalAdded(this, mostratiPrima, mostratiPrima);
+        }
+    }
+
+    private void sostituisci(List<String> nuovi) {
+        int vecchiaDimensione = getSize();
+        valori = nuovi;
+        notificaSostituzione(vecchiaDimensione);
+    }
+
+    private static boolean iniziaCon(String valore, String prefisso) {
+        return valore.regionMatches(true, 0, prefisso, 0, prefisso.length());
+    }
+
+    /**
+     * Notifica la sostituzione di tutti i valori dopo la voce "Tutti".
+     *
+     * @param vecchiaDimensione Dimensione del modello prima della sostituzione
+     */
+    private void notificaSostituzione(int vecchiaDimensione) {
+        int nuovaDimensione = getSize();
+        if (vecchiaDimensione > nuovaDimensione) {
+            fireIntervalRemoved(this, nuovaDimensione, vecchiaDimensione - 1);
+        } else if (nuovaDimensione > vecchiaDimensione) {
+            fireIntervalAdded(this, vecchiaDimensione, nuovaDimensione - 1);
+        }
+        if (Math.min(vecchiaDimensione, nuovaDimensione) > 1) {
+            fireContentsChanged(this, 1, Math.min(vecchiaDimensione, nuovaDimensione) - 1);
+        }
+    }
+}
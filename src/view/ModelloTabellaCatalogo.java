@@ -0,0 +1,93 @@
+package view;
+
+import dao.CatalogoIndicizzato;
+import model.Libro;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+
+/**
+ * Modello della tabella di un catalogo aperto senza caricarlo. Le righe sono indici
+ * dei libri nel catalogo: un libro viene letto dal file solo quando la tabella ne
+ * mostra la riga, e i libri non validi mostrano l'errore al posto del titolo.
+ */
+public class ModelloTabellaCatalogo extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLONNE = {"Titolo", "Autore", "ISBN", "Genere", "Valutazione", "Stato Lettura"};
+
+    private final CatalogoIndicizzato catalogo;
+
+    // Indici dei libri visualizzati, o null per tutti i libri nell'ordine del file
+    private int[] righe;
+
+    /**
+     * Costruttore che visualizza tutti i libri del catalogo nell'ordine del file.
+     *
+     * @param catalogo Catalogo da visualizzare
+     */
+    public ModelloTabellaCatalogo(CatalogoIndicizzato catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    /**
+     * Sostituisce i libri visualizzati.
+     *
+     * @param righe Indici dei libri nel catalogo, o null per tutti i libri nell'ordine del file
+     */
+    public void impostaRighe(int[] righe) {
+        this.righe = righe;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return righe == null ? catalogo.getNumeroRighe() : righe.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLONNE.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLONNE[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int riga = righe == null ? rowIndex : righe[rowIndex];
+        Libro libro;
+        try {
+            libro = catalogo.getLibro(riga);
+            if (libro == null) {
+                return columnIndex == 0 ? "Libro non valido: " + catalogo.getErrore(riga) : "";
+            }
+        } catch (IOException e) {
+            return columnIndex == 0 ? "Errore di lettura: " + e.getMessage() : "";
+        }
+        switch (columnIndex) {
+            case 0:
+                return libro.getTitolo();
+            case 1:
+                return libro.getAutore();
+            case 2:
+                return libro.getIsbn();
+            case 3:
+                return libro.getGenere();
+            case 4:
+                return libro.getValutazioneAsString();
+            case 5:
+                return libro.getStatoLetturaAsString();
+            default:
+                throw new IndexOutOfBoundsException("Colonna non valida: " + columnIndex);
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
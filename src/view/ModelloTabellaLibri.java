@@ -0,0 +1,153 @@
+package view;
+
+import model.Libro;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Modello della tabella dei libri. Contiene i libri visualizzati, nell'ordine
+ * della ricerca corrente, e permette di inserire, aggiornare o rimuovere una
+ * singola riga notificando alla tabella solo quella riga.
+ */
+public class ModelloTabellaLibri extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLONNE = {"Titolo", "Autore", "ISBN", "Genere", "Valutazione", "Stato Lettura"};
+
+    private final List<Libro> righe;
+
+    /**
+     * Costruttore che crea un modello senza righe.
+     */
+    public ModelloTabellaLibri() {
+        this.righe = new ArrayList<>();
+    }
+
+    @Override
+    public int getRowCount() {
+        return righe.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLONNE.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLONNE[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Libro libro = righe.get(rowIndex);
+        switch (columnIndex) {
+            case 0:
+                return libro.getTitolo();
+            case 1:
+                return libro.getAutore();
+            case 2:
+                return libro.getIsbn();
+            case 3:
+                return libro.getGenere();
+            case 4:
+                // Visualizza la valutazione come stringa ("da valutare" o stelle)
+                return libro.getValutazioneAsString();
+            case 5:
+                return libro.getStatoLetturaAsString();
+            default:
+                throw new IndexOutOfBoundsException("Colonna non valida: " + columnIndex);
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Non permette la modifica diretta nella tabella
+    }
+
+    /**
+     * Ottiene il libro visualizzato in una riga.
+     *
+     * @param riga Indice della riga
+     * @return Libro della riga
+     */
+    public Libro getLibro(int riga) {
+        return righe.get(riga);
+    }
+
+    /**
+     * Sostituisce tutte le righe della tabella.
+     *
+     * @param libri Libri da visualizzare
+     */
+    public void impostaRighe(List<Libro> libri) {
+        righe.clear();
+        righe.addAll(libri);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Aggiunge righe in fondo alla tabella.
+     *
+     * @param libri Libri da aggiungere
+     */
+    public void aggiungiRighe(List<Libro> libri) {
+        if (libri.isEmpty()) {
+            return;
+        }
+        int prima = righe.size();
+        righe.addAll(libri);
+        fireTableRowsInserted(prima, righe.size() - 1);
+    }
+
+    /**
+     * Inserisce una riga nella posizione indicata.
+     *
+     * @param riga Posizione della nuova riga
+     * @param libro Libro da inserire
+     */
+    public void inserisci(int riga, Libro libro) {
+        righe.add(riga, libro);
+        fireTableRowsInserted(riga, riga);
+    }
+
+    /**
+     * Sostituisce il libro visualizzato in una riga.
+     *
+     * @param riga Indice della riga
+     * @param libro Nuovi dati del libro
+     */
+    public void aggiorna(int riga, Libro libro) {
+        righe.set(riga, libro);
+        fireTableRowsUpdated(riga, riga);
+    }
+
+    /**
+     * Rimuove una riga.
+     *
+     * @param riga Indice della riga da rimuovere
+     * @return Libro rimosso
+     */
+    public Libro rimuovi(int riga) {
+        Libro libro = righe.remove(riga);
+        fireTableRowsDeleted(riga, riga);
+        return libro;
+    }
+
+    /**
+     * Cerca un libro tra le righe con una ricerca binaria.
+     * Le righe devono essere ordinate secondo l'ordine indicato.
+     *
+     * @param libro Libro da cercare
+     * @param ordine Ordine delle righe
+     * @return Indice della riga, oppure (-(punto di inserimento) - 1) se il libro non è presente
+     */
+    public int cerca(Libro libro, Comparator<Libro> ordine) {
+        return Collections.binarySearch(righe, libro, ordine);
+    }
+}